@@ -0,0 +1,119 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 原子写文件：先写入同目录下的临时文件，按 {@link FsyncPolicy} 落盘后再以ATOMIC_MOVE替换目标文件。
+ * 读者在任何时刻看到的都是完整的旧文件或完整的新文件；写入失败时目标文件保持不变，临时文件会被删除。
+ * 目标是符号链接时替换链接最终指向的文件，链接本身保持不变。
+ *
+ * @Author Sennri
+ */
+@Slf4j
+final class AtomicFiles {
+
+    private AtomicFiles() {
+    }
+
+    /**
+     * 向Writer写出文件内容
+     */
+    interface ContentWriter {
+        void write(Writer writer) throws IOException;
+    }
+
+    /**
+     * 以UTF-8原子地写出target
+     *
+     * @param target  目标文件，所在目录必须存在；为符号链接时写入其指向的文件
+     * @param policy  落盘策略
+     * @param content 文件内容
+     * @return 写出的字节数
+     */
+    static long write(Path target, FsyncPolicy policy, ContentWriter content) throws IOException {
+        Path absolute = resolve(target);
+        Path directory = absolute.getParent();
+        Path temp = Files.createTempFile(directory, "." + absolute.getFileName() + ".", ".tmp");
+        long bytes;
+        try {
+            copyPermissions(absolute, temp);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                // 只flush不close，force之后由channel统一关闭
+                Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1),
+                        StreamingYamlWriter.BUFFER_SIZE);
+                content.write(writer);
+                writer.flush();
+                bytes = channel.position();
+                if (policy != FsyncPolicy.NONE) {
+                    channel.force(true);
+                }
+            }
+            move(temp, absolute);
+            temp = null;
+            if (policy == FsyncPolicy.FILE_AND_DIRECTORY) {
+                forceDirectory(directory);
+            }
+            return bytes;
+        } finally {
+            if (temp != null) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * ATOMIC_MOVE会替换符号链接本身，因此先解析出链接指向的文件，临时文件也创建在该文件所在的目录
+     *
+     * @return 目标存在时为其真实路径，否则为绝对路径
+     */
+    static Path resolve(Path target) throws IOException {
+        Path absolute = target.toAbsolutePath();
+        return Files.exists(absolute) ? absolute.toRealPath() : absolute;
+    }
+
+    static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            log.warn("Atomic move is not supported for {}, fall back to a plain replace.", target);
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * 临时文件默认只有属主可读写，替换已有文件时沿用原文件的权限
+     */
+    private static void copyPermissions(Path from, Path to) {
+        if (!Files.exists(from)) {
+            return;
+        }
+        try {
+            Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+        } catch (UnsupportedOperationException | IOException e) {
+            log.debug("Can't copy permissions of {}: {}", from, e.getMessage());
+        }
+    }
+
+    /**
+     * 部分平台（如Windows）不能以读方式打开目录，此时忽略目录的落盘
+     */
+    static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Can't force directory {}: {}", directory, e.getMessage());
+        }
+    }
+}
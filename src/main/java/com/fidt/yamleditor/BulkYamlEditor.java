@@ -0,0 +1,287 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * 对大量yaml文件并行执行同一组编辑操作。
+ * <pre>
+ *     BulkYamlEditor.Summary summary = new BulkYamlEditor(yamlEditor)
+ *             .parallelism(8)
+ *             .errorThreshold(10)
+ *             .apply(root, "**.yaml", operations, result -&gt; log.info("{}", result));
+ * </pre>
+ * 文件按目录遍历的顺序惰性产生，同时处理的文件数不超过parallelism，任一时刻内存中最多只有parallelism个文档。
+ * 每个文件读写一次，文件内的操作按 {@link EditBatch} 的规则执行（默认任一操作失败则该文件不写出）。
+ * 每个文件的结果在处理完成后立即交给回调，回调不会被并发调用。
+ * 失败的文件数达到errorThreshold后不再提交新的文件，已经开始处理的文件照常完成。
+ *
+ * @Author Sennri
+ */
+@Slf4j
+public class BulkYamlEditor {
+    private final YamlEditor yamlEditor;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int errorThreshold = Integer.MAX_VALUE;
+    private EditBatch.FailurePolicy failurePolicy = EditBatch.FailurePolicy.ROLLBACK;
+    private FsyncPolicy fsyncPolicy;
+    private Executor executor;
+
+    public BulkYamlEditor(YamlEditor yamlEditor) {
+        this.yamlEditor = yamlEditor;
+    }
+
+    /**
+     * @param parallelism 同时处理的文件数上限，默认为CPU核数
+     */
+    public BulkYamlEditor parallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive.");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * @param errorThreshold 失败的文件数达到该值后提前结束，默认不提前结束
+     */
+    public BulkYamlEditor errorThreshold(int errorThreshold) {
+        if (errorThreshold <= 0) {
+            throw new IllegalArgumentException("Error threshold must be positive.");
+        }
+        this.errorThreshold = errorThreshold;
+        return this;
+    }
+
+    /**
+     * @param failurePolicy 单个文件内操作失败时的处理方式，参见 {@link EditBatch#onFailure(EditBatch.FailurePolicy)}
+     */
+    public BulkYamlEditor onFailure(EditBatch.FailurePolicy failurePolicy) {
+        this.failurePolicy = failurePolicy;
+        return this;
+    }
+
+    /**
+     * @param fsyncPolicy 以原子方式写出每个文件，参见 {@link EditBatch#writeAtomically(FsyncPolicy)}
+     */
+    public BulkYamlEditor writeAtomically(FsyncPolicy fsyncPolicy) {
+        this.fsyncPolicy = fsyncPolicy;
+        return this;
+    }
+
+    /**
+     * @param executor 执行编辑的Executor；默认每次调用创建一个并行度为parallelism的ForkJoinPool，结束后关闭
+     */
+    public BulkYamlEditor executor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * 对root下所有与glob匹配的文件执行操作
+     *
+     * @param root       根目录
+     * @param glob       相对于root的glob，例如 "**.yaml"（包括root下的文件与所有子目录中的文件）、"tenant-*&#47;config.yaml"
+     * @param operations 编辑操作
+     * @param results    每个文件的结果
+     * @return 汇总
+     */
+    public Summary apply(Path root, String glob, List<EditOperation> operations, Consumer<FileResult> results)
+            throws IOException, InterruptedException {
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        try (Stream<Path> files = Files.walk(root)) {
+            Stream<Path> matched = files.filter(Files::isRegularFile)
+                    .filter(file -> matcher.matches(root.relativize(file)));
+            return apply(matched.iterator(), operations, results);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 对给定的文件执行操作
+     */
+    public Summary apply(Collection<Path> files, List<EditOperation> operations, Consumer<FileResult> results)
+            throws InterruptedException {
+        return apply(files.iterator(), operations, results);
+    }
+
+    /**
+     * 对迭代器产生的文件执行操作，文件在需要时才从迭代器中取出
+     */
+    public Summary apply(Iterator<Path> files, List<EditOperation> operations, Consumer<FileResult> results)
+            throws InterruptedException {
+        List<EditOperation> snapshot = Collections.unmodifiableList(new ArrayList<>(operations));
+        ForkJoinPool ownedPool = executor == null ? new ForkJoinPool(parallelism) : null;
+        Executor target = ownedPool == null ? executor : ownedPool;
+        Semaphore permits = new Semaphore(parallelism);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicBoolean stopped = new AtomicBoolean();
+        Object resultLock = new Object();
+        try {
+            while (files.hasNext() && !stopped.get()) {
+                permits.acquire();
+                if (stopped.get()) {
+                    permits.release();
+                    break;
+                }
+                Path file = files.next();
+                Runnable task = () -> {
+                    try {
+                        FileResult result = edit(file, snapshot);
+                        if (result.isSuccess()) {
+                            succeeded.incrementAndGet();
+                        } else if (failed.incrementAndGet() >= errorThreshold) {
+                            stopped.set(true);
+                        }
+                        if (results != null) {
+                            synchronized (resultLock) {
+                                results.accept(result);
+                            }
+                        }
+                    } catch (RuntimeException e) {
+                        log.error("Result consumer failed on {}.", file, e);
+                    } finally {
+                        permits.release();
+                    }
+                };
+                try {
+                    target.execute(task);
+                } catch (RejectedExecutionException e) {
+                    permits.release();
+                    throw e;
+                }
+            }
+        } finally {
+            // 无论正常结束还是提交、等待时出错，都等所有已提交的文件完成，返回之后不会再回调results
+            permits.acquireUninterruptibly(parallelism);
+            if (ownedPool != null) {
+                ownedPool.shutdown();
+            }
+        }
+        return new Summary(succeeded.get(), failed.get(), stopped.get() && files.hasNext());
+    }
+
+    private FileResult edit(Path file, List<EditOperation> operations) {
+        try {
+            // 写入的值在每个文件中各自拷贝一份，不在文件之间、线程之间共享
+            EditBatch batch = yamlEditor.batch();
+            for (EditOperation operation : operations) {
+                batch.add(operation.deepCopy());
+            }
+            EditBatch.Result result = batch
+                    .onFailure(failurePolicy)
+                    .writeAtomically(fsyncPolicy)
+                    .applyToFile(file);
+            return new FileResult(file, result, null);
+        } catch (IOException | RuntimeException e) {
+            log.debug("Bulk edit of {} failed: {}", file, e.getMessage());
+            return new FileResult(file, null, e);
+        }
+    }
+
+    /**
+     * 单个文件的结果
+     */
+    public static final class FileResult {
+        private final Path file;
+        private final EditBatch.Result result;
+        private final Exception error;
+
+        FileResult(Path file, EditBatch.Result result, Exception error) {
+            this.file = file;
+            this.result = result;
+            this.error = error;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        /**
+         * @return 各个操作的执行结果，文件读写失败时为null
+         */
+        public EditBatch.Result getResult() {
+            return result;
+        }
+
+        /**
+         * @return 文件读写或解析失败的原因
+         */
+        public Exception getError() {
+            return error;
+        }
+
+        /**
+         * @return 文件读写成功且没有失败的操作
+         */
+        public boolean isSuccess() {
+            return error == null && result.isCommitted() && result.getFailedCount() == 0;
+        }
+
+        @Override
+        public String toString() {
+            return file + (error != null ? ": " + error : ": " + result);
+        }
+    }
+
+    /**
+     * 整次调用的汇总
+     */
+    public static final class Summary {
+        private final int succeeded;
+        private final int failed;
+        private final boolean stoppedEarly;
+
+        Summary(int succeeded, int failed, boolean stoppedEarly) {
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.stoppedEarly = stoppedEarly;
+        }
+
+        public int getProcessedCount() {
+            return succeeded + failed;
+        }
+
+        public int getSucceededCount() {
+            return succeeded;
+        }
+
+        public int getFailedCount() {
+            return failed;
+        }
+
+        /**
+         * @return 是否因为达到失败阈值而跳过了剩余的文件
+         */
+        public boolean isStoppedEarly() {
+            return stoppedEarly;
+        }
+
+        @Override
+        public String toString() {
+            return "processed=" + getProcessedCount() + ", succeeded=" + succeeded + ", failed=" + failed
+                    + ", stoppedEarly=" + stoppedEarly;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.fidt.yamleditor;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * 不可变的紧凑List，值的存储方式见 {@link CompactValues}。
+ * 所有修改方法都抛出UnsupportedOperationException。
+ *
+ * @Author Sennri
+ */
+final class CompactList extends AbstractList<Object> implements RandomAccess {
+    private final Object[] refs;
+    private final long[] bits;
+    private final byte[] types;
+
+    CompactList(CompactValues.Builder builder) {
+        builder.trim(builder.size);
+        this.refs = builder.refs;
+        this.bits = builder.bits;
+        this.types = builder.types;
+    }
+
+    @Override
+    public Object get(int index) {
+        if (index < 0 || index >= refs.length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + refs.length);
+        }
+        return CompactValues.get(refs, bits, types, index);
+    }
+
+    @Override
+    public int size() {
+        return refs.length;
+    }
+}
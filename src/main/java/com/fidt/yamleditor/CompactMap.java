@@ -0,0 +1,158 @@
+package com.fidt.yamleditor;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * 不可变的紧凑Map：键与值分别保存在数组中，保持文档中的顺序。
+ * 不超过 {@value #LINEAR_LIMIT} 个键时按顺序查找，否则额外使用一个开放寻址的int数组作为哈希表。
+ * 所有修改方法都抛出UnsupportedOperationException。
+ *
+ * @Author Sennri
+ */
+final class CompactMap extends AbstractMap<String, Object> {
+    static final int LINEAR_LIMIT = 8;
+
+    private final Object[] keys;
+    private final Object[] refs;
+    private final long[] bits;
+    private final byte[] types;
+    /**
+     * 槽位中保存下标加一，0表示空槽；小Map为null
+     */
+    private final int[] table;
+
+    /**
+     * 由builder构造，重复的键保留第一次出现的位置与最后一次出现的值，与LinkedHashMap.put一致
+     */
+    CompactMap(CompactValues.Builder builder) {
+        int n = builder.size;
+        int[] table = n > LINEAR_LIMIT ? new int[tableSize(n)] : null;
+        Object[] keys = builder.keys;
+        int kept = 0;
+        for (int i = 0; i < n; i++) {
+            Object key = keys[i];
+            int j = indexOf(keys, kept, table, key);
+            if (j >= 0) {
+                builder.move(i, j);
+                continue;
+            }
+            if (kept != i) {
+                keys[kept] = key;
+                builder.move(i, kept);
+            }
+            if (table != null) {
+                insert(table, key, kept);
+            }
+            kept++;
+        }
+        builder.trim(kept);
+        this.keys = builder.keys;
+        this.refs = builder.refs;
+        this.bits = builder.bits;
+        this.types = builder.types;
+        this.table = table;
+    }
+
+    private static int tableSize(int n) {
+        int size = Integer.highestOneBit(n) << 2;
+        return size < 0 ? 1 << 30 : size;
+    }
+
+    private static int hash(Object key) {
+        int h = key == null ? 0 : key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static void insert(int[] table, Object key, int index) {
+        int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = index + 1;
+    }
+
+    private static int indexOf(Object[] keys, int size, int[] table, Object key) {
+        if (table == null) {
+            for (int i = 0; i < size; i++) {
+                Object k = keys[i];
+                if (k == key || (key != null && key.equals(k))) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            Object k = keys[entry - 1];
+            if (k == key || (key != null && key.equals(k))) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(keys, keys.length, table, key) >= 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int i = indexOf(keys, keys.length, table, key);
+        return i < 0 ? null : CompactValues.get(refs, bits, types, i);
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return new AbstractSet<Map.Entry<String, Object>>() {
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                return new Iterator<Map.Entry<String, Object>>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < keys.length;
+                    }
+
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public Map.Entry<String, Object> next() {
+                        if (next >= keys.length) {
+                            throw new NoSuchElementException();
+                        }
+                        int i = next++;
+                        // 与SnakeYAML构造的Map一样，非字符串的键原样返回
+                        Map.Entry<?, Object> entry = new SimpleImmutableEntry<>(keys[i],
+                                CompactValues.get(refs, bits, types, i));
+                        return (Map.Entry<String, Object>) entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keys.length;
+            }
+        };
+    }
+}
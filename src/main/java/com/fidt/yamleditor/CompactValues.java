@@ -0,0 +1,108 @@
+package com.fidt.yamleditor;
+
+import java.util.Arrays;
+
+/**
+ * 紧凑树中 {@link CompactMap} 与 {@link CompactList} 共用的值存储：
+ * int、long、double以原始类型保存在long数组中，其余的值（包括Boolean.TRUE/FALSE这样的共享常量）保存在Object数组中。
+ * 没有原始类型的值时两个原始类型数组都为null。读取时原始类型的值按需装箱。
+ *
+ * @Author Sennri
+ */
+final class CompactValues {
+    static final byte REF = 0;
+    static final byte INT = 1;
+    static final byte LONG = 2;
+    static final byte DOUBLE = 3;
+
+    private CompactValues() {
+    }
+
+    static Object get(Object[] refs, long[] bits, byte[] types, int i) {
+        if (types == null) {
+            return refs[i];
+        }
+        switch (types[i]) {
+            case INT:
+                return (int) bits[i];
+            case LONG:
+                return bits[i];
+            case DOUBLE:
+                return Double.longBitsToDouble(bits[i]);
+            default:
+                return refs[i];
+        }
+    }
+
+    /**
+     * 构造紧凑节点时使用的可增长数组
+     */
+    static final class Builder {
+        Object[] keys;
+        Object[] refs;
+        long[] bits;
+        byte[] types;
+        int size;
+
+        Builder(boolean withKeys) {
+            refs = new Object[4];
+            keys = withKeys ? new Object[4] : null;
+        }
+
+        void add(Object key, Object value) {
+            if (size == refs.length) {
+                int capacity = size * 2;
+                refs = Arrays.copyOf(refs, capacity);
+                if (keys != null) {
+                    keys = Arrays.copyOf(keys, capacity);
+                }
+                if (bits != null) {
+                    bits = Arrays.copyOf(bits, capacity);
+                    types = Arrays.copyOf(types, capacity);
+                }
+            }
+            if (keys != null) {
+                keys[size] = key;
+            }
+            byte type = value instanceof Integer ? INT
+                    : value instanceof Long ? LONG
+                    : value instanceof Double ? DOUBLE : REF;
+            if (type == REF) {
+                refs[size] = value;
+            } else {
+                if (bits == null) {
+                    bits = new long[refs.length];
+                    types = new byte[refs.length];
+                }
+                types[size] = type;
+                bits[size] = type == DOUBLE ? Double.doubleToRawLongBits((Double) value) : ((Number) value).longValue();
+            }
+            size++;
+        }
+
+        /**
+         * 把位置from的值复制到位置to
+         */
+        void move(int from, int to) {
+            refs[to] = refs[from];
+            if (bits != null) {
+                bits[to] = bits[from];
+                types[to] = types[from];
+            }
+        }
+
+        void trim(int length) {
+            size = length;
+            if (refs.length != length) {
+                refs = Arrays.copyOf(refs, length);
+                if (keys != null) {
+                    keys = Arrays.copyOf(keys, length);
+                }
+                if (bits != null) {
+                    bits = Arrays.copyOf(bits, length);
+                    types = Arrays.copyOf(types, length);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.yaml.snakeyaml.constructor.Constructor;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.events.*;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.reader.UnicodeReader;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 把yaml读入为紧凑的只读树，用于体积很大、只需要读取的文档。
+ * 与 {@link YamlEditor#getMapFromYaml(Path)} 相比：
+ * <ul>
+ *     <li>Map与List是基于数组的不可变实现，不再为每个键值对分配Entry；键数较多的Map才额外带一个int数组作为哈希表</li>
+ *     <li>同一次读取中相同的键以及相同的短字符串值只保留一个String实例</li>
+ *     <li>int、long、double以原始类型保存，读取时按需装箱；布尔值使用Boolean.TRUE/FALSE</li>
+ * </ul>
+ * 返回的树仍然实现Map与List接口，{@link YamlEditor#getValue(String, Object)}、{@link YamlQuery} 等只读的API可以直接使用；
+ * 需要修改时先通过 {@link #mutableCopy(Map)} 转换为普通的LinkedHashMap与ArrayList。
+ * <p>
+ * 直接消费事件流构造紧凑树，不经过Node与LinkedHashMap；遇到合并键（&lt;&lt;）、显式的集合标签或者引用自身的别名时，
+ * 退回到普通的读取方式，再把结果转换为紧凑树。标量的类型与普通读取方式一致。
+ *
+ * @Author Sennri
+ */
+@Slf4j
+public final class CompactYamlLoader {
+    private static final Resolver RESOLVER = new Resolver();
+    private static final Pattern PLAIN_INT = Pattern.compile("[-+]?(0|[1-9][0-9]{0,17})");
+    /**
+     * 不超过该长度的字符串值也只保留一个实例，大文档中重复的短值（枚举、主机名、标签）很常见
+     */
+    private static final int SHARED_STRING_LENGTH = 32;
+    private static final String SINGLE_DOCUMENT = "expected a single document in the stream";
+
+    private final Iterator<Event> events;
+    private final Map<String, Object> anchors = new HashMap<>();
+    private final Map<String, String> names = new HashMap<>();
+    private final ArrayDeque<Frame> stack = new ArrayDeque<>();
+    private ScalarConstructor constructor;
+
+    private CompactYamlLoader(Reader reader) {
+        this.events = YamlEditor.yaml().parse(reader).iterator();
+    }
+
+    /**
+     * 读取yaml文件
+     *
+     * @param path yaml文件
+     * @return 紧凑的只读树，空文档返回null
+     * @throws IllegalArgumentException 文档的根节点不是Map
+     */
+    public static Map<String, Object> load(Path path) throws IOException {
+        try {
+            try (Reader reader = new UnicodeReader(Files.newInputStream(path))) {
+                return asMap(new CompactYamlLoader(reader).loadDocument());
+            } catch (Fallback e) {
+                log.debug("Falling back to regular loading for {}: {}", path, e.getMessage());
+                return compactMap(YamlEditor.getMapFromYaml(path));
+            }
+        } catch (RuntimeException e) {
+            YamlEditor.discardYaml();
+            throw e;
+        }
+    }
+
+    /**
+     * 读取yaml字符串
+     *
+     * @param yaml yaml内容
+     * @return 紧凑的只读树，空文档返回null
+     * @throws IllegalArgumentException 文档的根节点不是Map
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> load(String yaml) {
+        try {
+            try {
+                return asMap(new CompactYamlLoader(new StringReader(yaml)).loadDocument());
+            } catch (Fallback e) {
+                return compactMap((Map<String, Object>) YamlEditor.yaml()
+                        .loadAs(new StringReader(yaml), LinkedHashMap.class));
+            }
+        } catch (RuntimeException e) {
+            YamlEditor.discardYaml();
+            throw e;
+        }
+    }
+
+    /**
+     * 读取根节点可以是任意类型的yaml片段
+     *
+     * @param yaml yaml内容
+     * @return 紧凑的只读节点，空文档返回null
+     */
+    static Object loadNode(String yaml) {
+        try {
+            try {
+                return new CompactYamlLoader(new StringReader(yaml)).loadDocument();
+            } catch (Fallback e) {
+                return compact(YamlEditor.yaml().load(new StringReader(yaml)));
+            }
+        } catch (RuntimeException e) {
+            YamlEditor.discardYaml();
+            throw e;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(Object root) {
+        if (root != null && !(root instanceof Map)) {
+            throw new IllegalArgumentException("Root of the document is not a mapping.");
+        }
+        return (Map<String, Object>) root;
+    }
+
+    /**
+     * 把由Map、List以及标量组成的树转换为紧凑的只读树，共享的子树只转换一次
+     *
+     * @param tree 待转换的树
+     * @return 紧凑树
+     * @throws IllegalArgumentException 树中存在环
+     */
+    public static Object compact(Object tree) throws IllegalArgumentException {
+        return compact(tree, new IdentityHashMap<>(), new HashMap<>());
+    }
+
+    /**
+     * 把紧凑树转换为可以修改的LinkedHashMap与ArrayList，原树中共享的子树在拷贝中仍然共享
+     *
+     * @param tree 紧凑树
+     * @return 可修改的拷贝
+     */
+    public static Map<String, Object> mutableCopy(Map<String, Object> tree) {
+        return YamlTrees.deepCopyMap(tree);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> compactMap(Map<String, Object> tree) {
+        return (Map<String, Object>) compact(tree);
+    }
+
+    private static Object compact(Object node, IdentityHashMap<Object, Object> converted, Map<String, String> names) {
+        if (!(node instanceof Map) && !(node instanceof List)) {
+            return node;
+        }
+        if (converted.containsKey(node)) {
+            Object result = converted.get(node);
+            if (result == null) {
+                throw new IllegalArgumentException("Tree contains a cycle.");
+            }
+            return result;
+        }
+        // 转换过程中先占位，再次遇到说明存在环
+        converted.put(node, null);
+        Object result;
+        if (node instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) node;
+            CompactValues.Builder builder = new CompactValues.Builder(true);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                builder.add(dedupe(entry.getKey(), names), compact(entry.getValue(), converted, names));
+            }
+            result = new CompactMap(builder);
+        } else {
+            CompactValues.Builder builder = new CompactValues.Builder(false);
+            for (Object item : (List<?>) node) {
+                builder.add(null, compact(item, converted, names));
+            }
+            result = new CompactList(builder);
+        }
+        converted.put(node, result);
+        return result;
+    }
+
+    private static Object dedupe(Object key, Map<String, String> names) {
+        if (key instanceof String) {
+            String name = names.putIfAbsent((String) key, (String) key);
+            return name == null ? key : name;
+        }
+        return key;
+    }
+
+    private Object loadDocument() {
+        Object root = null;
+        boolean started = false;
+        while (events.hasNext()) {
+            Event event = events.next();
+            switch (event.getEventId()) {
+                case DocumentStart:
+                    if (started) {
+                        throw new YAMLException(SINGLE_DOCUMENT);
+                    }
+                    started = true;
+                    break;
+                case Scalar:
+                    root = deliver(scalar((ScalarEvent) event), ((ScalarEvent) event).getAnchor(), root);
+                    break;
+                case Alias:
+                    String anchor = ((AliasEvent) event).getAnchor();
+                    if (!anchors.containsKey(anchor)) {
+                        // 未定义的别名或者引用自身的别名，交给普通的读取方式处理
+                        throw new Fallback("alias " + anchor);
+                    }
+                    root = deliver(anchors.get(anchor), null, root);
+                    break;
+                case SequenceStart:
+                    checkTag(((CollectionStartEvent) event).getTag(), Tag.SEQ);
+                    stack.push(new Frame(false, ((NodeEvent) event).getAnchor()));
+                    break;
+                case MappingStart:
+                    checkTag(((CollectionStartEvent) event).getTag(), Tag.MAP);
+                    stack.push(new Frame(true, ((NodeEvent) event).getAnchor()));
+                    break;
+                case SequenceEnd:
+                case MappingEnd:
+                    Frame frame = stack.pop();
+                    Object node = frame.isMap ? new CompactMap(frame.builder) : new CompactList(frame.builder);
+                    root = deliver(node, frame.anchor, root);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return root;
+    }
+
+    private static void checkTag(String tag, Tag expected) {
+        if (tag != null && !"!".equals(tag) && !expected.getValue().equals(tag)) {
+            throw new Fallback("tag " + tag);
+        }
+    }
+
+    /**
+     * 把构造好的节点交给所在的集合
+     *
+     * @return 栈为空时返回该节点作为根节点，否则返回原来的根节点
+     */
+    private Object deliver(Object node, String anchor, Object root) {
+        if (anchor != null) {
+            anchors.put(anchor, node);
+        }
+        Frame frame = stack.peek();
+        if (frame == null) {
+            return node;
+        }
+        if (!frame.isMap) {
+            frame.builder.add(null, node);
+        } else if (frame.expectingKey) {
+            frame.key = dedupe(node, names);
+            frame.expectingKey = false;
+        } else {
+            frame.builder.add(frame.key, node);
+            frame.key = null;
+            frame.expectingKey = true;
+        }
+        return root;
+    }
+
+    private Object scalar(ScalarEvent event) {
+        String value = event.getValue();
+        String explicit = event.getTag();
+        boolean resolved = explicit == null || "!".equals(explicit);
+        Tag tag = resolved ? RESOLVER.resolve(NodeId.scalar, value, event.getImplicit().canOmitTagInPlainScalar())
+                : new Tag(explicit);
+        if (Tag.MERGE.equals(tag)) {
+            Frame frame = stack.peek();
+            if (frame != null && frame.isMap && frame.expectingKey) {
+                throw new Fallback("merge key");
+            }
+        }
+        if (Tag.STR.equals(tag)) {
+            return value.length() <= SHARED_STRING_LENGTH ? dedupe(value, names) : value;
+        }
+        if (Tag.NULL.equals(tag)) {
+            return null;
+        }
+        if (Tag.INT.equals(tag) && PLAIN_INT.matcher(value).matches()) {
+            long number = Long.parseLong(value.charAt(0) == '+' ? value.substring(1) : value);
+            return number == (int) number ? (Object) (int) number : (Object) number;
+        }
+        if (Tag.BOOL.equals(tag)) {
+            String lower = value.toLowerCase();
+            if ("true".equals(lower) || "yes".equals(lower) || "on".equals(lower)) {
+                return Boolean.TRUE;
+            }
+            if ("false".equals(lower) || "no".equals(lower) || "off".equals(lower)) {
+                return Boolean.FALSE;
+            }
+        }
+        if (constructor == null) {
+            constructor = new ScalarConstructor();
+        }
+        return constructor.construct(new ScalarNode(tag, resolved, value, event.getStartMark(), event.getEndMark(),
+                event.getScalarStyle()));
+    }
+
+    private static final class Frame {
+        final boolean isMap;
+        final String anchor;
+        final CompactValues.Builder builder;
+        boolean expectingKey = true;
+        Object key;
+
+        Frame(boolean isMap, String anchor) {
+            this.isMap = isMap;
+            this.anchor = anchor;
+            this.builder = new CompactValues.Builder(isMap);
+        }
+    }
+
+    /**
+     * 其余类型的标量（浮点数、时间戳、二进制、显式标签等）交给SnakeYAML构造，保证与普通读取方式一致
+     */
+    private static final class ScalarConstructor extends Constructor {
+        Object construct(ScalarNode node) {
+            return constructDocument(node);
+        }
+    }
+
+    /**
+     * 紧凑读取无法处理当前文档，需要退回到普通的读取方式
+     */
+    private static final class Fallback extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Fallback(String reason) {
+            super(reason, null, false, false);
+        }
+    }
+}
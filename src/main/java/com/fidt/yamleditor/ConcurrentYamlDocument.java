@@ -0,0 +1,209 @@
+package com.fidt.yamleditor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * 允许多个线程同时修改的yaml文档，锁的粒度是lockDepth层的子树。
+ * 复合键的前lockDepth段决定它属于哪个子树，子树按哈希分配到固定数量的读写锁上：
+ * <pre>
+ *     ConcurrentYamlDocument sessions = new ConcurrentYamlDocument(map, 1, 64);
+ *     sessions.setValue("session-1.user.name", "a");   // 与下一行可以并行
+ *     sessions.insertValueToObject("session-2.items.0", item);
+ * </pre>
+ * 只修改已有子树内部的编辑（键的段数大于lockDepth，且前lockDepth段对应的Map或List已经存在）只持有该子树的写锁，
+ * 不同子树上的编辑互不阻塞；会修改lockDepth层以上节点的编辑，例如新建子树、替换或删除整个子树，按顺序持有全部的写锁。
+ * 子树之间通过锚点与别名共享的节点不受保护。
+ * <p>
+ * 写入的值会先被深拷贝；取出的Map与List同样是拷贝，可以在锁外随意使用。
+ *
+ * @Author Sennri
+ */
+public final class ConcurrentYamlDocument {
+    public static final int DEFAULT_STRIPES = 64;
+
+    private final Map<String, Object> root;
+    private final YamlEditor yamlEditor;
+    private final int lockDepth;
+    private final ReadWriteLock[] stripes;
+
+    public ConcurrentYamlDocument(Map<String, Object> document) {
+        this(document, 1, DEFAULT_STRIPES);
+    }
+
+    public ConcurrentYamlDocument(Map<String, Object> document, int lockDepth, int stripes) {
+        this(document, lockDepth, stripes, YamlEditor.shared(false));
+    }
+
+    /**
+     * @param document   初始内容，会被深拷贝
+     * @param lockDepth  锁的粒度，1表示每个第一层的键是一个子树
+     * @param stripes    锁的数量，向上取整为2的幂
+     * @param yamlEditor 决定复合键的拆分模式
+     */
+    public ConcurrentYamlDocument(Map<String, Object> document, int lockDepth, int stripes, YamlEditor yamlEditor) {
+        if (lockDepth < 1) {
+            throw new IllegalArgumentException("Lock depth must be positive.");
+        }
+        if (stripes < 1) {
+            throw new IllegalArgumentException("Stripe count must be positive.");
+        }
+        this.root = YamlTrees.deepCopyMap(document);
+        this.yamlEditor = yamlEditor;
+        this.lockDepth = lockDepth;
+        int size = Integer.highestOneBit(stripes);
+        this.stripes = new ReadWriteLock[size < stripes ? size << 1 : size];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    public Object getValue(String compositeKey) throws IllegalArgumentException {
+        return getValue(yamlEditor.compilePath(compositeKey));
+    }
+
+    /**
+     * @return 值，Map与List为深拷贝
+     */
+    public Object getValue(YamlPath path) throws IllegalArgumentException {
+        return read(path, () -> YamlTrees.deepCopy(yamlEditor.getValue(path, root)));
+    }
+
+    public void setValue(String compositeKey, Object value) {
+        YamlPath path = yamlEditor.compilePath(compositeKey);
+        Object copy = YamlTrees.deepCopy(value);
+        write(path, () -> {
+            yamlEditor.setValue(path, copy, root);
+            return null;
+        });
+    }
+
+    public void insertValueToObject(String compositeKey, Object value) {
+        YamlPath path = yamlEditor.compilePath(compositeKey);
+        Object copy = YamlTrees.deepCopy(value);
+        write(path, () -> {
+            yamlEditor.insertValueToObject(path, copy, root);
+            return null;
+        });
+    }
+
+    public void removeListOrMapContent(String compositeKey) {
+        YamlPath path = yamlEditor.compilePath(compositeKey);
+        write(path, () -> {
+            yamlEditor.removeListOrMapContent(path, root);
+            return null;
+        });
+    }
+
+    /**
+     * 在锁内读取并替换一个已经存在的值，用于依赖当前值的修改（如计数）
+     *
+     * @param compositeKey 复合键
+     * @param function     由当前值计算新值，参数中的Map与List为深拷贝
+     * @return 新值
+     */
+    public Object update(String compositeKey, UnaryOperator<Object> function) {
+        YamlPath path = yamlEditor.compilePath(compositeKey);
+        return write(path, () -> {
+            Object value = YamlTrees.deepCopy(function.apply(YamlTrees.deepCopy(yamlEditor.getValue(path, root))));
+            yamlEditor.setValue(path, value, root);
+            return value;
+        });
+    }
+
+    /**
+     * @return 整个文档的深拷贝，拷贝期间阻塞所有写入
+     */
+    public Map<String, Object> copy() {
+        return all(false, () -> YamlTrees.deepCopyMap(root));
+    }
+
+    private <T> T read(YamlPath path, Supplier<T> action) {
+        if (path.size() < lockDepth) {
+            // 读取的子树跨越多个锁
+            return all(false, action);
+        }
+        return locked(stripeOf(path).readLock(), action);
+    }
+
+    private <T> T write(YamlPath path, Supplier<T> action) {
+        if (path.size() > lockDepth) {
+            Lock lock = stripeOf(path).writeLock();
+            lock.lock();
+            try {
+                // lockDepth层以上的节点只在持有全部锁时被修改，持有任意一把锁时读取它们都是安全的
+                if (subtreeExists(path)) {
+                    return action.get();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return all(true, action);
+    }
+
+    /**
+     * 按顺序获取全部的锁后执行
+     */
+    private <T> T all(boolean exclusive, Supplier<T> action) {
+        int locked = 0;
+        try {
+            for (ReadWriteLock stripe : stripes) {
+                (exclusive ? stripe.writeLock() : stripe.readLock()).lock();
+                locked++;
+            }
+            return action.get();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                (exclusive ? stripes[i].writeLock() : stripes[i].readLock()).unlock();
+            }
+        }
+    }
+
+    private static <T> T locked(Lock lock, Supplier<T> action) {
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 复合键的前lockDepth段是否对应一个已经存在的Map或List
+     */
+    private boolean subtreeExists(YamlPath path) {
+        Object node = root;
+        for (int i = 0; i < lockDepth; i++) {
+            if (node instanceof Map) {
+                node = ((Map<?, ?>) node).get(path.getName(i));
+            } else if (node instanceof List) {
+                List<?> list = (List<?>) node;
+                int index = path.indexOrNegative(i);
+                node = index >= 0 && index < list.size() ? list.get(index) : null;
+            } else {
+                return false;
+            }
+        }
+        return node instanceof Map || node instanceof List;
+    }
+
+    /**
+     * 整数段按解析后的下标计算哈希，"list.01"与"list.1"指向同一个元素，必须落在同一把锁上；
+     * Map中的"01"与"1"因此共用一把锁，只是多一点竞争
+     */
+    private ReadWriteLock stripeOf(YamlPath path) {
+        int hash = 1;
+        for (int i = 0; i < lockDepth; i++) {
+            int index = path.indexOrNegative(i);
+            hash = 31 * hash + (index >= 0 ? index : path.getName(i).hashCode());
+        }
+        hash ^= hash >>> 16;
+        return stripes[hash & (stripes.length - 1)];
+    }
+}
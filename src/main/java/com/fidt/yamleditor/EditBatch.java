@@ -0,0 +1,310 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量编辑：收集一组set、insert、remove操作，对同一棵内存中的树依次执行，文件只读入一次、写出一次。
+ * <pre>
+ *     EditBatch.Result result = yamlEditor.batch()
+ *             .set("Service.port", 8080)
+ *             .insert("Service.hosts.0", "172.21.18.41")
+ *             .remove("Service.debug")
+ *             .applyToFile(path);
+ * </pre>
+ * 某个操作失败时，按照 {@link FailurePolicy} 决定回滚整个批次还是跳过该操作继续执行。
+ * 该类不是线程安全的。
+ *
+ * @Author Sennri
+ */
+@Slf4j
+public class EditBatch {
+    public enum FailurePolicy {
+        /**
+         * 任一操作失败则整个批次不生效，之后的操作不再执行，文件不会被写出
+         */
+        ROLLBACK,
+        /**
+         * 跳过失败的操作，其余操作照常生效
+         */
+        SKIP
+    }
+
+    public enum Status {
+        /**
+         * 已执行
+         */
+        APPLIED,
+        /**
+         * 执行失败
+         */
+        FAILED,
+        /**
+         * 因回滚没有执行，或执行后被回滚
+         */
+        ROLLED_BACK
+    }
+
+    private final YamlEditor yamlEditor;
+    private final List<EditOperation> operations = new ArrayList<>();
+    private FailurePolicy failurePolicy = FailurePolicy.ROLLBACK;
+    private FsyncPolicy fsyncPolicy;
+
+    public EditBatch(YamlEditor yamlEditor) {
+        this.yamlEditor = yamlEditor;
+    }
+
+    public EditBatch set(String compositeKey, Object value) {
+        return add(EditOperation.set(compositeKey, value));
+    }
+
+    public EditBatch insert(String compositeKey, Object value) {
+        return add(EditOperation.insert(compositeKey, value));
+    }
+
+    public EditBatch remove(String compositeKey) {
+        return add(EditOperation.remove(compositeKey));
+    }
+
+    public EditBatch add(EditOperation operation) {
+        operations.add(operation);
+        return this;
+    }
+
+    public EditBatch addAll(Collection<EditOperation> operations) {
+        this.operations.addAll(operations);
+        return this;
+    }
+
+    /**
+     * @param failurePolicy 操作失败时的处理方式，默认为 {@link FailurePolicy#ROLLBACK}
+     */
+    public EditBatch onFailure(FailurePolicy failurePolicy) {
+        this.failurePolicy = failurePolicy;
+        return this;
+    }
+
+    /**
+     * 写出文件时使用 {@link YamlEditor#dumpMapToYamlAtomically(Map, Path, FsyncPolicy)}，默认直接覆盖写入
+     *
+     * @param fsyncPolicy 落盘策略，为null时恢复为直接覆盖写入
+     */
+    public EditBatch writeAtomically(FsyncPolicy fsyncPolicy) {
+        this.fsyncPolicy = fsyncPolicy;
+        return this;
+    }
+
+    public List<EditOperation> getOperations() {
+        return Collections.unmodifiableList(operations);
+    }
+
+    public int size() {
+        return operations.size();
+    }
+
+    /**
+     * 将批次应用到内存中的树上，操作直接修改root。
+     * ROLLBACK模式下执行每个操作之前记录其复合键经过的容器，有操作失败时把这些容器恢复原状，
+     * root以及调用方持有的子Map、子List仍然是原来的对象，内容与执行前相同。
+     *
+     * @param root 待编辑的树
+     * @return 每个操作的执行结果
+     */
+    public Result applyTo(Map<String, Object> root) {
+        return apply(root, failurePolicy == FailurePolicy.ROLLBACK, false);
+    }
+
+    /**
+     * 与 {@link #applyTo(Map)} 相同，但写入的是操作值的深拷贝。同一批次依次应用到多棵树上时，
+     * 每棵树得到各自的值，后续操作对其中一棵树的修改不会出现在其他树中
+     */
+    Result applyCopyTo(Map<String, Object> root) {
+        return apply(root, failurePolicy == FailurePolicy.ROLLBACK, true);
+    }
+
+    /**
+     * 读入inputPath，执行批次后写入outputPath。
+     * ROLLBACK模式下只要有操作失败就不会写出文件；SKIP模式下只要有操作成功就写出文件。
+     *
+     * @param inputPath  输入文件
+     * @param outputPath 输出文件
+     * @return 每个操作的执行结果
+     */
+    public Result applyToFile(Path inputPath, Path outputPath) throws IOException {
+        Map<String, Object> yamlToMap = YamlEditor.getMapFromYaml(inputPath);
+        // 文件中的树只属于本次调用，失败时不写出即可，无需记录回滚
+        Result result = apply(yamlToMap, false, false);
+        if (result.isCommitted() && result.getAppliedCount() > 0) {
+            if (fsyncPolicy == null) {
+                YamlEditor.dumpMapToYaml(yamlToMap, outputPath);
+            } else {
+                YamlEditor.dumpMapToYamlAtomically(yamlToMap, outputPath, fsyncPolicy);
+            }
+            result.written = true;
+        } else if (result.getFailedCount() > 0) {
+            log.warn("Batch of {} operations was not written to {}, {} failed.",
+                    operations.size(), outputPath, result.getFailedCount());
+        }
+        return result;
+    }
+
+    /**
+     * 读入文件，执行批次后写回原文件
+     */
+    public Result applyToFile(Path path) throws IOException {
+        return applyToFile(path, path);
+    }
+
+    /**
+     * 读入文件，执行批次后写回原文件
+     */
+    public Result applyToFile(String fileName) throws IOException {
+        return applyToFile(Paths.get(fileName));
+    }
+
+    /**
+     * @param undoable   失败时是否需要把root恢复原状，只在ROLLBACK模式下有效
+     * @param copyValues 是否写入操作值的深拷贝
+     */
+    private Result apply(Object root, boolean undoable, boolean copyValues) {
+        int size = operations.size();
+        List<OperationResult> results = new ArrayList<>(size);
+        YamlUndoLog undoLog = undoable ? new YamlUndoLog() : null;
+        boolean failed = false;
+        for (EditOperation operation : operations) {
+            if (failed && failurePolicy == FailurePolicy.ROLLBACK) {
+                results.add(new OperationResult(operation, Status.ROLLED_BACK, null));
+                continue;
+            }
+            try {
+                if (undoLog != null) {
+                    undoLog.record(yamlEditor.compilePath(operation.getCompositeKey()), root);
+                }
+                (copyValues ? operation.deepCopy() : operation).applyTo(yamlEditor, root);
+                results.add(new OperationResult(operation, Status.APPLIED, null));
+            } catch (RuntimeException e) {
+                log.debug("Operation {} failed: {}", operation, e.getMessage());
+                failed = true;
+                results.add(new OperationResult(operation, Status.FAILED, e));
+            }
+        }
+        if (failed && failurePolicy == FailurePolicy.ROLLBACK) {
+            if (undoLog != null) {
+                undoLog.rollback();
+            }
+            for (int i = 0; i < size; i++) {
+                OperationResult r = results.get(i);
+                if (r.status == Status.APPLIED) {
+                    results.set(i, new OperationResult(r.operation, Status.ROLLED_BACK, null));
+                }
+            }
+            return new Result(results, false);
+        }
+        return new Result(results, true);
+    }
+
+    /**
+     * 单个操作的执行结果
+     */
+    public static final class OperationResult {
+        private final EditOperation operation;
+        private final Status status;
+        private final RuntimeException error;
+
+        OperationResult(EditOperation operation, Status status, RuntimeException error) {
+            this.operation = operation;
+            this.status = status;
+            this.error = error;
+        }
+
+        public EditOperation getOperation() {
+            return operation;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * @return 失败原因，只有 {@link Status#FAILED} 时不为null
+         */
+        public RuntimeException getError() {
+            return error;
+        }
+
+        public boolean isApplied() {
+            return status == Status.APPLIED;
+        }
+
+        @Override
+        public String toString() {
+            return error == null ? status + " " + operation : status + " " + operation + ": " + error;
+        }
+    }
+
+    /**
+     * 整个批次的执行结果
+     */
+    public static final class Result {
+        private final List<OperationResult> results;
+        private final boolean committed;
+        private boolean written;
+
+        Result(List<OperationResult> results, boolean committed) {
+            this.results = Collections.unmodifiableList(results);
+            this.committed = committed;
+        }
+
+        /**
+         * @return 与操作顺序一一对应的结果
+         */
+        public List<OperationResult> getResults() {
+            return results;
+        }
+
+        /**
+         * @return 批次是否生效，ROLLBACK模式下有操作失败时为false
+         */
+        public boolean isCommitted() {
+            return committed;
+        }
+
+        /**
+         * @return 是否写出了文件，只对 applyToFile 有意义
+         */
+        public boolean isWritten() {
+            return written;
+        }
+
+        public int getAppliedCount() {
+            return count(Status.APPLIED);
+        }
+
+        public int getFailedCount() {
+            return count(Status.FAILED);
+        }
+
+        private int count(Status status) {
+            int n = 0;
+            for (OperationResult result : results) {
+                if (result.status == status) {
+                    n++;
+                }
+            }
+            return n;
+        }
+
+        @Override
+        public String toString() {
+            return "committed=" + committed + ", written=" + written + ", results=" + results;
+        }
+    }
+}
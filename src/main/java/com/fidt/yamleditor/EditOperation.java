@@ -0,0 +1,121 @@
+package com.fidt.yamleditor;
+
+import java.util.Objects;
+
+/**
+ * 对yaml树的一次编辑：set、insert或remove，键为编辑器语法下的复合键。
+ * 该类不可变，可以在批量编辑、差异比较、日志等场景中复用。
+ *
+ * @Author Sennri
+ */
+public final class EditOperation {
+    public enum Type {
+        /**
+         * 对应 {@link YamlEditor#setValue(String, Object, Object)}
+         */
+        SET,
+        /**
+         * 对应 {@link YamlEditor#insertValueToObject(String, Object, Object)}
+         */
+        INSERT,
+        /**
+         * 对应 {@link YamlEditor#removeListOrMapContent(String, Object)}
+         */
+        REMOVE
+    }
+
+    private final Type type;
+    private final String compositeKey;
+    private final Object value;
+
+    private EditOperation(Type type, String compositeKey, Object value) {
+        this.type = Objects.requireNonNull(type);
+        this.compositeKey = Objects.requireNonNull(compositeKey);
+        this.value = value;
+    }
+
+    public static EditOperation set(String compositeKey, Object value) {
+        return new EditOperation(Type.SET, compositeKey, value);
+    }
+
+    public static EditOperation insert(String compositeKey, Object value) {
+        return new EditOperation(Type.INSERT, compositeKey, value);
+    }
+
+    public static EditOperation remove(String compositeKey) {
+        return new EditOperation(Type.REMOVE, compositeKey, null);
+    }
+
+    public static EditOperation of(Type type, String compositeKey, Object value) {
+        return new EditOperation(type, compositeKey, type == Type.REMOVE ? null : value);
+    }
+
+    /**
+     * 值为Map或者List时返回值被深拷贝的同一编辑，否则返回自身。
+     * 同一组编辑应用到多棵树上时，每棵树使用各自的拷贝，避免写入的值在树之间共享。
+     */
+    EditOperation deepCopy() {
+        Object copy = YamlTrees.deepCopy(value);
+        return copy == value ? this : new EditOperation(type, compositeKey, copy);
+    }
+
+    /**
+     * 通过yamlEditor将本次编辑应用到root上
+     *
+     * @param yamlEditor 决定复合键拆分模式的编辑器
+     * @param root       Map或者List
+     */
+    public void applyTo(YamlEditor yamlEditor, Object root) {
+        YamlPath path = yamlEditor.compilePath(compositeKey);
+        switch (type) {
+            case SET:
+                yamlEditor.setValue(path, value, root);
+                break;
+            case INSERT:
+                yamlEditor.insertValueToObject(path, value, root);
+                break;
+            case REMOVE:
+                yamlEditor.removeListOrMapContent(path, root);
+                break;
+            default:
+                throw new IllegalStateException("Unknown operation type: " + type);
+        }
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getCompositeKey() {
+        return compositeKey;
+    }
+
+    /**
+     * @return 待写入的值，remove时为null
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof EditOperation)) {
+            return false;
+        }
+        EditOperation that = (EditOperation) o;
+        return type == that.type && compositeKey.equals(that.compositeKey) && Objects.equals(value, that.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, compositeKey, value);
+    }
+
+    @Override
+    public String toString() {
+        return type == Type.REMOVE ? type + " " + compositeKey : type + " " + compositeKey + " = " + value;
+    }
+}
@@ -0,0 +1,199 @@
+package com.fidt.yamleditor;
+
+import org.yaml.snakeyaml.constructor.Constructor;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.events.*;
+import org.yaml.snakeyaml.nodes.*;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 直接消费 SnakeYAML 的事件流（{@code Yaml.parse}），只为需要的子树构造Node与Java对象。
+ * 与Composer的逻辑保持一致：标签解析、锚点与别名、合并键。
+ * 被跳过的子树中如果定义了锚点，该锚点对应的子树仍会被构造为Node并登记，保证之后的别名可以被正确解析。
+ * 该类不是线程安全的，每次读取使用一个实例。
+ *
+ * @Author Sennri
+ */
+final class EventNodeBuilder {
+    private final Iterator<Event> events;
+    private final Resolver resolver;
+    private final Map<String, Node> anchors = new HashMap<>();
+    private NodeConstructor constructor;
+
+    EventNodeBuilder(Iterable<Event> events, Resolver resolver) {
+        this.events = events.iterator();
+        this.resolver = resolver;
+    }
+
+    /**
+     * @return 下一个事件，事件流结束时返回null
+     */
+    Event next() {
+        return events.hasNext() ? events.next() : null;
+    }
+
+    /**
+     * 跳过StreamStart与DocumentStart，返回第一个文档根节点的第一个事件
+     *
+     * @return 根节点的事件，空文档时返回null
+     */
+    Event firstDocumentRoot() {
+        Event event;
+        while ((event = next()) != null) {
+            if (event.is(Event.ID.DocumentStart)) {
+                Event root = next();
+                return root == null || root.is(Event.ID.DocumentEnd) ? null : root;
+            }
+            if (event.is(Event.ID.StreamEnd)) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 解析标量的隐式标签
+     */
+    Tag resolveScalarTag(ScalarEvent event) {
+        String tag = event.getTag();
+        if (tag == null || "!".equals(tag)) {
+            return resolver.resolve(NodeId.scalar, event.getValue(), event.getImplicit().canOmitTagInPlainScalar());
+        }
+        return new Tag(tag);
+    }
+
+    /**
+     * 以first为第一个事件，构造完整的子树Node
+     *
+     * @param first 子树的第一个事件
+     * @return 子树
+     */
+    Node build(Event first) {
+        if (first.is(Event.ID.Alias)) {
+            String anchor = ((AliasEvent) first).getAnchor();
+            Node node = anchors.get(anchor);
+            if (node == null) {
+                throw new YAMLException("found undefined alias " + anchor + first.getStartMark());
+            }
+            return node;
+        }
+        if (first.is(Event.ID.Scalar)) {
+            ScalarEvent event = (ScalarEvent) first;
+            String tag = event.getTag();
+            boolean resolved = tag == null || "!".equals(tag);
+            Node node = new ScalarNode(resolveScalarTag(event), resolved, event.getValue(),
+                    event.getStartMark(), event.getEndMark(), event.getScalarStyle());
+            register(event.getAnchor(), node);
+            return node;
+        }
+        if (first.is(Event.ID.SequenceStart)) {
+            SequenceStartEvent event = (SequenceStartEvent) first;
+            String tag = event.getTag();
+            boolean resolved = tag == null || "!".equals(tag);
+            Tag nodeTag = resolved ? resolver.resolve(NodeId.sequence, null, event.getImplicit()) : new Tag(tag);
+            List<Node> children = new ArrayList<>();
+            SequenceNode node = new SequenceNode(nodeTag, resolved, children, event.getStartMark(), null,
+                    event.getFlowStyle());
+            register(event.getAnchor(), node);
+            Event child;
+            while (!(child = nextRequired()).is(Event.ID.SequenceEnd)) {
+                children.add(build(child));
+            }
+            node.setEndMark(child.getEndMark());
+            return node;
+        }
+        if (first.is(Event.ID.MappingStart)) {
+            MappingStartEvent event = (MappingStartEvent) first;
+            String tag = event.getTag();
+            boolean resolved = tag == null || "!".equals(tag);
+            Tag nodeTag = resolved ? resolver.resolve(NodeId.mapping, null, event.getImplicit()) : new Tag(tag);
+            List<NodeTuple> children = new ArrayList<>();
+            MappingNode node = new MappingNode(nodeTag, resolved, children, event.getStartMark(), null,
+                    event.getFlowStyle());
+            register(event.getAnchor(), node);
+            Event key;
+            while (!(key = nextRequired()).is(Event.ID.MappingEnd)) {
+                Node keyNode = build(key);
+                if (Tag.MERGE.equals(keyNode.getTag())) {
+                    node.setMerged(true);
+                }
+                children.add(new NodeTuple(keyNode, build(nextRequired())));
+            }
+            node.setEndMark(key.getEndMark());
+            return node;
+        }
+        throw new IllegalStateException("Unexpected event: " + first);
+    }
+
+    /**
+     * 跳过以first为第一个事件的子树，不构造Node；带有锚点的节点除外
+     *
+     * @param first 子树的第一个事件
+     */
+    void skip(Event first) {
+        if (first instanceof NodeEvent && ((NodeEvent) first).getAnchor() != null && !first.is(Event.ID.Alias)) {
+            build(first);
+            return;
+        }
+        if (first.is(Event.ID.SequenceStart) || first.is(Event.ID.MappingStart)) {
+            Event child;
+            while (!(child = nextRequired()).is(Event.ID.SequenceEnd) && !child.is(Event.ID.MappingEnd)) {
+                skip(child);
+            }
+        }
+    }
+
+    /**
+     * 将子树构造为Java对象，Map为LinkedHashMap，序列为ArrayList，与 {@link YamlEditor#getMapFromYaml(java.nio.file.Path)} 一致
+     */
+    Object construct(Node node) {
+        if (constructor == null) {
+            constructor = new NodeConstructor();
+        }
+        return constructor.construct(node);
+    }
+
+    /**
+     * 以first为第一个事件，构造子树对应的Java对象
+     */
+    Object construct(Event first) {
+        return construct(build(first));
+    }
+
+    /**
+     * 锚点只在一个文档内有效，读取下一个文档之前清空
+     */
+    void clearAnchors() {
+        anchors.clear();
+    }
+
+    private Event nextRequired() {
+        Event event = next();
+        if (event == null) {
+            throw new IllegalStateException("Unexpected end of yaml event stream.");
+        }
+        return event;
+    }
+
+    private void register(String anchor, Node node) {
+        if (anchor != null) {
+            node.setAnchor(anchor);
+            anchors.put(anchor, node);
+        }
+    }
+
+    /**
+     * 暴露 constructDocument，把单独的一棵Node子树构造为Java对象
+     */
+    private static final class NodeConstructor extends Constructor {
+        Object construct(Node node) {
+            return constructDocument(node);
+        }
+    }
+}
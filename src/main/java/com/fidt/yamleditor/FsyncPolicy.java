@@ -0,0 +1,21 @@
+package com.fidt.yamleditor;
+
+/**
+ * 原子写入时的落盘策略，在持久性与延迟之间取舍
+ *
+ * @Author Sennri
+ */
+public enum FsyncPolicy {
+    /**
+     * 不主动落盘，由操作系统决定何时写回。进程崩溃时文件仍是完整的旧内容或新内容，但掉电时可能丢失本次写入
+     */
+    NONE,
+    /**
+     * 替换前对临时文件调用force，保证替换后的文件内容已经落盘
+     */
+    FILE,
+    /**
+     * 在FILE的基础上，替换后再对所在目录调用force，保证重命名本身也已落盘
+     */
+    FILE_AND_DIRECTORY
+}
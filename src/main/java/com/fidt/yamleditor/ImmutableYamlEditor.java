@@ -0,0 +1,45 @@
+package com.fidt.yamleditor;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * 拆分模式在构造时确定、之后不可修改的 {@link YamlEditor}。
+ * 该类没有可变状态，可以作为单例在多个线程间共享，通常通过 {@link YamlEditor#shared(boolean)} 获取。
+ *
+ * @Author Sennri
+ */
+public final class ImmutableYamlEditor extends YamlEditor {
+    private final boolean supportEscape;
+    private final YamlPathCache pathCache;
+
+    ImmutableYamlEditor(boolean supportEscape) {
+        super(supportEscape);
+        this.supportEscape = supportEscape;
+        this.pathCache = pathCache(supportEscape);
+    }
+
+    /**
+     * 共享实例被多个调用方同时使用，修改拆分模式会改变其他调用方的复合键的含义，因此拆分模式在构造时固定。
+     * 设置为当前的模式时什么也不做，便于统一配置编辑器的代码直接使用共享实例；需要另一种模式时使用
+     * {@link YamlEditor#shared(boolean)} 获取对应的共享实例，或者创建自己的 {@link YamlEditor}。
+     *
+     * @throws IllegalStateException 要求的模式与构造时的模式不同
+     */
+    @Override
+    public void supportEscape(boolean is) {
+        if (is != supportEscape) {
+            throw new IllegalStateException("The escape mode of a shared editor is fixed to " + supportEscape
+                    + ", use YamlEditor.shared(" + is + ") or new YamlEditor(" + is + ") instead.");
+        }
+    }
+
+    @Override
+    public boolean isSupportEscape() {
+        return supportEscape;
+    }
+
+    @Override
+    public YamlPath compilePath(@NotNull String compositeKey) {
+        return pathCache.get(compositeKey);
+    }
+}
@@ -0,0 +1,365 @@
+package com.fidt.yamleditor;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 在内存中累计指标的 {@link YamlMetrics}，用于测试与JMX。
+ * <pre>
+ *     InMemoryYamlMetrics metrics = new InMemoryYamlMetrics();
+ *     YamlEditor.setMetrics(metrics);
+ *     metrics.registerMBean("editor");
+ * </pre>
+ * 耗时、节点数与复合键层数记录在以2的幂次分桶的 {@link Histogram} 中，记录时只有几次原子加法，不分配对象。
+ * 节点数需要通过 {@link #InMemoryYamlMetrics(boolean)} 开启。
+ *
+ * @Author Sennri
+ */
+public class InMemoryYamlMetrics implements YamlMetrics, YamlMetricsMXBean {
+    private static final YamlMetrics.Operation[] OPERATIONS = YamlMetrics.Operation.values();
+
+    private final Histogram[] latencies = new Histogram[OPERATIONS.length];
+    private final LongAdder[] failures = new LongAdder[OPERATIONS.length];
+    private final LongAdder[] cacheHits = new LongAdder[YamlMetrics.Cache.values().length];
+    private final LongAdder[] cacheMisses = new LongAdder[YamlMetrics.Cache.values().length];
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final Histogram nodeCounts = new Histogram();
+    private final Histogram pathDepths = new Histogram();
+    private final boolean countNodes;
+    private volatile ObjectName objectName;
+
+    public InMemoryYamlMetrics() {
+        this(false);
+    }
+
+    /**
+     * @param countNodes 是否统计读入的文档的节点数，参见 {@link YamlMetrics#isNodeCountEnabled()}
+     */
+    public InMemoryYamlMetrics(boolean countNodes) {
+        this.countNodes = countNodes;
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            latencies[i] = new Histogram();
+            failures[i] = new LongAdder();
+        }
+        for (int i = 0; i < cacheHits.length; i++) {
+            cacheHits[i] = new LongAdder();
+            cacheMisses[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public boolean isNodeCountEnabled() {
+        return countNodes;
+    }
+
+    @Override
+    public void recordLoad(long nanos, long bytes, long nodes, boolean failed) {
+        record(YamlMetrics.Operation.LOAD, nanos, failed);
+        bytesRead.add(bytes);
+        if (countNodes && !failed) {
+            nodeCounts.record(nodes);
+        }
+    }
+
+    @Override
+    public void recordDump(long nanos, long bytes, boolean failed) {
+        record(YamlMetrics.Operation.DUMP, nanos, failed);
+        bytesWritten.add(bytes);
+    }
+
+    @Override
+    public void recordEdit(YamlMetrics.Operation operation, long nanos, int pathDepth, boolean failed) {
+        record(operation, nanos, failed);
+        pathDepths.record(pathDepth);
+    }
+
+    @Override
+    public void recordCacheAccess(YamlMetrics.Cache cache, boolean hit) {
+        (hit ? cacheHits : cacheMisses)[cache.ordinal()].increment();
+    }
+
+    private void record(YamlMetrics.Operation operation, long nanos, boolean failed) {
+        latencies[operation.ordinal()].record(nanos);
+        if (failed) {
+            failures[operation.ordinal()].increment();
+        }
+    }
+
+    /**
+     * @return 操作的耗时（纳秒），包括失败的操作
+     */
+    public Histogram getLatency(YamlMetrics.Operation operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    public long getFailureCount(YamlMetrics.Operation operation) {
+        return failures[operation.ordinal()].sum();
+    }
+
+    /**
+     * @return 成功读入的文档的节点数，没有开启统计时为空
+     */
+    public Histogram getNodeCounts() {
+        return nodeCounts;
+    }
+
+    /**
+     * @return GET、SET、INSERT、REMOVE的复合键层数
+     */
+    public Histogram getPathDepths() {
+        return pathDepths;
+    }
+
+    public long getCacheHitCount(YamlMetrics.Cache cache) {
+        return cacheHits[cache.ordinal()].sum();
+    }
+
+    public long getCacheMissCount(YamlMetrics.Cache cache) {
+        return cacheMisses[cache.ordinal()].sum();
+    }
+
+    /**
+     * @return 命中率，还没有查找过时为NaN
+     */
+    public double getCacheHitRate(YamlMetrics.Cache cache) {
+        long hits = getCacheHitCount(cache);
+        long total = hits + getCacheMissCount(cache);
+        return total == 0 ? Double.NaN : (double) hits / total;
+    }
+
+    @Override
+    public Map<String, Long> getOperationCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (YamlMetrics.Operation operation : OPERATIONS) {
+            counts.put(operation.name(), getLatency(operation).getCount());
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getFailureCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (YamlMetrics.Operation operation : OPERATIONS) {
+            counts.put(operation.name(), getFailureCount(operation));
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getMeanLatencyMicros() {
+        Map<String, Double> micros = new LinkedHashMap<>();
+        for (YamlMetrics.Operation operation : OPERATIONS) {
+            micros.put(operation.name(), getLatency(operation).getMean() / 1000);
+        }
+        return micros;
+    }
+
+    @Override
+    public Map<String, Double> getP99LatencyMicros() {
+        Map<String, Double> micros = new LinkedHashMap<>();
+        for (YamlMetrics.Operation operation : OPERATIONS) {
+            micros.put(operation.name(), getLatency(operation).getPercentile(0.99) / 1000.0);
+        }
+        return micros;
+    }
+
+    @Override
+    public Map<String, Double> getMaxLatencyMicros() {
+        Map<String, Double> micros = new LinkedHashMap<>();
+        for (YamlMetrics.Operation operation : OPERATIONS) {
+            micros.put(operation.name(), getLatency(operation).getMax() / 1000.0);
+        }
+        return micros;
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public double getMeanNodeCount() {
+        return nodeCounts.getMean();
+    }
+
+    @Override
+    public double getMeanPathDepth() {
+        return pathDepths.getMean();
+    }
+
+    @Override
+    public double getPathCacheHitRate() {
+        return getCacheHitRate(YamlMetrics.Cache.PATH);
+    }
+
+    @Override
+    public double getDocumentCacheHitRate() {
+        return getCacheHitRate(YamlMetrics.Cache.DOCUMENT);
+    }
+
+    /**
+     * 清空所有指标。与记录并发执行时，清空前后的记录可能部分保留
+     */
+    @Override
+    public void reset() {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            latencies[i].reset();
+            failures[i].reset();
+        }
+        for (int i = 0; i < cacheHits.length; i++) {
+            cacheHits[i].reset();
+            cacheMisses[i].reset();
+        }
+        bytesRead.reset();
+        bytesWritten.reset();
+        nodeCounts.reset();
+        pathDepths.reset();
+    }
+
+    /**
+     * 以 "com.fidt.yamleditor:type=YamlMetrics,name={name}" 注册到平台MBeanServer
+     *
+     * @param name 区分同一进程中的多个实例
+     * @return 注册使用的ObjectName
+     * @throws IllegalStateException 该名称已被注册，或者本实例已经注册过
+     */
+    public synchronized ObjectName registerMBean(String name) {
+        if (objectName != null) {
+            throw new IllegalStateException("Already registered as " + objectName);
+        }
+        try {
+            ObjectName registered = new ObjectName("com.fidt.yamleditor:type=YamlMetrics,name="
+                    + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, registered);
+            objectName = registered;
+            return registered;
+        } catch (InstanceAlreadyExistsException e) {
+            throw new IllegalStateException("MBean " + name + " already exists.", e);
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 从平台MBeanServer注销，没有注册过时什么也不做
+     */
+    public synchronized void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            objectName = null;
+        }
+    }
+
+    /**
+     * 以2的幂次分桶的直方图：第k个桶记录 [2^(k-1), 2^k) 内的值，第0个桶记录0与负数。
+     * 分位数只能精确到桶的上界，对耗时来说误差不超过一倍，足以区分微秒与毫秒级别的变化。
+     */
+    public static final class Histogram {
+        private static final int BUCKETS = 65;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        Histogram() {
+        }
+
+        void record(long value) {
+            buckets.incrementAndGet(value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value));
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            count.reset();
+            sum.reset();
+            max.reset();
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getSum() {
+            return sum.sum();
+        }
+
+        /**
+         * @return 平均值，没有记录时为0
+         */
+        public double getMean() {
+            long n = getCount();
+            return n == 0 ? 0 : (double) getSum() / n;
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * @param quantile 0到1之间，例如0.99
+         * @return 不小于该分位数的桶上界，不超过最大值；没有记录时为0
+         */
+        public long getPercentile(double quantile) {
+            if (quantile < 0 || quantile > 1) {
+                throw new IllegalArgumentException("quantile must be in [0, 1]: " + quantile);
+            }
+            long total = 0;
+            long[] snapshot = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = buckets.get(i);
+                total += snapshot[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    long upper = i == 0 ? 0 : i >= 63 ? Long.MAX_VALUE : (1L << i) - 1;
+                    return Math.min(upper, getMax());
+                }
+            }
+            return getMax();
+        }
+
+        @Override
+        public String toString() {
+            return "Histogram{count=" + getCount() + ", mean=" + getMean() + ", p99=" + getPercentile(0.99)
+                    + ", max=" + getMax() + '}';
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.Mark;
+import org.yaml.snakeyaml.events.*;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * 原地修改yaml文件中的单个值：通过事件的起止位置找到目标节点在文件中的字节范围，只替换这一段内容，
+ * 文件其余部分（包括注释与格式）保持不变。
+ * 新值为标量时按原样写出；新值为Map或List时以flow风格（{a: 1}、[1, 2]）写出，保证在任意位置都是合法的yaml。
+ * 目标位于flow集合内部时，按flow上下文的规则写出标量，含有",[]{}"等字符的值会加上引号。
+ * 找到目标后继续读完路径上的各层集合，检查是否有重复的键；替换内容与原内容等长时只写这一段，否则还需要移动目标之后的内容。
+ * 无法安全替换的情况（目标不存在、值为空、路径上的键重复、带有锚点或显式标签、新值需要多行表示、文件带BOM等）返回false，
+ * 由调用方整体重写。
+ *
+ * @Author Sennri
+ */
+@Slf4j
+final class InPlaceEditor {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<Yaml> FLOW_YAML = ThreadLocal.withInitial(() -> {
+        DumperOptions options = new DumperOptions();
+        options.setDefaultFlowStyle(DumperOptions.FlowStyle.FLOW);
+        options.setDefaultScalarStyle(DumperOptions.ScalarStyle.PLAIN);
+        options.setWidth(Integer.MAX_VALUE);
+        options.setSplitLines(false);
+        return new Yaml(options);
+    });
+
+    private InPlaceEditor() {
+    }
+
+    /**
+     * 目标节点在文件中的范围，起止均为码点下标（与Mark一致）
+     */
+    private static final class Span {
+        final int start;
+        final int end;
+        /**
+         * 替换内容之前需要补上的前缀：替换块风格的Map值时从键的末尾开始替换，需要补上": "
+         */
+        final String prefix;
+        /**
+         * 目标是否位于flow集合内部
+         */
+        final boolean flow;
+
+        Span(int start, int end, String prefix, boolean flow) {
+            this.start = start;
+            this.end = end;
+            this.prefix = prefix;
+            this.flow = flow;
+        }
+    }
+
+    /**
+     * 将path处的值原地替换为value
+     *
+     * @return 是否已经原地完成修改；false表示无法原地修改，文件没有被改动
+     */
+    static boolean update(YamlPath path, Object value, Path file) throws IOException {
+        if (path.size() == 0) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (startsWithBom(channel)) {
+                return false;
+            }
+            Span span;
+            try {
+                // 这里的Reader不能关闭，否则会连带关闭channel
+                Reader reader = Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), BUFFER_SIZE);
+                span = locate(path, reader);
+            } catch (RuntimeException e) {
+                YamlEditor.discardYaml();
+                log.debug("Can't locate {} in {}: {}", path, file, e.getMessage());
+                return false;
+            }
+            if (span == null) {
+                return false;
+            }
+            String replacement = render(value, span.flow);
+            if (replacement == null) {
+                return false;
+            }
+            long[] offsets = byteOffsets(channel, span.start, span.end);
+            long byteStart = offsets[0];
+            long byteEnd = offsets[1];
+            // 块风格的标量以及块集合会带着结尾的换行，替换时保留
+            byte[] text = (span.prefix + replacement + trailingLineBreaks(channel, byteStart, byteEnd))
+                    .getBytes(StandardCharsets.UTF_8);
+            if (text.length == byteEnd - byteStart && contentEquals(channel, byteStart, text)) {
+                return true;
+            }
+            splice(channel, byteStart, byteEnd, text);
+            return true;
+        }
+    }
+
+    /**
+     * 把值表示为单行的yaml文本
+     *
+     * @param flow 是否写在flow集合内部。此时把值放进单元素列表中输出再去掉外层括号，由Emitter按flow上下文决定标量是否需要引号
+     * @return 单行文本；需要多行表示时返回null
+     */
+    static String render(Object value, boolean flow) {
+        String text = FLOW_YAML.get().dump(flow ? Collections.singletonList(value) : value);
+        if (text.endsWith("\n")) {
+            text = text.substring(0, text.length() - 1);
+        }
+        if (text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0 || text.startsWith("---")) {
+            return null;
+        }
+        if (flow) {
+            if (!text.startsWith("[") || !text.endsWith("]")) {
+                return null;
+            }
+            text = text.substring(1, text.length() - 1);
+        }
+        return text;
+    }
+
+    private static Span locate(YamlPath path, Reader reader) {
+        EventNodeBuilder builder = new EventNodeBuilder(YamlEditor.yaml().parse(reader), new Resolver());
+        Event current = builder.firstDocumentRoot();
+        ScalarEvent keyEvent = null;
+        boolean flow = false;
+        int len = path.size();
+        boolean[] mappings = new boolean[len];
+        for (int depth = 0; depth < len; depth++) {
+            if (current == null) {
+                return null;
+            }
+            if (current instanceof CollectionStartEvent) {
+                flow |= ((CollectionStartEvent) current).isFlow();
+            }
+            if (current.is(Event.ID.MappingStart)) {
+                mappings[depth] = true;
+                String name = path.getName(depth);
+                Event next = null;
+                Event key;
+                while (!(key = builder.next()).is(Event.ID.MappingEnd)) {
+                    if (key.is(Event.ID.Scalar) && name.equals(((ScalarEvent) key).getValue())
+                            && Tag.STR.equals(builder.resolveScalarTag((ScalarEvent) key))) {
+                        keyEvent = (ScalarEvent) key;
+                        next = builder.next();
+                        break;
+                    }
+                    builder.skip(key);
+                    builder.skip(builder.next());
+                }
+                current = next;
+            } else if (current.is(Event.ID.SequenceStart)) {
+                int index = path.indexOrNegative(depth);
+                if (index < 0) {
+                    return null;
+                }
+                Event next = null;
+                Event item;
+                for (int i = 0; !(item = builder.next()).is(Event.ID.SequenceEnd); i++) {
+                    if (i == index) {
+                        next = item;
+                        break;
+                    }
+                    builder.skip(item);
+                }
+                keyEvent = null;
+                current = next;
+            } else {
+                // 别名或标量无法继续向下
+                return null;
+            }
+        }
+        if (current == null) {
+            return null;
+        }
+        Span span = span(builder, current, keyEvent, flow);
+        if (span == null || hasDuplicateKey(builder, path, mappings)) {
+            return null;
+        }
+        return span;
+    }
+
+    /**
+     * 计算目标节点的替换范围，并消费目标节点的子树
+     */
+    private static Span span(EventNodeBuilder builder, Event current, ScalarEvent keyEvent, boolean flow) {
+        if (current.is(Event.ID.Alias)) {
+            return new Span(index(current.getStartMark()), index(current.getEndMark()), "", flow);
+        }
+        NodeEvent node = (NodeEvent) current;
+        if (node.getAnchor() != null) {
+            return null;
+        }
+        if (current.is(Event.ID.Scalar)) {
+            int start = index(current.getStartMark());
+            int end = index(current.getEndMark());
+            // 空值（"key:"、"- "）没有可以替换的内容，直接写入会与前面的":"或"-"连在一起
+            if (((ScalarEvent) current).getTag() != null || start == end) {
+                return null;
+            }
+            return new Span(start, end, "", flow);
+        }
+        CollectionStartEvent collection = (CollectionStartEvent) current;
+        if (collection.getTag() != null) {
+            return null;
+        }
+        Mark end = contentEnd(builder, current);
+        if (collection.isFlow() || keyEvent == null) {
+            return new Span(index(current.getStartMark()), index(end), "", flow);
+        }
+        // 块风格的Map值：从键的末尾开始替换，使新值与键处于同一行
+        return new Span(index(keyEvent.getEndMark()), index(end), ": ", flow);
+    }
+
+    /**
+     * 在目标节点之后，逐层读完外层的集合，检查路径上的键在各自的Map中是否再次出现。
+     * 重复的键由后出现的生效，而这里修改的是第一次出现的位置，此时只能整体重写。
+     */
+    private static boolean hasDuplicateKey(EventNodeBuilder builder, YamlPath path, boolean[] mappings) {
+        for (int depth = mappings.length - 1; depth >= 0; depth--) {
+            String name = path.getName(depth);
+            Event event;
+            while ((event = builder.next()) != null && !event.is(Event.ID.MappingEnd)
+                    && !event.is(Event.ID.SequenceEnd)) {
+                if (mappings[depth] && event.is(Event.ID.Scalar) && name.equals(((ScalarEvent) event).getValue())
+                        && Tag.STR.equals(builder.resolveScalarTag((ScalarEvent) event))) {
+                    return true;
+                }
+                builder.skip(event);
+                if (mappings[depth]) {
+                    builder.skip(builder.next());
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 消费以first开头的子树，返回其实际内容的结束位置。
+     * 块集合的结束事件位于下一个同级节点之前，会把尾随的注释与空行也算进去，因此取最后一个内容事件的结束位置。
+     */
+    private static Mark contentEnd(EventNodeBuilder builder, Event first) {
+        if (!(first instanceof CollectionStartEvent)) {
+            return first.getEndMark();
+        }
+        boolean flow = ((CollectionStartEvent) first).isFlow();
+        Mark last = first.getEndMark();
+        Event child;
+        while (!(child = builder.next()).is(Event.ID.SequenceEnd) && !child.is(Event.ID.MappingEnd)) {
+            last = contentEnd(builder, child);
+        }
+        return flow ? child.getEndMark() : last;
+    }
+
+    private static int index(Mark mark) {
+        return mark.getIndex();
+    }
+
+    private static boolean startsWithBom(FileChannel channel) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(3);
+        while (head.hasRemaining() && channel.read(head, head.position()) > 0) {
+        }
+        head.flip();
+        return head.remaining() == 3 && (head.get(0) & 0xFF) == 0xEF && (head.get(1) & 0xFF) == 0xBB
+                && (head.get(2) & 0xFF) == 0xBF;
+    }
+
+    /**
+     * 把码点下标转换为UTF-8字节偏移：逐字节计数，非延续字节（10xxxxxx以外）对应一个码点的开始
+     */
+    private static long[] byteOffsets(FileChannel channel, int startCodePoint, int endCodePoint) throws IOException {
+        long[] offsets = new long[2];
+        int[] targets = {startCodePoint, endCodePoint};
+        int found = 0;
+        long codePoints = 0;
+        long position = 0;
+        long size = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        while (found < 2 && position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if ((buffer.get(i) & 0xC0) != 0x80) {
+                    while (found < 2 && codePoints == targets[found]) {
+                        offsets[found++] = position + i;
+                    }
+                    codePoints++;
+                }
+            }
+            position += read;
+        }
+        while (found < 2) {
+            if (codePoints != targets[found]) {
+                throw new IllegalStateException("Mark " + targets[found] + " is out of file range.");
+            }
+            offsets[found++] = size;
+        }
+        return offsets;
+    }
+
+    /**
+     * 从后向前读取[from, to)末尾的换行符，原内容可能很大，不整体读入
+     */
+    private static String trailingLineBreaks(FileChannel channel, long from, long to) throws IOException {
+        StringBuilder breaks = new StringBuilder();
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        long position = to;
+        while (position > from) {
+            int length = (int) Math.min(buffer.capacity(), position - from);
+            position -= length;
+            readFully(channel, buffer, position, length);
+            for (int i = length - 1; i >= 0; i--) {
+                byte b = buffer.get(i);
+                if (b != '\n' && b != '\r') {
+                    return breaks.reverse().toString();
+                }
+                breaks.append((char) b);
+            }
+        }
+        return breaks.reverse().toString();
+    }
+
+    /**
+     * @return 文件中从from开始的内容是否与expected相同，调用方保证长度一致
+     */
+    private static boolean contentEquals(FileChannel channel, long from, byte[] expected) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(expected.length);
+        readFully(channel, buffer, from, expected.length);
+        return Arrays.equals(buffer.array(), expected);
+    }
+
+    /**
+     * 用replacement替换文件中[from, to)的字节。
+     * 长度变化时以BUFFER_SIZE为单位移动目标之后的内容：变长时从文件末尾向前移动，变短时从前向后移动，
+     * 保证每一块在被覆盖之前已经移走，内存占用与文件大小无关。
+     */
+    private static void splice(FileChannel channel, long from, long to, byte[] replacement) throws IOException {
+        long size = channel.size();
+        long delta = replacement.length - (to - from);
+        if (delta != 0 && size > to) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, size - to));
+            if (delta > 0) {
+                for (long position = size; position > to; ) {
+                    int length = (int) Math.min(buffer.capacity(), position - to);
+                    position -= length;
+                    readFully(channel, buffer, position, length);
+                    writeFully(channel, buffer, position + delta);
+                }
+            } else {
+                for (long position = to; position < size; ) {
+                    int length = (int) Math.min(buffer.capacity(), size - position);
+                    readFully(channel, buffer, position, length);
+                    writeFully(channel, buffer, position + delta);
+                    position += length;
+                }
+            }
+        }
+        writeFully(channel, ByteBuffer.wrap(replacement), from);
+        if (delta < 0) {
+            channel.truncate(size + delta);
+        }
+    }
+
+    /**
+     * 从position读取length个字节到buffer中，读取后buffer处于可以写出的状态
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position, int length)
+            throws IOException {
+        buffer.clear();
+        buffer.limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of file at " + (position + buffer.position()));
+            }
+        }
+        buffer.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
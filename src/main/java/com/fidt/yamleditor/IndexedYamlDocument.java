@@ -0,0 +1,389 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 带路径索引的文档。
+ * 构造时遍历一次文档，为每个节点（Map、List与标量）建立从复合键到节点的索引，之后的 {@link #getValue(YamlPath)}
+ * 只需要一次哈希查找，不再逐层执行containsKey与get。
+ * <pre>
+ *     IndexedYamlDocument document = new IndexedYamlDocument(YamlEditor.getMapFromYaml(path));
+ *     Object company = document.getValue("Service.Profile.Organization.0.company");
+ *     List&lt;String&gt; keys = document.getKeysUnder("Service.Profile");
+ * </pre>
+ * 文档在构造时被拷贝一份，锚点与别名展开为互不影响的独立拷贝，使每个节点只对应一个复合键。
+ * 通过 {@link #setValue(YamlPath, Object)}、{@link #insertValueToObject(YamlPath, Object)}、
+ * {@link #removeListOrMapContent(YamlPath)} 修改时只更新受影响的子树的索引：
+ * set与insert只涉及新旧两棵子树，删除列表元素时还需要重建其后各元素的索引（它们的下标整体前移）。
+ * 修改的语义与 {@link YamlEditor} 中的同名方法一致。
+ * <p>
+ * 只有字符串键可以通过复合键访问，非字符串键下的子树不建立索引。
+ * 列表元素以规范的十进制下标建立索引，查询时"list.01"与"list.+1"等写法与"list.1"等价，同 {@link YamlEditor}。
+ * 该类不是线程安全的，多线程访问时需要调用方加锁。
+ *
+ * @Author Sennri
+ */
+@Slf4j
+public class IndexedYamlDocument {
+    /**
+     * 索引中代表null值的占位对象，使取值只需一次get
+     */
+    private static final Object NULL = new Object();
+    private static final YamlPath ROOT = YamlPath.of();
+
+    private final YamlEditor yamlEditor;
+    private final Map<String, Object> root;
+    private final HashMap<YamlPath, Object> index = new HashMap<>();
+
+    /**
+     * 使用拆分模式为'.'的共享编辑器
+     *
+     * @param document 已读入的文档，构造后对它的修改不会影响索引
+     */
+    public IndexedYamlDocument(Map<String, Object> document) {
+        this(document, YamlEditor.shared(false));
+    }
+
+    /**
+     * @param document   已读入的文档，构造后对它的修改不会影响索引
+     * @param yamlEditor 用于编译复合键与执行修改的编辑器，决定复合键的拆分模式
+     * @throws IllegalArgumentException 文档中存在递归引用自身的别名
+     */
+    @SuppressWarnings("unchecked")
+    public IndexedYamlDocument(Map<String, Object> document, YamlEditor yamlEditor)
+            throws IllegalArgumentException {
+        this.yamlEditor = yamlEditor;
+        this.root = document == null ? new LinkedHashMap<>()
+                : (Map<String, Object>) expand(document, new IdentityHashMap<>());
+        index(ROOT, root);
+    }
+
+    /**
+     * 拷贝一棵子树，共享的Map与List各自拷贝一份
+     */
+    private static Object expand(Object node, IdentityHashMap<Object, Boolean> ancestors) {
+        if (!(node instanceof Map) && !(node instanceof List)) {
+            return node;
+        }
+        if (ancestors.put(node, Boolean.TRUE) != null) {
+            throw new IllegalArgumentException("Document contains a recursive alias.");
+        }
+        Object copy;
+        if (node instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) node;
+            Map<Object, Object> copied = new LinkedHashMap<>(Math.max(16, (int) (map.size() / 0.75f) + 1));
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                copied.put(entry.getKey(), expand(entry.getValue(), ancestors));
+            }
+            copy = copied;
+        } else {
+            List<?> list = (List<?>) node;
+            List<Object> copied = new ArrayList<>(list.size());
+            for (Object item : list) {
+                copied.add(expand(item, ancestors));
+            }
+            copy = copied;
+        }
+        ancestors.remove(node);
+        return copy;
+    }
+
+    private void index(YamlPath path, Object node) {
+        index.put(path, node == null ? NULL : node);
+        if (node instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) node).entrySet()) {
+                if (entry.getKey() instanceof String) {
+                    index(path.child((String) entry.getKey()), entry.getValue());
+                }
+            }
+        } else if (node instanceof List) {
+            List<?> list = (List<?>) node;
+            for (int i = 0, size = list.size(); i < size; i++) {
+                index(path.child(String.valueOf(i)), list.get(i));
+            }
+        }
+    }
+
+    private void unindex(YamlPath path, Object node) {
+        index.remove(path);
+        if (node instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) node).entrySet()) {
+                if (entry.getKey() instanceof String) {
+                    unindex(path.child((String) entry.getKey()), entry.getValue());
+                }
+            }
+        } else if (node instanceof List) {
+            List<?> list = (List<?>) node;
+            for (int i = 0, size = list.size(); i < size; i++) {
+                unindex(path.child(String.valueOf(i)), list.get(i));
+            }
+        }
+    }
+
+    private static Object unwrap(Object indexed) {
+        return indexed == NULL ? null : indexed;
+    }
+
+    /**
+     * 索引中列表元素的键是规范的下标，而 {@link YamlEditor} 按 Integer.parseInt 解析下标。
+     * 将path中位于列表之下、写法不规范的下标替换为规范写法，Map的键保持原样
+     */
+    private YamlPath normalize(YamlPath path) {
+        String[] names = null;
+        for (int i = 0, size = path.size(); i < size; i++) {
+            if (!path.isNonCanonicalIndex(i)) {
+                continue;
+            }
+            YamlPath parent = names == null ? path.subPath(0, i) : YamlPath.of(Arrays.copyOf(names, i));
+            if (unwrap(index.get(parent)) instanceof List) {
+                if (names == null) {
+                    names = path.toArray();
+                }
+                names[i] = String.valueOf(path.indexOrNegative(i));
+            }
+        }
+        return names == null ? path : YamlPath.of(names);
+    }
+
+    /**
+     * 在父节点中查找path的最后一段当前对应的节点
+     *
+     * @return 节点不存在时返回false
+     */
+    private boolean lookupInParent(YamlPath path, Object[] holder) {
+        Object parent = unwrap(index.get(path.parent()));
+        String name = path.getLastName();
+        if (parent instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) parent;
+            if (map.containsKey(name)) {
+                holder[0] = map.get(name);
+                return true;
+            }
+        } else if (parent instanceof List && path.isIndex(path.size() - 1)) {
+            List<?> list = (List<?>) parent;
+            int i = path.getIndex(path.size() - 1);
+            if (i < list.size()) {
+                holder[0] = list.get(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 丢弃path原有子树的索引，按文档中的当前内容重新建立
+     */
+    private void reindex(YamlPath path, Object oldNode, boolean existed) {
+        if (existed) {
+            unindex(path, oldNode);
+        }
+        Object[] holder = new Object[1];
+        if (lookupInParent(path, holder)) {
+            index(path, holder[0]);
+        }
+    }
+
+    /**
+     * @return 文档的根节点，只应通过本类的方法修改，否则索引会与文档不一致
+     */
+    public Map<String, Object> getRoot() {
+        return root;
+    }
+
+    /**
+     * @return 索引中的节点数（包括根节点）
+     */
+    public int size() {
+        return index.size();
+    }
+
+    public YamlEditor getYamlEditor() {
+        return yamlEditor;
+    }
+
+    /**
+     * @param compositeKey 复合键，按编辑器的拆分模式拆分
+     * @return 是否存在该键（值为null也视为存在）
+     */
+    public boolean contains(String compositeKey) {
+        return contains(yamlEditor.compilePath(compositeKey));
+    }
+
+    public boolean contains(YamlPath path) {
+        return index.containsKey(normalize(path));
+    }
+
+    /**
+     * 通过索引取值，语义同 {@link YamlEditor#getValue(String, Object)}
+     *
+     * @param compositeKey 复合键
+     * @return 对应的节点
+     * @throws IllegalArgumentException 键不存在
+     */
+    public Object getValue(String compositeKey) throws IllegalArgumentException {
+        return getValue(yamlEditor.compilePath(compositeKey));
+    }
+
+    public Object getValue(YamlPath path) throws IllegalArgumentException {
+        Object node = index.get(normalize(path));
+        if (node == null) {
+            throw new IllegalArgumentException("Key " + path + " does not exist.");
+        }
+        return unwrap(node);
+    }
+
+    /**
+     * 设置值，语义同 {@link YamlEditor#setValue(String, Object, Object)}，value会被拷贝一份
+     */
+    public void setValue(String compositeKey, Object value) throws IllegalArgumentException {
+        setValue(yamlEditor.compilePath(compositeKey), value);
+    }
+
+    public void setValue(YamlPath path, Object value) throws IllegalArgumentException {
+        if (path.size() == 0) {
+            throw new IllegalArgumentException("Composite key must not be empty.");
+        }
+        path = normalize(path);
+        Object copy = expand(value, new IdentityHashMap<>());
+        boolean existed = index.containsKey(path);
+        Object oldNode = unwrap(index.get(path));
+        yamlEditor.setValue(path, copy, root);
+        if (existed) {
+            unindex(path, oldNode);
+        }
+        index(path, copy);
+    }
+
+    /**
+     * 插入值，语义同 {@link YamlEditor#insertValueToObject(String, Object, Object)}，value会被拷贝一份
+     */
+    public void insertValueToObject(String compositeKey, Object value) throws IllegalArgumentException {
+        insertValueToObject(yamlEditor.compilePath(compositeKey), value);
+    }
+
+    public void insertValueToObject(YamlPath path, Object value) throws IllegalArgumentException {
+        if (path.size() == 0) {
+            throw new IllegalArgumentException("Composite key must not be empty.");
+        }
+        path = normalize(path);
+        Object copy = expand(value, new IdentityHashMap<>());
+        // 找出被修改的子树：键已存在时为其本身；否则为最深的已存在节点下新增的子树
+        YamlPath affected;
+        if (index.containsKey(path)) {
+            affected = path;
+        } else {
+            YamlPath prefix = path.parent();
+            while (!index.containsKey(prefix)) {
+                prefix = prefix.parent();
+            }
+            Object container = unwrap(index.get(prefix));
+            if (container instanceof Map) {
+                affected = prefix.child(path.getName(prefix.size()));
+            } else if (container instanceof List) {
+                // 下标超出范围时追加在末尾
+                affected = prefix.child(String.valueOf(((List<?>) container).size()));
+            } else {
+                // null会被替换为新建的Map或List
+                affected = prefix;
+            }
+        }
+        boolean existed = index.containsKey(affected);
+        Object oldNode = unwrap(index.get(affected));
+        try {
+            yamlEditor.insertValueToObject(path, copy, root);
+        } finally {
+            reindex(affected, oldNode, existed);
+        }
+    }
+
+    /**
+     * 移除值，语义同 {@link YamlEditor#removeListOrMapContent(String, Object)}
+     */
+    public void removeListOrMapContent(String compositeKey) throws IllegalArgumentException {
+        removeListOrMapContent(yamlEditor.compilePath(compositeKey));
+    }
+
+    public void removeListOrMapContent(YamlPath path) throws IllegalArgumentException {
+        if (path.size() == 0) {
+            throw new IllegalArgumentException("Composite key must not be empty.");
+        }
+        path = normalize(path);
+        YamlPath parentPath = path.parent();
+        Object parent = unwrap(index.get(parentPath));
+        if (!index.containsKey(path) || !(parent instanceof List)) {
+            boolean existed = index.containsKey(path);
+            Object oldNode = unwrap(index.get(path));
+            yamlEditor.removeListOrMapContent(path, root);
+            if (existed) {
+                unindex(path, oldNode);
+            }
+            return;
+        }
+        // 列表中被删除元素之后的元素下标前移
+        List<?> list = (List<?>) parent;
+        int from = path.getIndex(path.size() - 1);
+        for (int i = from, size = list.size(); i < size; i++) {
+            unindex(parentPath.child(String.valueOf(i)), list.get(i));
+        }
+        try {
+            yamlEditor.removeListOrMapContent(path, root);
+        } finally {
+            for (int i = from, size = list.size(); i < size; i++) {
+                index(parentPath.child(String.valueOf(i)), list.get(i));
+            }
+        }
+    }
+
+    /**
+     * 前缀查询
+     *
+     * @param prefix 复合键，空字符串表示根节点
+     * @return prefix之下所有节点的复合键（不含prefix本身），按文档顺序排列；prefix不存在时返回空列表
+     */
+    public List<String> getKeysUnder(String prefix) {
+        return new ArrayList<>(getValuesUnder(prefix).keySet());
+    }
+
+    /**
+     * 前缀查询
+     *
+     * @param prefix 复合键，空字符串表示根节点
+     * @return prefix之下所有节点的复合键与值（不含prefix本身），按文档顺序排列；prefix不存在时返回空Map
+     */
+    public Map<String, Object> getValuesUnder(String prefix) {
+        YamlPath path = prefix.isEmpty() ? ROOT : normalize(yamlEditor.compilePath(prefix));
+        Map<String, Object> result = new LinkedHashMap<>();
+        Object node = index.get(path);
+        if (node != null) {
+            collect(path, unwrap(node), result);
+        }
+        return result;
+    }
+
+    private void collect(YamlPath path, Object node, Map<String, Object> result) {
+        if (node instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) node).entrySet()) {
+                if (entry.getKey() instanceof String) {
+                    YamlPath child = path.child((String) entry.getKey());
+                    result.put(child.toCompositeKey(yamlEditor.isSupportEscape()), entry.getValue());
+                    collect(child, entry.getValue(), result);
+                }
+            }
+        } else if (node instanceof List) {
+            List<?> list = (List<?>) node;
+            for (int i = 0, size = list.size(); i < size; i++) {
+                YamlPath child = path.child(String.valueOf(i));
+                result.put(child.toCompositeKey(yamlEditor.isSupportEscape()), list.get(i));
+                collect(child, list.get(i), result);
+            }
+        }
+    }
+}
@@ -0,0 +1,683 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * 以追加日志持久化修改的yaml文档，适用于修改频繁、不能每次都重写整个文件的场景。
+ * <pre>
+ *     try (JournaledYamlDocument document = JournaledYamlDocument.open(path)) {
+ *         document.setValue("Service.port", 8081).join();   // 返回时记录已经落盘
+ *         document.insertValueToObject("Service.hosts.0", "a");
+ *     }
+ * </pre>
+ * 每次set、insert或remove先作用于内存中的文档，再编码为一条记录（复合键与yaml序列化的值）追加到同目录下的 "文件名.journal"。
+ * 记录由一个提交线程写入，同时等待的记录合并为一次写入与一次force（组提交），返回的CompletableFuture在记录落盘后完成。
+ * <p>
+ * 打开时读入yaml文件，再按顺序重放日志。日志末尾不完整或校验失败的记录（写入过程中崩溃）被丢弃并截断。
+ * 日志超过compactThresholdBytes时在后台压缩：把当前文档以 {@link YamlEditor#dumpMapToYamlAtomically} 相同的方式写回yaml文件，
+ * 并从空日志重新开始。日志头记录了它所基于的yaml文件的校验和，压缩过程中任意时刻崩溃，重放的结果都与崩溃前已经落盘的修改一致。
+ * 文档打开期间不能由其他方式修改yaml文件或日志。
+ *
+ * @Author Sennri
+ */
+@Slf4j
+public final class JournaledYamlDocument implements Closeable {
+    public static final long DEFAULT_COMPACT_THRESHOLD_BYTES = 16L * 1024 * 1024;
+    private static final int MAGIC = 0x594a4e4c;
+    /**
+     * MAGIC与基于的yaml文件的校验和
+     */
+    private static final int HEADER_BYTES = 12;
+    /**
+     * 校验和尚未写入的日志头，压缩时新日志先于新的yaml文件创建
+     */
+    private static final long PENDING = 0;
+    private static final int MAX_BATCH = 1024;
+
+    private final Path path;
+    private final Path journalPath;
+    private final Path oldJournalPath;
+    private final YamlEditor yamlEditor;
+    private final FsyncPolicy fsyncPolicy;
+    private final long compactThresholdBytes;
+    private final Map<String, Object> content;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread committer;
+    private final ExecutorService compactor;
+    private final Object compactLock = new Object();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+    private FileChannel journal;
+    /**
+     * 已经切换日志、但还没有写回yaml文件的快照，下一次压缩时先把它写完
+     */
+    private String unfinished;
+    private volatile long journalBytes;
+    private volatile boolean closed;
+    /**
+     * 追加日志失败的原因。内存中的文档已经包含没有落盘的修改，之后的记录可能依赖这些修改而无法重放，因此不再接受写入
+     */
+    private volatile IOException failure;
+
+    private JournaledYamlDocument(Path path, YamlEditor yamlEditor, FsyncPolicy fsyncPolicy,
+                                  long compactThresholdBytes, Map<String, Object> content) {
+        this.path = path;
+        this.journalPath = sibling(path, ".journal");
+        this.oldJournalPath = sibling(path, ".journal.old");
+        this.yamlEditor = yamlEditor;
+        this.fsyncPolicy = fsyncPolicy;
+        this.compactThresholdBytes = compactThresholdBytes;
+        this.content = content;
+        this.committer = new Thread(this::commitLoop, "yaml-journal-" + path.getFileName());
+        this.committer.setDaemon(true);
+        this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "yaml-journal-compactor-" + path.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static JournaledYamlDocument open(Path path) throws IOException {
+        return open(path, YamlEditor.shared(false), FsyncPolicy.FILE, DEFAULT_COMPACT_THRESHOLD_BYTES);
+    }
+
+    /**
+     * 打开文档并重放日志，yaml文件不存在时创建一个空文档
+     *
+     * @param path                  yaml文件
+     * @param yamlEditor            决定复合键的拆分模式
+     * @param fsyncPolicy           日志与压缩时的落盘策略；NONE时记录只写入操作系统缓存
+     * @param compactThresholdBytes 日志超过该大小时在后台压缩
+     */
+    public static JournaledYamlDocument open(Path path, YamlEditor yamlEditor, FsyncPolicy fsyncPolicy,
+                                             long compactThresholdBytes) throws IOException {
+        Path absolute = path.toAbsolutePath();
+        if (!Files.exists(absolute)) {
+            YamlEditor.dumpMapToYamlAtomically(new LinkedHashMap<>(), absolute, fsyncPolicy);
+        }
+        Map<String, Object> content = YamlEditor.getMapFromYaml(absolute);
+        // 空文件读入为null，从空文档开始
+        content = content == null ? new LinkedHashMap<>() : YamlTrees.deepCopyMap(content);
+        JournaledYamlDocument document = new JournaledYamlDocument(absolute, yamlEditor, fsyncPolicy,
+                compactThresholdBytes, content);
+        document.deleteTempFiles();
+        document.recover();
+        document.committer.start();
+        return document;
+    }
+
+    private static Path sibling(Path path, String suffix) {
+        return path.resolveSibling(path.getFileName() + suffix);
+    }
+
+    /**
+     * 按日志头选择需要重放的日志并重放，上一次压缩没有完成时先把它完成
+     */
+    private void recover() throws IOException {
+        long base = checksum(path);
+        if (Files.exists(oldJournalPath)) {
+            long newHeader = Files.exists(journalPath) ? header(journalPath) : PENDING;
+            if (newHeader != base) {
+                // yaml文件还没有被替换，旧日志中的修改需要重放，之后按同样的顺序完成压缩
+                if (header(oldJournalPath) != base) {
+                    throw new IOException(oldJournalPath + " does not belong to " + path);
+                }
+                replay(oldJournalPath, false);
+                String yaml = dump(content);
+                long checksum = checksum(yaml);
+                if (Files.exists(journalPath)) {
+                    writeHeader(checksum);
+                } else {
+                    createJournal(checksum);
+                }
+                writeBase(yaml);
+            }
+            Files.delete(oldJournalPath);
+        } else if (Files.exists(journalPath)) {
+            long header = header(journalPath);
+            if (header == PENDING && Files.size(journalPath) <= HEADER_BYTES) {
+                // 创建日志时崩溃
+                Files.delete(journalPath);
+            } else if (header != base) {
+                throw new IOException(journalPath + " does not belong to " + path + ", it may have been modified.");
+            }
+        }
+        if (!Files.exists(journalPath)) {
+            createJournal(base);
+        } else {
+            replay(journalPath, true);
+        }
+        journal = FileChannel.open(journalPath, StandardOpenOption.WRITE);
+        journalBytes = journal.size();
+        journal.position(journalBytes);
+    }
+
+    /**
+     * 删除写回yaml文件时崩溃留下的临时文件（参见 {@link AtomicFiles#write}），文档打开期间不会有其他写入者
+     */
+    private void deleteTempFiles() throws IOException {
+        String glob = "." + AtomicFiles.resolve(path).getFileName() + ".*.tmp";
+        try (DirectoryStream<Path> temps = Files.newDirectoryStream(path.getParent(), glob)) {
+            for (Path temp : temps) {
+                log.info("Deleting {} left by an interrupted compaction.", temp);
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    private static String dump(Map<String, Object> document) {
+        try {
+            return YamlEditor.yaml().dump(document);
+        } catch (RuntimeException e) {
+            YamlEditor.discardYaml();
+            throw e;
+        }
+    }
+
+    /**
+     * 写入完整的日志头。创建日志时崩溃的日志可能比日志头还短，因此MAGIC也一并写入
+     */
+    private void writeHeader(long checksum) throws IOException {
+        try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putLong(checksum);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(false);
+        }
+    }
+
+    private void writeBase(String yaml) throws IOException {
+        try {
+            AtomicFiles.write(path, fsyncPolicy == FsyncPolicy.NONE ? FsyncPolicy.FILE : fsyncPolicy,
+                    writer -> writer.write(yaml));
+        } finally {
+            YamlDocumentCache.invalidateAllCaches(path);
+        }
+    }
+
+    private void createJournal(long base) throws IOException {
+        try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putLong(base);
+            header.flip();
+            channel.write(header);
+            if (fsyncPolicy != FsyncPolicy.NONE) {
+                channel.force(true);
+            }
+        }
+        if (fsyncPolicy == FsyncPolicy.FILE_AND_DIRECTORY) {
+            AtomicFiles.forceDirectory(path.getParent());
+        }
+    }
+
+    private static long header(Path journalPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // 读满日志头
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES) {
+                // 创建日志头时崩溃
+                return PENDING;
+            }
+            if (header.getInt() != MAGIC) {
+                throw new IOException(journalPath + " is not a yaml journal.");
+            }
+            return header.getLong();
+        }
+    }
+
+    /**
+     * @return yaml文件的校验和，与日志头中的格式相同
+     */
+    private static long checksum(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            for (int n; (n = in.read(buffer)) > 0; ) {
+                crc.update(buffer, 0, n);
+            }
+        }
+        return checksum(crc);
+    }
+
+    private static long checksum(String yaml) {
+        byte[] bytes = yaml.getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return checksum(crc);
+    }
+
+    private static long checksum(CRC32 crc) {
+        // 第32位保证不与PENDING相同
+        return (1L << 32) | crc.getValue();
+    }
+
+    /**
+     * 重放一个日志，遇到不完整或校验失败的记录时停止
+     *
+     * @param truncate 是否截断被丢弃的部分
+     */
+    private void replay(Path journalPath, boolean truncate) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(journalPath));
+        buffer.position(Math.min(HEADER_BYTES, buffer.limit()));
+        int count = 0;
+        long valid = buffer.position();
+        while (buffer.remaining() >= 8) {
+            int length = buffer.getInt();
+            long expected = buffer.getInt() & 0xffffffffL;
+            if (length < 0 || length > buffer.remaining()) {
+                break;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), buffer.position(), length);
+            if (crc.getValue() != expected) {
+                break;
+            }
+            decode(ByteBuffer.wrap(buffer.array(), buffer.position(), length)).applyTo(yamlEditor, content);
+            buffer.position(buffer.position() + length);
+            valid = buffer.position();
+            count++;
+        }
+        long size = buffer.limit();
+        if (valid < size) {
+            log.warn("Dropped {} bytes of a torn record at the end of {}.", size - valid, journalPath);
+            if (truncate) {
+                try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.WRITE)) {
+                    channel.truncate(valid);
+                    channel.force(true);
+                }
+            }
+        }
+        log.debug("Replayed {} records from {}.", count, journalPath);
+    }
+
+    private static byte[] encode(EditOperation operation) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(operation.getType().ordinal());
+            writeString(out, operation.getCompositeKey());
+            if (operation.getType() != EditOperation.Type.REMOVE) {
+                String value;
+                try {
+                    value = YamlEditor.yaml().dump(operation.getValue());
+                } catch (RuntimeException e) {
+                    YamlEditor.discardYaml();
+                    throw e;
+                }
+                writeString(out, value);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static EditOperation decode(ByteBuffer buffer) {
+        EditOperation.Type type = EditOperation.Type.values()[buffer.get()];
+        String compositeKey = readString(buffer);
+        Object value = null;
+        if (type != EditOperation.Type.REMOVE) {
+            try {
+                value = YamlEditor.yaml().load(new StringReader(readString(buffer)));
+            } catch (RuntimeException e) {
+                YamlEditor.discardYaml();
+                throw e;
+            }
+        }
+        return EditOperation.of(type, compositeKey, value);
+    }
+
+    public Object getValue(String compositeKey) throws IllegalArgumentException {
+        YamlPath yamlPath = yamlEditor.compilePath(compositeKey);
+        synchronized (content) {
+            return YamlTrees.deepCopy(yamlEditor.getValue(yamlPath, content));
+        }
+    }
+
+    /**
+     * @return 整个文档的深拷贝
+     */
+    public Map<String, Object> copy() {
+        synchronized (content) {
+            return YamlTrees.deepCopyMap(content);
+        }
+    }
+
+    public CompletableFuture<Void> setValue(String compositeKey, Object value) {
+        return apply(EditOperation.set(compositeKey, value));
+    }
+
+    public CompletableFuture<Void> insertValueToObject(String compositeKey, Object value) {
+        return apply(EditOperation.insert(compositeKey, value));
+    }
+
+    public CompletableFuture<Void> removeListOrMapContent(String compositeKey) {
+        return apply(EditOperation.remove(compositeKey));
+    }
+
+    /**
+     * 修改内存中的文档并追加日志记录，编辑失败时不写日志
+     *
+     * @param operation 编辑
+     * @return 记录落盘后完成；写入日志失败时以IOException完成，此时内存中的修改不会被撤销，
+     * 文档不再接受写入，需要重新打开
+     * @throws IllegalStateException 文档已经关闭，或者之前追加日志失败
+     */
+    public CompletableFuture<Void> apply(EditOperation operation) {
+        byte[] payload = encode(operation);
+        // 内存中保存一份拷贝，之后修改原来的值不会使文档与日志不一致
+        EditOperation copied = EditOperation.of(operation.getType(), operation.getCompositeKey(),
+                YamlTrees.deepCopy(operation.getValue()));
+        Pending pending = new Pending(frame(payload), false);
+        synchronized (content) {
+            if (closed) {
+                throw new IllegalStateException("Document is closed.");
+            }
+            checkNotFailed();
+            copied.applyTo(yamlEditor, content);
+            // 在锁内入队，保证日志中的顺序与修改的顺序一致
+            queue.add(pending);
+        }
+        return pending.future;
+    }
+
+    private void checkNotFailed() {
+        IOException cause = failure;
+        if (cause != null) {
+            throw new IllegalStateException("Appending to " + journalPath + " failed, reopen the document.", cause);
+        }
+    }
+
+    private static ByteBuffer frame(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        ByteBuffer record = ByteBuffer.allocate(8 + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        record.flip();
+        return record;
+    }
+
+    private void commitLoop() {
+        List<Pending> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            int from = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                Pending pending = batch.get(i);
+                if (pending.record == null) {
+                    commit(batch.subList(from, i));
+                    from = i + 1;
+                    if (pending.stop) {
+                        pending.future.complete(null);
+                        return;
+                    }
+                    rotate(pending);
+                }
+            }
+            commit(batch.subList(from, batch.size()));
+            batch.clear();
+            if (journalBytes > compactThresholdBytes && !closed && compacting.compareAndSet(false, true)) {
+                compactor.execute(() -> {
+                    try {
+                        compact();
+                    } catch (IOException | RuntimeException e) {
+                        log.error("Failed to compact {}.", journalPath, e);
+                    } finally {
+                        compacting.set(false);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * 一次写入并落盘一组记录
+     */
+    private void commit(List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (failure != null) {
+            // 失败之前已经入队的记录依赖没有落盘的修改，不再写入
+            for (Pending pending : batch) {
+                pending.future.completeExceptionally(failure);
+            }
+            return;
+        }
+        ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+        long size = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = batch.get(i).record;
+            size += buffers[i].remaining();
+        }
+        try {
+            long written = 0;
+            while (written < size) {
+                written += journal.write(buffers);
+            }
+            if (fsyncPolicy != FsyncPolicy.NONE) {
+                journal.force(false);
+            }
+            journalBytes += size;
+            records.addAndGet(batch.size());
+            commits.incrementAndGet();
+            for (Pending pending : batch) {
+                pending.future.complete(null);
+            }
+        } catch (IOException e) {
+            log.error("Failed to append {} records to {}.", batch.size(), journalPath, e);
+            failure = e;
+            try {
+                // 去掉写了一半的记录，之后的记录仍然可以被重放
+                journal.truncate(journalBytes);
+                journal.position(journalBytes);
+            } catch (IOException ignored) {
+                // 重放时会在这里停止
+            }
+            for (Pending pending : batch) {
+                pending.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * 压缩的第一步：之前的记录留在旧日志中，之后的记录写入新日志
+     */
+    private void rotate(Pending pending) {
+        if (failure != null) {
+            pending.future.completeExceptionally(failure);
+            return;
+        }
+        try {
+            journal.close();
+            AtomicFiles.move(journalPath, oldJournalPath);
+            createJournal(PENDING);
+            journal = FileChannel.open(journalPath, StandardOpenOption.WRITE);
+            journal.position(HEADER_BYTES);
+            journalBytes = HEADER_BYTES;
+            pending.future.complete(null);
+        } catch (IOException e) {
+            try {
+                // 回到切换之前的日志，之后的记录继续追加到其中
+                if (Files.exists(oldJournalPath)) {
+                    Files.deleteIfExists(journalPath);
+                    AtomicFiles.move(oldJournalPath, journalPath);
+                }
+                journal = FileChannel.open(journalPath, StandardOpenOption.WRITE);
+                journal.position(journalBytes);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            pending.future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * 把当前文档写回yaml文件并清空日志。
+     * 依次：切换到新日志、序列化快照、把快照的校验和写入新日志头、替换yaml文件、删除旧日志。
+     * 上一次压缩在切换日志之后失败时，先用当时的快照把它完成
+     */
+    public void compact() throws IOException {
+        synchronized (compactLock) {
+            if (unfinished != null) {
+                finish(unfinished);
+                log.info("Completed the interrupted compaction of {}.", journalPath);
+            } else if (Files.exists(oldJournalPath)) {
+                // 不是本实例留下的旧日志，覆盖会丢失其中的记录，需要重新打开文档完成恢复
+                throw new IOException("A previous compaction of " + path + " did not complete.");
+            }
+            Map<String, Object> snapshot;
+            Pending rotate = new Pending(null, false);
+            synchronized (content) {
+                if (closed) {
+                    throw new IllegalStateException("Document is closed.");
+                }
+                // 内存中的文档包含没有落盘的修改，不能写回yaml文件
+                checkNotFailed();
+                snapshot = YamlTrees.deepCopyMap(content);
+                queue.add(rotate);
+            }
+            await(rotate.future);
+            finish(dump(snapshot));
+            log.debug("Compacted {} into {}.", journalPath, path);
+        }
+    }
+
+    /**
+     * 压缩中切换日志之后的步骤，失败时保留快照，下一次压缩重新执行这些步骤
+     *
+     * @param yaml 切换日志时的快照
+     */
+    private void finish(String yaml) throws IOException {
+        unfinished = yaml;
+        writeHeader(checksum(yaml));
+        writeBase(yaml);
+        Files.deleteIfExists(oldJournalPath);
+        unfinished = null;
+    }
+
+    private static void await(CompletableFuture<Void> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * @return 当前日志的字节数
+     */
+    public long getJournalBytes() {
+        return journalBytes;
+    }
+
+    /**
+     * @return 已经落盘的记录数
+     */
+    public long getCommittedRecords() {
+        return records.get();
+    }
+
+    /**
+     * @return 提交次数，与记录数的比值即为平均每次组提交合并的记录数
+     */
+    public long getCommits() {
+        return commits.get();
+    }
+
+    /**
+     * 等待已经提交的记录落盘后关闭，不进行压缩
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (compactLock) {
+            synchronized (content) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            compactor.shutdownNow();
+            queue.add(new Pending(null, true));
+            try {
+                committer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } finally {
+                journal.close();
+            }
+        }
+    }
+
+    /**
+     * 等待写入的记录；record为null时表示切换日志，或者在stop为true时停止提交线程
+     */
+    private static final class Pending {
+        final ByteBuffer record;
+        final boolean stop;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Pending(ByteBuffer record, boolean stop) {
+            this.record = record;
+            this.stop = stop;
+        }
+    }
+}
@@ -0,0 +1,580 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按需解析的yaml文档。
+ * 打开时把文件映射到内存（{@link FileChannel#map}），只按行扫描一遍缩进，记录第一层与第二层节点在文件中的字节范围，不做解析；
+ * {@link #getValue(YamlPath)} 第一次访问某个节点时才解析该节点所在的片段，片段按 {@link CompactYamlLoader} 的方式构造为紧凑的只读树。
+ * <pre>
+ *     try (LazyYamlDocument document = LazyYamlDocument.open(path)) {
+ *         Object company = document.getValue("tenants.7.Profile.Organization.0.company");
+ *     }
+ * </pre>
+ * 访问第二层以下的节点时只解析对应的第二层片段（Map的一个键或者列表的一个元素），而不是整个第一层节点。
+ * 解析过的片段以SoftReference缓存，同时按片段的字节数做LRU淘汰，总量不超过maxCachedBytes。
+ * <p>
+ * 扫描只处理常见的块风格文档。遇到锚点、别名、显式标签、跨行的flow集合或引号字符串、多文档、制表符缩进等情况时，
+ * 片段之间可能存在依赖或者无法按行切分，此时整篇文档在打开时一次性读入（{@link #isLazy()} 返回false），结果不变。
+ * 扫描不校验语法，格式错误的片段在被访问时才抛出异常。
+ * 文档打开期间文件不能被修改；文件大小不能超过2GB。该类是线程安全的。
+ *
+ * @Author Sennri
+ */
+@Slf4j
+public final class LazyYamlDocument implements Closeable {
+    public static final long DEFAULT_MAX_CACHED_BYTES = 64L * 1024 * 1024;
+    /**
+     * 缓存中代表null值的占位对象
+     */
+    private static final Object NULL = new Object();
+
+    private final YamlEditor yamlEditor;
+    private final long maxCachedBytes;
+    private final Map<String, Segment> segments;
+    /**
+     * 无法按需解析时一次性读入的文档
+     */
+    private final Map<String, Object> eager;
+    private final LinkedHashMap<Segment, SoftReference<Object>> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong materializations = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private volatile ByteBuffer buffer;
+    private long cachedBytes;
+
+    private LazyYamlDocument(YamlEditor yamlEditor, long maxCachedBytes, ByteBuffer buffer,
+                             Map<String, Segment> segments, Map<String, Object> eager) {
+        this.yamlEditor = yamlEditor;
+        this.maxCachedBytes = maxCachedBytes;
+        this.buffer = buffer;
+        this.segments = segments;
+        this.eager = eager;
+    }
+
+    public static LazyYamlDocument open(Path path) throws IOException {
+        return open(path, YamlEditor.shared(false), DEFAULT_MAX_CACHED_BYTES);
+    }
+
+    /**
+     * @param path           yaml文件
+     * @param yamlEditor     用于编译复合键，决定复合键的拆分模式
+     * @param maxCachedBytes 缓存的片段的总字节数上限
+     * @return 文档
+     */
+    public static LazyYamlDocument open(Path path, YamlEditor yamlEditor, long maxCachedBytes) throws IOException {
+        if (maxCachedBytes <= 0) {
+            throw new IllegalArgumentException("Cache budget must be positive.");
+        }
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(path + " is larger than 2GB.");
+            }
+            // 映射在channel关闭之后仍然有效
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        try {
+            Map<String, Segment> segments = new Scanner(buffer).scan();
+            return new LazyYamlDocument(yamlEditor, maxCachedBytes, buffer, segments, null);
+        } catch (NotLazy e) {
+            log.debug("{} is loaded eagerly: {}", path, e.getMessage());
+            return new LazyYamlDocument(yamlEditor, maxCachedBytes, null, null, CompactYamlLoader.load(path));
+        }
+    }
+
+    /**
+     * @return 是否按需解析；为false时整篇文档已经在打开时读入
+     */
+    public boolean isLazy() {
+        return segments != null;
+    }
+
+    /**
+     * @return 第一层的键（按文件中的原文，未做类型解析）
+     */
+    public Set<String> keys() {
+        if (eager != null) {
+            Set<String> keys = new LinkedHashSet<>();
+            for (Object key : eager.keySet()) {
+                keys.add(String.valueOf(key));
+            }
+            return Collections.unmodifiableSet(keys);
+        }
+        return Collections.unmodifiableSet(segments.keySet());
+    }
+
+    /**
+     * 取值，语义同 {@link YamlEditor#getValue(String, Object)}
+     *
+     * @param compositeKey 复合键
+     * @return 紧凑的只读节点
+     * @throws IllegalArgumentException 键不存在
+     */
+    public Object getValue(String compositeKey) throws IllegalArgumentException {
+        return getValue(yamlEditor.compilePath(compositeKey));
+    }
+
+    public Object getValue(YamlPath path) throws IllegalArgumentException {
+        if (eager != null) {
+            return yamlEditor.getValue(path, eager);
+        }
+        Segment top = segments.get(path.getName(0));
+        if (top == null) {
+            throw new IllegalArgumentException("Key " + path.getName(0) + " does not exist.");
+        }
+        int len = path.size();
+        if (len > 1 && top.hasChildren()) {
+            if (top.children != null) {
+                Segment child = top.children.get(path.getName(1));
+                if (child == null) {
+                    throw new IllegalArgumentException("Key " + path.getName(1) + " does not exist.");
+                }
+                return yamlEditor.getValue(path.subPath(1, len), materialize(child));
+            }
+            int index = path.indexOrNegative(1);
+            if (index < 0 || index >= top.items.size()) {
+                throw new IllegalArgumentException("Using a wrong index which is out of bounds: " + path.getName(1));
+            }
+            Object item = ((List<?>) materialize(top.items.get(index))).get(0);
+            if (len == 2) {
+                return item;
+            }
+            if (item == null) {
+                throw new IllegalArgumentException("The value of " + path.subPath(0, 2) + " is null.");
+            }
+            return yamlEditor.getValue(path.subPath(2, len), item);
+        }
+        return yamlEditor.getValue(path, materialize(top));
+    }
+
+    private Object materialize(Segment segment) {
+        synchronized (cache) {
+            SoftReference<Object> reference = cache.get(segment);
+            Object node = reference == null ? null : reference.get();
+            if (node != null) {
+                hits.incrementAndGet();
+                return node == NULL ? null : node;
+            }
+        }
+        ByteBuffer source = buffer;
+        if (source == null) {
+            throw new IllegalStateException("Document is closed.");
+        }
+        ByteBuffer slice = source.duplicate();
+        slice.limit(segment.end).position(segment.start);
+        Object node = CompactYamlLoader.loadNode(StandardCharsets.UTF_8.decode(slice).toString());
+        materializations.incrementAndGet();
+        synchronized (cache) {
+            if (cache.put(segment, new SoftReference<>(node == null ? NULL : node)) == null) {
+                cachedBytes += segment.length();
+            }
+            Iterator<Map.Entry<Segment, SoftReference<Object>>> iterator = cache.entrySet().iterator();
+            while (cachedBytes > maxCachedBytes && cache.size() > 1) {
+                Segment eldest = iterator.next().getKey();
+                iterator.remove();
+                cachedBytes -= eldest.length();
+            }
+        }
+        return node;
+    }
+
+    /**
+     * @return 解析片段的次数
+     */
+    public long getMaterializedCount() {
+        return materializations.get();
+    }
+
+    public long getCacheHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return 缓存中的片段的总字节数（包括已被GC回收、尚未淘汰的片段）
+     */
+    public long getCachedBytes() {
+        synchronized (cache) {
+            return cachedBytes;
+        }
+    }
+
+    /**
+     * 丢弃缓存与映射，之后只有一次性读入的文档还可以访问
+     */
+    @Override
+    public void close() {
+        buffer = null;
+        synchronized (cache) {
+            cache.clear();
+            cachedBytes = 0;
+        }
+    }
+
+    /**
+     * 文件中的一段字节范围：第一层或第二层的一个节点
+     */
+    private static final class Segment {
+        final int start;
+        int end;
+        /**
+         * 第一层节点下的第二层节点，值为Map时使用children，为列表时使用items
+         */
+        Map<String, Segment> children;
+        List<Segment> items;
+        int childIndent = -1;
+        /**
+         * 第二层无法可靠地切分，访问时解析整个第一层节点
+         */
+        boolean noChildren;
+
+        Segment(int start) {
+            this.start = start;
+        }
+
+        int length() {
+            return end - start;
+        }
+
+        boolean hasChildren() {
+            return !noChildren && (children != null || items != null);
+        }
+    }
+
+    /**
+     * 扫描不能处理该文档
+     */
+    private static final class NotLazy extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        NotLazy(String reason) {
+            super(reason, null, false, false);
+        }
+    }
+
+    /**
+     * 按行扫描缩进，切分第一层与第二层节点
+     */
+    private static final class Scanner {
+        private final ByteBuffer buffer;
+        private final int limit;
+        private final Map<String, Segment> top = new LinkedHashMap<>();
+        private Segment current;
+        private Segment child;
+        /**
+         * 处于块标量中时为其所属的键或列表项所在的列，缩进更大的行都是标量的内容
+         */
+        private int blockOwner = -1;
+        private boolean started;
+        private boolean ended;
+
+        Scanner(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.limit = buffer.limit();
+        }
+
+        private int at(int i) {
+            return buffer.get(i) & 0xff;
+        }
+
+        Map<String, Segment> scan() {
+            int p = 0;
+            if (limit >= 2 && ((at(0) == 0xfe && at(1) == 0xff) || (at(0) == 0xff && at(1) == 0xfe))) {
+                throw new NotLazy("UTF-16 content");
+            }
+            if (limit >= 3 && at(0) == 0xef && at(1) == 0xbb && at(2) == 0xbf) {
+                p = 3;
+            }
+            while (p < limit) {
+                int lineEnd = p;
+                while (lineEnd < limit && at(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                line(p, lineEnd);
+                p = lineEnd + 1;
+            }
+            closeTop(limit);
+            return top;
+        }
+
+        private void line(int start, int lineEnd) {
+            int end = lineEnd;
+            if (end > start && at(end - 1) == '\r') {
+                end--;
+            }
+            int c = start;
+            while (c < end && at(c) == ' ') {
+                c++;
+            }
+            int indent = c - start;
+            if (c >= end || at(c) == '#') {
+                return;
+            }
+            if (blockOwner >= 0) {
+                if (indent > blockOwner) {
+                    return;
+                }
+                blockOwner = -1;
+            }
+            if (at(c) == '\t') {
+                throw new NotLazy("tab indentation");
+            }
+            if (ended) {
+                throw new NotLazy("content after document end");
+            }
+            if (indent == 0) {
+                if (marker(c, end, '-')) {
+                    if (started) {
+                        throw new NotLazy("multiple documents");
+                    }
+                    started = true;
+                    if (!blankOrComment(c + 3, end)) {
+                        throw new NotLazy("content after document start");
+                    }
+                    return;
+                }
+                if (marker(c, end, '.')) {
+                    ended = true;
+                    return;
+                }
+                if (at(c) == '%') {
+                    throw new NotLazy("directive");
+                }
+            }
+            started = true;
+            boolean item = isItem(c, end);
+            if (indent == 0 && !item) {
+                int colon = keyEnd(c, end);
+                if (colon < 0) {
+                    throw new NotLazy("unsupported top-level line");
+                }
+                String name = decode(c, colon);
+                if (top.containsKey(name) || "<<".equals(name)) {
+                    throw new NotLazy("duplicate or merge key " + name);
+                }
+                closeTop(start);
+                current = new Segment(start);
+                top.put(name, current);
+                checkValue(colon + 1, end, c);
+                return;
+            }
+            if (current == null) {
+                throw new NotLazy("root is not a mapping");
+            }
+            if (current.childIndent < 0) {
+                current.childIndent = indent;
+            }
+            if (indent == current.childIndent && !current.noChildren) {
+                nextChild(start, c, end, item);
+            } else if (indent < current.childIndent) {
+                current.noChildren = true;
+            }
+            content(c, end);
+        }
+
+        /**
+         * 第二层的一个新节点
+         */
+        private void nextChild(int start, int c, int end, boolean item) {
+            if (item) {
+                if (current.children != null) {
+                    current.noChildren = true;
+                    return;
+                }
+                if (current.items == null) {
+                    current.items = new ArrayList<>();
+                }
+                closeChild(start);
+                child = new Segment(start);
+                current.items.add(child);
+                return;
+            }
+            int colon = keyEnd(c, end);
+            if (colon < 0 || current.items != null) {
+                current.noChildren = true;
+                return;
+            }
+            String name = decode(c, colon);
+            if (current.children == null) {
+                current.children = new LinkedHashMap<>();
+            }
+            if (current.children.containsKey(name) || "<<".equals(name)) {
+                current.noChildren = true;
+                return;
+            }
+            closeChild(start);
+            child = new Segment(start);
+            current.children.put(name, child);
+        }
+
+        /**
+         * 检查一行内容：跳过列表项的"- "与键，检查值
+         */
+        private void content(int c, int end) {
+            while (isItem(c, end)) {
+                int owner = c;
+                c++;
+                while (c < end && at(c) == ' ') {
+                    c++;
+                }
+                if (c >= end) {
+                    return;
+                }
+                if (!isItem(c, end)) {
+                    int colon = keyEnd(c, end);
+                    if (colon >= 0) {
+                        checkValue(colon + 1, end, c);
+                    } else {
+                        checkValue(c, end, owner);
+                    }
+                    return;
+                }
+            }
+            int colon = keyEnd(c, end);
+            checkValue(colon >= 0 ? colon + 1 : c, end, c);
+        }
+
+        /**
+         * 检查值中是否有扫描无法处理的内容，并记录块标量
+         *
+         * @param from  值的起始位置
+         * @param end   行尾
+         * @param owner 值所属的键或列表项所在的位置
+         */
+        private void checkValue(int from, int end, int owner) {
+            int lineStart = owner;
+            while (lineStart > 0 && at(lineStart - 1) != '\n') {
+                lineStart--;
+            }
+            int depth = 0;
+            int previous = ' ';
+            for (int i = from; i < end; i++) {
+                int ch = at(i);
+                boolean tokenStart = previous == ' ' || previous == '[' || previous == '{' || previous == ',';
+                if (ch == '#' && previous == ' ') {
+                    break;
+                }
+                if (tokenStart && (ch == '&' || ch == '*' || ch == '!')) {
+                    throw new NotLazy("anchor, alias or tag");
+                }
+                if (tokenStart && (ch == '\'' || ch == '"')) {
+                    i = closingQuote(i, end, ch);
+                    previous = ch;
+                    continue;
+                }
+                if (tokenStart && depth == 0 && (ch == '|' || ch == '>') && blockIndicator(i + 1, end)) {
+                    blockOwner = owner - lineStart;
+                    return;
+                }
+                if (ch == '[' || ch == '{') {
+                    depth++;
+                } else if ((ch == ']' || ch == '}') && depth > 0) {
+                    depth--;
+                }
+                previous = ch;
+            }
+            if (depth != 0) {
+                throw new NotLazy("multi-line flow collection");
+            }
+        }
+
+        private int closingQuote(int open, int end, int quote) {
+            for (int i = open + 1; i < end; i++) {
+                int ch = at(i);
+                if (quote == '"' && ch == '\\') {
+                    i++;
+                } else if (ch == quote) {
+                    if (quote == '\'' && i + 1 < end && at(i + 1) == '\'') {
+                        i++;
+                    } else {
+                        return i;
+                    }
+                }
+            }
+            throw new NotLazy("multi-line quoted scalar");
+        }
+
+        private boolean blockIndicator(int i, int end) {
+            while (i < end && (at(i) == '+' || at(i) == '-' || (at(i) >= '0' && at(i) <= '9'))) {
+                i++;
+            }
+            return blankOrComment(i, end);
+        }
+
+        private boolean blankOrComment(int i, int end) {
+            while (i < end && at(i) == ' ') {
+                i++;
+            }
+            return i >= end || at(i) == '#';
+        }
+
+        private boolean marker(int c, int end, int ch) {
+            return c + 3 <= end && at(c) == ch && at(c + 1) == ch && at(c + 2) == ch
+                    && (c + 3 == end || at(c + 3) == ' ');
+        }
+
+        private boolean isItem(int c, int end) {
+            return c < end && at(c) == '-' && (c + 1 == end || at(c + 1) == ' ');
+        }
+
+        /**
+         * @return 普通键之后的':'的位置，该行不以普通键开头时返回-1
+         */
+        private int keyEnd(int c, int end) {
+            if (c >= end || "-?:,[]{}#&*!|>'\"%@`".indexOf(at(c)) >= 0) {
+                return -1;
+            }
+            for (int i = c; i < end; i++) {
+                int ch = at(i);
+                if (ch == ':' && (i + 1 == end || at(i + 1) == ' ')) {
+                    return i;
+                }
+                if (ch == '#' && at(i - 1) == ' ') {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        private String decode(int from, int to) {
+            while (to > from && at(to - 1) == ' ') {
+                to--;
+            }
+            ByteBuffer slice = buffer.duplicate();
+            slice.limit(to).position(from);
+            return StandardCharsets.UTF_8.decode(slice).toString();
+        }
+
+        private void closeTop(int at) {
+            if (current != null) {
+                current.end = at;
+                closeChild(at);
+            }
+            child = null;
+        }
+
+        private void closeChild(int at) {
+            if (child != null) {
+                child.end = at;
+            }
+        }
+    }
+}
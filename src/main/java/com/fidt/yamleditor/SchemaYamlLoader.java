@@ -0,0 +1,577 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.yaml.snakeyaml.constructor.Constructor;
+import org.yaml.snakeyaml.error.Mark;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.events.*;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.reader.UnicodeReader;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按 {@link YamlSchema} 读取yaml，在解析的同时完成类型转换与校验。
+ * 与 {@link YamlEditor#getMapFromYaml(Path)} 相比：
+ * <ul>
+ *     <li>声明了类型的标量直接转换为该类型（int为Integer，long为Long，double为Double，boolean为Boolean），
+ *     不再逐个尝试SnakeYAML隐式类型的正则；string类型的值保持原文，例如 8080、1.50、on 都读为字符串</li>
+ *     <li>未声明的键、缺少的必需键、节点种类不符以及无法转换的标量立即抛出 {@link YamlSchemaException}，
+ *     不必读完整个文档；异常中带有出错位置的复合键与行号</li>
+ *     <li>对象按声明的字段数预先分配Map的容量</li>
+ * </ul>
+ * 返回的树由普通的LinkedHashMap与ArrayList组成，可以直接交给 {@link YamlEditor} 修改。
+ * 声明为any的子树与普通读取方式的结果一致。
+ * <p>
+ * 遇到合并键（&lt;&lt;）、显式的集合标签或者引用自身的别名时，退回到普通的读取方式，再按schema转换与校验整棵树。
+ *
+ * @Author Sennri
+ */
+@Slf4j
+public final class SchemaYamlLoader {
+    private static final Resolver RESOLVER = new Resolver();
+    private static final String SINGLE_DOCUMENT = "expected a single document in the stream";
+    /**
+     * {@link #parseDecimal(String)} 的返回值，表示不是普通的十进制整数
+     */
+    private static final long NOT_DECIMAL = Long.MIN_VALUE;
+
+    private final Iterator<Event> events;
+    private final Map<String, Object> anchors = new HashMap<>();
+    /**
+     * 当前节点的位置，元素为Map中的键（String）或者List中的下标（int[1]，每个List只分配一次），只在出错时拼接为复合键
+     */
+    private final ArrayDeque<Object> path = new ArrayDeque<>();
+    /**
+     * 异常中的复合键是否按支持转义的模式拼接
+     */
+    private final boolean supportEscape;
+    private ScalarConstructor constructor;
+
+    private SchemaYamlLoader(Reader reader, boolean supportEscape) {
+        this.events = YamlEditor.yaml().parse(reader).iterator();
+        this.supportEscape = supportEscape;
+    }
+
+    /**
+     * 按schema读取yaml文件
+     *
+     * @param path   yaml文件
+     * @param schema 文档的结构
+     * @return 转换后的树，空文档返回null
+     * @throws YamlSchemaException      文档不符合schema
+     * @throws IllegalArgumentException 文档的根节点不是Map
+     */
+    public static Map<String, Object> load(Path path, YamlSchema schema) throws IOException {
+        return load(path, schema, false);
+    }
+
+    /**
+     * @param supportEscape {@link YamlSchemaException} 中的复合键是否按支持转义的模式拼接，
+     *                      应与之后编辑该文档的编辑器的 {@link YamlEditor#isSupportEscape()} 一致
+     * @see #load(Path, YamlSchema)
+     */
+    public static Map<String, Object> load(Path path, YamlSchema schema, boolean supportEscape) throws IOException {
+        try {
+            try (Reader reader = new UnicodeReader(Files.newInputStream(path))) {
+                return asMap(new SchemaYamlLoader(reader, supportEscape).loadDocument(schema));
+            } catch (Fallback e) {
+                log.debug("Falling back to regular loading for {}: {}", path, e.getMessage());
+                return asMap(coerce(YamlEditor.getMapFromYaml(path), schema, "", supportEscape));
+            }
+        } catch (RuntimeException e) {
+            YamlEditor.discardYaml();
+            throw e;
+        }
+    }
+
+    /**
+     * 按schema读取yaml字符串
+     *
+     * @param yaml   yaml内容
+     * @param schema 文档的结构
+     * @return 转换后的树，空文档返回null
+     * @throws YamlSchemaException      文档不符合schema
+     * @throws IllegalArgumentException 文档的根节点不是Map
+     */
+    public static Map<String, Object> load(String yaml, YamlSchema schema) {
+        return load(yaml, schema, false);
+    }
+
+    /**
+     * @param supportEscape {@link YamlSchemaException} 中的复合键是否按支持转义的模式拼接
+     * @see #load(String, YamlSchema)
+     */
+    public static Map<String, Object> load(String yaml, YamlSchema schema, boolean supportEscape) {
+        try {
+            try {
+                return asMap(new SchemaYamlLoader(new StringReader(yaml), supportEscape).loadDocument(schema));
+            } catch (Fallback e) {
+                Object tree = YamlEditor.yaml().loadAs(new StringReader(yaml), LinkedHashMap.class);
+                return asMap(coerce(tree, schema, "", supportEscape));
+            }
+        } catch (RuntimeException e) {
+            YamlEditor.discardYaml();
+            throw e;
+        }
+    }
+
+    /**
+     * 按schema转换与校验已经读入的树，用于普通读取方式得到的文档。原树不会被修改
+     *
+     * @param tree   由Map、List以及标量组成的树
+     * @param schema 树的结构
+     * @return 转换后的树，声明为any的子树与原树共享
+     * @throws YamlSchemaException 树不符合schema
+     */
+    public static Object validate(Object tree, YamlSchema schema) {
+        return validate(tree, schema, false);
+    }
+
+    /**
+     * @param supportEscape {@link YamlSchemaException} 中的复合键是否按支持转义的模式拼接
+     * @see #validate(Object, YamlSchema)
+     */
+    public static Object validate(Object tree, YamlSchema schema, boolean supportEscape) {
+        return coerce(tree, schema, "", supportEscape);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(Object root) {
+        if (root != null && !(root instanceof Map)) {
+            throw new IllegalArgumentException("Root of the document is not a mapping.");
+        }
+        return (Map<String, Object>) root;
+    }
+
+    private Object loadDocument(YamlSchema schema) {
+        Object root = null;
+        boolean started = false;
+        while (events.hasNext()) {
+            Event event = events.next();
+            switch (event.getEventId()) {
+                case DocumentStart:
+                    if (started) {
+                        throw new YAMLException(SINGLE_DOCUMENT);
+                    }
+                    started = true;
+                    break;
+                case Scalar:
+                case Alias:
+                case SequenceStart:
+                case MappingStart:
+                    root = node(event, schema);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return root;
+    }
+
+    private Object node(Event event, YamlSchema schema) {
+        switch (event.getEventId()) {
+            case Scalar:
+                ScalarEvent scalar = (ScalarEvent) event;
+                Object value = schema.getKind() == YamlSchema.Kind.ANY ? scalar(scalar) : typed(scalar, schema);
+                anchor(scalar.getAnchor(), value);
+                return value;
+            case Alias:
+                String anchor = ((AliasEvent) event).getAnchor();
+                if (!anchors.containsKey(anchor)) {
+                    // 未定义的别名或者引用自身的别名，交给普通的读取方式处理
+                    throw new Fallback("alias " + anchor);
+                }
+                return coerce(anchors.get(anchor), schema, key(), supportEscape);
+            case SequenceStart:
+                return sequence((SequenceStartEvent) event, schema);
+            case MappingStart:
+                return mapping((MappingStartEvent) event, schema);
+            default:
+                throw new YAMLException("unexpected event " + event);
+        }
+    }
+
+    private List<Object> sequence(SequenceStartEvent start, YamlSchema schema) {
+        checkTag(start.getTag(), Tag.SEQ);
+        YamlSchema element;
+        if (schema.getKind() == YamlSchema.Kind.LIST) {
+            element = schema.getElement();
+        } else if (schema.getKind() == YamlSchema.Kind.ANY) {
+            element = YamlSchema.ANY;
+        } else {
+            throw violation("expected " + schema + " but was a list", start.getStartMark());
+        }
+        List<Object> list = new ArrayList<>();
+        int[] index = new int[1];
+        path.addLast(index);
+        Event event;
+        while (!(event = events.next()).is(Event.ID.SequenceEnd)) {
+            index[0] = list.size();
+            list.add(node(event, element));
+        }
+        path.removeLast();
+        anchor(start.getAnchor(), list);
+        return list;
+    }
+
+    private Map<Object, Object> mapping(MappingStartEvent start, YamlSchema schema) {
+        checkTag(start.getTag(), Tag.MAP);
+        boolean any = schema.getKind() == YamlSchema.Kind.ANY;
+        if (!any && schema.getKind() != YamlSchema.Kind.OBJECT) {
+            throw violation("expected " + schema + " but was a mapping", start.getStartMark());
+        }
+        int fields = any ? 0 : schema.getFields().size();
+        Map<Object, Object> map = fields == 0 ? new LinkedHashMap<>() : new LinkedHashMap<>(fields * 4 / 3 + 1);
+        int required = 0;
+        Event event;
+        while (!(event = events.next()).is(Event.ID.MappingEnd)) {
+            if (event.is(Event.ID.Scalar) && isMergeKey((ScalarEvent) event)) {
+                throw new Fallback("merge key");
+            }
+            Object key;
+            YamlSchema valueSchema;
+            if (any) {
+                key = node(event, YamlSchema.ANY);
+                valueSchema = YamlSchema.ANY;
+            } else if (!event.is(Event.ID.Scalar)) {
+                throw violation("expected a scalar key", event.getStartMark());
+            } else {
+                ScalarEvent scalar = (ScalarEvent) event;
+                String name = scalar.getValue();
+                YamlSchema.Field field = schema.field(name);
+                if (field != null) {
+                    key = name;
+                    valueSchema = field.getSchema();
+                    if (field.isRequired() && !map.containsKey(name)) {
+                        required++;
+                    }
+                } else if (schema.getAdditionalKeys() != null) {
+                    // 未声明的键与普通读取方式一致，例如 80: 读为Integer
+                    key = scalar(scalar);
+                    valueSchema = schema.getAdditionalKeys();
+                } else {
+                    path.addLast(name);
+                    throw violation("unknown key, expected one of " + schema.getFields().keySet(),
+                            event.getStartMark());
+                }
+                anchor(scalar.getAnchor(), key);
+            }
+            path.addLast(key instanceof String ? key : String.valueOf(key));
+            map.put(key, node(events.next(), valueSchema));
+            path.removeLast();
+        }
+        if (required < schema.getRequiredCount()) {
+            List<String> missing = missing(schema, map);
+            path.addLast(missing.get(0));
+            throw violation("missing required key" + (missing.size() > 1 ? "s " + missing : ""),
+                    event.getStartMark());
+        }
+        anchor(start.getAnchor(), map);
+        return map;
+    }
+
+    private static List<String> missing(YamlSchema schema, Map<?, ?> map) {
+        List<String> missing = new ArrayList<>();
+        for (YamlSchema.Field field : schema.getFields().values()) {
+            if (field.isRequired() && !map.containsKey(field.getName())) {
+                missing.add(field.getName());
+            }
+        }
+        return missing;
+    }
+
+    private static boolean isMergeKey(ScalarEvent event) {
+        return event.getTag() == null && event.isPlain() && "<<".equals(event.getValue());
+    }
+
+    private static void checkTag(String tag, Tag expected) {
+        if (tag != null && !"!".equals(tag) && !expected.getValue().equals(tag)) {
+            throw new Fallback("tag " + tag);
+        }
+    }
+
+    private void anchor(String anchor, Object node) {
+        if (anchor != null) {
+            anchors.put(anchor, node);
+        }
+    }
+
+    /**
+     * 按声明的类型转换标量，常见的写法直接解析，其余的（十六进制、下划线分隔、.inf、显式标签等）先按普通方式构造再转换
+     */
+    private Object typed(ScalarEvent event, YamlSchema schema) {
+        String value = event.getValue();
+        String tag = event.getTag();
+        if (tag == null || "!".equals(tag)) {
+            if (event.isPlain() && isNull(value)) {
+                return null;
+            }
+            switch (schema.getKind()) {
+                case STRING:
+                    return value;
+                case INT:
+                    long number = parseDecimal(value);
+                    if (number != NOT_DECIMAL && number == (int) number) {
+                        return (int) number;
+                    }
+                    break;
+                case LONG:
+                    number = parseDecimal(value);
+                    if (number != NOT_DECIMAL) {
+                        return number;
+                    }
+                    break;
+                case DOUBLE:
+                    Double real = parseDouble(value);
+                    if (real != null) {
+                        return real;
+                    }
+                    break;
+                case BOOLEAN:
+                    if ("true".equalsIgnoreCase(value) || "yes".equalsIgnoreCase(value)
+                            || "on".equalsIgnoreCase(value)) {
+                        return Boolean.TRUE;
+                    }
+                    if ("false".equalsIgnoreCase(value) || "no".equalsIgnoreCase(value)
+                            || "off".equalsIgnoreCase(value)) {
+                        return Boolean.FALSE;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        Object generic = scalar(event);
+        if (schema.getKind() == YamlSchema.Kind.LIST || schema.getKind() == YamlSchema.Kind.OBJECT) {
+            if (generic == null) {
+                return null;
+            }
+            throw violation("expected " + schema + " but was " + describe(generic), event.getStartMark());
+        }
+        try {
+            // 复合键只在出错时拼接
+            return YamlBinder.convert(generic, scalarType(schema), scalarType(schema), "", supportEscape);
+        } catch (YamlConversionException e) {
+            throw mismatch(key(), schema, generic, event.getStartMark(), e);
+        }
+    }
+
+    private static boolean isNull(String value) {
+        switch (value) {
+            case "":
+            case "~":
+            case "null":
+            case "Null":
+            case "NULL":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return 不超过18位、没有多余前导0的十进制整数；其余情况返回 {@link #NOT_DECIMAL}，例如以0开头的八进制写法
+     */
+    private static long parseDecimal(String value) {
+        int length = value.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+            negative = value.charAt(0) == '-';
+            i = 1;
+        }
+        if (i == length || length - i > 18 || (value.charAt(i) == '0' && length - i > 1)) {
+            return NOT_DECIMAL;
+        }
+        long result = 0;
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return NOT_DECIMAL;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return negative ? -result : result;
+    }
+
+    /**
+     * @return 只由数字、小数点、符号与指数组成的浮点数，其余情况返回null
+     */
+    private static Double parseDouble(String value) {
+        int length = value.length();
+        if (length == 0 || length > 32) {
+            return null;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if ((c < '0' || c > '9') && c != '.' && c != '-' && c != '+' && c != 'e' && c != 'E') {
+                return null;
+            }
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 与普通读取方式相同的隐式类型推断
+     */
+    private Object scalar(ScalarEvent event) {
+        String value = event.getValue();
+        String explicit = event.getTag();
+        boolean resolved = explicit == null || "!".equals(explicit);
+        Tag tag = resolved ? RESOLVER.resolve(NodeId.scalar, value, event.getImplicit().canOmitTagInPlainScalar())
+                : new Tag(explicit);
+        if (Tag.STR.equals(tag)) {
+            return value;
+        }
+        if (Tag.NULL.equals(tag)) {
+            return null;
+        }
+        if (constructor == null) {
+            constructor = new ScalarConstructor();
+        }
+        return constructor.construct(new ScalarNode(tag, resolved, value, event.getStartMark(), event.getEndMark(),
+                event.getScalarStyle()));
+    }
+
+    /**
+     * 把已经构造好的节点（别名引用的节点或者普通读取方式得到的树）按schema转换与校验
+     */
+    private static Object coerce(Object node, YamlSchema schema, String key, boolean supportEscape) {
+        if (node == null || schema.getKind() == YamlSchema.Kind.ANY) {
+            return node;
+        }
+        if (schema.getKind() == YamlSchema.Kind.LIST) {
+            if (!(node instanceof List)) {
+                throw new YamlSchemaException(key, "expected " + schema + " but was " + describe(node));
+            }
+            List<?> list = (List<?>) node;
+            List<Object> result = new ArrayList<>(list.size());
+            for (int i = 0, size = list.size(); i < size; i++) {
+                result.add(coerce(list.get(i), schema.getElement(),
+                        YamlBinder.child(key, Integer.toString(i), supportEscape), supportEscape));
+            }
+            return result;
+        }
+        if (schema.getKind() != YamlSchema.Kind.OBJECT) {
+            return convert(node, schema, key, supportEscape);
+        }
+        if (!(node instanceof Map)) {
+            throw new YamlSchemaException(key, "expected " + schema + " but was " + describe(node));
+        }
+        Map<Object, Object> result = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) node).entrySet()) {
+            String name = String.valueOf(entry.getKey());
+            YamlSchema.Field field = schema.field(name);
+            String child = YamlBinder.child(key, name, supportEscape);
+            if (field != null) {
+                result.put(name, coerce(entry.getValue(), field.getSchema(), child, supportEscape));
+            } else if (schema.getAdditionalKeys() != null) {
+                result.put(entry.getKey(), coerce(entry.getValue(), schema.getAdditionalKeys(), child, supportEscape));
+            } else {
+                throw new YamlSchemaException(child,
+                        "unknown key, expected one of " + schema.getFields().keySet());
+            }
+        }
+        List<String> missing = missing(schema, result);
+        if (!missing.isEmpty()) {
+            throw new YamlSchemaException(YamlBinder.child(key, missing.get(0), supportEscape),
+                    "missing required key" + (missing.size() > 1 ? "s " + missing : ""));
+        }
+        return result;
+    }
+
+    private static Object convert(Object value, YamlSchema schema, String key, boolean supportEscape) {
+        try {
+            return YamlBinder.convert(value, scalarType(schema), scalarType(schema), key, supportEscape);
+        } catch (YamlConversionException e) {
+            throw mismatch(key, schema, value, null, e);
+        }
+    }
+
+    private static Class<?> scalarType(YamlSchema schema) {
+        switch (schema.getKind()) {
+            case INT:
+                return Integer.class;
+            case LONG:
+                return Long.class;
+            case DOUBLE:
+                return Double.class;
+            case BOOLEAN:
+                return Boolean.class;
+            default:
+                return String.class;
+        }
+    }
+
+    private static YamlSchemaException mismatch(String key, YamlSchema schema, Object value, Mark mark,
+                                                YamlConversionException cause) {
+        return new YamlSchemaException(key, "expected " + schema + " but was " + describe(value) + location(mark),
+                cause);
+    }
+
+    private static String describe(Object node) {
+        if (node instanceof Map) {
+            return "a mapping";
+        }
+        if (node instanceof List) {
+            return "a list";
+        }
+        return "'" + node + "'";
+    }
+
+    private YamlSchemaException violation(String message, Mark mark) {
+        return new YamlSchemaException(key(), message + location(mark));
+    }
+
+    private static String location(Mark mark) {
+        return mark == null ? "" : " (line " + (mark.getLine() + 1) + ", column " + (mark.getColumn() + 1) + ")";
+    }
+
+    private String key() {
+        String key = "";
+        for (Object name : path) {
+            key = YamlBinder.child(key, name instanceof int[] ? Integer.toString(((int[]) name)[0]) : (String) name,
+                    supportEscape);
+        }
+        return key;
+    }
+
+    /**
+     * 其余类型的标量（浮点数、时间戳、二进制、显式标签等）交给SnakeYAML构造，保证与普通读取方式一致
+     */
+    private static final class ScalarConstructor extends Constructor {
+        Object construct(ScalarNode node) {
+            return constructDocument(node);
+        }
+    }
+
+    /**
+     * 无法在解析时处理当前文档，需要退回到普通的读取方式
+     */
+    private static final class Fallback extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Fallback(String reason) {
+            super(reason, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.fidt.yamleditor;
+
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.NodeEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于事件流的按键读取：沿着复合键向下匹配，不相关的子树直接跳过，不构造对象；
+ * 所有目标都找到后立即停止读取。一次读取可以同时查找多个复合键。
+ * 只读取第一个文档。同一Map中出现重复的键时，以第一次出现的为准。
+ *
+ * @Author Sennri
+ */
+final class StreamingLookup {
+    private static final Object MISSING = new Object();
+
+    private final YamlEditor yamlEditor;
+    private final EventNodeBuilder builder;
+    private final Map<String, Object> found = new LinkedHashMap<>();
+    private int remaining;
+
+    private StreamingLookup(YamlEditor yamlEditor, Reader reader) {
+        this.yamlEditor = yamlEditor;
+        this.builder = new EventNodeBuilder(YamlEditor.yaml().parse(reader), new Resolver());
+    }
+
+    /**
+     * @param yamlEditor 用于编译复合键
+     * @param reader     yaml内容
+     * @param keys       待查找的复合键
+     * @return 找到的复合键与值，未找到的键不在结果中
+     */
+    static Map<String, Object> lookup(YamlEditor yamlEditor, Reader reader, Iterable<String> keys) {
+        List<Target> targets = new ArrayList<>();
+        for (String key : keys) {
+            targets.add(new Target(key, yamlEditor.compilePath(key)));
+        }
+        StreamingLookup lookup = new StreamingLookup(yamlEditor, reader);
+        lookup.remaining = targets.size();
+        Event root = lookup.builder.firstDocumentRoot();
+        if (root != null && !targets.isEmpty()) {
+            lookup.visit(root, 0, targets);
+        }
+        return lookup.found;
+    }
+
+    /**
+     * 匹配以first为第一个事件的节点
+     *
+     * @param first   节点的第一个事件
+     * @param depth   当前节点在复合键中的深度
+     * @param targets 前depth段都已匹配、且还需要继续向下的复合键
+     * @return 是否所有复合键都已找到
+     */
+    private boolean visit(Event first, int depth, List<Target> targets) {
+        if (first.is(Event.ID.MappingStart) && !hasAnchor(first)) {
+            return visitMapping(depth, targets);
+        } else if (first.is(Event.ID.SequenceStart) && !hasAnchor(first)) {
+            return visitSequence(depth, targets);
+        }
+        // 标量、别名、带锚点的集合：构造出对象后在内存中继续查找
+        resolveAll(builder.construct(first), depth, targets);
+        return remaining == 0;
+    }
+
+    private boolean visitMapping(int depth, List<Target> targets) {
+        List<Object> merged = null;
+        List<Target> unmatched = new ArrayList<>(targets);
+        Event key;
+        while (!(key = builder.next()).is(Event.ID.MappingEnd)) {
+            if (!key.is(Event.ID.Scalar)) {
+                // 复杂键不可能被复合键匹配
+                builder.skip(key);
+                builder.skip(builder.next());
+                continue;
+            }
+            Event value = builder.next();
+            ScalarEvent scalar = (ScalarEvent) key;
+            List<Target> matched = null;
+            for (Target target : targets) {
+                if (!target.found && target.path.getName(depth).equals(scalar.getValue())) {
+                    if (matched == null) {
+                        matched = new ArrayList<>(2);
+                    }
+                    matched.add(target);
+                }
+            }
+            if (matched != null && Tag.STR.equals(builder.resolveScalarTag(scalar))) {
+                unmatched.removeAll(matched);
+                if (descend(value, depth, matched)) {
+                    return true;
+                }
+            } else if (Tag.MERGE.equals(builder.resolveScalarTag(scalar))) {
+                if (merged == null) {
+                    merged = new ArrayList<>(1);
+                }
+                merged.add(builder.construct(value));
+            } else {
+                builder.skip(value);
+            }
+        }
+        // 显式的键优先于合并键，只在合并进来的Map中查找没有匹配上的复合键
+        if (merged != null && !unmatched.isEmpty()) {
+            for (Object source : merged) {
+                List<Object> maps = new ArrayList<>();
+                if (source instanceof List) {
+                    maps.addAll((List<?>) source);
+                } else {
+                    maps.add(source);
+                }
+                for (Object map : maps) {
+                    resolveAll(map, depth, unmatched);
+                }
+            }
+        }
+        return remaining == 0;
+    }
+
+    private boolean visitSequence(int depth, List<Target> targets) {
+        int index = 0;
+        Event item;
+        while (!(item = builder.next()).is(Event.ID.SequenceEnd)) {
+            List<Target> matched = null;
+            for (Target target : targets) {
+                if (!target.found && target.path.indexOrNegative(depth) == index) {
+                    if (matched == null) {
+                        matched = new ArrayList<>(2);
+                    }
+                    matched.add(target);
+                }
+            }
+            if (matched == null) {
+                builder.skip(item);
+            } else if (descend(item, depth, matched)) {
+                return true;
+            }
+            index++;
+        }
+        return remaining == 0;
+    }
+
+    /**
+     * depth段匹配后，结束于该段的复合键直接取整个子树，其余的继续向下匹配
+     */
+    private boolean descend(Event value, int depth, List<Target> matched) {
+        boolean terminal = false;
+        for (Target target : matched) {
+            if (target.path.size() == depth + 1) {
+                terminal = true;
+                break;
+            }
+        }
+        if (!terminal) {
+            return visit(value, depth + 1, matched);
+        }
+        Object object = builder.construct(value);
+        for (Target target : matched) {
+            if (target.path.size() == depth + 1) {
+                found(target, object);
+            }
+        }
+        resolveAll(object, depth + 1, matched);
+        return remaining == 0;
+    }
+
+    /**
+     * 在已经构造好的对象上查找剩余的各段
+     */
+    private void resolveAll(Object object, int depth, List<Target> targets) {
+        for (Target target : targets) {
+            if (target.found || target.path.size() <= depth || object == null) {
+                continue;
+            }
+            Object value = yamlEditor.getValueOrDefault(target.path.subPath(depth, target.path.size()), object,
+                    MISSING);
+            // 不存在的键，不放入结果
+            if (value != MISSING) {
+                found(target, value);
+            }
+        }
+    }
+
+    private void found(Target target, Object value) {
+        if (!target.found) {
+            target.found = true;
+            found.put(target.key, value);
+            remaining--;
+        }
+    }
+
+    private static boolean hasAnchor(Event event) {
+        return event instanceof NodeEvent && ((NodeEvent) event).getAnchor() != null;
+    }
+
+    private static final class Target {
+        final String key;
+        final YamlPath path;
+        boolean found;
+
+        Target(String key, YamlPath path) {
+            this.key = key;
+            this.path = path;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.fidt.yamleditor;
+
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.emitter.Emitter;
+import org.yaml.snakeyaml.events.*;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流式输出yaml：遍历Map/List树，直接向SnakeYAML的Emitter发送事件。
+ * <p>
+ * {@link Yaml#dump(Object, Writer)} 先把整个文档表示为Node图再输出，峰值内存约为文档本身的两倍；
+ * 这里只为当前的标量创建Node，输出之后即可回收。Map与List的事件按Serializer的规则生成，
+ * 标量仍交给Yaml的Representer表示（决定tag、引号与块样式），因此在相同的DumperOptions下输出与dump逐字节相同，
+ * 被多处引用的Map或List同样输出为锚点与别名。
+ * <p>
+ * 支持的类型为Map、List以及String、Number、Boolean、Character、Date、Enum、byte[]与null。
+ * 文档中含有其他类型（如Set、数组或JavaBean）时整体退回到 {@link Yaml#dump(Object, Writer)}。
+ *
+ * @Author Sennri
+ */
+public final class StreamingYamlWriter {
+    /**
+     * 写出文件时的缓冲区大小（字符），Emitter每次只写出很短的片段
+     */
+    static final int BUFFER_SIZE = 64 * 1024;
+    private static final Resolver RESOLVER = new Resolver();
+
+    private final Emitter emitter;
+    private final DumperOptions options;
+    private final Yaml yaml;
+    /**
+     * 被多处引用的Map与List及其锚点
+     */
+    private final Map<Object, String> anchors;
+    private final Map<Object, Boolean> emitted = new IdentityHashMap<>();
+
+    private StreamingYamlWriter(Writer writer, DumperOptions options, Yaml yaml, Map<Object, String> anchors) {
+        this.emitter = new Emitter(writer, options);
+        this.options = options;
+        this.yaml = yaml;
+        this.anchors = anchors;
+    }
+
+    /**
+     * 以YamlEditor的输出格式写出data，与 {@code yaml().dump(data, writer)} 的结果相同。
+     * Emitter每次只写出很短的片段，writer应当带有缓冲
+     *
+     * @param data   通常为LinkedHashMap
+     * @param writer 输出，写完之后会被flush但不会被关闭
+     */
+    public static void write(Object data, Writer writer) throws IOException {
+        Yaml yaml = YamlEditor.yaml();
+        try {
+            List<Object> shared = sharedNodes(data);
+            if (shared == null) {
+                yaml.dump(data, writer);
+                return;
+            }
+            DumperOptions options = YamlEditor.dumperOptions();
+            // 与Serializer一样从DumperOptions的生成器取锚点名，按第二次遇到的顺序编号
+            Map<Object, String> anchors = new IdentityHashMap<>();
+            for (Object node : shared) {
+                anchors.put(node, options.getAnchorGenerator().nextAnchor(null));
+            }
+            new StreamingYamlWriter(writer, options, yaml, anchors).document(data);
+        } catch (RuntimeException e) {
+            YamlEditor.discardYaml();
+            throw e;
+        }
+    }
+
+    /**
+     * @return data输出为yaml之后的字符串
+     */
+    public static String dump(Object data) {
+        StringWriter writer = new StringWriter();
+        try {
+            write(data, writer);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * @return 被多处引用的Map与List，顺序与Serializer分配锚点的顺序相同；含有不支持的类型时返回null
+     */
+    private static List<Object> sharedNodes(Object data) {
+        List<Object> shared = new ArrayList<>();
+        return scan(data, new IdentityHashMap<>(), shared) ? shared : null;
+    }
+
+    /**
+     * 检查类型，并找出被多处引用的Map与List
+     *
+     * @return 是否全部是支持的类型
+     */
+    private static boolean scan(Object node, Map<Object, Boolean> seen, List<Object> shared) {
+        if (node instanceof Map || node instanceof List) {
+            Boolean repeated = seen.get(node);
+            if (repeated != null) {
+                if (!repeated) {
+                    seen.put(node, Boolean.TRUE);
+                    shared.add(node);
+                }
+                return true;
+            }
+            seen.put(node, Boolean.FALSE);
+            if (node instanceof Map) {
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) node).entrySet()) {
+                    if (!scan(entry.getKey(), seen, shared) || !scan(entry.getValue(), seen, shared)) {
+                        return false;
+                    }
+                }
+            } else {
+                for (Object item : (List<?>) node) {
+                    if (!scan(item, seen, shared)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return node == null || node instanceof String || node instanceof Number || node instanceof Boolean
+                || node instanceof Character || node instanceof Date || node instanceof Enum
+                || node instanceof byte[];
+    }
+
+    private void document(Object data) throws IOException {
+        emitter.emit(new StreamStartEvent(null, null));
+        emitter.emit(new DocumentStartEvent(null, null, options.isExplicitStart(), options.getVersion(),
+                options.getTags()));
+        node(data);
+        emitter.emit(new DocumentEndEvent(null, null, options.isExplicitEnd()));
+        emitter.emit(new StreamEndEvent(null, null));
+    }
+
+    private void node(Object node) throws IOException {
+        if (node instanceof Map || node instanceof List) {
+            String anchor = anchors.get(node);
+            if (anchor != null && emitted.put(node, Boolean.TRUE) != null) {
+                emitter.emit(new AliasEvent(anchor, null, null));
+                return;
+            }
+            if (node instanceof Map) {
+                emitter.emit(new MappingStartEvent(anchor, Tag.MAP.getValue(), true, null, null,
+                        options.getDefaultFlowStyle()));
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) node).entrySet()) {
+                    node(entry.getKey());
+                    node(entry.getValue());
+                }
+                emitter.emit(new MappingEndEvent(null, null));
+            } else {
+                emitter.emit(new SequenceStartEvent(anchor, Tag.SEQ.getValue(), true, null, null,
+                        options.getDefaultFlowStyle()));
+                for (Object item : (List<?>) node) {
+                    node(item);
+                }
+                emitter.emit(new SequenceEndEvent(null, null));
+            }
+            return;
+        }
+        scalar((ScalarNode) yaml.represent(node));
+    }
+
+    /**
+     * 与Serializer相同：tag能够由值推断出来时省略
+     */
+    private void scalar(ScalarNode node) throws IOException {
+        Tag tag = node.getTag();
+        String value = node.getValue();
+        ImplicitTuple implicit = new ImplicitTuple(tag.equals(RESOLVER.resolve(NodeId.scalar, value, true)),
+                tag.equals(RESOLVER.resolve(NodeId.scalar, value, false)));
+        emitter.emit(new ScalarEvent(null, tag.getValue(), implicit, value, null, null, node.getScalarStyle()));
+    }
+}
@@ -0,0 +1,267 @@
+package com.fidt.yamleditor;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * 文档的一个版本上的类型化读取：每个复合键在每种类型下只查找、转换一次，之后直接返回缓存的结果。
+ * <pre>
+ *     TypedYamlView view = versionedDocument.snapshot().typed();
+ *     int port = view.getInt("Service.port");
+ *     Duration timeout = view.getDuration("Service.timeout", Duration.ofSeconds(5));
+ *     List&lt;String&gt; hosts = view.getList("Service.hosts", String.class);
+ *     ServiceConfig config = view.get("Service", ServiceConfig.class);
+ * </pre>
+ * 转换规则见 {@link YamlBinder}，失败时抛出带有完整复合键的 {@link YamlConversionException}；失败的结果与不存在的复合键不会被缓存。
+ * 缓存按最近使用的顺序最多保留capacity个结果，以任意复合键反复查询也不会无限增长。
+ * <p>
+ * 视图假定文档不再被修改：{@link VersionedYamlDocument.Snapshot#typed()} 的每个版本各自持有一个视图，
+ * 直接包装可修改的Map时，修改之后应当创建新的视图。返回的List与Map不可修改，绑定得到的对象在调用方之间共享，不应修改。
+ * 该类是线程安全的。
+ *
+ * @Author Sennri
+ */
+public final class TypedYamlView {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * 复合键不存在
+     */
+    private static final Object MISSING = new Object();
+    /**
+     * 缓存的值为null，与cache.get(key)返回null表示的“没有缓存”区分开
+     */
+    private static final Object NULL = new Object();
+
+    private final Object root;
+    private final YamlEditor yamlEditor;
+    private final int capacity;
+    private final LinkedHashMap<Key, Object> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    public TypedYamlView(Object root) {
+        this(root, YamlEditor.shared(false));
+    }
+
+    /**
+     * @param root       文档，之后不应再被修改
+     * @param yamlEditor 决定复合键的拆分模式
+     */
+    public TypedYamlView(Object root, YamlEditor yamlEditor) {
+        this(root, yamlEditor, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity 最多缓存的转换结果数，超出时淘汰最久没有使用的结果
+     */
+    public TypedYamlView(Object root, YamlEditor yamlEditor, int capacity) {
+        if (root == null) {
+            throw new NullPointerException();
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.root = root;
+        this.yamlEditor = yamlEditor;
+        this.capacity = capacity;
+    }
+
+    public Object getRoot() {
+        return root;
+    }
+
+    public int getInt(String compositeKey) {
+        return (Integer) require(compositeKey, int.class);
+    }
+
+    public int getInt(String compositeKey, int defaultValue) {
+        Object value = lookup(compositeKey, int.class, false);
+        return value == MISSING || value == NULL ? defaultValue : (Integer) value;
+    }
+
+    public long getLong(String compositeKey) {
+        return (Long) require(compositeKey, long.class);
+    }
+
+    public long getLong(String compositeKey, long defaultValue) {
+        Object value = lookup(compositeKey, long.class, false);
+        return value == MISSING || value == NULL ? defaultValue : (Long) value;
+    }
+
+    public double getDouble(String compositeKey) {
+        return (Double) require(compositeKey, double.class);
+    }
+
+    public double getDouble(String compositeKey, double defaultValue) {
+        Object value = lookup(compositeKey, double.class, false);
+        return value == MISSING || value == NULL ? defaultValue : (Double) value;
+    }
+
+    public boolean getBoolean(String compositeKey) {
+        return (Boolean) require(compositeKey, boolean.class);
+    }
+
+    public boolean getBoolean(String compositeKey, boolean defaultValue) {
+        Object value = lookup(compositeKey, boolean.class, false);
+        return value == MISSING || value == NULL ? defaultValue : (Boolean) value;
+    }
+
+    /**
+     * @return 数字与布尔值转换为字符串；值为null时返回null
+     */
+    public String getString(String compositeKey) {
+        return get(compositeKey, String.class);
+    }
+
+    public String getString(String compositeKey, String defaultValue) {
+        return get(compositeKey, String.class, defaultValue);
+    }
+
+    public Duration getDuration(String compositeKey) {
+        return get(compositeKey, Duration.class);
+    }
+
+    public Duration getDuration(String compositeKey, Duration defaultValue) {
+        return get(compositeKey, Duration.class, defaultValue);
+    }
+
+    /**
+     * @param elementType 元素的类型
+     * @return 不可修改的List
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> getList(String compositeKey, Class<T> elementType) {
+        Object value = lookup(compositeKey, elementType, true);
+        if (value == MISSING) {
+            throw missing(compositeKey);
+        }
+        return value == NULL ? null : (List<T>) value;
+    }
+
+    /**
+     * 获取任意类型的值，也用于把子树绑定为对象
+     *
+     * @param type 目标类型，支持的类型见 {@link YamlBinder}
+     * @return 转换后的值，值为null时返回null
+     * @throws IllegalArgumentException 复合键不存在
+     * @throws YamlConversionException  无法转换
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String compositeKey, Class<T> type) {
+        Object value = require(compositeKey, type);
+        return value == NULL ? null : (T) value;
+    }
+
+    /**
+     * @return 转换后的值，复合键不存在或值为null时返回defaultValue
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String compositeKey, Class<T> type, T defaultValue) {
+        Object value = lookup(compositeKey, type, false);
+        return value == MISSING || value == NULL ? defaultValue : (T) value;
+    }
+
+    private Object require(String compositeKey, Class<?> type) {
+        Object value = lookup(compositeKey, type, false);
+        if (value == MISSING) {
+            throw missing(compositeKey);
+        }
+        if (value == NULL && type.isPrimitive()) {
+            throw new YamlConversionException(compositeKey, type, null, "value is null");
+        }
+        return value;
+    }
+
+    private static IllegalArgumentException missing(String compositeKey) {
+        return new IllegalArgumentException("Composite key " + compositeKey + " does not exist.");
+    }
+
+    /**
+     * @param list 是否把值作为元素类型为type的List转换
+     * @return 缓存的结果，或者 {@link #MISSING}、{@link #NULL}
+     */
+    private Object lookup(String compositeKey, Class<?> type, boolean list) {
+        Key key = new Key(compositeKey, type, list);
+        Object cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (cached != null) {
+            return cached;
+        }
+        Object raw = yamlEditor.getValueOrDefault(compositeKey, root, MISSING);
+        if (raw == MISSING) {
+            return MISSING;
+        }
+        boolean supportEscape = yamlEditor.isSupportEscape();
+        if (raw == null) {
+            cached = NULL;
+        } else if (list) {
+            cached = YamlBinder.bindList(raw, type, compositeKey, supportEscape);
+        } else {
+            cached = YamlBinder.convert(raw, type, type, compositeKey, supportEscape);
+        }
+        synchronized (cache) {
+            Object existing = cache.putIfAbsent(key, cached);
+            if (existing != null) {
+                return existing;
+            }
+            if (cache.size() > capacity) {
+                Iterator<Object> eldest = cache.values().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        return cached;
+    }
+
+    /**
+     * @return 当前缓存的转换结果数
+     */
+    int cachedCount() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TypedYamlView{cached=" + cachedCount() + '}';
+    }
+
+    /**
+     * 缓存的键：复合键、目标类型以及是否按List转换
+     */
+    private static final class Key {
+        private final String compositeKey;
+        private final Class<?> type;
+        private final boolean list;
+        private final int hash;
+
+        Key(String compositeKey, Class<?> type, boolean list) {
+            this.compositeKey = compositeKey;
+            this.type = type;
+            this.list = list;
+            // 每次查找都会创建Key，在这里直接计算，不经过Objects.hash的可变参数数组与装箱
+            this.hash = (compositeKey.hashCode() * 31 + type.hashCode()) * 31 + (list ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) o;
+            return list == that.list && type == that.type && compositeKey.equals(that.compositeKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.fidt.yamleditor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * 基于写时复制的多版本yaml文档，读取不加锁。
+ * 每个版本都是一棵不可修改的树（{@link Snapshot}），通过AtomicReference发布：
+ * <pre>
+ *     VersionedYamlDocument document = new VersionedYamlDocument(map, 8);
+ *     VersionedYamlDocument.Snapshot snapshot = document.snapshot();   // 读线程，之后的修改对该快照不可见
+ *     document.setValue("Service.port", 8081);                         // 写线程，生成新的版本
+ *     document.rollback();                                             // 回到上一个版本
+ * </pre>
+ * 修改时只复制从根节点到被修改节点的路径上的Map与List，其余子树在新旧版本之间共享，
+ * 再以CAS发布新版本；并发的写入发生冲突时基于最新版本重新执行，不会丢失修改。
+ * 写入的值会先被深拷贝，之后修改原来的值不影响文档。
+ * 与直接修改Map不同，锚点与别名共享的子树在其中一处被修改后不再共享。
+ * <p>
+ * 没有被引用的旧版本可以被GC回收；historySize大于0时额外保留最近的若干个版本，用于 {@link #rollback()}。
+ *
+ * @Author Sennri
+ */
+public final class VersionedYamlDocument {
+    private static final Snapshot[] NO_HISTORY = new Snapshot[0];
+
+    private final YamlEditor yamlEditor;
+    private final int historySize;
+    private final AtomicReference<State> state;
+
+    public VersionedYamlDocument(Map<String, Object> document) {
+        this(document, 0);
+    }
+
+    public VersionedYamlDocument(Map<String, Object> document, int historySize) {
+        this(document, historySize, YamlEditor.shared(false));
+    }
+
+    /**
+     * @param document    初始内容，会被深拷贝
+     * @param historySize 保留的历史版本数
+     * @param yamlEditor  决定复合键的拆分模式
+     */
+    @SuppressWarnings("unchecked")
+    public VersionedYamlDocument(Map<String, Object> document, int historySize, YamlEditor yamlEditor) {
+        if (historySize < 0) {
+            throw new IllegalArgumentException("History size must not be negative.");
+        }
+        this.yamlEditor = yamlEditor;
+        this.historySize = historySize;
+        Map<String, Object> root = (Map<String, Object>) YamlTrees.readOnly(YamlTrees.deepCopy(document), null);
+        this.state = new AtomicReference<>(new State(new Snapshot(0, root, yamlEditor), NO_HISTORY, 0));
+    }
+
+    /**
+     * @return 当前版本
+     */
+    public Snapshot snapshot() {
+        return state.get().current;
+    }
+
+    public Object getValue(String compositeKey) throws IllegalArgumentException {
+        return snapshot().getValue(compositeKey);
+    }
+
+    /**
+     * @return 当前版本的类型化视图
+     * @see Snapshot#typed()
+     */
+    public TypedYamlView typed() {
+        return snapshot().typed();
+    }
+
+    public Snapshot setValue(String compositeKey, Object value) {
+        return apply(Collections.singletonList(EditOperation.set(compositeKey, value)));
+    }
+
+    public Snapshot insertValueToObject(String compositeKey, Object value) {
+        return apply(Collections.singletonList(EditOperation.insert(compositeKey, value)));
+    }
+
+    public Snapshot removeListOrMapContent(String compositeKey) {
+        return apply(Collections.singletonList(EditOperation.remove(compositeKey)));
+    }
+
+    /**
+     * 把一组编辑作为一个版本原子地发布，其中任一编辑失败时不产生新版本
+     *
+     * @param operations 编辑
+     * @return 新版本
+     */
+    public Snapshot apply(List<EditOperation> operations) {
+        List<EditOperation> copied = new ArrayList<>(operations.size());
+        for (EditOperation operation : operations) {
+            // 冲突重试时复用同一份拷贝
+            Object value = operation.getType() == EditOperation.Type.REMOVE ? null
+                    : YamlTrees.readOnly(YamlTrees.deepCopy(operation.getValue()), null);
+            copied.add(EditOperation.of(operation.getType(), operation.getCompositeKey(), value));
+        }
+        return update(snapshot -> copied);
+    }
+
+    /**
+     * 基于当前版本计算编辑并发布，用于依赖当前值的修改（如计数）。
+     * 发生冲突时会基于最新版本再次调用edits，因此edits不应有副作用。
+     *
+     * @param edits 根据当前版本给出要执行的编辑
+     * @return 新版本
+     */
+    public Snapshot update(Function<Snapshot, List<EditOperation>> edits) {
+        while (true) {
+            State current = state.get();
+            Map<String, Object> root = edit(current.current.root, edits.apply(current.current));
+            State next = current.advance(root, historySize, yamlEditor);
+            if (state.compareAndSet(current, next)) {
+                return next.current;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> edit(Map<String, Object> base, List<EditOperation> operations) {
+        // 本次编辑中复制出来的节点，可以直接修改
+        IdentityHashMap<Object, Boolean> copies = new IdentityHashMap<>();
+        Map<String, Object> root = new LinkedHashMap<>(base);
+        copies.put(root, Boolean.TRUE);
+        for (EditOperation operation : operations) {
+            YamlPath path = yamlEditor.compilePath(operation.getCompositeKey());
+            copyPath(root, path, copies);
+            Object value = operation.getValue();
+            if (!YamlTrees.isReadOnly(value)) {
+                value = YamlTrees.readOnly(YamlTrees.deepCopy(value), null);
+            }
+            EditOperation.of(operation.getType(), operation.getCompositeKey(), value).applyTo(yamlEditor, root);
+        }
+        return (Map<String, Object>) YamlTrees.readOnly(root, null);
+    }
+
+    /**
+     * 复制path的父节点路径上已经存在的Map与List
+     */
+    @SuppressWarnings("unchecked")
+    private static void copyPath(Object root, YamlPath path, IdentityHashMap<Object, Boolean> copies) {
+        Object node = root;
+        for (int i = 0, last = path.size() - 1; i < last; i++) {
+            Object child;
+            if (node instanceof Map) {
+                Map<String, Object> map = (Map<String, Object>) node;
+                String name = path.getName(i);
+                if (!map.containsKey(name)) {
+                    return;
+                }
+                child = map.get(name);
+                if ((child instanceof Map || child instanceof List) && !copies.containsKey(child)) {
+                    child = copy(child, copies);
+                    map.put(name, child);
+                }
+            } else if (node instanceof List) {
+                List<Object> list = (List<Object>) node;
+                int index = path.indexOrNegative(i);
+                if (index < 0 || index >= list.size()) {
+                    return;
+                }
+                child = list.get(index);
+                if ((child instanceof Map || child instanceof List) && !copies.containsKey(child)) {
+                    child = copy(child, copies);
+                    list.set(index, child);
+                }
+            } else {
+                return;
+            }
+            node = child;
+        }
+    }
+
+    private static Object copy(Object node, IdentityHashMap<Object, Boolean> copies) {
+        Object copy = node instanceof Map ? new LinkedHashMap<>((Map<?, ?>) node) : new ArrayList<>((List<?>) node);
+        copies.put(copy, Boolean.TRUE);
+        return copy;
+    }
+
+    /**
+     * @return 保留的历史版本，从新到旧
+     */
+    public List<Snapshot> history() {
+        return Collections.unmodifiableList(Arrays.asList(state.get().history));
+    }
+
+    /**
+     * 回到上一个版本，当前版本被丢弃
+     *
+     * @return 恢复的版本
+     * @throws IllegalStateException 没有保留的历史版本
+     */
+    public Snapshot rollback() throws IllegalStateException {
+        while (true) {
+            State current = state.get();
+            if (current.history.length == 0) {
+                throw new IllegalStateException("No history to roll back to.");
+            }
+            if (state.compareAndSet(current, current.restore(0))) {
+                return current.history[0];
+            }
+        }
+    }
+
+    /**
+     * 回到指定的历史版本，比它新的版本都被丢弃
+     *
+     * @param version 版本号
+     * @return 恢复的版本
+     * @throws IllegalArgumentException 该版本不在保留的历史中
+     */
+    public Snapshot rollbackTo(long version) throws IllegalArgumentException {
+        while (true) {
+            State current = state.get();
+            if (current.current.version == version) {
+                return current.current;
+            }
+            int index = -1;
+            for (int i = 0; i < current.history.length; i++) {
+                if (current.history[i].version == version) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index < 0) {
+                throw new IllegalArgumentException("Version " + version + " is not in the history.");
+            }
+            if (state.compareAndSet(current, current.restore(index))) {
+                return current.history[index];
+            }
+        }
+    }
+
+    /**
+     * 文档的一个版本，不可修改，可以在任意线程中读取
+     */
+    public static final class Snapshot {
+        private final long version;
+        private final Map<String, Object> root;
+        private final YamlEditor yamlEditor;
+        private volatile TypedYamlView typed;
+
+        private Snapshot(long version, Map<String, Object> root, YamlEditor yamlEditor) {
+            this.version = version;
+            this.root = root;
+            this.yamlEditor = yamlEditor;
+        }
+
+        /**
+         * @return 版本号，初始为0，每次修改加1；回滚之后的修改继续使用更大的版本号
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * @return 不可修改的根节点
+         */
+        public Map<String, Object> getRoot() {
+            return root;
+        }
+
+        public Object getValue(String compositeKey) throws IllegalArgumentException {
+            return yamlEditor.getValue(compositeKey, root);
+        }
+
+        public Object getValue(YamlPath path) throws IllegalArgumentException {
+            return yamlEditor.getValue(path, root);
+        }
+
+        /**
+         * @return 该版本的类型化视图，转换结果在该版本的所有读者之间共享，新版本重新转换
+         */
+        public TypedYamlView typed() {
+            TypedYamlView view = typed;
+            if (view == null) {
+                // 并发时可能创建多个视图，只是多做几次转换
+                view = new TypedYamlView(root, yamlEditor);
+                typed = view;
+            }
+            return view;
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot{version=" + version + ", root=" + root + '}';
+        }
+    }
+
+    /**
+     * 当前版本与历史版本，整体通过CAS替换。
+     * 历史版本只由State引用，Snapshot之间没有引用，超出historySize的版本可以被回收
+     */
+    private static final class State {
+        final Snapshot current;
+        /**
+         * 从新到旧
+         */
+        final Snapshot[] history;
+        /**
+         * 已经分配过的最大版本号
+         */
+        final long lastVersion;
+
+        State(Snapshot current, Snapshot[] history, long lastVersion) {
+            this.current = current;
+            this.history = history;
+            this.lastVersion = lastVersion;
+        }
+
+        State advance(Map<String, Object> root, int historySize, YamlEditor yamlEditor) {
+            Snapshot[] kept = NO_HISTORY;
+            if (historySize > 0) {
+                kept = new Snapshot[Math.min(historySize, history.length + 1)];
+                kept[0] = current;
+                System.arraycopy(history, 0, kept, 1, kept.length - 1);
+            }
+            return new State(new Snapshot(lastVersion + 1, root, yamlEditor), kept, lastVersion + 1);
+        }
+
+        State restore(int index) {
+            return new State(history[index], Arrays.copyOfRange(history, index + 1, history.length), lastVersion);
+        }
+    }
+}
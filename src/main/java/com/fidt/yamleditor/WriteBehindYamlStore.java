@@ -0,0 +1,474 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * 延迟写回的yaml文件存储：编辑立即作用于内存中的文档，文件由后台线程合并写出。
+ * <pre>
+ *     try (WriteBehindYamlStore store = new WriteBehindYamlStore(yamlEditor, 1, TimeUnit.SECONDS)
+ *             .maxEditsPerFlush(100)) {
+ *         store.updateYaml("Service.port", 8081, path);     // 不写文件
+ *         store.insertYaml("Service.hosts.0", "a", path);
+ *     }                                                     // close时写出所有未写出的修改
+ * </pre>
+ * 文档在第一次访问时读入并一直保留在内存中，之后以内存中的内容为准，不再读取文件；其他进程对文件的修改会被覆盖。
+ * 一个文档变脏之后经过flushInterval写出，期间的编辑合并为一次写出，因此同一文档在一个间隔内最多写出一次；
+ * 累计的编辑数达到maxEditsPerFlush时不再等待，立即写出。写出时先在锁内拷贝文档，写文件期间编辑不被阻塞。
+ * <p>
+ * 同时处于未写出状态的文档数不超过maxDirtyDocuments，超过时使新文档变脏的编辑阻塞，直到有文档写出（背压）。
+ * 后台写出失败时记录日志，文档保持为脏，在下一个间隔重试；{@link #flush()} 则把异常抛给调用方。
+ * 写出的统计见 {@link #getMetrics()}。
+ *
+ * @Author Sennri
+ */
+@Slf4j
+public class WriteBehindYamlStore implements Closeable {
+    private final YamlEditor yamlEditor;
+    private final long flushIntervalNanos;
+    private final Map<Path, Document> documents = new ConcurrentHashMap<>();
+    private final ScheduledThreadPoolExecutor scheduler;
+    private int maxEditsPerFlush = Integer.MAX_VALUE;
+    private Semaphore dirtySlots = new Semaphore(Integer.MAX_VALUE);
+    private FsyncPolicy fsyncPolicy = FsyncPolicy.NONE;
+    private volatile boolean closed;
+
+    private final AtomicLong edits = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private final AtomicLong flushedEdits = new AtomicLong();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+
+    /**
+     * @param yamlEditor    决定复合键的拆分模式
+     * @param flushInterval 同一文档两次写出之间的最短间隔
+     * @param unit          间隔的单位
+     */
+    public WriteBehindYamlStore(YamlEditor yamlEditor, long flushInterval, TimeUnit unit) {
+        if (flushInterval < 0) {
+            throw new IllegalArgumentException("Flush interval must not be negative.");
+        }
+        this.yamlEditor = yamlEditor;
+        this.flushIntervalNanos = unit.toNanos(flushInterval);
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "yaml-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * @param maxEditsPerFlush 一个文档累计的编辑数达到该值时立即写出，不等待间隔；默认不限制
+     */
+    public WriteBehindYamlStore maxEditsPerFlush(int maxEditsPerFlush) {
+        if (maxEditsPerFlush <= 0) {
+            throw new IllegalArgumentException("Max edits per flush must be positive.");
+        }
+        checkUnused();
+        this.maxEditsPerFlush = maxEditsPerFlush;
+        return this;
+    }
+
+    /**
+     * @param maxDirtyDocuments 同时处于未写出状态的文档数上限；默认不限制
+     */
+    public WriteBehindYamlStore maxDirtyDocuments(int maxDirtyDocuments) {
+        if (maxDirtyDocuments <= 0) {
+            throw new IllegalArgumentException("Max dirty documents must be positive.");
+        }
+        checkUnused();
+        this.dirtySlots = new Semaphore(maxDirtyDocuments);
+        return this;
+    }
+
+    /**
+     * @param fsyncPolicy 原子写出时的落盘策略，默认 {@link FsyncPolicy#NONE}
+     */
+    public WriteBehindYamlStore writeAtomically(FsyncPolicy fsyncPolicy) {
+        checkUnused();
+        this.fsyncPolicy = Objects.requireNonNull(fsyncPolicy);
+        return this;
+    }
+
+    /**
+     * 注册一个JVM关闭钩子，在进程退出前调用 {@link #close()}
+     */
+    public WriteBehindYamlStore closeOnShutdown() {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                close();
+            } catch (IOException e) {
+                log.error("Failed to flush yaml documents on shutdown.", e);
+            }
+        }, "yaml-write-behind-shutdown"));
+        return this;
+    }
+
+    private void checkUnused() {
+        if (!documents.isEmpty()) {
+            throw new IllegalStateException("Store is already in use.");
+        }
+    }
+
+    public Object getValue(String compositeKey, Path path) throws IOException, IllegalArgumentException {
+        Document document = document(path);
+        YamlPath yamlPath = yamlEditor.compilePath(compositeKey);
+        synchronized (document) {
+            return YamlTrees.deepCopy(yamlEditor.getValue(yamlPath, document.content));
+        }
+    }
+
+    /**
+     * 语义同 {@link YamlEditor#updateYaml(String, Object, String)}：键必须存在，新旧值相同时不产生编辑
+     */
+    public void updateYaml(String compositeKey, Object value, Path path) throws IOException {
+        YamlPath yamlPath = yamlEditor.compilePath(compositeKey);
+        Object copy = YamlTrees.deepCopy(value);
+        edit(path, content -> {
+            if (Objects.equals(copy, yamlEditor.getValue(yamlPath, content))) {
+                return false;
+            }
+            yamlEditor.setValue(yamlPath, copy, content);
+            return true;
+        });
+    }
+
+    /**
+     * 语义同 {@link YamlEditor#insertYaml(String, Object, String)}
+     */
+    public void insertYaml(String compositeKey, Object value, Path path) throws IOException {
+        apply(Collections.singletonList(EditOperation.insert(compositeKey, value)), path);
+    }
+
+    public void removeYamlContent(String compositeKey, Path path) throws IOException {
+        apply(Collections.singletonList(EditOperation.remove(compositeKey)), path);
+    }
+
+    /**
+     * 依次执行一组编辑，计为一次编辑。任一编辑失败时撤销已经执行的编辑，文档保持原样，异常抛给调用方
+     */
+    public void apply(List<EditOperation> operations, Path path) throws IOException {
+        List<EditOperation> copied = new ArrayList<>(operations.size());
+        for (EditOperation operation : operations) {
+            copied.add(operation.deepCopy());
+        }
+        edit(path, content -> {
+            YamlUndoLog undoLog = new YamlUndoLog();
+            try {
+                for (EditOperation operation : copied) {
+                    undoLog.record(yamlEditor.compilePath(operation.getCompositeKey()), content);
+                    operation.applyTo(yamlEditor, content);
+                }
+            } catch (RuntimeException e) {
+                undoLog.rollback();
+                throw e;
+            }
+            return true;
+        });
+    }
+
+    private void edit(Path path, Predicate<Map<String, Object>> action) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Store is closed.");
+        }
+        Document document = document(path);
+        boolean slot = false;
+        try {
+            while (true) {
+                if (!slot && !document.dirty) {
+                    // 在锁外等待，写出线程需要获取文档的锁
+                    dirtySlots.acquire();
+                    slot = true;
+                }
+                synchronized (document) {
+                    if (!document.dirty && !slot) {
+                        // 等待期间文档被写出
+                        continue;
+                    }
+                    if (!action.test(document.content)) {
+                        return;
+                    }
+                    edits.incrementAndGet();
+                    document.pendingEdits++;
+                    if (!document.dirty) {
+                        document.dirty = true;
+                        slot = false;
+                        schedule(document, document.pendingEdits >= maxEditsPerFlush ? 0 : flushIntervalNanos);
+                    } else if (document.pendingEdits >= maxEditsPerFlush && !document.flushRequested) {
+                        schedule(document, 0);
+                    }
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a dirty document to be flushed.");
+        } finally {
+            if (slot) {
+                dirtySlots.release();
+            }
+        }
+    }
+
+    /**
+     * 调用时持有document的锁
+     */
+    private void schedule(Document document, long delayNanos) {
+        if (closed) {
+            // close时统一写出
+            return;
+        }
+        if (document.scheduled != null) {
+            document.scheduled.cancel(false);
+        }
+        document.flushRequested = delayNanos == 0;
+        document.scheduled = scheduler.schedule(() -> {
+            try {
+                flush(document);
+            } catch (IOException | RuntimeException e) {
+                log.error("Failed to flush {}, will retry later.", document.path, e);
+            }
+        }, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Document document(Path path) throws IOException {
+        Path key = path.toAbsolutePath().normalize();
+        try {
+            return documents.computeIfAbsent(key, p -> {
+                try {
+                    return new Document(p, YamlEditor.getMapFromYaml(p));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 立即写出所有未写出的文档
+     *
+     * @throws IOException 第一个写出失败的文档的异常，其余异常作为suppressed附加
+     */
+    public void flush() throws IOException {
+        IOException failure = null;
+        for (Document document : new ArrayList<>(documents.values())) {
+            try {
+                flush(document);
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * 立即写出一个文档
+     */
+    public void flush(Path path) throws IOException {
+        Document document = documents.get(path.toAbsolutePath().normalize());
+        if (document != null) {
+            flush(document);
+        }
+    }
+
+    private void flush(Document document) throws IOException {
+        // 保证同一文档的写出按拷贝的先后顺序进行
+        synchronized (document.flushLock) {
+            Map<String, Object> snapshot;
+            long pending;
+            synchronized (document) {
+                if (!document.dirty) {
+                    return;
+                }
+                if (document.scheduled != null) {
+                    document.scheduled.cancel(false);
+                    document.scheduled = null;
+                }
+                snapshot = YamlTrees.deepCopyMap(document.content);
+                pending = document.pendingEdits;
+            }
+            long start = System.nanoTime();
+            try {
+                write(snapshot, document.path);
+            } catch (IOException | RuntimeException e) {
+                failedFlushes.incrementAndGet();
+                synchronized (document) {
+                    schedule(document, flushIntervalNanos);
+                }
+                throw e;
+            }
+            long elapsed = System.nanoTime() - start;
+            flushes.incrementAndGet();
+            flushedEdits.addAndGet(pending);
+            totalFlushNanos.addAndGet(elapsed);
+            maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+            synchronized (document) {
+                document.pendingEdits -= pending;
+                if (document.pendingEdits == 0) {
+                    document.dirty = false;
+                    document.flushRequested = false;
+                    dirtySlots.release();
+                } else {
+                    // 拷贝之后又有新的编辑
+                    schedule(document, document.pendingEdits >= maxEditsPerFlush ? 0 : flushIntervalNanos);
+                }
+            }
+        }
+    }
+
+    private void write(Map<String, Object> snapshot, Path path) throws IOException {
+        YamlEditor.dumpMapToYamlAtomically(snapshot, path, fsyncPolicy);
+    }
+
+    /**
+     * 停止后台线程并写出所有未写出的文档，之后不能再编辑
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        scheduler.shutdownNow();
+        try {
+            if (!scheduler.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("Background flush did not finish in time.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    public Metrics getMetrics() {
+        int dirty = 0;
+        for (Document document : documents.values()) {
+            if (document.dirty) {
+                dirty++;
+            }
+        }
+        return new Metrics(edits.get(), flushes.get(), failedFlushes.get(), flushedEdits.get(),
+                totalFlushNanos.get(), maxFlushNanos.get(), dirty);
+    }
+
+    private static final class Document {
+        final Path path;
+        final Map<String, Object> content;
+        final Object flushLock = new Object();
+        /**
+         * 以下字段在持有document的锁时修改；dirty在锁外也会被读取，用于判断是否需要等待背压
+         */
+        volatile boolean dirty;
+        long pendingEdits;
+        boolean flushRequested;
+        ScheduledFuture<?> scheduled;
+
+        Document(Path path, Map<String, Object> content) {
+            this.path = path;
+            this.content = content;
+        }
+    }
+
+    /**
+     * 写出的统计，不可变
+     */
+    public static final class Metrics {
+        private final long edits;
+        private final long flushes;
+        private final long failedFlushes;
+        private final long flushedEdits;
+        private final long totalFlushNanos;
+        private final long maxFlushNanos;
+        private final int dirtyDocuments;
+
+        Metrics(long edits, long flushes, long failedFlushes, long flushedEdits, long totalFlushNanos,
+                long maxFlushNanos, int dirtyDocuments) {
+            this.edits = edits;
+            this.flushes = flushes;
+            this.failedFlushes = failedFlushes;
+            this.flushedEdits = flushedEdits;
+            this.totalFlushNanos = totalFlushNanos;
+            this.maxFlushNanos = maxFlushNanos;
+            this.dirtyDocuments = dirtyDocuments;
+        }
+
+        /**
+         * @return 产生了修改的编辑数
+         */
+        public long getEdits() {
+            return edits;
+        }
+
+        /**
+         * @return 成功的写出次数
+         */
+        public long getFlushes() {
+            return flushes;
+        }
+
+        public long getFailedFlushes() {
+            return failedFlushes;
+        }
+
+        /**
+         * @return 已经写出的编辑数
+         */
+        public long getFlushedEdits() {
+            return flushedEdits;
+        }
+
+        /**
+         * @return 平均每次写出合并的编辑数
+         */
+        public double getCoalescingRatio() {
+            return flushes == 0 ? 0 : (double) flushedEdits / flushes;
+        }
+
+        public long getMeanFlushNanos() {
+            return flushes == 0 ? 0 : totalFlushNanos / flushes;
+        }
+
+        public long getMaxFlushNanos() {
+            return maxFlushNanos;
+        }
+
+        public int getDirtyDocuments() {
+            return dirtyDocuments;
+        }
+
+        @Override
+        public String toString() {
+            return "Metrics{edits=" + edits + ", flushes=" + flushes + ", failedFlushes=" + failedFlushes
+                    + ", coalescingRatio=" + String.format("%.2f", getCoalescingRatio())
+                    + ", meanFlushMicros=" + getMeanFlushNanos() / 1000 + ", maxFlushMicros=" + maxFlushNanos / 1000
+                    + ", dirtyDocuments=" + dirtyDocuments + '}';
+        }
+    }
+}
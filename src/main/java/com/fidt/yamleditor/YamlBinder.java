@@ -0,0 +1,534 @@
+package com.fidt.yamleditor;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 把yaml中的值转换为Java类型，或者把一棵子树绑定到对象上。
+ * <pre>
+ *     ServiceConfig config = YamlBinder.bind(yamlEditor.getValue("Service", map), ServiceConfig.class, "Service");
+ * </pre>
+ * 支持的类型：
+ * <ul>
+ *     <li>String、基本类型及其包装类、BigInteger、BigDecimal：数字与字符串之间互相转换，整数超出范围或带有小数时报错</li>
+ *     <li>boolean：还接受字符串 true/false/yes/no/on/off</li>
+ *     <li>Duration：整数表示毫秒；字符串为ISO-8601（PT5S）或带单位的整数（500ms、5s、10m、2h、1d）</li>
+ *     <li>枚举：名称，也接受小写以及以'-'代替'_'的写法</li>
+ *     <li>List与Map：按泛型参数转换其中的元素，结果不可修改</li>
+ *     <li>其他类：由Map绑定，需要无参构造器（可以是私有的），通过setter或非final字段赋值。
+ *     yaml中的键与属性名相同，或者是属性名的kebab-case形式（maxConnections 与 max-connections）；没有对应属性的键被忽略</li>
+ * </ul>
+ * 每个类的属性在第一次绑定时解析为绑定计划并缓存，之后的绑定不再反射查找字段与方法。
+ * 转换失败时抛出 {@link YamlConversionException}，其中的复合键包括出错的字段与列表下标，
+ * 按调用方给出的拆分模式拼接：支持转义时键名中的'.'写为"\."，否则直接拼接，与 {@link YamlEditor} 的两种模式一致。
+ *
+ * @Author Sennri
+ */
+public final class YamlBinder {
+    private static final ConcurrentHashMap<Class<?>, Plan> PLANS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, Class<?>> WRAPPERS = new HashMap<>();
+
+    static {
+        WRAPPERS.put(int.class, Integer.class);
+        WRAPPERS.put(long.class, Long.class);
+        WRAPPERS.put(double.class, Double.class);
+        WRAPPERS.put(float.class, Float.class);
+        WRAPPERS.put(short.class, Short.class);
+        WRAPPERS.put(byte.class, Byte.class);
+        WRAPPERS.put(boolean.class, Boolean.class);
+        WRAPPERS.put(char.class, Character.class);
+    }
+
+    private YamlBinder() {
+    }
+
+    /**
+     * @param value yaml中的值，通常是Map
+     * @param type  目标类型
+     * @return 转换后的值
+     * @throws YamlConversionException 无法转换
+     */
+    public static <T> T bind(Object value, Class<T> type) {
+        return bind(value, type, "");
+    }
+
+    /**
+     * @param compositeKey value在文档中的复合键，用于错误信息
+     * @see #bind(Object, Class)
+     */
+    public static <T> T bind(Object value, Class<T> type, String compositeKey) {
+        return bind(value, type, compositeKey, false);
+    }
+
+    /**
+     * @param supportEscape 错误信息中的复合键是否按支持转义的模式拼接
+     * @see #bind(Object, Class, String)
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T bind(Object value, Class<T> type, String compositeKey, boolean supportEscape) {
+        return (T) convert(value, type, type, compositeKey, supportEscape);
+    }
+
+    /**
+     * 把List中的每个元素转换为elementType
+     *
+     * @return 不可修改的List
+     */
+    public static <T> List<T> bindList(Object value, Class<T> elementType, String compositeKey) {
+        return bindList(value, elementType, compositeKey, false);
+    }
+
+    /**
+     * @param supportEscape 错误信息中的复合键是否按支持转义的模式拼接
+     * @see #bindList(Object, Class, String)
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> List<T> bindList(Object value, Class<T> elementType, String compositeKey,
+                                       boolean supportEscape) {
+        if (!(value instanceof List)) {
+            throw new YamlConversionException(compositeKey, List.class, value, "not a list");
+        }
+        return (List<T>) convertList((List<?>) value, elementType, elementType, compositeKey, supportEscape);
+    }
+
+    static Object convert(Object value, Class<?> type, Type genericType, String key, boolean supportEscape) {
+        if (value == null) {
+            if (type.isPrimitive()) {
+                throw new YamlConversionException(key, type, null, "value is null");
+            }
+            return null;
+        }
+        Class<?> boxed = type.isPrimitive() ? WRAPPERS.get(type) : type;
+        if (boxed == Object.class) {
+            return value;
+        }
+        if (boxed == String.class) {
+            if (value instanceof String) {
+                return value;
+            }
+            if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+                return value.toString();
+            }
+            throw new YamlConversionException(key, type, value, "not a scalar");
+        }
+        if (boxed == Integer.class) {
+            return (int) toLong(value, type, key, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        }
+        if (boxed == Long.class) {
+            return toLong(value, type, key, Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+        if (boxed == Short.class) {
+            return (short) toLong(value, type, key, Short.MIN_VALUE, Short.MAX_VALUE);
+        }
+        if (boxed == Byte.class) {
+            return (byte) toLong(value, type, key, Byte.MIN_VALUE, Byte.MAX_VALUE);
+        }
+        if (boxed == Double.class) {
+            return toDouble(value, type, key);
+        }
+        if (boxed == Float.class) {
+            return (float) toDouble(value, type, key);
+        }
+        if (boxed == Boolean.class) {
+            return toBoolean(value, type, key);
+        }
+        if (boxed == Character.class) {
+            if (value instanceof Character) {
+                return value;
+            }
+            if (value instanceof String && ((String) value).length() == 1) {
+                return ((String) value).charAt(0);
+            }
+            throw new YamlConversionException(key, type, value, "not a single character");
+        }
+        if (boxed == BigInteger.class || boxed == BigDecimal.class) {
+            return toBig(value, boxed, key);
+        }
+        if (boxed == Duration.class) {
+            return toDuration(value, key);
+        }
+        if (boxed.isEnum()) {
+            return toEnum(value, boxed, key);
+        }
+        if (boxed == List.class || boxed == Iterable.class || boxed == Collection.class) {
+            if (!(value instanceof List)) {
+                throw new YamlConversionException(key, type, value, "not a list");
+            }
+            Type elementType = typeArgument(genericType, 0);
+            return convertList((List<?>) value, rawType(elementType), elementType, key, supportEscape);
+        }
+        if (boxed == Map.class) {
+            if (!(value instanceof Map)) {
+                throw new YamlConversionException(key, type, value, "not a map");
+            }
+            Type valueType = typeArgument(genericType, 1);
+            Map<Object, Object> map = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                map.put(entry.getKey(), convert(entry.getValue(), rawType(valueType), valueType,
+                        child(key, String.valueOf(entry.getKey()), supportEscape), supportEscape));
+            }
+            return Collections.unmodifiableMap(map);
+        }
+        if (boxed.isInstance(value)) {
+            return value;
+        }
+        if (value instanceof Map) {
+            return plan(boxed).bind((Map<?, ?>) value, key, supportEscape);
+        }
+        throw new YamlConversionException(key, type, value, "unsupported type");
+    }
+
+    private static List<Object> convertList(List<?> list, Class<?> elementType, Type genericType, String key,
+                                            boolean supportEscape) {
+        List<Object> converted = new ArrayList<>(list.size());
+        for (int i = 0, size = list.size(); i < size; i++) {
+            converted.add(convert(list.get(i), elementType, genericType,
+                    child(key, Integer.toString(i), supportEscape), supportEscape));
+        }
+        return Collections.unmodifiableList(converted);
+    }
+
+    /**
+     * @param supportEscape 为true时把name中的'.'写为"\."，否则直接拼接
+     * @return key下名为name的子节点的复合键
+     */
+    static String child(String key, String name, boolean supportEscape) {
+        String segment = supportEscape ? YamlPath.escape(name) : name;
+        return key.isEmpty() ? segment : key + '.' + segment;
+    }
+
+    private static long toLong(Object value, Class<?> type, String key, long min, long max) {
+        long result;
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            result = ((Number) value).longValue();
+        } else if (value instanceof String) {
+            try {
+                result = Long.parseLong(((String) value).trim());
+            } catch (NumberFormatException e) {
+                throw new YamlConversionException(key, type, value, "not an integer", e);
+            }
+        } else if (value instanceof Number) {
+            // BigInteger、BigDecimal以及没有小数部分的Double
+            try {
+                result = new BigDecimal(value.toString()).longValueExact();
+            } catch (ArithmeticException | NumberFormatException e) {
+                throw new YamlConversionException(key, type, value, "not an integer or out of range", e);
+            }
+        } else {
+            throw new YamlConversionException(key, type, value, "not an integer");
+        }
+        if (result < min || result > max) {
+            throw new YamlConversionException(key, type, value, "out of range");
+        }
+        return result;
+    }
+
+    private static double toDouble(Object value, Class<?> type, String key) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof String) {
+            try {
+                return Double.parseDouble(((String) value).trim());
+            } catch (NumberFormatException e) {
+                throw new YamlConversionException(key, type, value, "not a number", e);
+            }
+        }
+        throw new YamlConversionException(key, type, value, "not a number");
+    }
+
+    private static Boolean toBoolean(Object value, Class<?> type, String key) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof String) {
+            switch (((String) value).trim().toLowerCase(Locale.ROOT)) {
+                case "true":
+                case "yes":
+                case "on":
+                    return Boolean.TRUE;
+                case "false":
+                case "no":
+                case "off":
+                    return Boolean.FALSE;
+                default:
+            }
+        }
+        throw new YamlConversionException(key, type, value, "not a boolean");
+    }
+
+    private static Object toBig(Object value, Class<?> type, String key) {
+        if (!(value instanceof Number) && !(value instanceof String)) {
+            throw new YamlConversionException(key, type, value, "not a number");
+        }
+        try {
+            BigDecimal decimal = new BigDecimal(value.toString().trim());
+            return type == BigDecimal.class ? decimal : decimal.toBigIntegerExact();
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw new YamlConversionException(key, type, value, "not a number", e);
+        }
+    }
+
+    private static Duration toDuration(Object value, String key) {
+        if (value instanceof Duration) {
+            return (Duration) value;
+        }
+        if (value instanceof Integer || value instanceof Long) {
+            return Duration.ofMillis(((Number) value).longValue());
+        }
+        if (value instanceof String) {
+            try {
+                return parseDuration(((String) value).trim());
+            } catch (DateTimeParseException | ArithmeticException | IllegalArgumentException e) {
+                throw new YamlConversionException(key, Duration.class, value, e.getMessage(), e);
+            }
+        }
+        throw new YamlConversionException(key, Duration.class, value, "not a duration");
+    }
+
+    private static Duration parseDuration(String text) {
+        if (text.startsWith("P") || text.startsWith("-P") || text.startsWith("p") || text.startsWith("-p")) {
+            return Duration.parse(text);
+        }
+        int i = 0;
+        if (i < text.length() && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            i++;
+        }
+        while (i < text.length() && Character.isDigit(text.charAt(i))) {
+            i++;
+        }
+        long amount = Long.parseLong(text.substring(0, i));
+        String unit = text.substring(i).trim().toLowerCase(Locale.ROOT);
+        switch (unit) {
+            case "":
+            case "ms":
+                return Duration.ofMillis(amount);
+            case "ns":
+                return Duration.ofNanos(amount);
+            case "us":
+                return Duration.ofNanos(Math.multiplyExact(amount, 1000L));
+            case "s":
+                return Duration.ofSeconds(amount);
+            case "m":
+                return Duration.ofMinutes(amount);
+            case "h":
+                return Duration.ofHours(amount);
+            case "d":
+                return Duration.ofDays(amount);
+            default:
+                throw new IllegalArgumentException("unknown unit " + unit);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object toEnum(Object value, Class<?> type, String key) {
+        if (value instanceof String) {
+            String name = (String) value;
+            try {
+                return Enum.valueOf((Class) type, name);
+            } catch (IllegalArgumentException e) {
+                try {
+                    return Enum.valueOf((Class) type, name.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException ignored) {
+                    throw new YamlConversionException(key, type, value, "no such constant", e);
+                }
+            }
+        }
+        throw new YamlConversionException(key, type, value, "not an enum name");
+    }
+
+    private static Type typeArgument(Type type, int index) {
+        if (type instanceof ParameterizedType) {
+            Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+            if (index < arguments.length) {
+                return arguments[index];
+            }
+        }
+        return Object.class;
+    }
+
+    /**
+     * 泛型参数中的通配符与类型变量按其上界处理，无法确定时为Object
+     */
+    private static Class<?> rawType(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        }
+        if (type instanceof ParameterizedType) {
+            return rawType(((ParameterizedType) type).getRawType());
+        }
+        if (type instanceof WildcardType) {
+            return rawType(((WildcardType) type).getUpperBounds()[0]);
+        }
+        return Object.class;
+    }
+
+    private static Plan plan(Class<?> type) {
+        Plan plan = PLANS.get(type);
+        if (plan == null) {
+            plan = PLANS.computeIfAbsent(type, Plan::new);
+        }
+        return plan;
+    }
+
+    /**
+     * 一个类的绑定计划：构造器以及yaml中的键到属性的映射
+     */
+    private static final class Plan {
+        private final Class<?> type;
+        private final Constructor<?> constructor;
+        private final String problem;
+        private final Map<String, Property> properties = new HashMap<>();
+
+        Plan(Class<?> type) {
+            this.type = type;
+            Constructor<?> found = null;
+            String reason = null;
+            if (type.isInterface() || Modifier.isAbstract(type.getModifiers()) || type.isArray()
+                    || type.isPrimitive()) {
+                reason = "can't instantiate " + type.getName();
+            } else {
+                try {
+                    found = type.getDeclaredConstructor();
+                    found.setAccessible(true);
+                } catch (NoSuchMethodException | SecurityException e) {
+                    reason = type.getName() + " has no accessible no-arg constructor";
+                }
+            }
+            this.constructor = found;
+            this.problem = reason;
+            if (found != null) {
+                collectFields(type);
+                collectSetters(type);
+            }
+        }
+
+        private void collectFields(Class<?> type) {
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) || Modifier.isTransient(modifiers)
+                            || field.isSynthetic()) {
+                        continue;
+                    }
+                    try {
+                        field.setAccessible(true);
+                    } catch (SecurityException e) {
+                        continue;
+                    }
+                    // 子类的字段优先
+                    if (!properties.containsKey(field.getName())) {
+                        add(field.getName(), new Property(field, null));
+                    }
+                }
+            }
+        }
+
+        /**
+         * setter优先于同名字段
+         */
+        private void collectSetters(Class<?> type) {
+            for (Method method : type.getMethods()) {
+                String name = method.getName();
+                if (name.length() > 3 && name.startsWith("set") && method.getParameterCount() == 1
+                        && !Modifier.isStatic(method.getModifiers()) && !method.isBridge()) {
+                    add(Character.toLowerCase(name.charAt(3)) + name.substring(4), new Property(null, method));
+                }
+            }
+        }
+
+        private void add(String name, Property property) {
+            properties.put(name, property);
+            String kebab = kebabCase(name);
+            if (!kebab.equals(name)) {
+                properties.put(kebab, property);
+            }
+        }
+
+        private static String kebabCase(String name) {
+            StringBuilder sb = new StringBuilder(name.length() + 4);
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+                if (Character.isUpperCase(c)) {
+                    if (i > 0) {
+                        sb.append('-');
+                    }
+                    sb.append(Character.toLowerCase(c));
+                } else {
+                    sb.append(c);
+                }
+            }
+            return sb.toString();
+        }
+
+        Object bind(Map<?, ?> map, String key, boolean supportEscape) {
+            if (constructor == null) {
+                throw new YamlConversionException(key, type, map, problem);
+            }
+            Object target;
+            try {
+                target = constructor.newInstance();
+            } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+                throw new YamlConversionException(key, type, map, "can't instantiate", e);
+            }
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                Property property = properties.get(String.valueOf(entry.getKey()));
+                if (property != null) {
+                    String childKey = child(key, String.valueOf(entry.getKey()), supportEscape);
+                    property.set(target, convert(entry.getValue(), property.type, property.genericType, childKey,
+                            supportEscape), childKey);
+                }
+            }
+            return target;
+        }
+    }
+
+    /**
+     * 通过setter或字段赋值的属性，类型在构造计划时解析
+     */
+    private static final class Property {
+        private final Field field;
+        private final Method setter;
+        private final Class<?> type;
+        private final Type genericType;
+
+        Property(Field field, Method setter) {
+            this.field = field;
+            this.setter = setter;
+            this.type = field != null ? field.getType() : setter.getParameterTypes()[0];
+            this.genericType = field != null ? field.getGenericType() : setter.getGenericParameterTypes()[0];
+        }
+
+        void set(Object target, Object value, String key) {
+            try {
+                if (field != null) {
+                    field.set(target, value);
+                } else {
+                    setter.invoke(target, value);
+                }
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+                throw new YamlConversionException(key, type, value, String.valueOf(cause), cause);
+            }
+        }
+    }
+}
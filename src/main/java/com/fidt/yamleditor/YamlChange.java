@@ -0,0 +1,99 @@
+package com.fidt.yamleditor;
+
+import java.util.Objects;
+
+/**
+ * 两棵yaml树之间的一处差异。
+ * 差异总是记录在最高的不同之处：例如某个Map整体被替换为标量时，只产生该键上的一条MODIFIED，不再展开其子键。
+ *
+ * @Author Sennri
+ */
+public final class YamlChange {
+    public enum Type {
+        /**
+         * 新树中新增的键或列表元素
+         */
+        ADDED,
+        /**
+         * 旧树中被删除的键或列表元素
+         */
+        REMOVED,
+        /**
+         * 值发生了变化
+         */
+        MODIFIED
+    }
+
+    private final Type type;
+    private final YamlPath path;
+    private final String compositeKey;
+    private final Object oldValue;
+    private final Object newValue;
+
+    YamlChange(Type type, YamlPath path, String compositeKey, Object oldValue, Object newValue) {
+        this.type = type;
+        this.path = path;
+        this.compositeKey = compositeKey;
+        this.oldValue = oldValue;
+        this.newValue = newValue;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public YamlPath getPath() {
+        return path;
+    }
+
+    /**
+     * @return 编辑器语法下的复合键，开启反转义时键内的'.'写作"\."
+     */
+    public String getCompositeKey() {
+        return compositeKey;
+    }
+
+    /**
+     * @return 旧值，ADDED时为null
+     */
+    public Object getOldValue() {
+        return oldValue;
+    }
+
+    /**
+     * @return 新值，REMOVED时为null
+     */
+    public Object getNewValue() {
+        return newValue;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof YamlChange)) {
+            return false;
+        }
+        YamlChange that = (YamlChange) o;
+        return type == that.type && compositeKey.equals(that.compositeKey)
+                && Objects.equals(oldValue, that.oldValue) && Objects.equals(newValue, that.newValue);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, compositeKey, oldValue, newValue);
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case ADDED:
+                return "ADDED " + compositeKey + " = " + newValue;
+            case REMOVED:
+                return "REMOVED " + compositeKey + " (was " + oldValue + ")";
+            default:
+                return "MODIFIED " + compositeKey + ": " + oldValue + " -> " + newValue;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.fidt.yamleditor;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 监听yaml文件内容的变化，参见 {@link YamlFileWatcher}
+ *
+ * @Author Sennri
+ */
+@FunctionalInterface
+public interface YamlChangeListener {
+    /**
+     * @param file    发生变化的文件
+     * @param changes 本次变化中与订阅的复合键相关的差异，不为空
+     */
+    void onChange(Path file, List<YamlChange> changes);
+}
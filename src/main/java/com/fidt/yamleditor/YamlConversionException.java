@@ -0,0 +1,57 @@
+package com.fidt.yamleditor;
+
+/**
+ * yaml中的值无法转换为所需的类型，例如 "abc" 转换为int。
+ * {@link #getCompositeKey()} 是出错的值在文档中的完整复合键，绑定对象时包括字段与列表下标，例如 "Service.hosts.2.port"。
+ *
+ * @Author Sennri
+ */
+public class YamlConversionException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    private final String compositeKey;
+    private final Class<?> targetType;
+    private final transient Object value;
+
+    public YamlConversionException(String compositeKey, Class<?> targetType, Object value, String reason) {
+        this(compositeKey, targetType, value, reason, null);
+    }
+
+    public YamlConversionException(String compositeKey, Class<?> targetType, Object value, String reason,
+                                   Throwable cause) {
+        super("Can't convert " + compositeKey + " = " + describe(value) + " to " + targetType.getName()
+                + (reason == null ? "" : ": " + reason), cause);
+        this.compositeKey = compositeKey;
+        this.targetType = targetType;
+        this.value = value;
+    }
+
+    private static String describe(Object value) {
+        if (value == null) {
+            return "null";
+        }
+        String text = String.valueOf(value);
+        if (text.length() > 64) {
+            text = text.substring(0, 64) + "...";
+        }
+        return value instanceof String ? '"' + text + '"' : text + " (" + value.getClass().getSimpleName() + ')';
+    }
+
+    /**
+     * @return 出错的值的完整复合键
+     */
+    public String getCompositeKey() {
+        return compositeKey;
+    }
+
+    public Class<?> getTargetType() {
+        return targetType;
+    }
+
+    /**
+     * @return 无法转换的原始值
+     */
+    public Object getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,220 @@
+package com.fidt.yamleditor;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 比较由Map、List以及标量组成的两棵yaml树。
+ * 同一个对象（例如未修改的子树在两棵树间共享）直接视为相同，不再向下比较，整体耗时与树的大小成线性关系。
+ * 列表先跳过相同的前缀（Map与List只按引用判断，避免逐层重复深比较）：变短时再跳过相同的后缀，中间多出的元素记为删除；变长时按下标逐个比较，多出的元素追加在末尾。
+ * 这与编辑器的insert语义一致（下标小于列表长度时insert为覆盖，而不是插入）。
+ * <p>
+ * {@link #compare(Object, Object, boolean)} 给出差异的明细，{@link #diff(Map, Map, boolean)}
+ * 给出可以通过 {@link YamlPatch} 重放的编辑操作：修改为set，新增为insert，删除为remove。
+ * 同一列表中的删除按下标从大到小排列，依次执行时前面的删除不会影响后面的下标。
+ * 操作中的值是新树中对应子树的拷贝，重放后的树与新树互不影响。
+ *
+ * @Author Sennri
+ */
+public final class YamlDiff {
+    private static final Object INDEX = new Object();
+
+    private final boolean supportEscape;
+    /**
+     * 生成编辑操作时，要求差异可以用复合键表示
+     */
+    private final boolean strict;
+    private final List<String> names = new ArrayList<>();
+    /**
+     * 与names一一对应的原始键，列表下标记为INDEX。只在产生差异时检查，未变化的子树中的键不受限制
+     */
+    private final List<Object> keys = new ArrayList<>();
+    private final List<YamlChange> changes = new ArrayList<>();
+
+    private YamlDiff(boolean supportEscape, boolean strict) {
+        this.supportEscape = supportEscape;
+        this.strict = strict;
+    }
+
+    /**
+     * @param oldTree       旧树
+     * @param newTree       新树
+     * @param supportEscape 结果中的复合键是否将键内的'.'转义为"\."，与编辑器的拆分模式保持一致
+     * @return 从旧树到新树的差异，按遍历顺序排列
+     */
+    public static List<YamlChange> compare(Object oldTree, Object newTree, boolean supportEscape) {
+        YamlDiff diff = new YamlDiff(supportEscape, false);
+        diff.compare(oldTree, newTree);
+        return diff.changes;
+    }
+
+    /**
+     * 生成把旧文档变为新文档的编辑操作，空文档（null）视为空Map
+     *
+     * @param oldTree       旧文档
+     * @param newTree       新文档
+     * @param supportEscape 复合键是否使用"\."转义，重放时使用的编辑器必须采用同样的拆分模式
+     * @return 按顺序执行的编辑操作
+     * @throws IllegalArgumentException 差异无法用复合键表示：Map的键不是字符串、是纯数字，或者不支持反转义时包含'.'
+     */
+    public static List<EditOperation> diff(Map<String, Object> oldTree, Map<String, Object> newTree,
+                                           boolean supportEscape) throws IllegalArgumentException {
+        YamlDiff diff = new YamlDiff(supportEscape, true);
+        diff.compare(oldTree == null ? Collections.emptyMap() : oldTree,
+                newTree == null ? Collections.emptyMap() : newTree);
+        List<EditOperation> operations = new ArrayList<>(diff.changes.size());
+        for (YamlChange change : diff.changes) {
+            switch (change.getType()) {
+                case MODIFIED:
+                    operations.add(EditOperation.set(change.getCompositeKey(),
+                            YamlTrees.deepCopy(change.getNewValue())));
+                    break;
+                case ADDED:
+                    operations.add(EditOperation.insert(change.getCompositeKey(),
+                            YamlTrees.deepCopy(change.getNewValue())));
+                    break;
+                default:
+                    operations.add(EditOperation.remove(change.getCompositeKey()));
+                    break;
+            }
+        }
+        return operations;
+    }
+
+    private void compare(Object oldValue, Object newValue) {
+        if (oldValue == newValue) {
+            return;
+        }
+        if (oldValue instanceof Map && newValue instanceof Map) {
+            compareMaps((Map<?, ?>) oldValue, (Map<?, ?>) newValue);
+        } else if (oldValue instanceof List && newValue instanceof List) {
+            compareLists((List<?>) oldValue, (List<?>) newValue);
+        } else if (!Objects.equals(oldValue, newValue)) {
+            change(YamlChange.Type.MODIFIED, oldValue, newValue);
+        }
+    }
+
+    private void compareMaps(Map<?, ?> oldMap, Map<?, ?> newMap) {
+        for (Map.Entry<?, ?> entry : oldMap.entrySet()) {
+            Object key = entry.getKey();
+            pushKey(key);
+            if (newMap.containsKey(key)) {
+                compare(entry.getValue(), newMap.get(key));
+            } else {
+                change(YamlChange.Type.REMOVED, entry.getValue(), null);
+            }
+            pop();
+        }
+        for (Map.Entry<?, ?> entry : newMap.entrySet()) {
+            Object key = entry.getKey();
+            if (!oldMap.containsKey(key)) {
+                pushKey(key);
+                change(YamlChange.Type.ADDED, null, entry.getValue());
+                pop();
+            }
+        }
+    }
+
+    private void compareLists(List<?> oldList, List<?> newList) {
+        int oldSize = oldList.size();
+        int newSize = newList.size();
+        int common = Math.min(oldSize, newSize);
+        int prefix = 0;
+        while (prefix < common && same(oldList.get(prefix), newList.get(prefix))) {
+            prefix++;
+        }
+        if (newSize < oldSize) {
+            int suffix = 0;
+            while (suffix < common - prefix
+                    && same(oldList.get(oldSize - 1 - suffix), newList.get(newSize - 1 - suffix))) {
+                suffix++;
+            }
+            int paired = prefix + (newSize - prefix - suffix);
+            for (int i = prefix; i < paired; i++) {
+                pushIndex(i);
+                compare(oldList.get(i), newList.get(i));
+                pop();
+            }
+            for (int i = oldSize - suffix - 1; i >= paired; i--) {
+                pushIndex(i);
+                change(YamlChange.Type.REMOVED, oldList.get(i), null);
+                pop();
+            }
+            return;
+        }
+        for (int i = prefix; i < oldSize; i++) {
+            pushIndex(i);
+            compare(oldList.get(i), newList.get(i));
+            pop();
+        }
+        for (int i = oldSize; i < newSize; i++) {
+            pushIndex(i);
+            change(YamlChange.Type.ADDED, null, newList.get(i));
+            pop();
+        }
+    }
+
+    /**
+     * 跳过前后缀时使用的快速判断：Map与List只比较引用，内容的比较留给compare，每个元素只向下比较一次
+     */
+    private static boolean same(Object a, Object b) {
+        if (a == b) {
+            return true;
+        }
+        return a != null && !(a instanceof Map) && !(a instanceof List) && a.equals(b);
+    }
+
+    private void pushKey(Object key) {
+        names.add(String.valueOf(key));
+        keys.add(key);
+    }
+
+    private void pushIndex(int index) {
+        names.add(String.valueOf(index));
+        keys.add(INDEX);
+    }
+
+    private void pop() {
+        names.remove(names.size() - 1);
+        keys.remove(keys.size() - 1);
+    }
+
+    /**
+     * 检查当前路径上的键能否用复合键表示
+     */
+    private void checkKeys() {
+        for (int i = 0, len = keys.size(); i < len; i++) {
+            Object key = keys.get(i);
+            if (key == INDEX) {
+                continue;
+            }
+            List<String> parent = names.subList(0, i);
+            if (!(key instanceof String)) {
+                throw new IllegalArgumentException("Key " + key + " under " + parent + " is not a string.");
+            }
+            String name = (String) key;
+            if (StringUtils.isNumeric(name)) {
+                throw new IllegalArgumentException("Numeric key " + name + " under " + parent
+                        + " can't be expressed as a composite key.");
+            }
+            if (!supportEscape && name.indexOf('.') >= 0) {
+                throw new IllegalArgumentException("Key " + name + " under " + parent
+                        + " contains '.', enable supportEscape to express it.");
+            }
+        }
+    }
+
+    private void change(YamlChange.Type type, Object oldValue, Object newValue) {
+        if (strict) {
+            checkKeys();
+        }
+        YamlPath path = YamlPath.of(names.toArray(new String[0]));
+        String compositeKey = supportEscape ? path.toString() : String.join(".", names);
+        changes.add(new YamlChange(type, path, compositeKey, oldValue, newValue));
+    }
+}
@@ -0,0 +1,315 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * 位于 {@link YamlEditor#getMapFromYaml(Path)} 之前的文档缓存。
+ * 以规范化后的绝对路径为键，每次读取时用文件的修改时间与大小（可选再加上内容的CRC32）校验缓存是否仍然有效。
+ * {@link #get(Path)} 返回共享的只读视图，{@link #getCopy(Path)} 返回可以自由修改的深拷贝。
+ * 按最近最少使用的顺序淘汰条目，使缓存的总字节数与总节点数都不超过预算。
+ * 通过 {@link YamlEditor} 写文件（dumpMapToYaml、dumpMapToYamlAtomically以及各个*Yaml方法）时，
+ * 所有缓存中对应的条目都会失效，即使修改时间与大小没有变化也不会读到旧内容。
+ * 该类是线程安全的。
+ *
+ * @Author Sennri
+ */
+@Slf4j
+public class YamlDocumentCache {
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    public static final long DEFAULT_MAX_NODES = Long.MAX_VALUE;
+
+    /**
+     * 所有存活的缓存，写文件时逐个失效
+     */
+    private static final Set<YamlDocumentCache> CACHES = Collections.newSetFromMap(new WeakHashMap<>());
+
+    private final long maxBytes;
+    private final long maxNodes;
+    private final boolean verifyContent;
+    /**
+     * 访问顺序的LinkedHashMap，迭代顺序即淘汰顺序
+     */
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * 正在读取的文件，只在读取期间存在。读取期间同一文件失效过时，读到的内容不放入缓存，其他文件的读取不受影响
+     */
+    private final Map<Path, Loading> loading = new HashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private long totalBytes;
+    private long totalNodes;
+
+    public YamlDocumentCache() {
+        this(DEFAULT_MAX_BYTES, DEFAULT_MAX_NODES, false);
+    }
+
+    /**
+     * @param maxBytes      缓存文件的总字节数上限
+     * @param maxNodes      缓存文档的总节点数上限
+     * @param verifyContent 是否在修改时间与大小之外再校验内容的CRC32；开启后每次读取仍需读文件，但不需要解析
+     */
+    public YamlDocumentCache(long maxBytes, long maxNodes, boolean verifyContent) {
+        if (maxBytes <= 0 || maxNodes <= 0) {
+            throw new IllegalArgumentException("Budget must be positive.");
+        }
+        this.maxBytes = maxBytes;
+        this.maxNodes = maxNodes;
+        this.verifyContent = verifyContent;
+        synchronized (CACHES) {
+            CACHES.add(this);
+        }
+    }
+
+    /**
+     * 通知所有缓存：path被修改了
+     */
+    static void invalidateAllCaches(Path path) {
+        List<YamlDocumentCache> caches;
+        synchronized (CACHES) {
+            if (CACHES.isEmpty()) {
+                return;
+            }
+            caches = new ArrayList<>(CACHES);
+        }
+        Path key = normalize(path);
+        for (YamlDocumentCache cache : caches) {
+            cache.invalidateKey(key);
+        }
+    }
+
+    private static Path normalize(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+    /**
+     * 获取文档的只读视图，同一版本的文件在各个调用方之间共享同一个视图。
+     * 视图中的Map与List都不可修改，需要修改时使用 {@link #getCopy(Path)}。
+     *
+     * @param path yaml文件
+     * @return 只读的文档，空文档返回null
+     */
+    public Map<String, Object> get(Path path) throws IOException {
+        Path key = normalize(path);
+        BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry != null && entry.matches(attributes)) {
+            long checksum = verifyContent ? checksum(Files.readAllBytes(key)) : 0;
+            if (!verifyContent || checksum == entry.checksum) {
+                hits.incrementAndGet();
+                recordAccess(true);
+                return entry.document;
+            }
+        }
+        misses.incrementAndGet();
+        recordAccess(false);
+        return load(key, attributes);
+    }
+
+    private static void recordAccess(boolean hit) {
+        YamlMetrics metrics = YamlEditor.getMetrics();
+        if (metrics.isEnabled()) {
+            metrics.recordCacheAccess(YamlMetrics.Cache.DOCUMENT, hit);
+        }
+    }
+
+    /**
+     * 获取文档的深拷贝，调用方可以自由修改，不影响缓存与其他调用方
+     *
+     * @param path yaml文件
+     * @return 可修改的文档，空文档返回null
+     */
+    public Map<String, Object> getCopy(Path path) throws IOException {
+        Map<String, Object> document = get(path);
+        return document == null ? null : YamlTrees.deepCopyMap(document);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> load(Path key, BasicFileAttributes attributes) throws IOException {
+        Loading pending;
+        long startGeneration;
+        synchronized (this) {
+            pending = loading.computeIfAbsent(key, k -> new Loading());
+            pending.loaders++;
+            startGeneration = pending.generation;
+        }
+        Entry entry = null;
+        try {
+            Map<String, Object> document;
+            long checksum = 0;
+            if (verifyContent) {
+                byte[] bytes = Files.readAllBytes(key);
+                checksum = checksum(bytes);
+                document = parse(new ByteArrayInputStream(bytes));
+            } else {
+                try (InputStream in = Files.newInputStream(key)) {
+                    document = parse(in);
+                }
+            }
+            long[] nodes = new long[1];
+            document = (Map<String, Object>) YamlTrees.readOnly(document, nodes);
+            entry = new Entry(document, attributes.lastModifiedTime(), attributes.size(), checksum, nodes[0]);
+            return document;
+        } finally {
+            synchronized (this) {
+                // 读取期间文件被写过，读到的可能是旧内容，只返回不缓存
+                if (entry != null && pending.generation == startGeneration) {
+                    put(key, entry);
+                }
+                if (--pending.loaders == 0) {
+                    loading.remove(key);
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> parse(InputStream in) {
+        try {
+            return YamlEditor.yaml().loadAs(in, LinkedHashMap.class);
+        } catch (RuntimeException e) {
+            YamlEditor.discardYaml();
+            throw e;
+        }
+    }
+
+    private static long checksum(byte[] bytes) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes, 0, bytes.length);
+        return crc32.getValue();
+    }
+
+    private void put(Path key, Entry entry) {
+        Entry old = entries.remove(key);
+        if (old != null) {
+            release(old);
+        }
+        if (entry.bytes > maxBytes || entry.nodes > maxNodes) {
+            log.debug("{} exceeds the cache budget and is not cached.", key);
+            return;
+        }
+        entries.put(key, entry);
+        totalBytes += entry.bytes;
+        totalNodes += entry.nodes;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while ((totalBytes > maxBytes || totalNodes > maxNodes) && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            release(eldest);
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void release(Entry entry) {
+        totalBytes -= entry.bytes;
+        totalNodes -= entry.nodes;
+    }
+
+    private synchronized void invalidateKey(Path key) {
+        Loading pending = loading.get(key);
+        if (pending != null) {
+            pending.generation++;
+        }
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            release(entry);
+        }
+    }
+
+    /**
+     * 使path对应的条目失效
+     */
+    public void invalidate(Path path) {
+        invalidateKey(normalize(path));
+    }
+
+    public synchronized void invalidateAll() {
+        for (Loading pending : loading.values()) {
+            pending.generation++;
+        }
+        entries.clear();
+        totalBytes = 0;
+        totalNodes = 0;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return 已缓存文件的总字节数
+     */
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * @return 已缓存文档的总节点数
+     */
+    public synchronized long getTotalNodes() {
+        return totalNodes;
+    }
+
+    @Override
+    public String toString() {
+        return "YamlDocumentCache{size=" + size() + ", bytes=" + getTotalBytes() + ", nodes=" + getTotalNodes()
+                + ", hits=" + getHitCount() + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "}";
+    }
+
+    /**
+     * 同一文件正在进行的读取，由缓存的锁保护
+     */
+    private static final class Loading {
+        /**
+         * 每次失效加一
+         */
+        long generation;
+        int loaders;
+    }
+
+    private static final class Entry {
+        final Map<String, Object> document;
+        final FileTime lastModifiedTime;
+        final long bytes;
+        final long checksum;
+        final long nodes;
+
+        Entry(Map<String, Object> document, FileTime lastModifiedTime, long bytes, long checksum, long nodes) {
+            this.document = document;
+            this.lastModifiedTime = lastModifiedTime;
+            this.bytes = bytes;
+            this.checksum = checksum;
+            this.nodes = nodes;
+        }
+
+        boolean matches(BasicFileAttributes attributes) {
+            return lastModifiedTime.equals(attributes.lastModifiedTime()) && bytes == attributes.size();
+        }
+    }
+}
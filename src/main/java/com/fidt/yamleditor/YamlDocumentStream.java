@@ -0,0 +1,404 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.reader.UnicodeReader;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import java.io.Closeable;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * 逐个读取以 "---" 分隔的多文档yaml，例如包含大量资源的Kubernetes清单。
+ * <pre>
+ *     try (YamlDocumentStream stream = YamlDocumentStream.open(path)) {
+ *         for (YamlDocumentStream.Document document : stream) {
+ *             Object content = document.getContent();
+ *         }
+ *     }
+ * </pre>
+ * 文档按需读取，与 {@code Yaml.loadAll} 一样每次只解析一个文档，内存占用取决于最大的单个文档而不是整个文件。
+ * 每个文档同时保留它在文件中的原文（包括前面的注释与 "---"），
+ * {@link #edit(Path, Path, Predicate, EditBatch)} 只重新输出被修改的文档，其余文档按原文写出。
+ * 该类不是线程安全的，只能遍历一次。
+ *
+ * @Author Sennri
+ */
+@Slf4j
+public final class YamlDocumentStream implements Iterable<YamlDocumentStream.Document>, Closeable {
+    private final RecordingReader reader;
+    private final EventNodeBuilder builder;
+    private boolean iterated;
+    private Document next;
+    private boolean finished;
+    private int count;
+    /**
+     * 最后一个文档之后的内容，只有注释或空白
+     */
+    private String trailer = "";
+
+    private YamlDocumentStream(Reader reader) {
+        this.reader = new RecordingReader(reader);
+        this.builder = new EventNodeBuilder(YamlEditor.yaml().parse(this.reader), new Resolver());
+    }
+
+    public static YamlDocumentStream open(Path path) throws IOException {
+        return new YamlDocumentStream(new UnicodeReader(Files.newInputStream(path)));
+    }
+
+    /**
+     * @param reader yaml内容，由stream负责关闭
+     */
+    public static YamlDocumentStream open(Reader reader) {
+        return new YamlDocumentStream(reader);
+    }
+
+    /**
+     * @return 依次返回每个文档的迭代器，只能获取一次
+     */
+    @Override
+    public Iterator<Document> iterator() {
+        if (iterated) {
+            throw new IllegalStateException("A document stream can only be iterated once.");
+        }
+        iterated = true;
+        return new Iterator<Document>() {
+            @Override
+            public boolean hasNext() {
+                return advance();
+            }
+
+            @Override
+            public Document next() {
+                if (!advance()) {
+                    throw new NoSuchElementException();
+                }
+                Document document = YamlDocumentStream.this.next;
+                YamlDocumentStream.this.next = null;
+                return document;
+            }
+        };
+    }
+
+    /**
+     * 读取下一个文档
+     *
+     * @return 是否还有文档
+     */
+    private boolean advance() {
+        if (next != null) {
+            return true;
+        }
+        if (finished) {
+            return false;
+        }
+        try {
+            Event event;
+            while ((event = builder.next()) != null && !event.is(Event.ID.DocumentStart)) {
+                if (event.is(Event.ID.StreamEnd)) {
+                    break;
+                }
+            }
+            if (event == null || !event.is(Event.ID.DocumentStart)) {
+                finished = true;
+                trailer = reader.remaining();
+                return false;
+            }
+            Event first = builder.next();
+            Node root = null;
+            Event end = first;
+            if (!first.is(Event.ID.DocumentEnd)) {
+                root = builder.build(first);
+                end = builder.next();
+            }
+            // 文档的原文从上一个文档的结束位置开始，到本文档的DocumentEnd为止
+            int length = reader.offset(end.getEndMark().getIndex());
+            int contentStart = root == null ? length : reader.offset(root.getStartMark().getIndex());
+            int contentEnd = root == null ? length : reader.offset(root.getEndMark().getIndex());
+            next = new Document(count++, reader.take(length), root, contentStart, contentEnd, builder);
+            builder.clearAnchors();
+            return true;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } catch (RuntimeException e) {
+            YamlEditor.discardYaml();
+            throw e;
+        }
+    }
+
+    /**
+     * @return 已经读取的文档数
+     */
+    public int getDocumentCount() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * 修改input中被selector选中的文档，写入output。
+     * 每个被选中的文档单独执行batch，ROLLBACK模式下某个文档中的操作失败时该文档保持不变。
+     * 被修改的文档以YamlEditor的格式重新输出，保留它前后的注释与 "---"，文档内部的注释会丢失；其余文档按原文写出。
+     * output以原子方式写出，因此可以与input相同。
+     *
+     * @param input    输入文件
+     * @param output   输出文件
+     * @param selector 选择要修改的文档，只有根节点为Map的文档会被检查
+     * @param batch    对每个选中的文档执行的编辑
+     * @return 每个选中的文档的执行结果
+     */
+    public static EditSummary edit(Path input, Path output, Predicate<Map<String, Object>> selector, EditBatch batch)
+            throws IOException {
+        return edit(input, output, selector, batch, FsyncPolicy.NONE);
+    }
+
+    /**
+     * @param fsyncPolicy 写出output时的落盘策略
+     * @see #edit(Path, Path, Predicate, EditBatch)
+     */
+    @SuppressWarnings("unchecked")
+    public static EditSummary edit(Path input, Path output, Predicate<Map<String, Object>> selector, EditBatch batch,
+                                   FsyncPolicy fsyncPolicy) throws IOException {
+        Map<Integer, EditBatch.Result> results = new LinkedHashMap<>();
+        int[] edited = new int[1];
+        int[] documents = new int[1];
+        try (YamlDocumentStream stream = open(input)) {
+            try {
+                AtomicFiles.write(output, fsyncPolicy, writer -> {
+                    for (Document document : stream) {
+                        Object content = document.getContent();
+                        if (content instanceof Map && selector.test((Map<String, Object>) content)) {
+                            // 每个文档写入各自的值，后续操作不会通过共享的值修改其他文档
+                            EditBatch.Result result = batch.applyCopyTo((Map<String, Object>) content);
+                            results.put(document.getIndex(), result);
+                            if (result.isCommitted() && result.getAppliedCount() > 0) {
+                                document.writeEdited(writer);
+                                edited[0]++;
+                                continue;
+                            }
+                        }
+                        writer.write(document.getText());
+                    }
+                    writer.write(stream.trailer);
+                    documents[0] = stream.getDocumentCount();
+                });
+            } finally {
+                YamlDocumentCache.invalidateAllCaches(output);
+            }
+        }
+        log.debug("Edited {} of {} documents in {}.", edited[0], documents[0], input);
+        return new EditSummary(documents[0], edited[0], results);
+    }
+
+    /**
+     * 流中的一个文档
+     */
+    public static final class Document {
+        private final int index;
+        private final String text;
+        private final Node root;
+        private final int contentStart;
+        private final int contentEnd;
+        private EventNodeBuilder builder;
+        private Object content;
+
+        private Document(int index, String text, Node root, int contentStart, int contentEnd,
+                         EventNodeBuilder builder) {
+            this.index = index;
+            this.text = text;
+            this.root = root;
+            this.contentStart = contentStart;
+            this.contentEnd = contentEnd;
+            this.builder = builder;
+        }
+
+        /**
+         * @return 从0开始的序号
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return 文档在文件中的原文，包括它前面的注释与 "---"
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * @return 文档内容，Map为LinkedHashMap；空文档为null
+         */
+        public Object getContent() {
+            if (builder != null) {
+                // 第一次访问时才构造Java对象
+                try {
+                    content = root == null ? null : builder.construct(root);
+                } catch (RuntimeException e) {
+                    YamlEditor.discardYaml();
+                    throw e;
+                }
+                builder = null;
+            }
+            return content;
+        }
+
+        /**
+         * 写出修改后的内容，保留原文中内容前后的部分
+         */
+        private void writeEdited(Writer writer) throws IOException {
+            int prefixEnd = contentStart;
+            while (prefixEnd > 0 && isBlank(text.charAt(prefixEnd - 1))) {
+                prefixEnd--;
+            }
+            writer.write(text, 0, prefixEnd);
+            if (prefixEnd > 0 && text.charAt(prefixEnd - 1) != '\n') {
+                // 例如 "--- {a: 1}"，块格式的内容需要另起一行
+                writer.write('\n');
+            }
+            StreamingYamlWriter.write(content, writer);
+            // 输出以换行结束，跳过原文中内容所在行的剩余空白
+            int suffixStart = contentEnd;
+            while (suffixStart < text.length() && isBlank(text.charAt(suffixStart))) {
+                suffixStart++;
+            }
+            if (suffixStart < text.length() && text.charAt(suffixStart) == '\n') {
+                suffixStart++;
+            }
+            writer.write(text, suffixStart, text.length() - suffixStart);
+        }
+
+        private static boolean isBlank(char c) {
+            return c == ' ' || c == '\t' || c == '\r';
+        }
+
+        @Override
+        public String toString() {
+            return "Document{index=" + index + ", length=" + text.length() + '}';
+        }
+    }
+
+    /**
+     * {@link #edit(Path, Path, Predicate, EditBatch)} 的结果
+     */
+    public static final class EditSummary {
+        private final int documentCount;
+        private final int editedCount;
+        private final Map<Integer, EditBatch.Result> results;
+
+        private EditSummary(int documentCount, int editedCount, Map<Integer, EditBatch.Result> results) {
+            this.documentCount = documentCount;
+            this.editedCount = editedCount;
+            this.results = Collections.unmodifiableMap(results);
+        }
+
+        public int getDocumentCount() {
+            return documentCount;
+        }
+
+        /**
+         * @return 被选中的文档数
+         */
+        public int getSelectedCount() {
+            return results.size();
+        }
+
+        /**
+         * @return 被修改并重新输出的文档数
+         */
+        public int getEditedCount() {
+            return editedCount;
+        }
+
+        /**
+         * @return 被选中的文档的序号与执行结果
+         */
+        public Map<Integer, EditBatch.Result> getResults() {
+            return results;
+        }
+
+        @Override
+        public String toString() {
+            return "EditSummary{documents=" + documentCount + ", selected=" + results.size()
+                    + ", edited=" + editedCount + '}';
+        }
+    }
+
+    /**
+     * 记录解析器读过的字符，用于取出每个文档的原文。
+     * 只保留尚未被取走的部分，即当前文档与解析器预读的内容
+     */
+    private static final class RecordingReader extends FilterReader {
+        private final StringBuilder text = new StringBuilder();
+        /**
+         * 已经被取走的码点数；Mark的位置以码点计
+         */
+        private int base;
+
+        RecordingReader(Reader in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = super.read();
+            if (c >= 0) {
+                text.append((char) c);
+            }
+            return c;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                text.append(buffer, offset, n);
+            }
+            return n;
+        }
+
+        /**
+         * @param index Mark中的码点位置
+         * @return 在未取走的内容中的下标
+         */
+        int offset(int index) {
+            return text.offsetByCodePoints(0, index - base);
+        }
+
+        /**
+         * 取走前length个字符
+         */
+        String take(int length) {
+            String taken = text.substring(0, length);
+            base += taken.codePointCount(0, length);
+            text.delete(0, length);
+            return taken;
+        }
+
+        /**
+         * @return 读到末尾后剩下的全部内容
+         */
+        String remaining() throws IOException {
+            char[] buffer = new char[4096];
+            while (read(buffer, 0, buffer.length) >= 0) {
+                // 读到末尾
+            }
+            return take(text.length());
+        }
+    }
+}
@@ -3,32 +3,62 @@ package com.fidt.yamleditor;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.IllegalClassException;
-import org.apache.commons.lang.StringUtils;
 
 import org.yaml.snakeyaml.DumperOptions;
 import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.reader.UnicodeReader;
 
 import javax.validation.constraints.NotBlank;
-import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 import java.io.BufferedWriter;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
 import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 /**
  * yaml读写工具
  * 重写于 2022/4/22，支持通过反转义符插入‘.’， {@link #supportEscape(boolean)}
  * 现有逻辑较为简单，因此支持反转义符时，不支持复合键中某个键以'\'作为结束字符
- * 由于SplitPattern不是线程安全的，如果要用在多线程环境下，并且并发地改动splitPattern的话，请将Pattern改成ThreadLocal的。
- * Yaml类不是线程安全的，具体会因为什么而导致出错，目前尚未考察，因此没有生成static final 的 Yaml类
+ * 拆分模式可以通过 {@link #supportEscape(boolean)} 修改，因此普通实例不应在修改拆分模式的同时被其他线程使用；
+ * 多线程共享时请使用 {@link #shared(boolean)} 返回的不可变实例。
+ * Yaml类不是线程安全的，构造开销又较大（representer、resolver、constructor），因此每个线程复用自己的Yaml实例，
+ * 解析或输出失败时丢弃该线程的实例，避免残留状态影响下一次调用。
  */
 @Slf4j
 public class YamlEditor {
     private static final DumperOptions dumperOptions = new DumperOptions();
-    private Pattern splitPattern = DOT_PATTERN;
+    /**
+     * 两种拆分模式各自共享一个有界的复合键缓存，String形式的API通过缓存复用已编译的 {@link YamlPath}
+     */
+    private static final YamlPathCache DOT_PATH_CACHE = new YamlPathCache(false, YamlPathCache.DEFAULT_CAPACITY);
+    private static final YamlPathCache ESCAPE_PATH_CACHE = new YamlPathCache(true, YamlPathCache.DEFAULT_CAPACITY);
+    /**
+     * 每个线程复用一个Yaml实例，Yaml本身不是线程安全的
+     */
+    private static final ThreadLocal<Yaml> YAML = ThreadLocal.withInitial(() -> new Yaml(dumperOptions));
+    private static final YamlEditor SHARED = new ImmutableYamlEditor(false);
+    private static final YamlEditor SHARED_ESCAPE = new ImmutableYamlEditor(true);
+    /**
+     * 全局的指标，默认不记录
+     */
+    private static volatile YamlMetrics metrics = YamlMetrics.NOOP;
+    /**
+     * 查找时表示复合键不存在，与值为null区分
+     */
+    private static final Object MISSING = new Object();
+    /**
+     * 当前的拆分模式，编译复合键时传给对应模式的缓存
+     */
+    private volatile boolean supportEscape;
     /**
      * 匹配 "\."以外的.
      * 通过使用escapePattern, 可以使用带有'.'的字段，例如， "a.b.baidu\.com" 可以表示 键 为 1.a 2.b 3.baidu.com的复合键。
@@ -55,7 +85,17 @@ public class YamlEditor {
     }
 
     public YamlEditor(boolean supportEscape) {
-        supportEscape(supportEscape);
+        applyEscape(supportEscape);
+    }
+
+    /**
+     * 获取可在多线程间共享的不可变实例，拆分模式在构造时固定，见 {@link ImmutableYamlEditor#supportEscape(boolean)}
+     *
+     * @param supportEscape 是否支持反转义
+     * @return 不可变的共享实例
+     */
+    public static YamlEditor shared(boolean supportEscape) {
+        return supportEscape ? SHARED_ESCAPE : SHARED;
     }
 
     /**
@@ -63,11 +103,90 @@ public class YamlEditor {
      * @param is 支持通过escape防止'.'被转义为delimiter
      */
     public void supportEscape(boolean is) {
-        if (is) {
-            splitPattern = UNESCAPE_PATTERN;
-        } else {
-            splitPattern = DOT_PATTERN;
-        }
+        applyEscape(is);
+    }
+
+    private void applyEscape(boolean is) {
+        supportEscape = is;
+    }
+
+    /**
+     * @return 指定拆分模式下共享的复合键缓存
+     */
+    static YamlPathCache pathCache(boolean supportEscape) {
+        return supportEscape ? ESCAPE_PATH_CACHE : DOT_PATH_CACHE;
+    }
+
+    /**
+     * 按当前的拆分模式编译复合键，编译结果会被缓存，同一复合键重复调用时不再拆分
+     *
+     * @param compositeKey 复合键
+     * @return 编译后的复合键
+     */
+    public YamlPath compilePath(@NotNull String compositeKey) {
+        return pathCache(supportEscape).get(compositeKey);
+    }
+
+    /**
+     * 按当前的拆分模式编译可以匹配多个节点的查询，语法见 {@link YamlQuery}
+     *
+     * @param pattern 查询，例如 "Service.Profile.Organization.*.company"
+     * @return 编译后的查询
+     */
+    public YamlQuery compileQuery(@NotNull String pattern) {
+        return YamlQuery.compile(pattern, isSupportEscape());
+    }
+
+    /**
+     * 在target中执行查询
+     *
+     * @param pattern 查询，语法见 {@link YamlQuery}
+     * @param target  被查询的Map或List
+     * @return 按文档顺序惰性产生的匹配结果
+     */
+    public Stream<YamlQuery.Match> query(@NotNull String pattern, @NotNull Object target) {
+        return compileQuery(pattern).stream(target);
+    }
+
+    /**
+     * @return 是否支持通过"\."转义键中的'.'
+     */
+    public boolean isSupportEscape() {
+        return supportEscape;
+    }
+
+    /**
+     * 获取当前线程复用的Yaml实例
+     */
+    static Yaml yaml() {
+        return YAML.get();
+    }
+
+    /**
+     * 所有Yaml实例共享的输出格式
+     */
+    static DumperOptions dumperOptions() {
+        return dumperOptions;
+    }
+
+    /**
+     * Yaml在出错后可能残留中间状态，丢弃当前线程的实例，下次使用时重新构造
+     */
+    static void discardYaml() {
+        YAML.remove();
+    }
+
+    /**
+     * 安装全局的指标，之后所有编辑器的读写与修改都会被记录
+     *
+     * @param yamlMetrics 指标，为null时恢复为 {@link YamlMetrics#NOOP}
+     */
+    public static void setMetrics(YamlMetrics yamlMetrics) {
+        metrics = yamlMetrics == null ? YamlMetrics.NOOP : yamlMetrics;
+    }
+
+    public static YamlMetrics getMetrics() {
+        return metrics;
     }
 
     /**
@@ -91,14 +210,75 @@ public class YamlEditor {
      * @return java.util.Map<java.lang.String, java.lang.Object>
      */
     public static Map<String, Object> getMapFromYaml(Path path) throws IOException {
-        try (InputStream in = Files.newInputStream(path)) {
+        YamlMetrics yamlMetrics = metrics;
+        if (!yamlMetrics.isEnabled()) {
+            return loadMap(path, null);
+        }
+        long start = System.nanoTime();
+        long[] bytes = new long[1];
+        Map<String, Object> yamlMap = null;
+        boolean failed = true;
+        try {
+            yamlMap = loadMap(path, bytes);
+            failed = false;
+            return yamlMap;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            long nodes = yamlMap != null && yamlMetrics.isNodeCountEnabled() ? YamlTrees.countNodes(yamlMap) : 0;
+            yamlMetrics.recordLoad(elapsed, bytes[0], nodes, failed);
+        }
+    }
+
+    /**
+     * @param bytes 不为null时累加读取的字节数
+     */
+    private static Map<String, Object> loadMap(Path path, long[] bytes) throws IOException {
+        try (InputStream in = bytes == null ? Files.newInputStream(path)
+                : new CountingInputStream(Files.newInputStream(path), bytes)) {
             // 这里应该是有问题的？
             @SuppressWarnings("unchecked")
-            Map<String, Object> yamlMap = new Yaml(dumperOptions).loadAs(in, LinkedHashMap.class);
+            Map<String, Object> yamlMap = yaml().loadAs(in, LinkedHashMap.class);
             return yamlMap;
+        } catch (RuntimeException e) {
+            discardYaml();
+            throw e;
         } catch (IOException e) {
-            log.error(path + " load failed !");
-            e.printStackTrace();
+            log.error("Failed to load {}.", path, e);
+            throw e;
+        }
+    }
+
+    /**
+     * 以事件流的方式从yaml文件中读取单个复合键的值，不构造整个文档；
+     * 与目标无关的子树会被跳过，找到目标后立即停止读取。
+     *
+     * @param compositeKey 复合键
+     * @param path         yaml文件
+     * @return 复合键对应的值
+     * @throws IllegalArgumentException 文件中不存在该复合键
+     */
+    public Object getValueFromYaml(@NotBlank String compositeKey, @NotNull Path path)
+            throws IOException, IllegalArgumentException {
+        Map<String, Object> values = getValuesFromYaml(Collections.singletonList(compositeKey), path);
+        if (!values.containsKey(compositeKey)) {
+            throw new IllegalArgumentException("Composite key " + compositeKey + " does not exist in " + path);
+        }
+        return values.get(compositeKey);
+    }
+
+    /**
+     * 以事件流的方式从yaml文件中一次读取多个复合键的值，所有复合键都找到后立即停止读取。
+     *
+     * @param compositeKeys 复合键
+     * @param path          yaml文件
+     * @return 复合键到值的映射，文件中不存在的复合键不在结果中
+     */
+    public Map<String, Object> getValuesFromYaml(@NotNull Collection<String> compositeKeys, @NotNull Path path)
+            throws IOException {
+        try (Reader reader = new UnicodeReader(Files.newInputStream(path))) {
+            return StreamingLookup.lookup(this, reader, compositeKeys);
+        } catch (RuntimeException e) {
+            discardYaml();
             throw e;
         }
     }
@@ -161,10 +341,29 @@ public class YamlEditor {
             Files.createFile(path);
         } catch (FileAlreadyExistsException ignored) {
         }
-        try (BufferedWriter bufferedWriter = Files.newBufferedWriter(path)) {
-            new Yaml(dumperOptions).dump(yamls, bufferedWriter);
+        YamlMetrics yamlMetrics = metrics;
+        long start = yamlMetrics.isEnabled() ? System.nanoTime() : 0;
+        long bytes = 0;
+        boolean failed = true;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            // 只flush不close，由channel统一关闭
+            Writer bufferedWriter = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(),
+                    -1), StreamingYamlWriter.BUFFER_SIZE);
+            StreamingYamlWriter.write(yamls, bufferedWriter);
+            bufferedWriter.flush();
+            bytes = channel.position();
+            failed = false;
+        } catch (RuntimeException e) {
+            discardYaml();
+            throw e;
         } catch (IOException e) {
-            throw new IOException("Can't write content to file!");
+            throw new IOException("Can't write content to file!", e);
+        } finally {
+            YamlDocumentCache.invalidateAllCaches(path);
+            if (yamlMetrics.isEnabled()) {
+                yamlMetrics.recordDump(System.nanoTime() - start, bytes, failed);
+            }
         }
     }
 
@@ -181,13 +380,56 @@ public class YamlEditor {
      */
     public static void dumpMapToYaml(Map<String, Object> yamls, Path path, boolean isForced) throws IOException {
         // 若不存在该文件，则创造文件。该逻辑不会创建不存在的文件夹。
+        prepareParent(path, isForced);
+        dumpMapToYaml(yamls, path);
+    }
+
+    /**
+     * 原子地将yamlMap写入文件：先写入同目录下的临时文件，再以ATOMIC_MOVE替换原文件。
+     * 并发的读者只会看到完整的旧内容或新内容，写入过程中崩溃也不会留下被截断的文件。
+     *
+     * @param yamls       yaml map
+     * @param path        输出路径，所在目录必须存在
+     * @param fsyncPolicy 落盘策略
+     */
+    public static void dumpMapToYamlAtomically(Map<String, Object> yamls, Path path, FsyncPolicy fsyncPolicy)
+            throws IOException {
+        YamlMetrics yamlMetrics = metrics;
+        long start = yamlMetrics.isEnabled() ? System.nanoTime() : 0;
+        long bytes = 0;
+        boolean failed = true;
+        try {
+            bytes = AtomicFiles.write(path, fsyncPolicy, writer -> StreamingYamlWriter.write(yamls, writer));
+            failed = false;
+        } finally {
+            YamlDocumentCache.invalidateAllCaches(path);
+            if (yamlMetrics.isEnabled()) {
+                yamlMetrics.recordDump(System.nanoTime() - start, bytes, failed);
+            }
+        }
+    }
+
+    /**
+     * 原子地将yamlMap写入文件
+     *
+     * @param yamls       yaml map
+     * @param path        输出路径
+     * @param fsyncPolicy 落盘策略
+     * @param isForced    是否强制添加路径（如果路径中文件夹不存在）
+     */
+    public static void dumpMapToYamlAtomically(Map<String, Object> yamls, Path path, FsyncPolicy fsyncPolicy,
+                                               boolean isForced) throws IOException {
+        prepareParent(path, isForced);
+        dumpMapToYamlAtomically(yamls, path, fsyncPolicy);
+    }
+
+    private static void prepareParent(Path path, boolean isForced) throws IOException {
         Path parentPath = path.toAbsolutePath().getParent();
         if (Files.exists(parentPath)) {
-            dumpMapToYaml(yamls, path);
-        } else if (isForced) {
-            //未经测试，不能保证功能符合预期。
-            Files.createDirectories(path.getParent());
-            dumpMapToYaml(yamls, path);
+            return;
+        }
+        if (isForced) {
+            Files.createDirectories(parentPath);
         } else {
             throw new NoSuchFileException(parentPath.toString() + " does not exist.");
         }
@@ -203,18 +445,7 @@ public class YamlEditor {
      * @return java.lang.String[]
      */
     private String[] splitCompositeKey(String compositeKey) {
-        String[] keys = splitPattern.split(compositeKey);
-        if (splitPattern == UNESCAPE_PATTERN) {
-            removeEscape(keys);
-        }
-        return keys;
-    }
-
-    private static void removeEscape(String[] strings) {
-        for (int i = 0, stringLength = strings.length; i < stringLength; i++) {
-            String s = strings[i];
-            strings[i] = ESCAPE_PATTERN.matcher(s).replaceAll(".");
-        }
+        return compilePath(compositeKey).toArray();
     }
 
     /**
@@ -230,8 +461,129 @@ public class YamlEditor {
         if (target == null) {
             throw new NullPointerException();
         }
-        String[] keys = splitCompositeKey(compositeKey);
-        return getValueDfs(keys, 0, target);
+        return getValue(compilePath(compositeKey), target);
+    }
+
+    /**
+     * 通过预编译的复合键获取target中的对象
+     *
+     * @param path   预编译的复合键
+     * @param target 待取值的对象
+     * @return
+     * @throws IllegalArgumentException
+     */
+    public Object getValue(@NotNull YamlPath path, @NotNull Object target)
+            throws IllegalArgumentException {
+        if (target == null) {
+            throw new NullPointerException();
+        }
+        YamlMetrics yamlMetrics = metrics;
+        if (!yamlMetrics.isEnabled()) {
+            return getValueDfs(path, 0, path.size(), target);
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Object value = getValueDfs(path, 0, path.size(), target);
+            failed = false;
+            return value;
+        } finally {
+            yamlMetrics.recordEdit(YamlMetrics.Operation.GET, System.nanoTime() - start, path.size(), failed);
+        }
+    }
+
+    /**
+     * 不抛出异常地获取值，适合频繁探测可能不存在的键（如功能开关）。
+     * 复合键不存在、中间层不是Map或List、列表下标越界或不是整数时都返回empty，不记录日志；
+     * 值为null时同样返回empty，需要区分时使用 {@link #getValueOrDefault(YamlPath, Object, Object)}。
+     *
+     * @param compositeKey 复合键
+     * @param target       待取值的对象
+     * @return 复合键对应的值
+     */
+    public Optional<Object> tryGetValue(@NotBlank String compositeKey, @NotNull Object target) {
+        return tryGetValue(compilePath(compositeKey), target);
+    }
+
+    /**
+     * 通过预编译的复合键不抛出异常地获取值，语义同 {@link #tryGetValue(String, Object)}
+     *
+     * @param path   预编译的复合键
+     * @param target 待取值的对象
+     * @return 复合键对应的值
+     */
+    public Optional<Object> tryGetValue(@NotNull YamlPath path, @NotNull Object target) {
+        Object value = find(path, target);
+        return value == MISSING ? Optional.empty() : Optional.ofNullable(value);
+    }
+
+    /**
+     * 不抛出异常地获取值，复合键不存在时返回defaultValue
+     *
+     * @param compositeKey 复合键
+     * @param target       待取值的对象
+     * @param defaultValue 复合键不存在时的返回值
+     * @return 复合键对应的值，键存在而值为null时返回null
+     */
+    public Object getValueOrDefault(@NotBlank String compositeKey, @NotNull Object target, Object defaultValue) {
+        return getValueOrDefault(compilePath(compositeKey), target, defaultValue);
+    }
+
+    /**
+     * 通过预编译的复合键不抛出异常地获取值，语义同 {@link #getValueOrDefault(String, Object, Object)}。
+     * 复合键不存在时没有任何分配
+     *
+     * @param path         预编译的复合键
+     * @param target       待取值的对象
+     * @param defaultValue 复合键不存在时的返回值
+     * @return 复合键对应的值
+     */
+    public Object getValueOrDefault(@NotNull YamlPath path, @NotNull Object target, Object defaultValue) {
+        Object value = find(path, target);
+        return value == MISSING ? defaultValue : value;
+    }
+
+    /**
+     * @return 复合键对应的值，不存在时返回 {@link #MISSING}
+     */
+    private static Object find(YamlPath path, Object target) {
+        if (target == null) {
+            throw new NullPointerException();
+        }
+        YamlMetrics yamlMetrics = metrics;
+        if (!yamlMetrics.isEnabled()) {
+            return lookup(path, target);
+        }
+        long start = System.nanoTime();
+        Object value = lookup(path, target);
+        yamlMetrics.recordEdit(YamlMetrics.Operation.GET, System.nanoTime() - start, path.size(), false);
+        return value;
+    }
+
+    /**
+     * 逐层向下查找，每层Map只查找一次；列表下标使用编译时解析好的结果
+     */
+    @SuppressWarnings("unchecked")
+    private static Object lookup(YamlPath path, Object target) {
+        Object current = target;
+        for (int i = 0, length = path.size(); i < length; i++) {
+            if (current instanceof Map) {
+                current = ((Map<Object, Object>) current).getOrDefault(path.getName(i), MISSING);
+                if (current == MISSING) {
+                    return MISSING;
+                }
+            } else if (current instanceof List) {
+                List<?> list = (List<?>) current;
+                int index = path.indexOrNegative(i);
+                if (index < 0 || index >= list.size()) {
+                    return MISSING;
+                }
+                current = list.get(index);
+            } else {
+                return MISSING;
+            }
+        }
+        return current;
     }
 
     /**
@@ -240,27 +592,29 @@ public class YamlEditor {
      * @Author Sennri
      * @Date 2022/4/22 16:20
      * @ParamList
-     * @param keys  键
+     * @param path  键
      * @param depth 深度
+     * @param length 取到第几段为止
      * @param target    取值对象
      * @return java.lang.Object
      */
-    private Object getValueDfs(@NotEmpty String[] keys, int depth, @NotNull Object target)
+    private Object getValueDfs(@NotNull YamlPath path, int depth, int length, @NotNull Object target)
             throws IllegalArgumentException {
-        String key = keys[depth];
+        String key = path.getName(depth);
+        int current = depth;
         depth++;
         Object next;
         if (target instanceof Map) {
-            Map<?, ?> t = (Map<?, ?>) target;
-            // 不存在键？
-            if (t.containsKey(key)) {
-                next = t.get(key);
-            } else {
+            @SuppressWarnings("unchecked")
+            Map<Object, Object> t = (Map<Object, Object>) target;
+            // 不存在键？只查找一次
+            next = t.getOrDefault(key, MISSING);
+            if (next == MISSING) {
                 log.error("Key {} does not exist, its index in composite key is {}", key, depth - 1);
                 throw new IllegalArgumentException("key error.");
             }
         } else if (target instanceof List) {
-            int index = Integer.parseInt(key);
+            int index = path.getIndex(current);
             List<?> t = (List<?>) target;
             // 超出索引范围？
             if (index < t.size()) {
@@ -272,7 +626,7 @@ public class YamlEditor {
         } else {
             throw new IllegalArgumentException("Target type is not supported. It should be List or Map.");
         }
-        if (depth == keys.length) {
+        if (depth == length) {
             return next;
         } else {
             if (next == null) {
@@ -280,7 +634,7 @@ public class YamlEditor {
                 throw new IllegalArgumentException();
             }
         }
-        return getValueDfs(keys, depth, next);
+        return getValueDfs(path, depth, length, next);
     }
 
 
@@ -321,8 +675,31 @@ public class YamlEditor {
         if (compositeKey.isEmpty()) {
             throw new NullPointerException();
         }
-        String[] keys = splitCompositeKey(compositeKey);
-        setValueDfs(keys, 0, value, target);
+        setValue(compilePath(compositeKey), value, target);
+    }
+
+    /**
+     * 通过预编译的复合键为target设置值，语义同 {@link #setValue(String, Object, Object)}
+     *
+     * @param path   预编译的复合键
+     * @param value  待设置的值
+     * @param target 被设置的对象
+     * @throws IllegalClassException
+     */
+    public void setValue(@NotNull YamlPath path, Object value, Object target) throws IllegalClassException {
+        YamlMetrics yamlMetrics = metrics;
+        if (!yamlMetrics.isEnabled()) {
+            setValueDfs(path, 0, value, target);
+            return;
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            setValueDfs(path, 0, value, target);
+            failed = false;
+        } finally {
+            yamlMetrics.recordEdit(YamlMetrics.Operation.SET, System.nanoTime() - start, path.size(), failed);
+        }
     }
 
     /**
@@ -334,25 +711,31 @@ public class YamlEditor {
      * @throws IllegalClassException
      */
     public void setValueDfs(String[] keys, int depth, Object value, Object target) throws IllegalClassException {
-        String key = keys[depth];
+        setValueDfs(YamlPath.of(keys), depth, value, target);
+    }
+
+    private void setValueDfs(YamlPath path, int depth, Object value, Object target) throws IllegalClassException {
+        String key = path.getName(depth);
+        int current = depth;
         ++depth;
+        int length = path.size();
         if (target instanceof Map) {
-            if (depth == keys.length) {
+            if (depth == length) {
                 ((Map) target).put(key, value);
             } else {
                 Object next = ((Map<?, ?>) target).get(key);
                 if (next == null) {
                     throw new IllegalArgumentException("设置路径不正确，请保证设置路径存在。若不要求插入路径已经存在，请使用insert！");
                 }
-                setValueDfs(keys, depth, value, next);
+                setValueDfs(path, depth, value, next);
             }
         } else if (target instanceof List) {
-            int index = Integer.parseInt(key);
-            if (depth == keys.length) {
+            int index = path.getIndex(current);
+            if (depth == length) {
                 ((List<Object>) target).set(index, value);
             } else {
                 Object next = ((List<Object>) target).get(index);
-                setValueDfs(keys, depth, value, next);
+                setValueDfs(path, depth, value, next);
             }
         } else {
             throw new IllegalClassException("Error: target must be Map or List type!");
@@ -386,14 +769,42 @@ public class YamlEditor {
             try {
                 dumpMapToYaml(yamlToMap, Paths.get(yamlName));
             } catch (IOException e) {
-                e.printStackTrace();
-                log.error("yaml file update failed !");
-                log.error("msg : " + e.getMessage());
-                log.error("cause : " + e.getCause());
+                log.error("Failed to update {} in {}.", key, yamlName, e);
             }
         }
     }
 
+    /**
+     * 原地更新yaml文件中已存在的键：只改写该值在文件中所占的字节范围，注释、空行与其余内容保持原样。
+     * 新值为Map或List时以flow风格写出。无法原地修改时（键带有锚点或显式标签、新值需要多行表示等）
+     * 退化为读入、赋值、整体写出，效果与 {@link #updateYaml(String, Object, String)} 相同。
+     *
+     * @param compositeKey 复合键，必须已经存在
+     * @param value        新的值
+     * @param path         yaml文件
+     * @throws IllegalArgumentException 键不存在
+     */
+    public void updateYamlInPlace(@NotBlank String compositeKey, Object value, @NotNull Path path)
+            throws IOException, IllegalArgumentException {
+        YamlPath yamlPath = compilePath(compositeKey);
+        boolean updated;
+        try {
+            updated = InPlaceEditor.update(yamlPath, value, path);
+        } finally {
+            YamlDocumentCache.invalidateAllCaches(path);
+        }
+        if (updated) {
+            return;
+        }
+        log.debug("Can't update {} in place, rewrite the whole file {}.", compositeKey, path);
+        Map<String, Object> yamlToMap = Objects.requireNonNull(getMapFromYaml(path));
+        Object oldValue = getValue(yamlPath, yamlToMap);
+        if (!Objects.equals(value, oldValue)) {
+            setValue(yamlPath, value, yamlToMap);
+            dumpMapToYaml(yamlToMap, path);
+        }
+    }
+
     /**
      * 采用递归方法向下赋值, 遇到不存在的Key路径将强制存在生成路径对应的对象
      * 如果遇到index值超过了原有层级的列表的范围，会将后续路径添加到列表最末尾
@@ -412,18 +823,45 @@ public class YamlEditor {
         if (compositeKey.isEmpty()) {
             throw new NullPointerException();
         }
-        String[] keys = splitCompositeKey(compositeKey);
+        insertValueToObject(compilePath(compositeKey), value, listOrMap);
+    }
+
+    /**
+     * 通过预编译的复合键插入值，语义同 {@link #insertValueToObject(String, Object, Object)}
+     *
+     * @param path      预编译的复合键
+     * @param value     值
+     * @param listOrMap 可能是List也可能是Map的对象
+     */
+    public void insertValueToObject(@NotNull YamlPath path, Object value, Object listOrMap)
+            throws NullPointerException, IllegalArgumentException {
+        YamlMetrics yamlMetrics = metrics;
+        if (!yamlMetrics.isEnabled()) {
+            insertValue(path, value, listOrMap);
+            return;
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            insertValue(path, value, listOrMap);
+            failed = false;
+        } finally {
+            yamlMetrics.recordEdit(YamlMetrics.Operation.INSERT, System.nanoTime() - start, path.size(), failed);
+        }
+    }
+
+    private void insertValue(YamlPath path, Object value, Object listOrMap) {
         if (listOrMap instanceof Map) {
-            insertValueToMap(keys, 0, value, (Map<String, Object>) listOrMap);
+            insertValueToMap(path, 0, value, (Map<String, Object>) listOrMap);
         } else {
-            insertValueToList(keys, 0, value, (List<Object>) listOrMap, Integer.parseInt(keys[0]));
+            insertValueToList(path, 0, value, (List<Object>) listOrMap, path.getIndex(0));
         }
     }
 
     /**
      * 往list插入特定元素
      * 如果插入index大于等于当前的size，则添加到当前该级列表的最末端。
-     * @param keys
+     * @param path
      * @param depth
      * @param value
      * @param list
@@ -431,10 +869,10 @@ public class YamlEditor {
      * @throws NullPointerException
      * @throws IllegalArgumentException
      */
-    private void insertValueToList(String[] keys, int depth, Object value, List<Object> list, int index)
+    private void insertValueToList(YamlPath path, int depth, Object value, List<Object> list, int index)
             throws NullPointerException, IllegalArgumentException {
         depth++;
-        int len = keys.length;
+        int len = path.size();
         if (depth == len) {
             if (list.size() <= index) {
                 list.add(value);
@@ -442,8 +880,7 @@ public class YamlEditor {
                 list.set(index, value);
             }
         } else {
-            String nextKey = keys[depth];
-            if (StringUtils.isNumeric(nextKey)) {
+            if (path.isIndex(depth)) {
                 List<Object> next;
                 if (list.size() <= index) {
                     log.warn("using index out of list range, will insert an unexisted routine");
@@ -456,8 +893,8 @@ public class YamlEditor {
                         list.set(index, next);
                     }
                 }
-                int nextIndex = Integer.parseInt(nextKey);
-                insertValueToList(keys, depth, value, next, nextIndex);
+                int nextIndex = path.getIndex(depth);
+                insertValueToList(path, depth, value, next, nextIndex);
             } else {
                 Map<String, Object> next;
                 if (list.size() <= index) {
@@ -471,7 +908,7 @@ public class YamlEditor {
                         list.set(index, next);
                     }
                 }
-                insertValueToMap(keys, depth, value, next);
+                insertValueToMap(path, depth, value, next);
             }
         }
     }
@@ -479,38 +916,37 @@ public class YamlEditor {
     /**
      * 往map插入特定元素
      * 如果中途不存在某个键则会生成这个键。
-     * @param keys
+     * @param path
      * @param depth
      * @param value
      * @param map
      * @throws NullPointerException
      * @throws IllegalArgumentException
      */
-    private void insertValueToMap(String[] keys, int depth, Object value, Map<String, Object> map)
+    private void insertValueToMap(YamlPath path, int depth, Object value, Map<String, Object> map)
             throws NullPointerException, IllegalArgumentException {
-        String currentKey = keys[depth];
+        String currentKey = path.getName(depth);
         depth++;
-        int len = keys.length;
+        int len = path.size();
         if (depth == len) {
             map.put(currentKey, value);
         } else {
-            String nextKey = keys[depth];
             // 这个判断导致不支持负整数，所以之前的通过-1来进行添加到末尾就不成立了。
-            if (StringUtils.isNumeric(nextKey)) {
-                int nextIndex = Integer.parseInt(nextKey);
+            if (path.isIndex(depth)) {
+                int nextIndex = path.getIndex(depth);
                 List<Object> next = (List<Object>) map.get(currentKey);
                 if (next == null) {
                     next = new ArrayList<>();
                     map.put(currentKey, next);
                 }
-                insertValueToList(keys, depth, value, next, nextIndex);
+                insertValueToList(path, depth, value, next, nextIndex);
             } else {
                 Map<String, Object> next = (Map<String, Object>) map.get(currentKey);
                 if (next == null) {
                     next = new LinkedHashMap<>();
                     map.put(currentKey, next);
                 }
-                insertValueToMap(keys, depth, value, next);
+                insertValueToMap(path, depth, value, next);
             }
         }
     }
@@ -576,6 +1012,15 @@ public class YamlEditor {
         insertYaml(key, value, inputPath, inputPath);
     }
 
+    /**
+     * 创建一个使用当前拆分模式的批量编辑，多个操作只读写一次文件，参见 {@link EditBatch}
+     *
+     * @return 空的批次
+     */
+    public EditBatch batch() {
+        return new EditBatch(this);
+    }
+
     /**
      * 从List对象或者Map对象中移除特定键值对
      *
@@ -588,17 +1033,43 @@ public class YamlEditor {
      */
     public void removeListOrMapContent(@NotBlank String compositeKey, @NotNull Object listOrMap)
             throws IllegalClassException, NullPointerException {
+        removeListOrMapContent(compilePath(compositeKey), listOrMap);
+    }
+
+    /**
+     * 通过预编译的复合键移除内容，语义同 {@link #removeListOrMapContent(String, Object)}
+     *
+     * @param path      预编译的复合键
+     * @param listOrMap 待处理的非空list或者map对象
+     */
+    public void removeListOrMapContent(@NotNull YamlPath path, @NotNull Object listOrMap)
+            throws IllegalClassException, NullPointerException {
+        YamlMetrics yamlMetrics = metrics;
+        if (!yamlMetrics.isEnabled()) {
+            removeContent(path, listOrMap);
+            return;
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            removeContent(path, listOrMap);
+            failed = false;
+        } finally {
+            yamlMetrics.recordEdit(YamlMetrics.Operation.REMOVE, System.nanoTime() - start, path.size(), failed);
+        }
+    }
+
+    private void removeContent(YamlPath path, Object listOrMap) {
         Object target;// 返回key所在对象
-        String[] keys = splitCompositeKey(compositeKey);
-        int len = keys.length;
+        int len = path.size();
         if (len > 1) {
-            target = getValueDfs(Arrays.copyOf(keys, len - 1), 0, listOrMap);
+            target = getValueDfs(path, 0, len - 1, listOrMap);
             // 如果返回值为null也会导致这里出错
             Objects.requireNonNull(target);
         } else {
             target = listOrMap;
         }
-        String lastKey = keys[len - 1];
+        String lastKey = path.getLastName();
         if (target instanceof Map) {
             @SuppressWarnings("unchecked")
             Map<String, Object> map = (Map<String, Object>) target;
@@ -606,7 +1077,7 @@ public class YamlEditor {
         } else if (target instanceof List) {
             @SuppressWarnings("unchecked")
             List<Object> list = ((List<Object>) target);
-            list.remove(Integer.parseInt(lastKey));
+            list.remove(path.getIndex(len - 1));
         } else {
             throw new IllegalClassException("Error: target must be Map-type or List-type!");
         }
@@ -643,4 +1114,41 @@ public class YamlEditor {
     public void removeYamlContent(String key, String yamlName) throws Exception {
         removeYamlContent(key, yamlName, yamlName);
     }
+
+    /**
+     * 统计读取的字节数，只在记录指标时使用
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private final long[] bytes;
+
+        CountingInputStream(InputStream in, long[] bytes) {
+            super(in);
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                bytes[0]++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                bytes[0] += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            bytes[0] += skipped;
+            return skipped;
+        }
+    }
 }
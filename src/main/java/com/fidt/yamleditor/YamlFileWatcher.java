@@ -0,0 +1,343 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于 {@link WatchService} 的yaml文件监听。
+ * 为每个被监听的文件保存一份解析后的树（只读视图），文件变化时重新解析，与上一份树比较后通知订阅了相关复合键的监听器。
+ * 短时间内的连续写入会被合并：最后一次变化后经过debounce时间才重新解析。
+ * 订阅某个复合键的监听器会收到该键本身、其下所有子键以及其上层键的变化，因此订阅 "Service" 即可收到 "Service.*" 的全部变化。
+ * 订阅按复合键的各段组织为前缀树，一次变化只访问相关的订阅。
+ * 监听器在指定的Executor上执行，不会阻塞监听线程；同一监听器的多次回调在多线程Executor上可能并发执行。
+ * 文件解析失败（例如读到了其他进程写了一半的文件）时保留上一份树，等待下一次变化。
+ *
+ * @Author Sennri
+ */
+@Slf4j
+public class YamlFileWatcher implements Closeable {
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 100;
+    private static final AtomicInteger THREAD_ID = new AtomicInteger();
+
+    private final WatchService watchService;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+    private final long debounceNanos;
+    private final YamlEditor yamlEditor;
+    private final ConcurrentHashMap<Path, WatchedFile> files = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Path, WatchKey> directories = new ConcurrentHashMap<>();
+    private final Thread thread;
+    private volatile boolean closed;
+
+    /**
+     * 使用默认的debounce时间，监听器在内部的线程池上执行，复合键不支持反转义
+     */
+    public YamlFileWatcher() throws IOException {
+        this(DEFAULT_DEBOUNCE_MILLIS, null, false);
+    }
+
+    /**
+     * @param debounceMillis   最后一次变化后等待多久再重新解析
+     * @param listenerExecutor 执行监听器的Executor，为null时使用内部的线程池，并在close时关闭
+     * @param supportEscape    订阅与通知中的复合键是否支持"\."转义
+     */
+    public YamlFileWatcher(long debounceMillis, Executor listenerExecutor, boolean supportEscape) throws IOException {
+        this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+        this.yamlEditor = YamlEditor.shared(supportEscape);
+        if (listenerExecutor == null) {
+            this.ownedExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                    daemonFactory("yaml-watcher-listener-"));
+            this.executor = ownedExecutor;
+        } else {
+            this.ownedExecutor = null;
+            this.executor = listenerExecutor;
+        }
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.thread = daemonFactory("yaml-watcher-").newThread(this::run);
+        thread.start();
+    }
+
+    private static ThreadFactory daemonFactory(String prefix) {
+        return r -> {
+            Thread t = new Thread(r, prefix + THREAD_ID.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * 开始监听文件，立即解析一次作为初始内容。文件不存在时视为空文档，创建后会收到新增通知。
+     *
+     * @param file yaml文件
+     */
+    public void watch(Path file) throws IOException {
+        watchedFile(file);
+    }
+
+    private WatchedFile watchedFile(Path file) throws IOException {
+        if (closed) {
+            throw new ClosedWatchServiceException();
+        }
+        Path key = file.toAbsolutePath().normalize();
+        WatchedFile watched = files.get(key);
+        if (watched != null) {
+            return watched;
+        }
+        Path directory = key.getParent();
+        if (!directories.containsKey(directory)) {
+            synchronized (directories) {
+                if (!directories.containsKey(directory)) {
+                    directories.put(directory, directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE));
+                }
+            }
+        }
+        // 先注册目录再解析，解析期间发生的变化也会产生事件
+        WatchedFile created = new WatchedFile(key);
+        Map<String, Object> tree = load(key);
+        if (tree != null) {
+            created.tree = tree;
+        }
+        watched = files.putIfAbsent(key, created);
+        return watched == null ? created : watched;
+    }
+
+    /**
+     * 订阅复合键的变化，文件尚未被监听时自动开始监听
+     *
+     * @param file         yaml文件
+     * @param compositeKey 复合键，同时匹配其下的所有子键以及其上层键
+     * @param listener     监听器
+     * @return 订阅，调用 {@link Subscription#cancel()} 取消
+     */
+    public Subscription subscribe(Path file, String compositeKey, YamlChangeListener listener) throws IOException {
+        return subscribe(watchedFile(file), yamlEditor.compilePath(compositeKey), listener);
+    }
+
+    /**
+     * 订阅文件中的所有变化
+     */
+    public Subscription subscribeAll(Path file, YamlChangeListener listener) throws IOException {
+        return subscribe(watchedFile(file), YamlPath.of(), listener);
+    }
+
+    private Subscription subscribe(WatchedFile watched, YamlPath path, YamlChangeListener listener) {
+        SubscriptionNode node = watched.subscriptions;
+        for (int i = 0, len = path.size(); i < len; i++) {
+            node = node.children.computeIfAbsent(path.getName(i), k -> new SubscriptionNode());
+        }
+        Subscription subscription = new Subscription(node, listener);
+        node.subscriptions.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * @return 文件当前的内容（只读视图）；文件未被监听时返回null
+     */
+    public Map<String, Object> getTree(Path file) {
+        WatchedFile watched = files.get(file.toAbsolutePath().normalize());
+        return watched == null ? null : watched.tree;
+    }
+
+    /**
+     * 立即重新解析文件并通知监听器，不等待文件系统事件
+     */
+    public void refresh(Path file) throws IOException {
+        reload(watchedFile(file));
+    }
+
+    private void run() {
+        Map<WatchedFile, Long> pending = new HashMap<>();
+        try {
+            while (!closed) {
+                WatchKey key;
+                if (pending.isEmpty()) {
+                    key = watchService.take();
+                } else {
+                    long wait = Collections.min(pending.values()) - System.nanoTime();
+                    key = watchService.poll(Math.max(wait, 0), TimeUnit.NANOSECONDS);
+                }
+                if (key != null) {
+                    collect(key, pending);
+                }
+                long now = System.nanoTime();
+                Iterator<Map.Entry<WatchedFile, Long>> iterator = pending.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Map.Entry<WatchedFile, Long> entry = iterator.next();
+                    if (entry.getValue() - now <= 0) {
+                        iterator.remove();
+                        // 单个文件的失败（例如回调线程池拒绝任务）不能终止监听线程
+                        try {
+                            reload(entry.getKey());
+                        } catch (RuntimeException e) {
+                            log.error("Failed to reload {}.", entry.getKey().path, e);
+                        }
+                    }
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            log.debug("Yaml watcher stopped.");
+        }
+    }
+
+    /**
+     * 记录一个目录上的事件，相关文件的重新解析时间推迟到debounce之后
+     */
+    private void collect(WatchKey key, Map<WatchedFile, Long> pending) {
+        Path directory = (Path) key.watchable();
+        long deadline = System.nanoTime() + debounceNanos;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                for (WatchedFile watched : files.values()) {
+                    if (watched.path.getParent().equals(directory)) {
+                        pending.put(watched, deadline);
+                    }
+                }
+                continue;
+            }
+            WatchedFile watched = files.get(directory.resolve((Path) event.context()));
+            if (watched != null) {
+                pending.put(watched, deadline);
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(directory);
+        }
+    }
+
+    private void reload(WatchedFile watched) {
+        List<YamlChange> changes;
+        synchronized (watched) {
+            Map<String, Object> tree;
+            try {
+                tree = load(watched.path);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Reload {} failed, keep the previous content: {}", watched.path, e.getMessage());
+                return;
+            }
+            if (tree == null) {
+                tree = Collections.emptyMap();
+            }
+            changes = YamlDiff.compare(watched.tree, tree, yamlEditor.isSupportEscape());
+            watched.tree = tree;
+        }
+        if (!changes.isEmpty()) {
+            dispatch(watched, changes);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> load(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        return (Map<String, Object>) YamlTrees.readOnly(YamlEditor.getMapFromYaml(path), null);
+    }
+
+    /**
+     * 沿每个差异的复合键遍历前缀树：路径上的订阅订阅的是上层键，路径终点之下的订阅订阅的是子键，二者都会受到影响
+     */
+    private void dispatch(WatchedFile watched, List<YamlChange> changes) {
+        Map<Subscription, List<YamlChange>> relevant = new LinkedHashMap<>();
+        for (YamlChange change : changes) {
+            YamlPath path = change.getPath();
+            SubscriptionNode node = watched.subscriptions;
+            add(relevant, node.subscriptions, change);
+            for (int i = 0, len = path.size(); i < len && node != null; i++) {
+                node = node.children.get(path.getName(i));
+                if (node != null) {
+                    add(relevant, node.subscriptions, change);
+                }
+            }
+            if (node != null) {
+                addDescendants(relevant, node, change);
+            }
+        }
+        for (Map.Entry<Subscription, List<YamlChange>> entry : relevant.entrySet()) {
+            Subscription subscription = entry.getKey();
+            List<YamlChange> list = Collections.unmodifiableList(entry.getValue());
+            try {
+                executor.execute(() -> {
+                    if (subscription.cancelled) {
+                        return;
+                    }
+                    try {
+                        subscription.listener.onChange(watched.path, list);
+                    } catch (RuntimeException e) {
+                        log.error("Yaml change listener failed on {}.", watched.path, e);
+                    }
+                });
+            } catch (RuntimeException e) {
+                // 其余的监听器照常通知
+                log.error("Failed to dispatch changes of {} to {}.", watched.path, subscription.listener, e);
+            }
+        }
+    }
+
+    private static void add(Map<Subscription, List<YamlChange>> relevant, List<Subscription> subscriptions,
+                            YamlChange change) {
+        for (Subscription subscription : subscriptions) {
+            relevant.computeIfAbsent(subscription, k -> new ArrayList<>()).add(change);
+        }
+    }
+
+    private static void addDescendants(Map<Subscription, List<YamlChange>> relevant, SubscriptionNode node,
+                                       YamlChange change) {
+        for (SubscriptionNode child : node.children.values()) {
+            add(relevant, child.subscriptions, change);
+            addDescendants(relevant, child, change);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        watchService.close();
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    private static final class WatchedFile {
+        final Path path;
+        final SubscriptionNode subscriptions = new SubscriptionNode();
+        volatile Map<String, Object> tree = Collections.emptyMap();
+
+        WatchedFile(Path path) {
+            this.path = path;
+        }
+    }
+
+    private static final class SubscriptionNode {
+        final ConcurrentHashMap<String, SubscriptionNode> children = new ConcurrentHashMap<>();
+        final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * 一个监听器对一个复合键的订阅
+     */
+    public static final class Subscription {
+        private final SubscriptionNode node;
+        private final YamlChangeListener listener;
+        private volatile boolean cancelled;
+
+        private Subscription(SubscriptionNode node, YamlChangeListener listener) {
+            this.node = node;
+            this.listener = listener;
+        }
+
+        /**
+         * 取消订阅，已经提交但尚未执行的回调也不再执行
+         */
+        public void cancel() {
+            cancelled = true;
+            node.subscriptions.remove(this);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.fidt.yamleditor;
+
+/**
+ * 编辑器的指标接口，通过 {@link YamlEditor#setMetrics(YamlMetrics)} 全局安装，默认为 {@link #NOOP}。
+ * <p>
+ * 所有方法都在调用线程上同步执行，参数只有基本类型与枚举，实现应当只做计数（如LongAdder），不要分配对象或加锁。
+ * {@link #isEnabled()} 返回false时调用方不会读取时钟，也不会调用其余方法，因此未安装指标时几乎没有额外开销。
+ *
+ * @Author Sennri
+ */
+public interface YamlMetrics {
+    /**
+     * 不记录任何指标
+     */
+    YamlMetrics NOOP = new Noop();
+
+    /**
+     * 被计时的操作
+     */
+    enum Operation {
+        /**
+         * {@link YamlEditor#getMapFromYaml(java.nio.file.Path)}
+         */
+        LOAD,
+        /**
+         * dumpMapToYaml与dumpMapToYamlAtomically
+         */
+        DUMP,
+        GET,
+        SET,
+        INSERT,
+        REMOVE
+    }
+
+    /**
+     * 被统计命中率的缓存
+     */
+    enum Cache {
+        /**
+         * 复合键到 {@link YamlPath} 的缓存
+         */
+        PATH,
+        /**
+         * {@link YamlDocumentCache}
+         */
+        DOCUMENT
+    }
+
+    /**
+     * @return 是否记录指标，为false时调用方跳过计时
+     */
+    boolean isEnabled();
+
+    /**
+     * 统计节点数需要在读入之后再遍历一次整棵树，代价与读入的文档大小成正比，因此默认关闭
+     *
+     * @return 读入文件时是否统计文档的节点数，为false时 {@link #recordLoad} 的nodes为0
+     */
+    default boolean isNodeCountEnabled() {
+        return false;
+    }
+
+    /**
+     * 读入一个文件
+     *
+     * @param nanos  耗时
+     * @param bytes  读取的字节数
+     * @param nodes  文档中的节点数（Map、List与标量各计一个），失败或者 {@link #isNodeCountEnabled()} 为false时为0
+     * @param failed 是否失败
+     */
+    void recordLoad(long nanos, long bytes, long nodes, boolean failed);
+
+    /**
+     * 写出一个文件
+     *
+     * @param nanos  耗时
+     * @param bytes  写出的字节数，失败时为0
+     * @param failed 是否失败
+     */
+    void recordDump(long nanos, long bytes, boolean failed);
+
+    /**
+     * 一次GET、SET、INSERT或REMOVE
+     *
+     * @param operation 操作
+     * @param nanos     耗时
+     * @param pathDepth 复合键的层数
+     * @param failed    是否抛出了异常
+     */
+    void recordEdit(Operation operation, long nanos, int pathDepth, boolean failed);
+
+    /**
+     * 一次缓存查找
+     *
+     * @param cache 缓存
+     * @param hit   是否命中
+     */
+    void recordCacheAccess(Cache cache, boolean hit);
+
+    /**
+     * 默认实现，JIT可以把对它的调用完全内联消除
+     */
+    final class Noop implements YamlMetrics {
+        private Noop() {
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public void recordLoad(long nanos, long bytes, long nodes, boolean failed) {
+        }
+
+        @Override
+        public void recordDump(long nanos, long bytes, boolean failed) {
+        }
+
+        @Override
+        public void recordEdit(Operation operation, long nanos, int pathDepth, boolean failed) {
+        }
+
+        @Override
+        public void recordCacheAccess(Cache cache, boolean hit) {
+        }
+
+        @Override
+        public String toString() {
+            return "YamlMetrics.NOOP";
+        }
+    }
+}
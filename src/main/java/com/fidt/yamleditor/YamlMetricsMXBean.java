@@ -0,0 +1,38 @@
+package com.fidt.yamleditor;
+
+import java.util.Map;
+
+/**
+ * {@link InMemoryYamlMetrics} 通过JMX暴露的属性，Map的键为 {@link YamlMetrics.Operation} 的名称，
+ * 可以在JConsole或VisualVM的 "com.fidt.yamleditor" 域下查看。
+ *
+ * @Author Sennri
+ */
+public interface YamlMetricsMXBean {
+    Map<String, Long> getOperationCounts();
+
+    Map<String, Long> getFailureCounts();
+
+    Map<String, Double> getMeanLatencyMicros();
+
+    /**
+     * @return 99分位耗时，精度为2的幂次的桶
+     */
+    Map<String, Double> getP99LatencyMicros();
+
+    Map<String, Double> getMaxLatencyMicros();
+
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    double getMeanNodeCount();
+
+    double getMeanPathDepth();
+
+    double getPathCacheHitRate();
+
+    double getDocumentCacheHitRate();
+
+    void reset();
+}
@@ -0,0 +1,44 @@
+package com.fidt.yamleditor;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 重放 {@link YamlDiff#diff(java.util.Map, java.util.Map, boolean)} 生成的编辑操作，
+ * 通过 setValue、insertValueToObject、removeListOrMapContent 依次作用于目标树。
+ * 重放时使用的编辑器必须与生成差异时采用同样的拆分模式。
+ *
+ * @Author Sennri
+ */
+public final class YamlPatch {
+
+    private YamlPatch() {
+    }
+
+    /**
+     * 将操作依次作用于root，遇到失败的操作时抛出异常，之前的操作不会回滚
+     *
+     * @param yamlEditor 执行操作的编辑器
+     * @param operations 编辑操作
+     * @param root       目标树
+     */
+    public static void apply(YamlEditor yamlEditor, List<EditOperation> operations, Object root) {
+        for (EditOperation operation : operations) {
+            operation.applyTo(yamlEditor, root);
+        }
+    }
+
+    /**
+     * 将操作作用于文件，文件只读写一次；任一操作失败时不写出文件
+     *
+     * @param yamlEditor 执行操作的编辑器
+     * @param operations 编辑操作
+     * @param path       yaml文件
+     * @return 每个操作的执行结果
+     */
+    public static EditBatch.Result applyToFile(YamlEditor yamlEditor, List<EditOperation> operations, Path path)
+            throws IOException {
+        return yamlEditor.batch().addAll(operations).onFailure(EditBatch.FailurePolicy.ROLLBACK).applyToFile(path);
+    }
+}
@@ -0,0 +1,327 @@
+package com.fidt.yamleditor;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/**
+ * 预编译的复合键。
+ * 复合键在编译时完成拆分、反转义以及列表下标的解析，之后可以被任意线程反复使用，
+ * 避免每次调用 {@link YamlEditor#getValue(String, Object)} 等方法时重复进行正则拆分和 Integer.parseInt。
+ * 该类不可变，线程安全。
+ *
+ * @Author Sennri
+ */
+public final class YamlPath {
+    /**
+     * 复合键中某一段的类型。
+     * 与insert的既有逻辑保持一致：纯数字的段视为列表下标，否则视为Map的键。
+     */
+    public enum SegmentKind {
+        MAP, LIST
+    }
+
+    /**
+     * parseIndex对非整数段的返回值，超出int的范围，不会与任何真实的下标（包括-1）混淆
+     */
+    private static final long NOT_AN_INDEX = Long.MIN_VALUE;
+
+    private final String compositeKey;
+    private final String[] names;
+    private final int[] indices;
+    /**
+     * 各段是否能被解析为整数；不能解析时indices中对应的值为-1
+     */
+    private final boolean[] integers;
+    private final SegmentKind[] kinds;
+    /**
+     * 缓存的哈希值，YamlPath常被用作索引的键
+     */
+    private int hash;
+
+    private YamlPath(String compositeKey, String[] names) {
+        this.compositeKey = compositeKey;
+        this.names = names;
+        int len = names.length;
+        this.indices = new int[len];
+        this.integers = new boolean[len];
+        this.kinds = new SegmentKind[len];
+        for (int i = 0; i < len; i++) {
+            initSegment(i, names[i]);
+        }
+    }
+
+    /**
+     * 在parent之后追加一段，已有各段的解析结果直接复用
+     */
+    private YamlPath(YamlPath parent, String name) {
+        int len = parent.names.length;
+        this.compositeKey = len == 0 ? escape(name) : parent.compositeKey + "." + escape(name);
+        this.names = Arrays.copyOf(parent.names, len + 1);
+        this.indices = Arrays.copyOf(parent.indices, len + 1);
+        this.integers = Arrays.copyOf(parent.integers, len + 1);
+        this.kinds = Arrays.copyOf(parent.kinds, len + 1);
+        names[len] = name;
+        initSegment(len, name);
+    }
+
+    private void initSegment(int i, String name) {
+        kinds[i] = StringUtils.isNumeric(name) ? SegmentKind.LIST : SegmentKind.MAP;
+        long index = parseIndex(name);
+        integers[i] = index != NOT_AN_INDEX;
+        indices[i] = integers[i] ? (int) index : -1;
+    }
+
+    /**
+     * 以'.'作为分隔符编译复合键
+     *
+     * @param compositeKey 复合键
+     * @return 编译后的复合键
+     */
+    public static YamlPath compile(String compositeKey) {
+        return compile(compositeKey, false);
+    }
+
+    /**
+     * 编译复合键
+     *
+     * @param compositeKey  复合键
+     * @param supportEscape 是否将"\."视为键内的'.'，参见 {@link YamlEditor#supportEscape(boolean)}
+     * @return 编译后的复合键
+     */
+    public static YamlPath compile(String compositeKey, boolean supportEscape) {
+        if (compositeKey == null) {
+            throw new NullPointerException();
+        }
+        Pattern splitPattern = supportEscape ? YamlEditor.UNESCAPE_PATTERN : YamlEditor.DOT_PATTERN;
+        String[] keys = splitPattern.split(compositeKey);
+        if (supportEscape) {
+            for (int i = 0, len = keys.length; i < len; i++) {
+                keys[i] = YamlEditor.ESCAPE_PATTERN.matcher(keys[i]).replaceAll(".");
+            }
+        }
+        return new YamlPath(compositeKey, keys);
+    }
+
+    /**
+     * 由已经拆分好的各段键直接构造，各段不再做反转义处理
+     *
+     * @param keys 已拆分的键
+     * @return 编译后的复合键
+     */
+    public static YamlPath of(String... keys) {
+        String[] names = keys.clone();
+        return new YamlPath(join(names, 0, names.length), names);
+    }
+
+    /**
+     * 与 Integer.parseInt 接受相同的输入，但不是整数时返回 {@link #NOT_AN_INDEX} 而不是抛出异常；
+     * 复合键中大部分段都是Map的键，编译时不应为每一段构造一个异常
+     */
+    private static long parseIndex(String name) {
+        int len = name.length();
+        if (len == 0) {
+            return NOT_AN_INDEX;
+        }
+        char first = name.charAt(0);
+        boolean negative = first == '-';
+        int i = negative || first == '+' ? 1 : 0;
+        if (i == len) {
+            return NOT_AN_INDEX;
+        }
+        // 以负数累加，Integer.MIN_VALUE也不会溢出
+        long limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        long result = 0;
+        for (; i < len; i++) {
+            int digit = Character.digit(name.charAt(i), 10);
+            if (digit < 0) {
+                return NOT_AN_INDEX;
+            }
+            result = result * 10 - digit;
+            if (result < limit) {
+                return NOT_AN_INDEX;
+            }
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * 将各段重新拼接为复合键，键内的'.'会被转义为"\."
+     */
+    private static String join(String[] names, int from, int to) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            if (i > from) {
+                sb.append('.');
+            }
+            sb.append(escape(names[i]));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 将单个键中的'.'转义为"\."，使其可以在开启反转义的编辑器中作为复合键的一段使用
+     *
+     * @param key 单个键
+     * @return 转义后的键
+     */
+    public static String escape(String key) {
+        return key.indexOf('.') < 0 ? key : key.replace(".", "\\.");
+    }
+
+    /**
+     * @return 复合键的段数
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * @param i 段的位置
+     * @return 第i段的键名（已反转义）
+     */
+    public String getName(int i) {
+        return names[i];
+    }
+
+    /**
+     * @return 最后一段的键名
+     */
+    public String getLastName() {
+        return names[names.length - 1];
+    }
+
+    /**
+     * @param i 段的位置
+     * @return 第i段的类型
+     */
+    public SegmentKind getKind(int i) {
+        return kinds[i];
+    }
+
+    /**
+     * @param i 段的位置
+     * @return 第i段是否为纯数字，即插入时应当创建列表
+     */
+    public boolean isIndex(int i) {
+        return kinds[i] == SegmentKind.LIST;
+    }
+
+    /**
+     * 获取预先解析好的列表下标
+     *
+     * @param i 段的位置
+     * @return 第i段对应的整数下标
+     * @throws NumberFormatException 该段不是整数，与原先 Integer.parseInt 的行为保持一致
+     */
+    public int getIndex(int i) throws NumberFormatException {
+        if (!integers[i]) {
+            throw new NumberFormatException("For input string: \"" + names[i] + "\"");
+        }
+        return indices[i];
+    }
+
+    /**
+     * 不抛出异常地获取列表下标
+     *
+     * @param i 段的位置
+     * @return 第i段对应的整数下标，若该段不是整数则返回 -1
+     */
+    int indexOrNegative(int i) {
+        return indices[i];
+    }
+
+    /**
+     * @param i 段的位置
+     * @return 第i段能被解析为整数，但写法与 Integer.toString 的结果不同，如"01"、"+1"、"-0"
+     */
+    boolean isNonCanonicalIndex(int i) {
+        if (!integers[i]) {
+            return false;
+        }
+        String name = names[i];
+        char first = name.charAt(0);
+        if (first == '+') {
+            return true;
+        }
+        int start = first == '-' ? 1 : 0;
+        return name.charAt(start) == '0' && (start == 1 || name.length() > 1);
+    }
+
+    /**
+     * 按拆分模式重新拼接复合键
+     *
+     * @param supportEscape 是否将键内的'.'写为"\."；为false时直接以'.'拼接
+     * @return 复合键
+     */
+    String toCompositeKey(boolean supportEscape) {
+        return supportEscape ? join(names, 0, names.length) : String.join(".", names);
+    }
+
+    /**
+     * @return 各段键名的副本
+     */
+    public String[] toArray() {
+        return names.clone();
+    }
+
+    /**
+     * 截取复合键的一部分
+     *
+     * @param from 起始段（含）
+     * @param to   结束段（不含）
+     * @return 新的复合键
+     */
+    public YamlPath subPath(int from, int to) {
+        if (from == 0 && to == names.length) {
+            return this;
+        }
+        String[] sub = Arrays.copyOfRange(names, from, to);
+        return new YamlPath(join(sub, 0, sub.length), sub);
+    }
+
+    /**
+     * @param name 追加的一段键名（不做反转义处理）
+     * @return 在当前复合键之后追加一段得到的复合键
+     */
+    public YamlPath child(String name) {
+        return new YamlPath(this, name);
+    }
+
+    /**
+     * @return 去掉最后一段之后的复合键
+     */
+    public YamlPath parent() {
+        return subPath(0, names.length - 1);
+    }
+
+    /**
+     * @return 编译时使用的复合键
+     */
+    @Override
+    public String toString() {
+        return compositeKey;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof YamlPath)) {
+            return false;
+        }
+        return Arrays.equals(names, ((YamlPath) o).names);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = Arrays.hashCode(names);
+            hash = h;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,71 @@
+package com.fidt.yamleditor;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 复合键字符串到 {@link YamlPath} 的有界缓存。
+ * 命中时只有一次 ConcurrentHashMap 的读操作，不加锁。
+ * 新放入的键按顺序写入一个长度为容量的环形数组，覆盖的旧键同时从缓存中移除，即按放入的先后淘汰（FIFO），与键的哈希无关。
+ *
+ * @Author Sennri
+ */
+final class YamlPathCache {
+    static final int DEFAULT_CAPACITY = 1024;
+
+    private final ConcurrentHashMap<String, YamlPath> paths;
+    private final boolean supportEscape;
+    private final int capacity;
+    /**
+     * 放入缓存的键，下一个写入的位置即最早放入的键
+     */
+    private final AtomicReferenceArray<String> ring;
+    private final AtomicInteger next = new AtomicInteger();
+
+    YamlPathCache(boolean supportEscape, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.supportEscape = supportEscape;
+        this.capacity = capacity;
+        this.paths = new ConcurrentHashMap<>(Math.min(capacity, 256));
+        this.ring = new AtomicReferenceArray<>(capacity);
+    }
+
+    YamlPath get(String compositeKey) {
+        YamlPath path = paths.get(compositeKey);
+        YamlMetrics metrics = YamlEditor.getMetrics();
+        if (metrics.isEnabled()) {
+            metrics.recordCacheAccess(YamlMetrics.Cache.PATH, path != null);
+        }
+        if (path != null) {
+            return path;
+        }
+        path = YamlPath.compile(compositeKey, supportEscape);
+        YamlPath existing = paths.putIfAbsent(compositeKey, path);
+        if (existing != null) {
+            return existing;
+        }
+        String eldest = ring.getAndSet(Math.floorMod(next.getAndIncrement(), capacity), compositeKey);
+        if (eldest != null) {
+            paths.remove(eldest);
+        }
+        return path;
+    }
+
+    boolean isSupportEscape() {
+        return supportEscape;
+    }
+
+    int size() {
+        return paths.size();
+    }
+
+    void clear() {
+        for (int i = 0; i < capacity; i++) {
+            ring.set(i, null);
+        }
+        paths.clear();
+    }
+}
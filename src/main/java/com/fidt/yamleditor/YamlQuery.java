@@ -0,0 +1,435 @@
+package com.fidt.yamleditor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 可以匹配多个节点的复合键查询。在复合键的语法之上，以下几种段有特殊含义：
+ * <ul>
+ *     <li>{@code *}：任意一个键或下标</li>
+ *     <li>{@code **}：任意层数（包括零层）的键或下标</li>
+ *     <li>{@code n:m}：下标在[n, m)范围内的列表元素，n与m都可以省略，例如 {@code 1:}、{@code :3}</li>
+ * </ul>
+ * <pre>
+ *     YamlQuery query = yamlEditor.compileQuery("Service.Profile.Organization.*.company");
+ *     List&lt;Object&gt; companies = query.stream(map).map(YamlQuery.Match::getValue).collect(Collectors.toList());
+ *     query.setAll(map, "fidt");
+ * </pre>
+ * 查询把所有段看作一个状态机，对树只做一次先序遍历，每个节点最多访问一次、最多匹配一次，
+ * 不匹配任何前缀的子树直接跳过；当前状态只剩一个普通段时直接按键或下标取子节点，不遍历其余的兄弟节点。
+ * 结果按文档顺序惰性产生，流被消费到哪里，遍历就进行到哪里。根节点本身不参与匹配。
+ * <p>
+ * 开启反转义时，"\*" 表示名为 * 的键。该类不可变，线程安全；遍历期间不能修改被查询的树。
+ *
+ * @Author Sennri
+ */
+public final class YamlQuery {
+    private enum Kind {
+        NAME, ANY, ANY_DEPTH, RANGE
+    }
+
+    private static final Pattern RANGE_PATTERN = Pattern.compile("(\\d*):(\\d*)");
+    private static final Pattern ESCAPED_STAR = Pattern.compile("\\\\\\*");
+    /**
+     * 状态用long的各个位表示，因此段数有上限
+     */
+    private static final int MAX_SEGMENTS = 63;
+
+    private final String pattern;
+    private final boolean supportEscape;
+    private final Kind[] kinds;
+    private final String[] names;
+    /**
+     * NAME段预先解析的列表下标，不是下标时为-1；RANGE段的起始下标
+     */
+    private final int[] from;
+    /**
+     * RANGE段的结束下标（不含）
+     */
+    private final int[] to;
+    private final long acceptBit;
+
+    private YamlQuery(String pattern, boolean supportEscape, String[] segments) {
+        int len = segments.length;
+        this.pattern = pattern;
+        this.supportEscape = supportEscape;
+        this.kinds = new Kind[len];
+        this.names = new String[len];
+        this.from = new int[len];
+        this.to = new int[len];
+        this.acceptBit = 1L << len;
+        for (int i = 0; i < len; i++) {
+            String segment = segments[i];
+            Matcher range = RANGE_PATTERN.matcher(segment);
+            if ("*".equals(segment)) {
+                kinds[i] = Kind.ANY;
+            } else if ("**".equals(segment)) {
+                kinds[i] = Kind.ANY_DEPTH;
+            } else if (range.matches()) {
+                kinds[i] = Kind.RANGE;
+                from[i] = range.group(1).isEmpty() ? 0 : Integer.parseInt(range.group(1));
+                to[i] = range.group(2).isEmpty() ? Integer.MAX_VALUE : Integer.parseInt(range.group(2));
+            } else {
+                kinds[i] = Kind.NAME;
+                if (supportEscape) {
+                    segment = YamlEditor.ESCAPE_PATTERN.matcher(segment).replaceAll(".");
+                    segment = ESCAPED_STAR.matcher(segment).replaceAll("*");
+                }
+                names[i] = segment;
+                from[i] = YamlPath.of(segment).indexOrNegative(0);
+            }
+        }
+    }
+
+    /**
+     * 以'.'作为分隔符编译查询
+     */
+    public static YamlQuery compile(String pattern) {
+        return compile(pattern, false);
+    }
+
+    /**
+     * 编译查询
+     *
+     * @param pattern       查询，语法见类注释
+     * @param supportEscape 是否将"\."视为键内的'.'
+     * @return 编译后的查询
+     * @throws IllegalArgumentException 查询为空或段数超过63
+     */
+    public static YamlQuery compile(String pattern, boolean supportEscape) throws IllegalArgumentException {
+        if (pattern == null) {
+            throw new NullPointerException();
+        }
+        if (pattern.isEmpty()) {
+            throw new IllegalArgumentException("Query must not be empty.");
+        }
+        Pattern splitPattern = supportEscape ? YamlEditor.UNESCAPE_PATTERN : YamlEditor.DOT_PATTERN;
+        String[] segments = splitPattern.split(pattern);
+        if (segments.length > MAX_SEGMENTS) {
+            throw new IllegalArgumentException("Query has more than " + MAX_SEGMENTS + " segments: " + pattern);
+        }
+        return new YamlQuery(pattern, supportEscape, segments);
+    }
+
+    /**
+     * 对 {@code **} 段求闭包：处于该段时也同时处于下一段
+     */
+    private long close(long states) {
+        for (int i = 0, len = kinds.length; i < len; i++) {
+            if ((states & (1L << i)) != 0 && kinds[i] == Kind.ANY_DEPTH) {
+                states |= 1L << (i + 1);
+            }
+        }
+        return states;
+    }
+
+    /**
+     * 沿一条边向下走一步
+     *
+     * @param states 父节点的状态
+     * @param name   Map中的键，列表元素时为null
+     * @param index  列表下标，Map中的键时为-1
+     * @return 子节点的状态，0表示子树中不可能有匹配
+     */
+    private long step(long states, String name, int index) {
+        long next = 0;
+        for (int i = 0, len = kinds.length; i < len; i++) {
+            if ((states & (1L << i)) == 0) {
+                continue;
+            }
+            switch (kinds[i]) {
+                case NAME:
+                    if (name != null ? names[i].equals(name) : from[i] == index) {
+                        next |= 1L << (i + 1);
+                    }
+                    break;
+                case ANY:
+                    next |= 1L << (i + 1);
+                    break;
+                case RANGE:
+                    if (name == null && from[i] <= index && index < to[i]) {
+                        next |= 1L << (i + 1);
+                    }
+                    break;
+                default:
+                    next |= 1L << i;
+                    break;
+            }
+        }
+        return close(next);
+    }
+
+    /**
+     * @param root 被查询的Map或List
+     * @return 按文档顺序惰性产生的匹配结果
+     */
+    public Stream<Match> stream(Object root) {
+        Iterator<Match> iterator = new MatchIterator(root);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * @param root 被查询的Map或List
+     * @return 所有匹配的复合键
+     */
+    public List<YamlPath> paths(Object root) {
+        List<YamlPath> paths = new ArrayList<>();
+        MatchIterator iterator = new MatchIterator(root);
+        while (iterator.hasNext()) {
+            paths.add(iterator.next().path);
+        }
+        return paths;
+    }
+
+    private List<Match> collect(Object root) {
+        List<Match> matches = new ArrayList<>();
+        MatchIterator iterator = new MatchIterator(root);
+        while (iterator.hasNext()) {
+            matches.add(iterator.next());
+        }
+        return matches;
+    }
+
+    /**
+     * 将所有匹配的节点设为value，每个节点得到value的一份深拷贝，互不影响。
+     * 先完成匹配再统一修改，修改本身不会产生新的匹配。
+     *
+     * @param root  被修改的Map或List
+     * @param value 新值
+     * @return 被修改的节点数
+     */
+    public int setAll(Object root, Object value) {
+        List<Match> matches = collect(root);
+        for (Match match : matches) {
+            match.set(YamlTrees.deepCopy(value));
+        }
+        return matches.size();
+    }
+
+    /**
+     * 移除所有匹配的节点。按文档顺序的逆序移除：同一列表中的元素先移除下标大的，子孙节点先于祖先节点移除，
+     * 因此每次移除都不会影响其余匹配的位置。
+     *
+     * @param root 被修改的Map或List
+     * @return 被移除的节点数
+     */
+    public int removeAll(Object root) {
+        List<Match> matches = collect(root);
+        for (int i = matches.size() - 1; i >= 0; i--) {
+            matches.get(i).remove();
+        }
+        return matches.size();
+    }
+
+    public boolean isSupportEscape() {
+        return supportEscape;
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+
+    /**
+     * 一个匹配的节点
+     */
+    public final class Match {
+        private final YamlPath path;
+        private final Object parent;
+        private final Object value;
+
+        Match(YamlPath path, Object parent, Object value) {
+            this.path = path;
+            this.parent = parent;
+            this.value = value;
+        }
+
+        public YamlPath getPath() {
+            return path;
+        }
+
+        /**
+         * @return 按查询的拆分模式拼接的复合键，可以直接交给同一拆分模式的编辑器使用
+         */
+        public String getCompositeKey() {
+            return path.toCompositeKey(supportEscape);
+        }
+
+        public Object getValue() {
+            return value;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void set(Object newValue) {
+            if (parent instanceof Map) {
+                ((Map<String, Object>) parent).put(path.getLastName(), newValue);
+            } else {
+                ((List<Object>) parent).set(path.getIndex(path.size() - 1), newValue);
+            }
+        }
+
+        private void remove() {
+            if (parent instanceof Map) {
+                ((Map<?, ?>) parent).remove(path.getLastName());
+            } else {
+                ((List<?>) parent).remove(path.getIndex(path.size() - 1));
+            }
+        }
+
+        @Override
+        public String toString() {
+            return path + "=" + value;
+        }
+    }
+
+    /**
+     * 正在遍历子节点的Map或List
+     */
+    private final class Frame {
+        final Object node;
+        final YamlPath path;
+        final long states;
+        /**
+         * 遍历全部键时使用
+         */
+        Iterator<? extends Map.Entry<?, ?>> entries;
+        /**
+         * 只剩一个普通段时直接取的键
+         */
+        String onlyName;
+        /**
+         * 列表下标的遍历范围
+         */
+        int next;
+        int end;
+
+        String childName;
+        int childIndex;
+        Object child;
+
+        Frame(Object node, YamlPath path, long states) {
+            this.node = node;
+            this.path = path;
+            this.states = states;
+            long pending = states & ~acceptBit;
+            int single = Long.bitCount(pending) == 1 ? Long.numberOfTrailingZeros(pending) : -1;
+            if (node instanceof Map) {
+                if (single >= 0 && kinds[single] == Kind.NAME) {
+                    onlyName = names[single];
+                } else {
+                    entries = ((Map<?, ?>) node).entrySet().iterator();
+                }
+            } else {
+                int size = ((List<?>) node).size();
+                end = size;
+                if (single >= 0 && kinds[single] == Kind.NAME) {
+                    next = from[single] < 0 ? size : from[single];
+                    end = Math.min(size, next + 1);
+                } else if (single >= 0 && kinds[single] == Kind.RANGE) {
+                    next = Math.min(size, from[single]);
+                    end = Math.min(size, to[single]);
+                }
+            }
+        }
+
+        /**
+         * @return 是否还有下一个子节点，有则放入childName、childIndex、child
+         */
+        boolean advance() {
+            if (node instanceof Map) {
+                if (entries == null) {
+                    Map<?, ?> map = (Map<?, ?>) node;
+                    if (onlyName == null || !map.containsKey(onlyName)) {
+                        return false;
+                    }
+                    childName = onlyName;
+                    child = map.get(onlyName);
+                    onlyName = null;
+                    childIndex = -1;
+                    return true;
+                }
+                while (entries.hasNext()) {
+                    Map.Entry<?, ?> entry = entries.next();
+                    if (entry.getKey() instanceof String) {
+                        childName = (String) entry.getKey();
+                        child = entry.getValue();
+                        childIndex = -1;
+                        return true;
+                    }
+                }
+                return false;
+            }
+            if (next >= end) {
+                return false;
+            }
+            childName = null;
+            childIndex = next;
+            child = ((List<?>) node).get(next++);
+            return true;
+        }
+    }
+
+    private final class MatchIterator implements Iterator<Match> {
+        private final ArrayDeque<Frame> stack = new ArrayDeque<>();
+        private Match pending;
+
+        MatchIterator(Object root) {
+            if (root instanceof Map || root instanceof List) {
+                stack.push(new Frame(root, YamlPath.of(), close(1L)));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (pending == null) {
+                pending = advance();
+            }
+            return pending != null;
+        }
+
+        @Override
+        public Match next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Match match = pending;
+            pending = null;
+            return match;
+        }
+
+        private Match advance() {
+            while (!stack.isEmpty()) {
+                Frame frame = stack.peek();
+                if (!frame.advance()) {
+                    stack.pop();
+                    continue;
+                }
+                long states = step(frame.states, frame.childName, frame.childIndex);
+                if (states == 0) {
+                    continue;
+                }
+                Object child = frame.child;
+                YamlPath path = frame.path.child(frame.childName != null ? frame.childName
+                        : String.valueOf(frame.childIndex));
+                if ((states & ~acceptBit) != 0 && (child instanceof Map || child instanceof List)) {
+                    stack.push(new Frame(child, path, states));
+                }
+                if ((states & acceptBit) != 0) {
+                    return new Match(path, frame.node, child);
+                }
+            }
+            return null;
+        }
+    }
+}
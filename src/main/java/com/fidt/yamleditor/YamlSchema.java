@@ -0,0 +1,294 @@
+package com.fidt.yamleditor;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 文档结构的描述，由 {@link SchemaYamlLoader} 在解析时使用：已知字段的标量直接按声明的类型转换，
+ * 不再经过SnakeYAML基于正则的隐式类型推断；未声明的键与缺少的必需键在解析过程中立即报错。
+ * <p>
+ * 在代码中构造：
+ * <pre>
+ *     YamlSchema schema = YamlSchema.object()
+ *             .required("Service", YamlSchema.object()
+ *                     .required("port", YamlSchema.INT)
+ *                     .optional("hosts", YamlSchema.listOf(YamlSchema.STRING))
+ *                     .optional("labels", YamlSchema.mapOf(YamlSchema.STRING)));
+ * </pre>
+ * 或者以yaml声明，与上面等价（键名后的 '?' 表示可选，'*' 声明其余的键）：
+ * <pre>
+ *     Service:
+ *       port: int
+ *       hosts?: [string]
+ *       labels?: {'*': string}
+ * </pre>
+ * 标量类型为 string、int、long、double、boolean 与 any，any表示按普通的读取方式推断类型，子树不再检查。
+ * 任何类型的值都可以为null。构造完成之后不应再修改，之后可以在多个线程中共享。
+ *
+ * @Author Sennri
+ */
+public final class YamlSchema {
+    /**
+     * 节点的种类
+     */
+    public enum Kind {
+        STRING, INT, LONG, DOUBLE, BOOLEAN, ANY, LIST, OBJECT
+    }
+
+    public static final YamlSchema STRING = new YamlSchema(Kind.STRING, null);
+    public static final YamlSchema INT = new YamlSchema(Kind.INT, null);
+    public static final YamlSchema LONG = new YamlSchema(Kind.LONG, null);
+    public static final YamlSchema DOUBLE = new YamlSchema(Kind.DOUBLE, null);
+    public static final YamlSchema BOOLEAN = new YamlSchema(Kind.BOOLEAN, null);
+    public static final YamlSchema ANY = new YamlSchema(Kind.ANY, null);
+
+    private final Kind kind;
+    /**
+     * LIST的元素
+     */
+    private final YamlSchema element;
+    /**
+     * OBJECT声明的字段，值为是否必需
+     */
+    private final Map<String, Field> fields;
+    /**
+     * OBJECT中未声明的键的类型，为null时不允许未声明的键
+     */
+    private YamlSchema additionalKeys;
+    private int requiredCount;
+
+    private YamlSchema(Kind kind, YamlSchema element) {
+        this.kind = kind;
+        this.element = element;
+        this.fields = kind == Kind.OBJECT ? new LinkedHashMap<>() : Collections.emptyMap();
+    }
+
+    /**
+     * @return 没有字段的对象，通过 {@link #required(String, YamlSchema)} 与 {@link #optional(String, YamlSchema)} 添加字段
+     */
+    public static YamlSchema object() {
+        return new YamlSchema(Kind.OBJECT, null);
+    }
+
+    public static YamlSchema listOf(YamlSchema element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        return new YamlSchema(Kind.LIST, element);
+    }
+
+    /**
+     * @return 键任意、值为value的Map
+     */
+    public static YamlSchema mapOf(YamlSchema value) {
+        return object().additionalKeys(value);
+    }
+
+    /**
+     * 添加必需的字段，文档中缺少该键时报错
+     */
+    public YamlSchema required(String name, YamlSchema schema) {
+        return field(name, schema, true);
+    }
+
+    /**
+     * 添加可选的字段
+     */
+    public YamlSchema optional(String name, YamlSchema schema) {
+        return field(name, schema, false);
+    }
+
+    /**
+     * 允许未声明的键，其值按schema读取
+     *
+     * @param schema 未声明的键的类型，不检查时使用 {@link #ANY}
+     */
+    public YamlSchema additionalKeys(YamlSchema schema) {
+        checkObject();
+        this.additionalKeys = schema;
+        return this;
+    }
+
+    private YamlSchema field(String name, YamlSchema schema, boolean required) {
+        checkObject();
+        if (name == null || schema == null) {
+            throw new NullPointerException();
+        }
+        Field previous = fields.put(name, new Field(name, schema, required));
+        if (previous != null && previous.required) {
+            requiredCount--;
+        }
+        if (required) {
+            requiredCount++;
+        }
+        return this;
+    }
+
+    private void checkObject() {
+        if (kind != Kind.OBJECT) {
+            throw new IllegalStateException("Only an object schema has fields: " + kind);
+        }
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return LIST的元素类型，其他种类为null
+     */
+    public YamlSchema getElement() {
+        return element;
+    }
+
+    /**
+     * @return OBJECT中未声明的键的类型，不允许未声明的键时为null
+     */
+    public YamlSchema getAdditionalKeys() {
+        return additionalKeys;
+    }
+
+    /**
+     * @return OBJECT声明的字段，其他种类为空
+     */
+    public Map<String, Field> getFields() {
+        return Collections.unmodifiableMap(fields);
+    }
+
+    Field field(String name) {
+        return fields.get(name);
+    }
+
+    int getRequiredCount() {
+        return requiredCount;
+    }
+
+    /**
+     * 读入以yaml声明的schema，语法见类的说明
+     *
+     * @param yaml schema的内容，根节点为Map
+     * @return 对象类型的schema
+     * @throws IllegalArgumentException 无法识别的类型
+     */
+    public static YamlSchema parse(String yaml) {
+        Object root;
+        try {
+            root = YamlEditor.yaml().load(yaml);
+        } catch (RuntimeException e) {
+            YamlEditor.discardYaml();
+            throw e;
+        }
+        if (!(root instanceof Map)) {
+            throw new IllegalArgumentException("Root of a schema must be a mapping.");
+        }
+        return declared(root, "");
+    }
+
+    /**
+     * @param path 以yaml声明的schema文件
+     * @see #parse(String)
+     */
+    public static YamlSchema load(Path path) throws IOException {
+        Map<String, Object> root = YamlEditor.getMapFromYaml(path);
+        if (root == null) {
+            throw new IllegalArgumentException("Root of a schema must be a mapping.");
+        }
+        return declared(root, "");
+    }
+
+    private static YamlSchema declared(Object node, String key) {
+        if (node instanceof String) {
+            switch ((String) node) {
+                case "string":
+                    return STRING;
+                case "int":
+                    return INT;
+                case "long":
+                    return LONG;
+                case "double":
+                    return DOUBLE;
+                case "boolean":
+                    return BOOLEAN;
+                case "any":
+                    return ANY;
+                default:
+            }
+        } else if (node instanceof List && ((List<?>) node).size() == 1) {
+            return listOf(declared(((List<?>) node).get(0), YamlBinder.child(key, "0", false)));
+        } else if (node instanceof Map) {
+            YamlSchema object = object();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) node).entrySet()) {
+                String name = String.valueOf(entry.getKey());
+                if ("*".equals(name)) {
+                    object.additionalKeys(declared(entry.getValue(), YamlBinder.child(key, name, false)));
+                } else if (name.endsWith("?")) {
+                    String optional = name.substring(0, name.length() - 1);
+                    object.optional(optional, declared(entry.getValue(), YamlBinder.child(key, optional, false)));
+                } else {
+                    object.required(name, declared(entry.getValue(), YamlBinder.child(key, name, false)));
+                }
+            }
+            return object;
+        }
+        throw new IllegalArgumentException("Unknown schema type at " + (key.isEmpty() ? "root" : key) + ": " + node
+                + ", expected string, int, long, double, boolean, any, a list of one type or a mapping.");
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case LIST:
+                return "[" + element + "]";
+            case OBJECT:
+                StringBuilder sb = new StringBuilder("{");
+                for (Field field : fields.values()) {
+                    if (sb.length() > 1) {
+                        sb.append(", ");
+                    }
+                    sb.append(field);
+                }
+                if (additionalKeys != null) {
+                    sb.append(sb.length() > 1 ? ", " : "").append("*: ").append(additionalKeys);
+                }
+                return sb.append('}').toString();
+            default:
+                return kind.name().toLowerCase();
+        }
+    }
+
+    /**
+     * 对象中的一个字段
+     */
+    public static final class Field {
+        private final String name;
+        private final YamlSchema schema;
+        private final boolean required;
+
+        private Field(String name, YamlSchema schema, boolean required) {
+            this.name = name;
+            this.schema = schema;
+            this.required = required;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public YamlSchema getSchema() {
+            return schema;
+        }
+
+        public boolean isRequired() {
+            return required;
+        }
+
+        @Override
+        public String toString() {
+            return name + (required ? "" : "?") + ": " + schema;
+        }
+    }
+}
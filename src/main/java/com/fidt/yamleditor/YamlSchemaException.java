@@ -0,0 +1,30 @@
+package com.fidt.yamleditor;
+
+/**
+ * 文档不符合 {@link YamlSchema}：未声明的键、缺少必需的键、节点种类不符或者标量无法转换为声明的类型。
+ * {@link #getCompositeKey()} 为出错位置的复合键，根节点为空字符串。
+ * 键中的'.'是否写为"\."由读取时的supportEscape参数决定，默认不转义。
+ *
+ * @Author Sennri
+ */
+public class YamlSchemaException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    private final String compositeKey;
+
+    public YamlSchemaException(String compositeKey, String message) {
+        this(compositeKey, message, null);
+    }
+
+    public YamlSchemaException(String compositeKey, String message, Throwable cause) {
+        super((compositeKey.isEmpty() ? "<root>" : compositeKey) + ": " + message, cause);
+        this.compositeKey = compositeKey;
+    }
+
+    /**
+     * @return 出错位置的复合键
+     */
+    public String getCompositeKey() {
+        return compositeKey;
+    }
+}
@@ -0,0 +1,225 @@
+package com.fidt.yamleditor;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * 对由Map、List以及标量组成的yaml树进行整体操作的工具方法
+ *
+ * @Author Sennri
+ */
+final class YamlTrees {
+    private YamlTrees() {
+    }
+
+    /**
+     * @return 节点是否为 {@link #readOnly(Object, long[])} 生成的只读视图或者紧凑树中的不可变集合
+     */
+    static boolean isReadOnly(Object node) {
+        return node instanceof ReadOnlyMap || node instanceof ReadOnlyList
+                || node instanceof CompactMap || node instanceof CompactList;
+    }
+
+    /**
+     * 深拷贝yaml树，Map复制为LinkedHashMap，List复制为ArrayList，标量直接共享。
+     * 原树中被多处引用的同一个Map或List（yaml中的锚点与别名）在拷贝中仍然是同一个对象。
+     *
+     * @param node 待拷贝的节点
+     * @return 拷贝
+     */
+    static Object deepCopy(Object node) {
+        if (!(node instanceof Map) && !(node instanceof List)) {
+            return node;
+        }
+        return deepCopy(node, new IdentityHashMap<>());
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> deepCopyMap(Map<String, Object> map) {
+        return (Map<String, Object>) deepCopy(map);
+    }
+
+    /**
+     * 统计树中的节点数，Map、List与标量各计一个，被多处引用的Map与List只计一次
+     */
+    static long countNodes(Object node) {
+        return countNodes(node, new IdentityHashMap<>());
+    }
+
+    private static long countNodes(Object node, IdentityHashMap<Object, Boolean> seen) {
+        if (!(node instanceof Map) && !(node instanceof List)) {
+            return 1;
+        }
+        if (seen.put(node, Boolean.TRUE) != null) {
+            return 0;
+        }
+        long count = 1;
+        if (node instanceof Map) {
+            for (Object value : ((Map<?, ?>) node).values()) {
+                count += countNodes(value, seen);
+            }
+        } else {
+            for (Object item : (List<?>) node) {
+                count += countNodes(item, seen);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 将一棵只属于调用方的yaml树就地转换为只读视图：每个Map与List都被包装为本类私有的不可修改的集合，
+     * 同一个对象（锚点与别名）只包装一次。之后不能再通过原有引用修改这棵树。
+     * 已经是只读视图的子树直接沿用，不再向下遍历，因此对一棵只有少数节点被替换过的只读树再次调用时，只处理新的节点。
+     *
+     * @param node     待转换的树
+     * @param counter  长度为1的数组，累加树中的节点数（Map、List与标量各计一个），不需要时传null
+     * @return 只读视图
+     */
+    static Object readOnly(Object node, long[] counter) {
+        return readOnly(node, new IdentityHashMap<>(), counter);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object readOnly(Object node, IdentityHashMap<Object, Object> views, long[] counter) {
+        if (counter != null) {
+            counter[0]++;
+        }
+        if (isReadOnly(node)) {
+            return node;
+        }
+        if (node instanceof Map) {
+            Object view = views.get(node);
+            if (view != null) {
+                return view;
+            }
+            Map<Object, Object> map = (Map<Object, Object>) node;
+            view = new ReadOnlyMap(map);
+            views.put(node, view);
+            for (Map.Entry<Object, Object> entry : map.entrySet()) {
+                entry.setValue(readOnly(entry.getValue(), views, counter));
+            }
+            return view;
+        } else if (node instanceof List) {
+            Object view = views.get(node);
+            if (view != null) {
+                return view;
+            }
+            List<Object> list = (List<Object>) node;
+            view = list instanceof RandomAccess ? new RandomAccessReadOnlyList(list) : new ReadOnlyList(list);
+            views.put(node, view);
+            for (int i = 0, size = list.size(); i < size; i++) {
+                list.set(i, readOnly(list.get(i), views, counter));
+            }
+            return view;
+        }
+        return node;
+    }
+
+    private static Object deepCopy(Object node, IdentityHashMap<Object, Object> copies) {
+        if (node instanceof Map) {
+            Object copied = copies.get(node);
+            if (copied != null) {
+                return copied;
+            }
+            Map<?, ?> map = (Map<?, ?>) node;
+            Map<Object, Object> copy = new LinkedHashMap<>(Math.max(16, (int) (map.size() / 0.75f) + 1));
+            copies.put(node, copy);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                copy.put(entry.getKey(), deepCopy(entry.getValue(), copies));
+            }
+            return copy;
+        } else if (node instanceof List) {
+            Object copied = copies.get(node);
+            if (copied != null) {
+                return copied;
+            }
+            List<?> list = (List<?>) node;
+            List<Object> copy = new ArrayList<>(list.size());
+            copies.put(node, copy);
+            for (Object item : list) {
+                copy.add(deepCopy(item, copies));
+            }
+            return copy;
+        }
+        return node;
+    }
+
+    /**
+     * {@link #readOnly(Object, long[])} 生成的Map视图。使用私有类型而不是 {@link Collections#unmodifiableMap(Map)}，
+     * 调用方自己包装的不可修改集合不会被误认为已经转换过的子树。
+     */
+    private static final class ReadOnlyMap extends AbstractMap<Object, Object> {
+        private final Map<Object, Object> map;
+
+        ReadOnlyMap(Map<Object, Object> map) {
+            this.map = map;
+        }
+
+        @Override
+        public Set<Entry<Object, Object>> entrySet() {
+            return Collections.unmodifiableMap(map).entrySet();
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        public Object get(Object key) {
+            return map.get(key);
+        }
+    }
+
+    /**
+     * {@link #readOnly(Object, long[])} 生成的List视图
+     */
+    private static class ReadOnlyList extends AbstractList<Object> {
+        private final List<Object> list;
+
+        ReadOnlyList(List<Object> list) {
+            this.list = list;
+        }
+
+        @Override
+        public Object get(int index) {
+            return list.get(index);
+        }
+
+        @Override
+        public int size() {
+            return list.size();
+        }
+
+        @Override
+        public Iterator<Object> iterator() {
+            return Collections.unmodifiableList(list).iterator();
+        }
+
+        @Override
+        public ListIterator<Object> listIterator(int index) {
+            return Collections.unmodifiableList(list).listIterator(index);
+        }
+    }
+
+    private static final class RandomAccessReadOnlyList extends ReadOnlyList implements RandomAccess {
+        RandomAccessReadOnlyList(List<Object> list) {
+            super(list);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.fidt.yamleditor;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一组编辑执行期间被修改的容器的浅拷贝。每次编辑之前记录复合键经过的、已经存在的Map与List，
+ * 回滚时把这些容器的内容恢复为记录时的样子：容器本身以及其中的子Map、子List仍然是原来的对象，
+ * 调用方在编辑之前取得的引用在回滚之后依然有效。每个容器只在第一次经过时拷贝一层。
+ *
+ * @Author Sennri
+ */
+final class YamlUndoLog {
+    private final IdentityHashMap<Object, Object> snapshots = new IdentityHashMap<>();
+
+    /**
+     * 记录path经过的容器，必须在执行对应的编辑之前调用
+     *
+     * @param path 即将编辑的复合键
+     * @param root 被编辑的树
+     */
+    void record(YamlPath path, Object root) {
+        Object container = root;
+        snapshot(container);
+        for (int i = 0, last = path.size() - 1; i < last; i++) {
+            container = child(container, path, i);
+            if (!(container instanceof Map) && !(container instanceof List)) {
+                return;
+            }
+            snapshot(container);
+        }
+    }
+
+    /**
+     * 把记录过的容器恢复为记录时的内容，之后清空记录
+     */
+    @SuppressWarnings("unchecked")
+    void rollback() {
+        for (Map.Entry<Object, Object> entry : snapshots.entrySet()) {
+            if (entry.getKey() instanceof Map) {
+                Map<Object, Object> map = (Map<Object, Object>) entry.getKey();
+                map.clear();
+                map.putAll((Map<Object, Object>) entry.getValue());
+            } else {
+                List<Object> list = (List<Object>) entry.getKey();
+                list.clear();
+                list.addAll((List<Object>) entry.getValue());
+            }
+        }
+        snapshots.clear();
+    }
+
+    /**
+     * 丢弃记录，编辑全部生效时调用
+     */
+    void clear() {
+        snapshots.clear();
+    }
+
+    private void snapshot(Object container) {
+        if (container instanceof Map) {
+            if (!snapshots.containsKey(container)) {
+                snapshots.put(container, new LinkedHashMap<>((Map<?, ?>) container));
+            }
+        } else if (container instanceof List) {
+            if (!snapshots.containsKey(container)) {
+                snapshots.put(container, new ArrayList<>((List<?>) container));
+            }
+        }
+    }
+
+    private static Object child(Object container, YamlPath path, int i) {
+        if (container instanceof Map) {
+            return ((Map<?, ?>) container).get(path.getName(i));
+        }
+        List<?> list = (List<?>) container;
+        int index = path.indexOrNegative(i);
+        return index >= 0 && index < list.size() ? list.get(index) : null;
+    }
+}
@@ -0,0 +1,130 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.AbstractMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+public class TestAtomicWrite {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Map<String, Object> sample(int port) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        new YamlEditor().insertValueToObject("Service.port", port, map);
+        new YamlEditor().insertValueToObject("Service.hosts.0", "172.21.18.41", map);
+        return map;
+    }
+
+    private static long countFiles(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    public void testSameContentAsDump() throws Exception {
+        Path plain = folder.newFile("plain.yaml").toPath();
+        YamlEditor.dumpMapToYaml(sample(8080), plain);
+        for (FsyncPolicy policy : FsyncPolicy.values()) {
+            Path atomic = folder.getRoot().toPath().resolve("atomic-" + policy + ".yaml");
+            YamlEditor.dumpMapToYamlAtomically(sample(8080), atomic, policy);
+            assertArrayEquals(Files.readAllBytes(plain), Files.readAllBytes(atomic));
+        }
+        // 没有残留的临时文件
+        assertEquals(1 + FsyncPolicy.values().length, countFiles(folder.getRoot().toPath()));
+    }
+
+    @Test
+    public void testReplaceExisting() throws Exception {
+        Path path = folder.newFile("config.yaml").toPath();
+        YamlEditor.dumpMapToYaml(sample(8080), path);
+        boolean posix = Files.getFileStore(path).supportsFileAttributeView("posix");
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r-----");
+        if (posix) {
+            Files.setPosixFilePermissions(path, permissions);
+        }
+        YamlEditor.dumpMapToYamlAtomically(sample(9090), path, FsyncPolicy.FILE);
+        assertEquals(9090, new YamlEditor().getValue("Service.port", YamlEditor.getMapFromYaml(path)));
+        if (posix) {
+            assertEquals(permissions, Files.getPosixFilePermissions(path));
+        }
+        assertEquals(1, countFiles(folder.getRoot().toPath()));
+    }
+
+    /**
+     * 目标为符号链接时更新链接指向的文件，链接本身保持不变
+     */
+    @Test
+    public void testSymbolicLink() throws Exception {
+        Path real = folder.newFolder("real").toPath().resolve("config.yaml");
+        YamlEditor.dumpMapToYaml(sample(8080), real);
+        Path link = folder.getRoot().toPath().resolve("link.yaml");
+        try {
+            Files.createSymbolicLink(link, real);
+        } catch (UnsupportedOperationException | IOException e) {
+            log.info("Symbolic links are not supported here: {}", e.toString());
+            return;
+        }
+        YamlEditor.dumpMapToYamlAtomically(sample(9090), link, FsyncPolicy.FILE);
+        assertTrue(Files.isSymbolicLink(link));
+        assertEquals(real, Files.readSymbolicLink(link));
+        assertEquals(9090, new YamlEditor().getValue("Service.port", YamlEditor.getMapFromYaml(real)));
+        // 临时文件创建在真实文件所在的目录，替换后不留残余
+        assertEquals(1, countFiles(real.getParent()));
+    }
+
+    @Test
+    public void testFailureKeepsOriginal() throws Exception {
+        Path path = folder.newFile("config.yaml").toPath();
+        YamlEditor.dumpMapToYaml(sample(8080), path);
+        byte[] before = Files.readAllBytes(path);
+        Map<String, Object> broken = new LinkedHashMap<>(sample(9090));
+        broken.put("broken", new AbstractMap<String, Object>() {
+            @Override
+            public Set<Entry<String, Object>> entrySet() {
+                throw new IllegalStateException("broken");
+            }
+        });
+        try {
+            YamlEditor.dumpMapToYamlAtomically(broken, path, FsyncPolicy.FILE_AND_DIRECTORY);
+            fail();
+        } catch (IllegalStateException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+        assertArrayEquals(before, Files.readAllBytes(path));
+        assertEquals(1, countFiles(folder.getRoot().toPath()));
+    }
+
+    @Test
+    public void testForced() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("a/b/config.yaml");
+        try {
+            YamlEditor.dumpMapToYamlAtomically(sample(8080), path, FsyncPolicy.NONE, false);
+            fail();
+        } catch (NoSuchFileException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+        YamlEditor.dumpMapToYamlAtomically(sample(8080), path, FsyncPolicy.NONE, true);
+        assertEquals(8080, new YamlEditor().getValue("Service.port", YamlEditor.getMapFromYaml(path)));
+        // 原有的isForced重载仍然可用
+        Path other = folder.getRoot().toPath().resolve("c/config.yaml");
+        YamlEditor.dumpMapToYaml(sample(8080), other, true);
+        assertTrue(Files.exists(other));
+    }
+}
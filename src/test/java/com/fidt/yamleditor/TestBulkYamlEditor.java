@@ -0,0 +1,190 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+public class TestBulkYamlEditor {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final List<EditOperation> OPERATIONS = Arrays.asList(
+            EditOperation.set("Service.port", 9090),
+            EditOperation.insert("Service.hosts.1", "172.21.18.42"),
+            EditOperation.remove("Service.debug"));
+
+    private Path prepare(int tenants) throws Exception {
+        Path root = folder.newFolder("tenants").toPath();
+        for (int i = 0; i < tenants; i++) {
+            Path directory = Files.createDirectories(root.resolve("tenant-" + i));
+            write(directory.resolve("config.yaml"),
+                    "Service:\n  port: 8080\n  hosts: [172.21.18.41]\n  debug: true\n");
+            write(directory.resolve("notes.txt"), "not yaml: [");
+        }
+        return root;
+    }
+
+    private static void write(Path path, String content) throws Exception {
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testApplyToDirectory() throws Exception {
+        Path root = prepare(20);
+        List<Path> reported = new ArrayList<>();
+        BulkYamlEditor.Summary summary = new BulkYamlEditor(new YamlEditor())
+                .parallelism(4)
+                .writeAtomically(FsyncPolicy.NONE)
+                .apply(root, "**.yaml", OPERATIONS, result -> reported.add(result.getFile()));
+        log.info("{}", summary);
+        assertEquals(20, summary.getSucceededCount());
+        assertEquals(0, summary.getFailedCount());
+        assertFalse(summary.isStoppedEarly());
+        assertEquals(20, reported.size());
+        YamlEditor yamlEditor = new YamlEditor();
+        for (Path file : reported) {
+            Map<String, Object> map = YamlEditor.getMapFromYaml(file);
+            assertEquals(9090, yamlEditor.getValue("Service.port", map));
+            assertEquals("172.21.18.42", yamlEditor.getValue("Service.hosts.1", map));
+            assertFalse(((Map<?, ?>) map.get("Service")).containsKey("debug"));
+        }
+    }
+
+    @Test
+    public void testValuesAreCopiedPerFile() throws Exception {
+        Path root = prepare(8);
+        Map<String, Object> limits = new LinkedHashMap<>();
+        limits.put("cpu", 2);
+        List<EditOperation> operations = Arrays.asList(
+                EditOperation.set("Service.limits", limits),
+                EditOperation.insert("Service.limits.memory", "1G"));
+        BulkYamlEditor.Summary summary = new BulkYamlEditor(new YamlEditor())
+                .parallelism(4)
+                .apply(root, "**.yaml", operations, null);
+        assertEquals(8, summary.getSucceededCount());
+        // 后续操作修改的是每个文件中的拷贝，调用方传入的值保持不变
+        assertEquals(Collections.singletonMap("cpu", 2), limits);
+        Map<String, Object> map = YamlEditor.getMapFromYaml(root.resolve("tenant-0").resolve("config.yaml"));
+        assertEquals("1G", new YamlEditor().getValue("Service.limits.memory", map));
+    }
+
+    @Test
+    public void testParallelismLimit() throws Exception {
+        Path root = prepare(40);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        // 在编辑过程中统计同时处理的文件数
+        YamlEditor counting = new YamlEditor() {
+            @Override
+            public void setValue(YamlPath path, Object value, Object target) {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(2);
+                    super.setValue(path, value, target);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    running.decrementAndGet();
+                }
+            }
+        };
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            BulkYamlEditor.Summary summary = new BulkYamlEditor(counting)
+                    .parallelism(3)
+                    .executor(pool)
+                    .apply(root, "tenant-*/config.yaml", OPERATIONS, null);
+            assertEquals(40, summary.getSucceededCount());
+        } finally {
+            pool.shutdown();
+        }
+        log.info("max running {}", maxRunning.get());
+        assertTrue("max running " + maxRunning.get(), maxRunning.get() <= 3);
+    }
+
+    /**
+     * 提交被拒绝时，apply要等已提交的文件完成后再抛出异常
+     */
+    @Test
+    public void testRejectedWaitsForSubmitted() throws Exception {
+        Path root = prepare(4);
+        AtomicInteger submitted = new AtomicInteger();
+        Executor rejectAfterFirst = task -> {
+            if (submitted.getAndIncrement() > 0) {
+                throw new RejectedExecutionException("only one task");
+            }
+            new Thread(() -> {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                task.run();
+            }).start();
+        };
+        List<Path> reported = Collections.synchronizedList(new ArrayList<>());
+        try {
+            new BulkYamlEditor(new YamlEditor())
+                    .parallelism(2)
+                    .executor(rejectAfterFirst)
+                    .apply(root, "**.yaml", OPERATIONS, result -> reported.add(result.getFile()));
+            fail();
+        } catch (RejectedExecutionException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+        assertEquals(1, reported.size());
+    }
+
+    @Test
+    public void testErrorThreshold() throws Exception {
+        Path root = prepare(10);
+        // 所有文件都无法解析
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Path file = root.resolve("tenant-" + i).resolve("config.yaml");
+            write(file, "Service: [\n");
+            files.add(file);
+        }
+        List<BulkYamlEditor.FileResult> results = new ArrayList<>();
+        BulkYamlEditor.Summary summary = new BulkYamlEditor(new YamlEditor())
+                .parallelism(1)
+                .errorThreshold(3)
+                .apply(files, OPERATIONS, results::add);
+        log.info("{}", summary);
+        assertEquals(3, summary.getFailedCount());
+        assertTrue(summary.isStoppedEarly());
+        assertEquals(3, results.size());
+        assertNotNull(results.get(0).getError());
+    }
+
+    @Test
+    public void testFailedOperations() throws Exception {
+        Path root = prepare(2);
+        Path broken = root.resolve("tenant-0").resolve("config.yaml");
+        write(broken, "Service: plain\n");
+        byte[] before = Files.readAllBytes(broken);
+        Map<Path, BulkYamlEditor.FileResult> results = new HashMap<>();
+        BulkYamlEditor.Summary summary = new BulkYamlEditor(new YamlEditor())
+                .apply(root, "**.yaml", OPERATIONS, result -> results.put(result.getFile(), result));
+        assertEquals(1, summary.getSucceededCount());
+        assertEquals(1, summary.getFailedCount());
+        // 默认回滚：操作失败的文件不会被写出
+        assertFalse(results.get(broken).isSuccess());
+        assertFalse(results.get(broken).getResult().isWritten());
+        assertArrayEquals(before, Files.readAllBytes(broken));
+    }
+}
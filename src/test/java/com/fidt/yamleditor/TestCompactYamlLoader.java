@@ -0,0 +1,142 @@
+package com.fidt.yamleditor;
+
+import com.fidt.yamleditor.benchmark.YamlDocumentGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static com.fidt.yamleditor.YamlTestSupport.load;
+import static org.junit.Assert.*;
+
+@Slf4j
+public class TestCompactYamlLoader {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * 紧凑树必须与普通读取方式得到的树相等，值的类型也相同
+     */
+    private static Map<String, Object> assertSameAsRegular(String yaml) {
+        Map<String, Object> compact = CompactYamlLoader.load(yaml);
+        Map<String, Object> regular = load(yaml);
+        assertEquals(regular, compact);
+        assertEquals(compact, regular);
+        assertEquals(regular.hashCode(), compact.hashCode());
+        assertSameTypes(regular, compact);
+        return compact;
+    }
+
+    private static void assertSameTypes(Object regular, Object compact) {
+        if (regular instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) regular).entrySet()) {
+                assertSameTypes(entry.getValue(), ((Map<?, ?>) compact).get(entry.getKey()));
+            }
+        } else if (regular instanceof List) {
+            for (int i = 0; i < ((List<?>) regular).size(); i++) {
+                assertSameTypes(((List<?>) regular).get(i), ((List<?>) compact).get(i));
+            }
+        } else if (regular != null) {
+            assertEquals(String.valueOf(regular), regular.getClass(), compact.getClass());
+        }
+    }
+
+    @Test
+    public void testScalars() {
+        assertSameAsRegular("int: 1\nnegative: -42\nplus: +7\nlong: 12345678901\nbig: 123456789012345678901234\n"
+                + "octal: 012\nhex: 0x1F\nunderscore: 1_000\ndouble: 1.5\nexp: 6.02e+23\ninf: .inf\n"
+                + "bool: true\nyes: yes\noff: Off\nnull: ~\nempty:\nstring: hello\nquoted: '123'\n"
+                + "date: 2022-04-22\n");
+        // 数组不按内容比较equals
+        Object binary = CompactYamlLoader.load("binary: !!binary aGVsbG8=\n").get("binary");
+        assertArrayEquals("hello".getBytes(), (byte[]) binary);
+    }
+
+    @Test
+    public void testCollections() {
+        StringBuilder yaml = new StringBuilder("Service:\n  Profile:\n    Organization:\n");
+        for (int i = 0; i < 20; i++) {
+            yaml.append("      - {company: c").append(i).append(", size: ").append(i).append(", ratio: 0.")
+                    .append(i).append(", tags: [a, ").append(i).append("]}\n");
+        }
+        yaml.append("  large:\n");
+        for (int i = 0; i < 50; i++) {
+            yaml.append("    key").append(i).append(": ").append(i).append('\n');
+        }
+        yaml.append("  empty: {}\n  emptyList: []\n  1: integer key\n");
+        Map<String, Object> compact = assertSameAsRegular(yaml.toString());
+        YamlEditor yamlEditor = new YamlEditor();
+        assertEquals("c7", yamlEditor.getValue("Service.Profile.Organization.7.company", compact));
+        assertEquals(49, yamlEditor.getValue("Service.large.key49", compact));
+        assertEquals(Arrays.asList(0, 1, 2), yamlEditor.query("Service.Profile.Organization.:3.size", compact)
+                .map(YamlQuery.Match::getValue).collect(Collectors.toList()));
+        // 同一次读取中相同的键共享一个String实例
+        List<?> organizations = (List<?>) yamlEditor.getValue("Service.Profile.Organization", compact);
+        String first = ((Map<?, ?>) organizations.get(0)).keySet().iterator().next().toString();
+        String second = ((Map<?, ?>) organizations.get(1)).keySet().iterator().next().toString();
+        assertSame(first, second);
+    }
+
+    @Test
+    public void testAnchorsAndDuplicates() {
+        Map<String, Object> compact = assertSameAsRegular("base: &base {port: 1, hosts: [a]}\nservice: *base\n"
+                + "name: &name x\nalias: *name\ndup: 1\nother: 2\ndup: 3\n");
+        assertSame(compact.get("base"), compact.get("service"));
+        assertEquals(Arrays.asList("base", "service", "name", "alias", "dup", "other"),
+                new ArrayList<>(compact.keySet()));
+        // 合并键与显式的集合标签退回到普通读取方式
+        assertSameAsRegular("base: &base {port: 1}\nservice:\n  <<: *base\n  name: s\n");
+        assertSameAsRegular("set: !!set {a, b}\n");
+        assertNull(CompactYamlLoader.load(""));
+    }
+
+    @Test
+    public void testImmutable() {
+        Map<String, Object> compact = CompactYamlLoader.load("a: {b: [1, 2]}\n");
+        YamlEditor yamlEditor = new YamlEditor();
+        try {
+            yamlEditor.setValue("a.b.0", 3, compact);
+            fail();
+        } catch (UnsupportedOperationException e) {
+            log.info("expected: {}", e.toString());
+        }
+        // 深拷贝之后可以修改
+        Map<String, Object> copy = CompactYamlLoader.mutableCopy(compact);
+        yamlEditor.setValue("a.b.0", 3, copy);
+        assertEquals(3, yamlEditor.getValue("a.b.0", copy));
+        assertEquals(1, yamlEditor.getValue("a.b.0", compact));
+    }
+
+    @Test
+    public void testLoadFile() throws Exception {
+        Path path = folder.newFile("inventory.yaml").toPath();
+        YamlDocumentGenerator.write(YamlDocumentGenerator.generate(256 * 1024, 42L), path);
+        Map<String, Object> regular = YamlEditor.getMapFromYaml(path);
+        Map<String, Object> compact = CompactYamlLoader.load(path);
+        assertEquals(regular, compact);
+        assertSameTypes(regular, compact);
+        assertEquals(regular, CompactYamlLoader.compact(regular));
+    }
+
+    @Test
+    public void testInvalid() {
+        try {
+            CompactYamlLoader.load("- a\n- b\n");
+            fail();
+        } catch (IllegalArgumentException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+        Map<String, Object> cyclic = new LinkedHashMap<>();
+        cyclic.put("self", cyclic);
+        try {
+            CompactYamlLoader.compact(cyclic);
+            fail();
+        } catch (IllegalArgumentException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+    }
+}
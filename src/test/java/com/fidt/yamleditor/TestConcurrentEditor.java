@@ -0,0 +1,115 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+public class TestConcurrentEditor {
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 200;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSharedEditorIsImmutable() {
+        YamlEditor yamlEditor = YamlEditor.shared(true);
+        assertSame(yamlEditor, YamlEditor.shared(true));
+        assertTrue(yamlEditor.isSupportEscape());
+        assertFalse(YamlEditor.shared(false).isSupportEscape());
+        // 设置为当前模式时什么也不做
+        yamlEditor.supportEscape(true);
+        assertEquals("a.b", yamlEditor.compilePath("a\\.b").getName(0));
+        try {
+            yamlEditor.supportEscape(false);
+            fail();
+        } catch (IllegalStateException expected) {
+            log.info("expected: {}", expected.getMessage());
+            assertTrue(yamlEditor.isSupportEscape());
+        }
+        YamlEditor own = new YamlEditor(true);
+        own.supportEscape(false);
+        assertEquals(2, own.compilePath("a\\.b").size());
+    }
+
+    /**
+     * 多个线程并行地load、dump各自的文件，同时读取一个共享文件，结果必须与单线程一致
+     */
+    @Test
+    public void testParallelLoadAndDump() throws Exception {
+        YamlEditor yamlEditor = YamlEditor.shared(true);
+        Map<String, Object> shared = document(-1);
+        Path sharedPath = folder.newFile("shared.yaml").toPath();
+        YamlEditor.dumpMapToYaml(shared, sharedPath);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int id = t;
+            final Path own = folder.newFile("thread-" + t + ".yaml").toPath();
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int round = 0; round < ROUNDS; round++) {
+                    Map<String, Object> expected = document(id * ROUNDS + round);
+                    YamlEditor.dumpMapToYaml(expected, own);
+                    Map<String, Object> actual = YamlEditor.getMapFromYaml(own);
+                    assertEquals(expected, actual);
+                    assertEquals(id * ROUNDS + round, yamlEditor.getValue("Service.Profile.id", actual));
+                    assertEquals("baidu.com", yamlEditor.getValue("Service.hosts.1.baidu\\.com", actual));
+                    assertEquals(shared, YamlEditor.getMapFromYaml(sharedPath));
+                }
+                return ROUNDS;
+            }));
+        }
+        start.countDown();
+        int total = 0;
+        for (Future<Integer> future : futures) {
+            total += future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        assertEquals(THREADS * ROUNDS, total);
+    }
+
+    /**
+     * 解析失败后，当前线程复用的Yaml实例仍然可以正常工作
+     */
+    @Test
+    public void testReuseAfterFailure() throws Exception {
+        Path broken = folder.newFile("broken.yaml").toPath();
+        java.nio.file.Files.write(broken, "a: [1, 2\nb: {".getBytes("UTF-8"));
+        try {
+            YamlEditor.getMapFromYaml(broken);
+            fail();
+        } catch (RuntimeException expected) {
+            log.info("{}", expected.getMessage());
+        }
+        Path ok = folder.newFile("ok.yaml").toPath();
+        YamlEditor.dumpMapToYaml(document(1), ok);
+        assertEquals(document(1), YamlEditor.getMapFromYaml(ok));
+    }
+
+    private static Map<String, Object> document(int id) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        YamlEditor yamlEditor = new YamlEditor(true);
+        yamlEditor.insertValueToObject("Service.Profile.id", id, map);
+        yamlEditor.insertValueToObject("Service.Profile.name", "tenant-" + id, map);
+        yamlEditor.insertValueToObject("Service.hosts.0.name", "host-" + id, map);
+        yamlEditor.insertValueToObject("Service.hosts.1.baidu\\.com", "baidu.com", map);
+        for (int i = 0; i < 20; i++) {
+            yamlEditor.insertValueToObject("Service.ports." + i, 8000 + i + id, map);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,139 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static com.fidt.yamleditor.YamlTestSupport.load;
+import static org.junit.Assert.*;
+
+@Slf4j
+public class TestConcurrentYamlDocument {
+    private static void runAll(int threads, IntConsumerTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int id = t;
+                futures.add(executor.submit(() -> {
+                    task.run(id);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    private interface IntConsumerTask {
+        void run(int id) throws Exception;
+    }
+
+    @Test
+    public void testDisjointAndNewSubtrees() throws Exception {
+        ConcurrentYamlDocument document = new ConcurrentYamlDocument(load("shared:\n  counter: 0\n"));
+        int threads = 8;
+        int edits = 300;
+        runAll(threads, id -> {
+            for (int i = 0; i < edits; i++) {
+                // 第一次写入时新建子树，之后在已有子树内部修改
+                document.insertValueToObject("s" + id + ".items." + i, Collections.singletonMap("i", i));
+                document.setValue("s" + id + ".last", i);
+                document.update("shared.counter", value -> (Integer) value + 1);
+                // 每个线程在同一个新建的子树下创建不同的中间节点
+                document.insertValueToObject("created.t" + id + ".list." + i, i);
+                assertEquals(i, document.getValue("s" + id + ".items." + i + ".i"));
+            }
+        });
+        Map<String, Object> copy = document.copy();
+        YamlEditor yamlEditor = new YamlEditor();
+        assertEquals(threads * edits, yamlEditor.getValue("shared.counter", copy));
+        for (int t = 0; t < threads; t++) {
+            assertEquals(edits, ((List<?>) yamlEditor.getValue("s" + t + ".items", copy)).size());
+            assertEquals(edits - 1, yamlEditor.getValue("s" + t + ".last", copy));
+            assertEquals(edits, ((List<?>) yamlEditor.getValue("created.t" + t + ".list", copy)).size());
+        }
+    }
+
+    @Test
+    public void testEquivalentIndicesShareLock() throws Exception {
+        ConcurrentYamlDocument document = new ConcurrentYamlDocument(load("list:\n  - {n: 0}\n  - {n: 0}\n"),
+                2, ConcurrentYamlDocument.DEFAULT_STRIPES);
+        int threads = 8;
+        int edits = 300;
+        runAll(threads, id -> {
+            // 不同的写法指向同一个元素，必须由同一把锁保护
+            String key = id % 2 == 0 ? "list.1.n" : "list.01.n";
+            for (int i = 0; i < edits; i++) {
+                document.update(key, value -> (Integer) value + 1);
+            }
+        });
+        assertEquals(threads * edits, document.getValue("list.1.n"));
+    }
+
+    @Test
+    public void testDisjointEditsDoNotBlock() throws Exception {
+        ConcurrentYamlDocument document = new ConcurrentYamlDocument(load("a: {n: 0}\nb: {n: 0}\n"));
+        CountDownLatch inside = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // 在a的写锁中等待
+            Future<?> holder = executor.submit(() -> document.update("a.n", value -> {
+                inside.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return 1;
+            }));
+            assertTrue(inside.await(10, TimeUnit.SECONDS));
+            // a被锁住时b仍然可以读写
+            document.setValue("b.n", 2);
+            assertEquals(2, document.getValue("b.n"));
+            release.countDown();
+            holder.get(10, TimeUnit.SECONDS);
+            assertEquals(1, document.getValue("a.n"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCopies() {
+        Map<String, Object> source = load("a:\n  b: [1, 2]\n");
+        ConcurrentYamlDocument document = new ConcurrentYamlDocument(source, 2, 4);
+        // 构造时、写入时与读取时都做拷贝
+        source.clear();
+        List<Object> value = new ArrayList<>(Arrays.asList(3, 4));
+        document.setValue("a.c", value);
+        value.add(5);
+        List<Object> read = (List<Object>) document.getValue("a.b");
+        read.add(3);
+        assertEquals(Arrays.asList(1, 2), document.getValue("a.b"));
+        assertEquals(Arrays.asList(3, 4), document.getValue("a.c"));
+        document.removeListOrMapContent("a.b.0");
+        assertEquals(Collections.singletonList(2), document.getValue("a.b"));
+        assertEquals(Collections.singletonList("a"), new ArrayList<>(document.copy().keySet()));
+        try {
+            document.setValue("missing.key.x", 1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+        try {
+            new ConcurrentYamlDocument(source, 0, 4);
+            fail();
+        } catch (IllegalArgumentException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+public class TestEditBatch {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path prepare() throws Exception {
+        Map<String, Object> map = new LinkedHashMap<>();
+        YamlEditor yamlEditor = new YamlEditor();
+        yamlEditor.insertValueToObject("Service.port", 8080, map);
+        yamlEditor.insertValueToObject("Service.hosts.0", "172.21.18.41", map);
+        yamlEditor.insertValueToObject("Service.debug", true, map);
+        Path path = folder.newFile("batch.yaml").toPath();
+        YamlEditor.dumpMapToYaml(map, path);
+        return path;
+    }
+
+    @Test
+    public void testApplyToFile() throws Exception {
+        Path path = prepare();
+        EditBatch.Result result = new YamlEditor().batch()
+                .set("Service.port", 9090)
+                .insert("Service.hosts.1", "172.21.18.42")
+                .remove("Service.debug")
+                .applyToFile(path);
+        log.info("{}", result);
+        assertTrue(result.isCommitted());
+        assertTrue(result.isWritten());
+        assertEquals(3, result.getAppliedCount());
+        Map<String, Object> map = YamlEditor.getMapFromYaml(path);
+        YamlEditor yamlEditor = new YamlEditor();
+        assertEquals(9090, yamlEditor.getValue("Service.port", map));
+        assertEquals(2, ((List<?>) yamlEditor.getValue("Service.hosts", map)).size());
+        assertFalse(((Map<?, ?>) map.get("Service")).containsKey("debug"));
+    }
+
+    @Test
+    public void testRollback() throws Exception {
+        Path path = prepare();
+        byte[] before = Files.readAllBytes(path);
+        EditBatch.Result result = new YamlEditor().batch()
+                .set("Service.port", 9090)
+                .set("Service.missing.port", 1)
+                .remove("Service.debug")
+                .applyToFile(path);
+        assertFalse(result.isCommitted());
+        assertFalse(result.isWritten());
+        assertEquals(EditBatch.Status.ROLLED_BACK, result.getResults().get(0).getStatus());
+        assertEquals(EditBatch.Status.FAILED, result.getResults().get(1).getStatus());
+        assertNotNull(result.getResults().get(1).getError());
+        assertEquals(EditBatch.Status.ROLLED_BACK, result.getResults().get(2).getStatus());
+        assertArrayEquals(before, Files.readAllBytes(path));
+    }
+
+    @Test
+    public void testSkip() throws Exception {
+        Path path = prepare();
+        EditBatch.Result result = new YamlEditor().batch()
+                .onFailure(EditBatch.FailurePolicy.SKIP)
+                .set("Service.port", 9090)
+                .set("Service.missing.port", 1)
+                .applyToFile(path);
+        assertTrue(result.isWritten());
+        assertEquals(1, result.getAppliedCount());
+        assertEquals(1, result.getFailedCount());
+        assertEquals(9090, new YamlEditor().getValue("Service.port", YamlEditor.getMapFromYaml(path)));
+    }
+
+    @Test
+    public void testRollbackInMemory() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        YamlEditor yamlEditor = new YamlEditor();
+        yamlEditor.insertValueToObject("a.b", 1, map);
+        EditBatch.Result result = yamlEditor.batch()
+                .set("a.b", 2)
+                .insert("a.c.0", "x")
+                .remove("a.c.5")
+                .applyTo(map);
+        assertFalse(result.isCommitted());
+        assertEquals(1, yamlEditor.getValue("a.b", map));
+        assertFalse(((Map<?, ?>) map.get("a")).containsKey("c"));
+
+        result = yamlEditor.batch().set("a.b", 2).insert("a.c.0", "x").applyTo(map);
+        assertTrue(result.isCommitted());
+        assertEquals(2, yamlEditor.getValue("a.b", map));
+        assertEquals("x", yamlEditor.getValue("a.c.0", map));
+    }
+
+    /**
+     * 回滚之后调用方持有的子树仍然挂在原来的位置上
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRollbackKeepsNestedObjects() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        YamlEditor yamlEditor = new YamlEditor();
+        yamlEditor.insertValueToObject("a.b", 1, map);
+        yamlEditor.insertValueToObject("a.list.0", "x", map);
+        yamlEditor.insertValueToObject("z", 0, map);
+        Map<String, Object> a = (Map<String, Object>) map.get("a");
+        List<Object> list = (List<Object>) a.get("list");
+        EditBatch.Result result = yamlEditor.batch()
+                .remove("a.b")
+                .insert("a.list.1", "y")
+                .set("a.list.0", "w")
+                .remove("z")
+                .set("a.missing.port", 1)
+                .applyTo(map);
+        assertFalse(result.isCommitted());
+        assertSame(a, map.get("a"));
+        assertSame(list, a.get("list"));
+        assertEquals(Collections.singletonList("x"), list);
+        // 键的顺序也与执行前相同
+        assertEquals(Arrays.asList("b", "list"), new ArrayList<>(a.keySet()));
+        assertEquals(Arrays.asList("a", "z"), new ArrayList<>(map.keySet()));
+
+        result = yamlEditor.batch().set("a.list.0", "w").applyTo(map);
+        assertTrue(result.isCommitted());
+        assertSame(list, ((Map<?, ?>) map.get("a")).get("list"));
+        assertEquals("w", list.get(0));
+    }
+}
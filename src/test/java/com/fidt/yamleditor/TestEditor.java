@@ -44,7 +44,7 @@ public class TestEditor {
         yamlEditor.removeListOrMapContent("Organizations.1", map);
         log.info("{}",map);
         //URI uri = YamlEditor.class.getClassLoader().getResource("templates/test.yaml").toURI();
-        Path path2 = Paths.get("testResult.yaml");
+        Path path2 = Paths.get("target", "testResult.yaml");
         YamlEditor.dumpMapToYaml(map, path2);
         return;
     }
@@ -83,7 +83,7 @@ public class TestEditor {
         //Map map = new LinkedHashMap();
         yamlEditor.supportEscape(true);
         yamlEditor.insertValueToObject("Organizations.4.baidu\\.com", "org2", map);
-        Path path2 = Paths.get("testResult.yaml");
+        Path path2 = Paths.get("target", "testResult.yaml");
         YamlEditor.dumpMapToYaml(map, path2);
         return;
     }
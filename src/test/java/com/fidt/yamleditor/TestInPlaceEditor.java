@@ -0,0 +1,216 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+public class TestInPlaceEditor {
+    private static final String YAML = "# 服务配置\n"
+            + "Service:\n"
+            + "  name: 数据服务 😀  # 名称\n"
+            + "  port: 8080\n"
+            + "  hosts:\n"
+            + "    - 172.21.18.41   # 主节点\n"
+            + "    - 172.21.18.42\n"
+            + "  # 以下为可选项\n"
+            + "  options: {debug: true, level: 3}\n"
+            + "  script: |\n"
+            + "    echo 1\n"
+            + "    echo 2\n"
+            + "  base: &base\n"
+            + "    timeout: 30\n"
+            + "  ref: *base\n"
+            + "  tagged: !!str 100\n"
+            + "\n"
+            + "# 结尾\n"
+            + "tail: end\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path prepare() throws Exception {
+        Path path = folder.newFile("in-place.yaml").toPath();
+        Files.write(path, YAML.getBytes(StandardCharsets.UTF_8));
+        return path;
+    }
+
+    private static String read(Path path) throws Exception {
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 原地修改的结果必须与读入、赋值后得到的树一致
+     */
+    private static void assertSameAsFullEdit(String key, Object value, Path path) throws Exception {
+        YamlEditor yamlEditor = new YamlEditor();
+        Map<String, Object> expected = YamlEditor.getMapFromYaml(path);
+        yamlEditor.setValue(key, value, expected);
+        yamlEditor.updateYamlInPlace(key, value, path);
+        assertEquals(expected, YamlEditor.getMapFromYaml(path));
+    }
+
+    @Test
+    public void testScalar() throws Exception {
+        Path path = prepare();
+        assertSameAsFullEdit("Service.port", 9090, path);
+        assertEquals(YAML.replace("port: 8080", "port: 9090"), read(path));
+        // 长度变化，且位于多字节字符之后
+        assertSameAsFullEdit("Service.port", 10086, path);
+        assertSameAsFullEdit("Service.name", "新服务", path);
+        assertEquals(YAML.replace("port: 8080", "port: 10086").replace("数据服务 😀", "新服务"), read(path));
+    }
+
+    /**
+     * 目标之后的内容超过一个缓冲区时，变长与变短都要分块移动
+     */
+    @Test
+    public void testLongTail() throws Exception {
+        StringBuilder sb = new StringBuilder("head: 1\nitems:\n");
+        for (int i = 0; i < 20000; i++) {
+            sb.append("  - item-").append(i).append('\n');
+        }
+        String yaml = sb.toString();
+        Path path = folder.newFile("long-tail.yaml").toPath();
+        Files.write(path, yaml.getBytes(StandardCharsets.UTF_8));
+        assertTrue(yaml.length() > 3 * 64 * 1024);
+
+        String longer = "a-much-longer-value-than-before";
+        assertSameAsFullEdit("head", longer, path);
+        assertEquals(yaml.replace("head: 1", "head: " + longer), read(path));
+        assertSameAsFullEdit("head", 2, path);
+        assertEquals(yaml.replace("head: 1", "head: 2"), read(path));
+        assertSameAsFullEdit("items.19999", "x", path);
+        assertEquals(yaml.replace("head: 1", "head: 2").replace("item-19999", "x"), read(path));
+    }
+
+    @Test
+    public void testSequenceItem() throws Exception {
+        Path path = prepare();
+        assertSameAsFullEdit("Service.hosts.0", "10.0.0.1", path);
+        assertTrue(read(path).contains("    - 10.0.0.1   # 主节点\n"));
+    }
+
+    @Test
+    public void testBlockCollection() throws Exception {
+        Path path = prepare();
+        assertSameAsFullEdit("Service.hosts", Arrays.asList("10.0.0.1", "10.0.0.2"), path);
+        String text = read(path);
+        assertTrue(text.contains("  hosts: [10.0.0.1, 10.0.0.2]\n  # 以下为可选项\n"));
+        assertTrue(text.startsWith("# 服务配置\n"));
+        assertTrue(text.endsWith("\n# 结尾\ntail: end\n"));
+    }
+
+    @Test
+    public void testReplaceScalarWithMap() throws Exception {
+        Path path = prepare();
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("http", 80);
+        value.put("https", 443);
+        assertSameAsFullEdit("Service.port", value, path);
+        assertTrue(read(path).contains("  port: {http: 80, https: 443}\n"));
+    }
+
+    @Test
+    public void testFlowAndLiteral() throws Exception {
+        Path path = prepare();
+        assertSameAsFullEdit("Service.options.level", 5, path);
+        assertTrue(read(path).contains("  options: {debug: true, level: 5}\n"));
+        assertSameAsFullEdit("Service.script", "echo 3", path);
+        assertTrue(read(path).contains("  script: echo 3\n  base: &base\n"));
+    }
+
+    /**
+     * flow集合内部的标量含有",[]{}"时必须加引号，否则替换后的文件无法解析
+     */
+    @Test
+    public void testFlowIndicatorsInFlowCollection() throws Exception {
+        Path path = folder.newFile("flow.yaml").toPath();
+        Files.write(path, "m: {x: 1, y: 2}\nl: [1, 2]\n".getBytes(StandardCharsets.UTF_8));
+        assertSameAsFullEdit("m.x", "a, b", path);
+        assertSameAsFullEdit("l.0", "c]d", path);
+        assertEquals("m: {x: 'a, b', y: 2}\nl: ['c]d', 2]\n", read(path));
+        // 块风格中同样的值可以不加引号
+        assertSameAsFullEdit("m", "a, b", path);
+        assertEquals("m: a, b\nl: ['c]d', 2]\n", read(path));
+    }
+
+    /**
+     * 空值没有可以替换的内容，整体重写
+     */
+    @Test
+    public void testEmptyValues() throws Exception {
+        Path path = folder.newFile("empty.yaml").toPath();
+        Files.write(path, "key:\na:\n  b:\nlist:\n- \n- 1\nflow: {a: , b: 2}\n"
+                .getBytes(StandardCharsets.UTF_8));
+        assertSameAsFullEdit("key", 5, path);
+        assertSameAsFullEdit("a.b", "x", path);
+        assertSameAsFullEdit("list.0", 7, path);
+        assertSameAsFullEdit("flow.a", 3, path);
+        Map<String, Object> map = YamlEditor.getMapFromYaml(path);
+        assertEquals(3, new YamlEditor().getValue("flow.a", map));
+        assertEquals(2, ((Map<?, ?>) map.get("flow")).size());
+    }
+
+    /**
+     * 重复的键由后出现的生效，不能只修改第一次出现的位置
+     */
+    @Test
+    public void testDuplicateKeys() throws Exception {
+        Path path = folder.newFile("duplicate.yaml").toPath();
+        Files.write(path, "a:\n  b: 1\n  c: 2\n  b: 3\nd: 4\n".getBytes(StandardCharsets.UTF_8));
+        assertSameAsFullEdit("a.b", 5, path);
+        assertEquals(5, new YamlEditor().getValue("a.b", YamlEditor.getMapFromYaml(path)));
+        Files.write(path, "a:\n  b: 1\nd: 4\na:\n  b: 3\n".getBytes(StandardCharsets.UTF_8));
+        assertSameAsFullEdit("a.b", 5, path);
+        assertEquals(5, new YamlEditor().getValue("a.b", YamlEditor.getMapFromYaml(path)));
+    }
+
+    @Test
+    public void testAlias() throws Exception {
+        Path path = prepare();
+        assertSameAsFullEdit("Service.ref", "none", path);
+        assertTrue(read(path).contains("  ref: none\n"));
+        assertTrue(read(path).contains("  base: &base\n    timeout: 30\n"));
+    }
+
+    @Test
+    public void testUnchanged() throws Exception {
+        Path path = prepare();
+        new YamlEditor().updateYamlInPlace("Service.port", 8080, path);
+        assertEquals(YAML, read(path));
+    }
+
+    @Test
+    public void testFallback() throws Exception {
+        Path path = prepare();
+        // 带有显式标签的值不能原地修改，整体重写
+        assertSameAsFullEdit("Service.tagged", 200, path);
+        assertFalse(read(path).contains("# 结尾"));
+        // 多行字符串同样整体重写
+        path = prepare2();
+        assertSameAsFullEdit("Service.port", "line1\nline2", path);
+    }
+
+    private Path prepare2() throws Exception {
+        Path path = folder.newFile("in-place2.yaml").toPath();
+        Files.write(path, YAML.getBytes(StandardCharsets.UTF_8));
+        return path;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingKey() throws Exception {
+        Path path = prepare();
+        new YamlEditor().updateYamlInPlace("Service.missing.port", 1, path);
+    }
+}
@@ -0,0 +1,210 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+
+import java.util.*;
+
+import static com.fidt.yamleditor.YamlTestSupport.load;
+import static org.junit.Assert.*;
+
+@Slf4j
+public class TestIndexedYamlDocument {
+    private static final String YAML = "Service:\n"
+            + "  port: 8080\n"
+            + "  debug: null\n"
+            + "  Profile:\n"
+            + "    name: a\n"
+            + "    Organization:\n"
+            + "      - {company: c0, size: 1}\n"
+            + "      - {company: c1, size: 2}\n"
+            + "      - {company: c2, size: 3}\n"
+            + "  hosts: [h0, h1]\n";
+
+    /**
+     * 索引中的每个键都必须能通过逐层查找得到同一个节点，且节点数与文档一致
+     */
+    private static void assertConsistent(IndexedYamlDocument document) {
+        Map<String, Object> all = document.getValuesUnder("");
+        YamlEditor yamlEditor = document.getYamlEditor();
+        for (Map.Entry<String, Object> entry : all.entrySet()) {
+            assertSame(entry.getKey(), entry.getValue(), yamlEditor.getValue(entry.getKey(), document.getRoot()));
+            assertSame(entry.getKey(), entry.getValue(), document.getValue(entry.getKey()));
+        }
+        assertEquals(all.size() + 1, document.size());
+    }
+
+    @Test
+    public void testLookup() {
+        IndexedYamlDocument document = new IndexedYamlDocument(load(YAML));
+        assertConsistent(document);
+        assertEquals(8080, document.getValue("Service.port"));
+        assertEquals("c1", document.getValue(YamlPath.compile("Service.Profile.Organization.1.company")));
+        assertTrue(document.contains("Service.debug"));
+        assertNull(document.getValue("Service.debug"));
+        assertFalse(document.contains("Service.missing"));
+        try {
+            document.getValue("Service.Profile.Organization.3");
+            fail();
+        } catch (IllegalArgumentException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testPrefixQuery() {
+        IndexedYamlDocument document = new IndexedYamlDocument(load(YAML));
+        assertEquals(Arrays.asList("Service.Profile.name", "Service.Profile.Organization",
+                "Service.Profile.Organization.0", "Service.Profile.Organization.0.company",
+                "Service.Profile.Organization.0.size", "Service.Profile.Organization.1",
+                "Service.Profile.Organization.1.company", "Service.Profile.Organization.1.size",
+                "Service.Profile.Organization.2", "Service.Profile.Organization.2.company",
+                "Service.Profile.Organization.2.size"), document.getKeysUnder("Service.Profile"));
+        assertEquals(Arrays.asList("Service.hosts.0", "Service.hosts.1"), document.getKeysUnder("Service.hosts"));
+        assertTrue(document.getKeysUnder("Service.port").isEmpty());
+        assertTrue(document.getKeysUnder("missing").isEmpty());
+    }
+
+    @Test
+    public void testSetValue() {
+        IndexedYamlDocument document = new IndexedYamlDocument(load(YAML));
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("x", Arrays.asList(1, 2));
+        document.setValue("Service.Profile", value);
+        assertFalse(document.contains("Service.Profile.Organization.0.company"));
+        assertEquals(2, document.getValue("Service.Profile.x.1"));
+        // 传入的值被拷贝，之后对它的修改不影响文档
+        value.put("y", 1);
+        assertFalse(document.contains("Service.Profile.y"));
+        document.setValue("Service.timeout", 30);
+        document.setValue("Service.hosts.1", "h9");
+        assertEquals("h9", document.getValue("Service.hosts.1"));
+        assertConsistent(document);
+        try {
+            document.setValue("Service.missing.key", 1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+        assertConsistent(document);
+    }
+
+    @Test
+    public void testInsertValue() {
+        IndexedYamlDocument document = new IndexedYamlDocument(load(YAML));
+        // 中途的键不存在时逐级创建
+        document.insertValueToObject("Service.Cluster.nodes.0.name", "n0");
+        assertEquals("n0", document.getValue("Service.Cluster.nodes.0.name"));
+        // 下标超出范围时追加在末尾
+        document.insertValueToObject("Service.hosts.5", "h2");
+        assertEquals("h2", document.getValue("Service.hosts.2"));
+        assertFalse(document.contains("Service.hosts.5"));
+        document.insertValueToObject("Service.Profile.Organization.7.company", "c3");
+        assertEquals("c3", document.getValue("Service.Profile.Organization.3.company"));
+        // 下标在范围内时覆盖
+        document.insertValueToObject("Service.Profile.Organization.0", Collections.singletonMap("company", "c9"));
+        assertFalse(document.contains("Service.Profile.Organization.0.size"));
+        // null被替换为新建的Map
+        document.insertValueToObject("Service.debug.level", 1);
+        assertEquals(1, document.getValue("Service.debug.level"));
+        assertConsistent(document);
+        try {
+            document.insertValueToObject("Service.port.x", 1);
+            fail();
+        } catch (RuntimeException e) {
+            log.info("expected: {}", e.toString());
+        }
+        assertConsistent(document);
+    }
+
+    @Test
+    public void testRemoveValue() {
+        IndexedYamlDocument document = new IndexedYamlDocument(load(YAML));
+        document.removeListOrMapContent("Service.Profile.Organization.0");
+        assertEquals("c1", document.getValue("Service.Profile.Organization.0.company"));
+        assertEquals("c2", document.getValue("Service.Profile.Organization.1.company"));
+        assertFalse(document.contains("Service.Profile.Organization.2"));
+        document.removeListOrMapContent("Service.hosts");
+        assertFalse(document.contains("Service.hosts.0"));
+        assertConsistent(document);
+    }
+
+    @Test
+    public void testAgainstEditor() {
+        // 同样的操作序列作用于普通Map与带索引的文档，结果必须相同
+        Map<String, Object> plain = load(YAML);
+        IndexedYamlDocument document = new IndexedYamlDocument(load(YAML));
+        YamlEditor yamlEditor = new YamlEditor();
+        Random random = new Random(42);
+        String[] keys = {"Service.port", "Service.hosts.0", "Service.hosts.3", "Service.Profile.name",
+                "Service.Profile.Organization.1", "Service.Profile.Organization.0.size", "Service.New.a.0"};
+        for (int i = 0; i < 500; i++) {
+            String key = keys[random.nextInt(keys.length)];
+            int value = random.nextInt(100);
+            int op = random.nextInt(3);
+            RuntimeException expected = null;
+            try {
+                if (op == 0) {
+                    yamlEditor.setValue(key, value, plain);
+                } else if (op == 1) {
+                    yamlEditor.insertValueToObject(key, value, plain);
+                } else {
+                    yamlEditor.removeListOrMapContent(key, plain);
+                }
+            } catch (RuntimeException e) {
+                expected = e;
+            }
+            try {
+                if (op == 0) {
+                    document.setValue(key, value);
+                } else if (op == 1) {
+                    document.insertValueToObject(key, value);
+                } else {
+                    document.removeListOrMapContent(key);
+                }
+                assertNull(expected);
+            } catch (RuntimeException e) {
+                assertNotNull(e.toString(), expected);
+            }
+            assertEquals(plain, document.getRoot());
+        }
+        assertConsistent(document);
+    }
+
+    @Test
+    public void testAliasesAreExpanded() {
+        IndexedYamlDocument document = new IndexedYamlDocument(
+                load("base: &base {port: 1}\nservice: *base\n"));
+        document.setValue("service.port", 2);
+        assertEquals(1, document.getValue("base.port"));
+        assertConsistent(document);
+    }
+
+    @Test
+    public void testEscape() {
+        IndexedYamlDocument document = new IndexedYamlDocument(load("hosts:\n  baidu.com: 1\n"),
+                YamlEditor.shared(true));
+        assertEquals(1, document.getValue("hosts.baidu\\.com"));
+        assertEquals(Collections.singletonList("hosts.baidu\\.com"), document.getKeysUnder("hosts"));
+    }
+
+    /**
+     * 列表下标按 Integer.parseInt 解析，"01"与"1"等价；Map的键仍按原样匹配
+     */
+    @Test
+    public void testZeroPaddedIndex() {
+        Map<String, Object> tree = load("list: [a, b, c]\nmap: {'01': x, '1': y}\n");
+        IndexedYamlDocument document = new IndexedYamlDocument(tree);
+        YamlEditor yamlEditor = new YamlEditor();
+        for (String key : new String[]{"list.01", "list.+1", "list.002", "map.01", "map.1"}) {
+            assertTrue(key, document.contains(key));
+            assertEquals(key, yamlEditor.getValue(key, tree), document.getValue(key));
+        }
+        assertFalse(document.contains("list.-01"));
+        document.setValue("list.01", Collections.singletonList("z"));
+        assertEquals(Collections.singletonList("list.1.0"), document.getKeysUnder("list.01"));
+        document.removeListOrMapContent("list.00");
+        assertEquals(Arrays.asList("list.0", "list.0.0", "list.1"), document.getKeysUnder("list"));
+        assertConsistent(document);
+    }
+}
@@ -0,0 +1,277 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.fidt.yamleditor.YamlTestSupport.write;
+import static org.junit.Assert.*;
+
+@Slf4j
+public class TestJournaledYamlDocument {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final YamlEditor yamlEditor = new YamlEditor();
+
+    private static Path journal(Path path) {
+        return path.resolveSibling(path.getFileName() + ".journal");
+    }
+
+    private static Path oldJournal(Path path) {
+        return path.resolveSibling(path.getFileName() + ".journal.old");
+    }
+
+    private JournaledYamlDocument open(Path path) throws IOException {
+        return JournaledYamlDocument.open(path, yamlEditor, FsyncPolicy.FILE, Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testReplay() throws IOException {
+        Path path = write(folder, "a.yaml", "Service:\n  port: 8080\n  hosts: [a]\n");
+        try (JournaledYamlDocument document = open(path)) {
+            document.setValue("Service.port", 8081).join();
+            document.insertValueToObject("Service.hosts.1", "b");
+            document.insertValueToObject("Service.New.map", Collections.singletonMap("k", Arrays.asList(1, 2)));
+            document.removeListOrMapContent("Service.hosts.0").join();
+            try {
+                document.setValue("Missing.key", 1);
+                fail();
+            } catch (IllegalArgumentException e) {
+                log.info("expected: {}", e.getMessage());
+            }
+            assertEquals(4, document.getCommittedRecords());
+        }
+        // yaml文件没有被重写
+        assertEquals(8080, yamlEditor.getValue("Service.port", YamlEditor.getMapFromYaml(path)));
+        try (JournaledYamlDocument document = open(path)) {
+            assertEquals(8081, document.getValue("Service.port"));
+            assertEquals(Collections.singletonList("b"), document.getValue("Service.hosts"));
+            assertEquals(Arrays.asList(1, 2), document.getValue("Service.New.map.k"));
+        }
+    }
+
+    @Test
+    public void testGroupCommit() throws Exception {
+        Path path = write(folder, "a.yaml", "counters: {}\n");
+        int threads = 8;
+        int edits = 200;
+        try (JournaledYamlDocument document = open(path)) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int id = t;
+                writers.add(executor.submit(() -> {
+                    CompletableFuture<Void> last = null;
+                    for (int i = 1; i <= edits; i++) {
+                        last = document.setValue("counters.t" + id, i);
+                    }
+                    last.join();
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+            executor.shutdown();
+            log.info("records: {}, commits: {}", document.getCommittedRecords(), document.getCommits());
+            assertEquals(threads * edits, document.getCommittedRecords());
+            assertTrue(document.getCommits() < document.getCommittedRecords());
+        }
+        try (JournaledYamlDocument document = open(path)) {
+            for (int t = 0; t < threads; t++) {
+                assertEquals(edits, document.getValue("counters.t" + t));
+            }
+        }
+    }
+
+    @Test
+    public void testTornRecord() throws IOException {
+        Path path = write(folder, "a.yaml", "list: []\n");
+        long size;
+        try (JournaledYamlDocument document = open(path)) {
+            document.insertValueToObject("list.0", "a");
+            document.insertValueToObject("list.1", "b").join();
+            size = document.getJournalBytes();
+        }
+        // 写入最后一条记录的过程中崩溃
+        byte[] torn = {0, 0, 0, 100, 1, 2, 3, 4, 5};
+        Files.write(journal(path), torn, StandardOpenOption.APPEND);
+        try (JournaledYamlDocument document = open(path)) {
+            assertEquals(Arrays.asList("a", "b"), document.getValue("list"));
+            assertEquals(size, document.getJournalBytes());
+            document.insertValueToObject("list.2", "c").join();
+        }
+        try (JournaledYamlDocument document = open(path)) {
+            assertEquals(Arrays.asList("a", "b", "c"), document.getValue("list"));
+        }
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        Path path = write(folder, "a.yaml", "list: []\n");
+        byte[] before;
+        try (JournaledYamlDocument document = open(path)) {
+            for (int i = 0; i < 10; i++) {
+                document.insertValueToObject("list." + i, i);
+            }
+            document.setValue("port", 1).join();
+            before = Files.readAllBytes(journal(path));
+            document.compact();
+            assertEquals(12, document.getJournalBytes());
+            assertFalse(Files.exists(oldJournal(path)));
+            assertEquals(1, yamlEditor.getValue("port", YamlEditor.getMapFromYaml(path)));
+            assertEquals(10, ((List<?>) yamlEditor.getValue("list", YamlEditor.getMapFromYaml(path))).size());
+            document.setValue("port", 2).join();
+        }
+        // 替换yaml文件之后、删除旧日志之前崩溃：旧日志已经包含在yaml文件中，不能再次重放
+        Files.write(oldJournal(path), before);
+        try (JournaledYamlDocument document = open(path)) {
+            assertEquals(2, document.getValue("port"));
+            assertEquals(10, ((List<?>) document.getValue("list")).size());
+        }
+        assertFalse(Files.exists(oldJournal(path)));
+    }
+
+    @Test
+    public void testAutomaticCompaction() throws Exception {
+        Path path = write(folder, "a.yaml", "port: 0\n");
+        try (JournaledYamlDocument document = JournaledYamlDocument.open(path, yamlEditor, FsyncPolicy.NONE, 1024)) {
+            for (int i = 1; i <= 500; i++) {
+                document.setValue("port", i).join();
+            }
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (document.getJournalBytes() > 1024 || Files.exists(oldJournal(path))) {
+                assertTrue("timed out", System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+            int compacted = (Integer) yamlEditor.getValue("port", YamlEditor.getMapFromYaml(path));
+            log.info("compacted up to {}, journal bytes: {}", compacted, document.getJournalBytes());
+            assertTrue(compacted > 0);
+        }
+        try (JournaledYamlDocument document = open(path)) {
+            assertEquals(500, document.getValue("port"));
+        }
+    }
+
+    @Test
+    public void testInterruptedCompaction() throws IOException {
+        Path path = write(folder, "a.yaml", "port: 0\n");
+        try (JournaledYamlDocument document = open(path)) {
+            document.setValue("port", 1);
+            document.insertValueToObject("hosts.0", "a").join();
+        }
+        // 切换日志之后、写入新的日志头之前崩溃
+        Files.move(journal(path), oldJournal(path));
+        ByteBuffer header = ByteBuffer.allocate(12).putInt(0x594a4e4c).putLong(0);
+        Files.write(journal(path), header.array());
+        try (JournaledYamlDocument document = open(path)) {
+            assertEquals(1, document.getValue("port"));
+            assertEquals(Collections.singletonList("a"), document.getValue("hosts"));
+            document.insertValueToObject("hosts.1", "b").join();
+        }
+        // 恢复时完成了压缩
+        assertFalse(Files.exists(oldJournal(path)));
+        assertEquals(1, yamlEditor.getValue("port", YamlEditor.getMapFromYaml(path)));
+        try (JournaledYamlDocument document = open(path)) {
+            assertEquals(Arrays.asList("a", "b"), document.getValue("hosts"));
+        }
+    }
+
+    /**
+     * 切换日志时，新日志创建之后、日志头写完之前崩溃
+     */
+    @Test
+    public void testInterruptedJournalCreation() throws IOException {
+        for (int length : new int[]{0, 4, 8}) {
+            Path path = write(folder, "a" + length + ".yaml", "port: 0\n");
+            try (JournaledYamlDocument document = open(path)) {
+                document.setValue("port", length + 1).join();
+            }
+            Files.move(journal(path), oldJournal(path));
+            Files.write(journal(path), Arrays.copyOf(ByteBuffer.allocate(12).putInt(0x594a4e4c).array(), length));
+            try (JournaledYamlDocument document = open(path)) {
+                assertEquals(length + 1, document.getValue("port"));
+                document.setValue("hosts", "a").join();
+            }
+            // 恢复之后可以再次打开
+            try (JournaledYamlDocument document = open(path)) {
+                assertEquals(length + 1, document.getValue("port"));
+                assertEquals("a", document.getValue("hosts"));
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException {
+        Path path = write(folder, "empty.yaml", "");
+        try (JournaledYamlDocument document = open(path)) {
+            document.setValue("port", 1).join();
+        }
+        try (JournaledYamlDocument document = open(path)) {
+            assertEquals(1, document.getValue("port"));
+        }
+    }
+
+    @Test
+    public void testFailedCompactionIsRetried() throws IOException {
+        Path path = write(folder, "a.yaml", "port: 0\n");
+        byte[] base = Files.readAllBytes(path);
+        Path stale = Files.createFile(path.resolveSibling(".a.yaml.12345.tmp"));
+        try (JournaledYamlDocument document = open(path)) {
+            // 打开时删除崩溃留下的临时文件
+            assertFalse(Files.exists(stale));
+            document.setValue("port", 1).join();
+            // 让替换yaml文件失败：目标是一个非空目录
+            Files.delete(path);
+            Files.createDirectories(path.resolve("blocked"));
+            try {
+                document.compact();
+                fail();
+            } catch (IOException e) {
+                log.info("expected: {}", e.toString());
+            }
+            assertTrue(Files.exists(oldJournal(path)));
+            document.setValue("port", 2).join();
+
+            Files.delete(path.resolve("blocked"));
+            Files.delete(path);
+            Files.write(path, base);
+            // 下一次压缩先完成上一次的压缩
+            document.compact();
+            assertFalse(Files.exists(oldJournal(path)));
+            assertEquals(2, yamlEditor.getValue("port", YamlEditor.getMapFromYaml(path)));
+            document.setValue("port", 3).join();
+        }
+        try (JournaledYamlDocument document = open(path)) {
+            assertEquals(3, document.getValue("port"));
+        }
+    }
+
+    @Test
+    public void testForeignJournal() throws IOException {
+        Path path = write(folder, "a.yaml", "port: 0\n");
+        try (JournaledYamlDocument document = open(path)) {
+            document.setValue("port", 1).join();
+        }
+        // 打开期间之外被修改的yaml文件
+        write(folder, "a.yaml", "port: 2\n");
+        try {
+            open(path);
+            fail();
+        } catch (IOException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.fidt.yamleditor;
+
+import com.fidt.yamleditor.benchmark.YamlDocumentGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static com.fidt.yamleditor.YamlTestSupport.write;
+import static org.junit.Assert.*;
+
+@Slf4j
+public class TestLazyYamlDocument {
+    private static final String YAML = "# comment\n"
+            + "---\n"
+            + "Service:\n"
+            + "  port: 8080\n"
+            + "  'quoted key': q\n"
+            + "  Profile:\n"
+            + "    company: root # trailing comment\n"
+            + "    Organization:\n"
+            + "      - {company: c0, size: 1}\n"
+            + "      - company: c1\n"
+            + "        size: 2\n"
+            + "Servers:\n"
+            + "- host: a\n"
+            + "  port: 1\n"
+            + "-   [x, 'y: z']\n"
+            + "- \"quoted # not a comment\"\n"
+            + "-\n"
+            + "Script: |\n"
+            + "  line: 1\n"
+            + "\n"
+            + "  - line 2\n"
+            + "Nested:\n"
+            + "  text: >-\n"
+            + "    folded\n"
+            + "    text: here\n"
+            + "  after: 3\n"
+            + "Inline: {a: [1, 2], b: c}\n"
+            + "Empty:\n"
+            + "Ports:\n"
+            + "  - 1\n"
+            + "  - - 2\n"
+            + "    - 3\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * 文档中每个节点的取值都与普通读取方式一致
+     */
+    private static void assertSameAsRegular(Path path, LazyYamlDocument document) throws IOException {
+        Map<String, Object> regular = YamlEditor.getMapFromYaml(path);
+        YamlEditor yamlEditor = new YamlEditor();
+        List<YamlQuery.Match> matches = yamlEditor.query("**", regular).collect(Collectors.toList());
+        assertFalse(matches.isEmpty());
+        for (YamlQuery.Match match : matches) {
+            Object value = document.getValue(match.getPath());
+            assertEquals(match.getCompositeKey(), match.getValue(), value);
+            assertEquals(match.getValue(), document.getValue(match.getCompositeKey()));
+        }
+    }
+
+    @Test
+    public void testBlockDocument() throws IOException {
+        Path path = write(folder, YAML);
+        try (LazyYamlDocument document = LazyYamlDocument.open(path)) {
+            assertTrue(document.isLazy());
+            assertEquals(Arrays.asList("Service", "Servers", "Script", "Nested", "Inline", "Empty", "Ports"),
+                    new ArrayList<>(document.keys()));
+            assertEquals("c1", document.getValue("Service.Profile.Organization.1.company"));
+            assertEquals("line: 1\n\n- line 2\n", document.getValue("Script"));
+            assertEquals("folded text: here", document.getValue("Nested.text"));
+            assertNull(document.getValue("Servers.3"));
+            assertNull(document.getValue("Empty"));
+            assertSameAsRegular(path, document);
+        }
+    }
+
+    @Test
+    public void testGeneratedDocument() throws IOException {
+        Path path = folder.newFile("inventory.yaml").toPath();
+        YamlDocumentGenerator.write(YamlDocumentGenerator.generate(64 * 1024, 42L), path);
+        try (LazyYamlDocument document = LazyYamlDocument.open(path)) {
+            assertTrue(document.isLazy());
+            assertEquals(42L, ((Number) document.getValue("meta.seed")).longValue());
+            // 只解析了tenants的第8个元素
+            Object company = document.getValue("tenants.7.Profile.Organization.0.company");
+            assertEquals(new YamlEditor().getValue("tenants.7.Profile.Organization.0.company",
+                    YamlEditor.getMapFromYaml(path)), company);
+            assertEquals(2, document.getMaterializedCount());
+            assertSameAsRegular(path, document);
+        }
+    }
+
+    @Test
+    public void testFallbacks() throws IOException {
+        String[] documents = {
+                "base: &base {port: 1}\nservice: *base\n",
+                "tagged: !!str 1\n",
+                "flow: [1,\n  2]\n",
+                "quoted: 'multi\n  line'\n",
+                "%YAML 1.1\n---\na: 1\n",
+                "'quoted': 1\n",
+                "dup: 1\ndup: 2\n",
+                "base: {port: 1}\n<<: {b: 2}\n",
+                "? complex\n: value\n",
+        };
+        for (String yaml : documents) {
+            Path path = write(folder, yaml);
+            try (LazyYamlDocument document = LazyYamlDocument.open(path)) {
+                assertFalse(yaml, document.isLazy());
+                assertSameAsRegular(path, document);
+            }
+        }
+        try {
+            LazyYamlDocument.open(write(folder, "a: 1\n---\nb: 2\n"));
+            fail();
+        } catch (RuntimeException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+        // 一个第一层节点下的第二层节点无法切分时，只影响该节点
+        Path path = write(folder, "a:\n  'x y': 1\n  z: 2\nb:\n  c: 3\n");
+        try (LazyYamlDocument document = LazyYamlDocument.open(path)) {
+            assertTrue(document.isLazy());
+            assertEquals(2, document.getValue("a.z"));
+            assertEquals(3, document.getValue("b.c"));
+            assertSameAsRegular(path, document);
+        }
+    }
+
+    @Test
+    public void testCache() throws IOException {
+        Path path = write(folder, "a:\n  x: 1\n  y: 2\nb:\n  x: 3\n");
+        LazyYamlDocument closed;
+        try (LazyYamlDocument document = LazyYamlDocument.open(path, new YamlEditor(), 1)) {
+            closed = document;
+            assertEquals(1, document.getValue("a.x"));
+            assertEquals(1, document.getValue("a.x"));
+            assertEquals(1, document.getMaterializedCount());
+            assertEquals(1, document.getCacheHitCount());
+            // 超出缓存的上限时淘汰最久未访问的片段
+            assertEquals(2, document.getValue("a.y"));
+            assertEquals(1, document.getValue("a.x"));
+            assertEquals(3, document.getMaterializedCount());
+            assertTrue(document.getCachedBytes() <= "  x: 1\n".length());
+        }
+        // 关闭之后不能再读取
+        try {
+            closed.getValue("b.x");
+            fail();
+        } catch (IllegalStateException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testInvalid() throws IOException {
+        try (LazyYamlDocument document = LazyYamlDocument.open(write(folder, "a:\n  b: 1\nc: [1, 2]\n"))) {
+            for (String key : new String[]{"missing", "a.missing", "c.2", "a.b.c"}) {
+                try {
+                    document.getValue(key);
+                    fail(key);
+                } catch (IllegalArgumentException e) {
+                    log.info("expected: {}", e.getMessage());
+                }
+            }
+        }
+        // 格式错误的片段在访问时才抛出异常
+        try (LazyYamlDocument document = LazyYamlDocument.open(write(folder, "a: 1\nb: [1, 2]]\n"))) {
+            assertEquals(1, document.getValue("a"));
+            try {
+                document.getValue("b");
+                fail();
+            } catch (RuntimeException e) {
+                log.info("expected: {}", e.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static com.fidt.yamleditor.YamlTestSupport.load;
+import static org.junit.Assert.*;
+
+@Slf4j
+public class TestSchemaYamlLoader {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String YAML = "meta:\n"
+            + "  version: 1\n"
+            + "  seed: 42\n"
+            + "tenants:\n"
+            + "  - id: 1\n"
+            + "    name: 8080\n"
+            + "    enabled: 'on'\n"
+            + "    ratio: 2\n"
+            + "    quota: 0x10\n"
+            + "    tags: [a, 1.50, ~]\n"
+            + "  - id: '2'\n"
+            + "    name: b\n"
+            + "    enabled: no\n"
+            + "    ratio: .5\n"
+            + "    quota: null\n"
+            + "labels:\n"
+            + "  80: http\n"
+            + "  tls: yes\n"
+            + "extra: {any: [1, 2.5, true, 2001-12-14]}\n";
+
+    private static final String SCHEMA = "meta:\n"
+            + "  version: int\n"
+            + "  seed: long\n"
+            + "tenants:\n"
+            + "  - id: int\n"
+            + "    name: string\n"
+            + "    enabled: boolean\n"
+            + "    ratio: double\n"
+            + "    quota?: int\n"
+            + "    tags?: [string]\n"
+            + "labels?: {'*': string}\n"
+            + "extra?: any\n";
+
+    private static YamlSchemaException violation(String yaml, YamlSchema schema) {
+        try {
+            SchemaYamlLoader.load(yaml, schema);
+            fail(yaml);
+            return null;
+        } catch (YamlSchemaException e) {
+            log.info("expected: {}", e.getMessage());
+            return e;
+        }
+    }
+
+    @Test
+    public void testTypedScalars() {
+        Map<String, Object> map = SchemaYamlLoader.load(YAML, YamlSchema.parse(SCHEMA));
+        YamlEditor yamlEditor = new YamlEditor();
+        assertEquals(1, yamlEditor.getValue("meta.version", map));
+        assertEquals(42L, yamlEditor.getValue("meta.seed", map));
+        assertEquals(1, yamlEditor.getValue("tenants.0.id", map));
+        assertEquals("8080", yamlEditor.getValue("tenants.0.name", map));
+        assertEquals(true, yamlEditor.getValue("tenants.0.enabled", map));
+        assertEquals(2.0, yamlEditor.getValue("tenants.0.ratio", map));
+        assertEquals(16, yamlEditor.getValue("tenants.0.quota", map));
+        assertEquals(Arrays.asList("a", "1.50", null), yamlEditor.getValue("tenants.0.tags", map));
+        assertEquals(2, yamlEditor.getValue("tenants.1.id", map));
+        assertEquals(false, yamlEditor.getValue("tenants.1.enabled", map));
+        assertEquals(0.5, yamlEditor.getValue("tenants.1.ratio", map));
+        assertNull(yamlEditor.getValue("tenants.1.quota", map));
+        // 未声明的键按普通方式推断类型，值按声明的类型转换
+        assertEquals("http", ((Map<?, ?>) map.get("labels")).get(80));
+        assertEquals("yes", ((Map<?, ?>) map.get("labels")).get("tls"));
+        assertEquals(load(YAML).get("extra"), map.get("extra"));
+
+        // 返回的树可以直接修改
+        yamlEditor.setValue("tenants.1.name", "c", map);
+        assertEquals("c", yamlEditor.getValue("tenants.1.name", map));
+    }
+
+    @Test
+    public void testAnyMatchesGenericLoad() {
+        String yaml = "a: {b: [1, -2, 3.5, 0o17, 010, 1_000, .inf, ~, 'x', yes, 2001-12-14, !!str 5]}\n"
+                + "c: &x {d: 12345678901234567890}\n"
+                + "e: *x\n";
+        YamlSchema schema = YamlSchema.object().additionalKeys(YamlSchema.ANY);
+        assertEquals(load(yaml), SchemaYamlLoader.load(yaml, schema));
+        assertEquals(load(yaml), SchemaYamlLoader.load(yaml, YamlSchema.parse("'*': any")));
+        assertNull(SchemaYamlLoader.load("", schema));
+    }
+
+    @Test
+    public void testViolations() {
+        YamlSchema schema = YamlSchema.parse(SCHEMA);
+        YamlSchemaException e = violation(YAML.replace("    quota: null", "    quote: 1"), schema);
+        assertEquals("tenants.1.quote", e.getCompositeKey());
+        assertTrue(e.getMessage(), e.getMessage().contains("line 15"));
+
+        e = violation(YAML.replace("    name: b\n", ""), schema);
+        assertEquals("tenants.1.name", e.getCompositeKey());
+
+        e = violation(YAML.replace("quota: 0x10", "quota: many"), schema);
+        assertEquals("tenants.0.quota", e.getCompositeKey());
+        assertTrue(e.getCause() instanceof YamlConversionException);
+
+        e = violation(YAML.replace("quota: 0x10", "quota: 3000000000"), schema);
+        assertEquals("tenants.0.quota", e.getCompositeKey());
+
+        e = violation(YAML.replace("tags: [a, 1.50, ~]", "tags: [a, {b: c}]"), schema);
+        assertEquals("tenants.0.tags.1", e.getCompositeKey());
+
+        e = violation(YAML.replace("  seed: 42", "  seed: [42]"), schema);
+        assertEquals("meta.seed", e.getCompositeKey());
+
+        e = violation("meta: 1\n", schema);
+        assertEquals("meta", e.getCompositeKey());
+
+        e = violation("a.b: 1\n", YamlSchema.object().required("c", YamlSchema.INT));
+        assertEquals("a.b", e.getCompositeKey());
+        // 键中的'.'按拆分模式转义，嵌套的键同样如此
+        YamlSchema nested = YamlSchema.object().required("x.y", YamlSchema.object().required("c", YamlSchema.INT));
+        try {
+            SchemaYamlLoader.load("x.y: {c: many}\n", nested, true);
+            fail();
+        } catch (YamlSchemaException expected) {
+            assertEquals("x\\.y.c", expected.getCompositeKey());
+        }
+        try {
+            SchemaYamlLoader.validate(load("x.y: {c: 1, a.b: 2}\n"), nested, true);
+            fail();
+        } catch (YamlSchemaException expected) {
+            assertEquals("x\\.y.a\\.b", expected.getCompositeKey());
+        }
+
+        e = violation("{}", YamlSchema.object().required("c", YamlSchema.INT).required("d", YamlSchema.INT));
+        assertEquals("c", e.getCompositeKey());
+        assertTrue(e.getMessage().contains("[c, d]"));
+    }
+
+    @Test
+    public void testFallback() throws Exception {
+        YamlSchema schema = YamlSchema.object()
+                .required("base", YamlSchema.mapOf(YamlSchema.ANY))
+                .required("service", YamlSchema.object()
+                        .required("host", YamlSchema.STRING)
+                        .required("port", YamlSchema.STRING));
+        String yaml = "base: &base {host: h, port: 80}\n"
+                + "service:\n"
+                + "  <<: *base\n"
+                + "  port: 8080\n";
+        Map<String, Object> map = SchemaYamlLoader.load(yaml, schema);
+        assertEquals("8080", ((Map<?, ?>) map.get("service")).get("port"));
+        assertEquals("h", ((Map<?, ?>) map.get("service")).get("host"));
+
+        Path path = folder.newFile("merge.yaml").toPath();
+        Files.write(path, (yaml + "  extra: 1\n").getBytes(StandardCharsets.UTF_8));
+        try {
+            SchemaYamlLoader.load(path, schema);
+            fail();
+        } catch (YamlSchemaException e) {
+            assertEquals("service.extra", e.getCompositeKey());
+        }
+
+        // 别名引用的节点按引用处的类型转换
+        map = SchemaYamlLoader.load("a: &n 5\nb: *n\n",
+                YamlSchema.object().required("a", YamlSchema.INT).required("b", YamlSchema.STRING));
+        assertEquals(5, map.get("a"));
+        assertEquals("5", map.get("b"));
+        // 显式的集合标签
+        map = SchemaYamlLoader.load("a: !!map {b: '1'}\n",
+                YamlSchema.object().required("a", YamlSchema.object().required("b", YamlSchema.INT)));
+        assertEquals(Collections.singletonMap("b", 1), map.get("a"));
+    }
+
+    @Test
+    public void testSchemaDeclaration() throws Exception {
+        YamlSchema schema = YamlSchema.parse(SCHEMA);
+        assertEquals(YamlSchema.Kind.OBJECT, schema.getKind());
+        YamlSchema tenant = schema.getFields().get("tenants").getSchema().getElement();
+        assertTrue(tenant.getFields().get("id").isRequired());
+        assertFalse(tenant.getFields().get("quota").isRequired());
+        assertEquals(YamlSchema.LONG, schema.getFields().get("meta").getSchema().getFields().get("seed").getSchema());
+        assertEquals(YamlSchema.STRING, schema.getFields().get("labels").getSchema().getAdditionalKeys());
+        assertNull(tenant.getAdditionalKeys());
+        log.info("schema: {}", schema);
+
+        Path path = folder.newFile("schema.yaml").toPath();
+        Files.write(path, SCHEMA.getBytes(StandardCharsets.UTF_8));
+        assertEquals(schema.toString(), YamlSchema.load(path).toString());
+
+        try {
+            YamlSchema.parse("a: {b: integer}");
+            fail();
+        } catch (IllegalArgumentException e) {
+            log.info("expected: {}", e.getMessage());
+            assertTrue(e.getMessage().contains("a.b"));
+        }
+        try {
+            YamlSchema.INT.required("a", YamlSchema.INT);
+            fail();
+        } catch (IllegalStateException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+        // 与代码中构造的schema等价
+        YamlSchema built = YamlSchema.object().required("a", YamlSchema.listOf(YamlSchema.INT))
+                .optional("b", YamlSchema.mapOf(YamlSchema.BOOLEAN));
+        assertEquals(built.toString(), YamlSchema.parse("a: [int]\nb?: {'*': boolean}").toString());
+    }
+}
@@ -0,0 +1,83 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static com.fidt.yamleditor.YamlTestSupport.write;
+import static org.junit.Assert.*;
+
+@Slf4j
+public class TestStreamingLookup {
+    private static final String YAML = "Service:\n" +
+            "  Profile:\n" +
+            "    Organization:\n" +
+            "    - company: 千里\n" +
+            "      ports: [8080, 8081]\n" +
+            "    - company: 夜雨\n" +
+            "      ports: &ports\n" +
+            "      - 9090\n" +
+            "  hosts: {a: 1, b.c: 2}\n" +
+            "defaults: &defaults\n" +
+            "  timeout: 30\n" +
+            "  retry: 3\n" +
+            "Channel:\n" +
+            "  <<: *defaults\n" +
+            "  retry: 5\n" +
+            "  ports: *ports\n" +
+            "  1: numeric key\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * 与完整读取后的getValue结果保持一致
+     */
+    @Test
+    public void testSameAsGetValue() throws Exception {
+        Path path = write(folder, YAML);
+        YamlEditor yamlEditor = new YamlEditor(true);
+        Map<String, Object> map = YamlEditor.getMapFromYaml(path);
+        List<String> keys = Arrays.asList("Service.Profile.Organization.0.company", "Service.Profile.Organization.1",
+                "Service.Profile.Organization.0.ports.1", "Service.hosts.b\\.c", "Service", "Channel.timeout",
+                "Channel.retry", "Channel.ports.0", "defaults");
+        for (String key : keys) {
+            assertEquals(key, yamlEditor.getValue(key, map), yamlEditor.getValueFromYaml(key, path));
+        }
+        Map<String, Object> values = yamlEditor.getValuesFromYaml(keys, path);
+        assertEquals(keys.size(), values.size());
+        for (String key : keys) {
+            assertEquals(key, yamlEditor.getValue(key, map), values.get(key));
+        }
+    }
+
+    @Test
+    public void testMissingKeys() throws Exception {
+        Path path = write(folder, YAML);
+        YamlEditor yamlEditor = new YamlEditor();
+        Map<String, Object> values = yamlEditor.getValuesFromYaml(Arrays.asList("Service.missing",
+                "Service.Profile.Organization.5", "Channel.1", "Service.Profile.Organization.0.company.x"), path);
+        assertTrue(values.isEmpty());
+        try {
+            yamlEditor.getValueFromYaml("Service.missing", path);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            log.info(expected.getMessage());
+        }
+    }
+
+    /**
+     * 找到目标后立即停止读取，之后的非法内容不会被解析
+     */
+    @Test
+    public void testStopsAfterTarget() throws Exception {
+        Path path = write(folder, "flag: true\nbig:\n  - 1\n  - [unterminated\n");
+        assertEquals(true, new YamlEditor().getValueFromYaml("flag", path));
+    }
+}
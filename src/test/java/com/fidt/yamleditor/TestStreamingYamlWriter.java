@@ -0,0 +1,154 @@
+package com.fidt.yamleditor;
+
+import com.fidt.yamleditor.benchmark.YamlDocumentGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+public class TestStreamingYamlWriter {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * 锚点的编号在所有输出之间递增，比较时忽略编号
+     */
+    private static String withoutAnchorIds(String yaml) {
+        return yaml.replaceAll("([&*])id\\d+", "$1id");
+    }
+
+    private static void assertSameOutput(Object data, String streamed) {
+        assertEquals(withoutAnchorIds(YamlEditor.yaml().dump(data)), withoutAnchorIds(streamed));
+    }
+
+    private static Object load(String yaml) {
+        return YamlEditor.yaml().load(new StringReader(yaml));
+    }
+
+    private static void assertSameAsDump(Object data) {
+        String streamed = StreamingYamlWriter.dump(data);
+        assertSameOutput(data, streamed);
+        // 读回的类型由yaml决定（如Long读回为Integer），与dump的结果读回后相同
+        assertEquals(load(YamlEditor.yaml().dump(data)), load(streamed));
+    }
+
+    private static Map<String, Object> scalars() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("string", "value");
+        map.put("number-like", "123");
+        map.put("bool-like", "true");
+        map.put("null-like", "null");
+        map.put("empty", "");
+        map.put("spaces", "  leading and trailing  ");
+        map.put("colon", "a: b");
+        map.put("comment", "#not a comment");
+        map.put("multiline", "line 1\nline 2\n");
+        map.put("long", String.join(" ", Collections.nCopies(40, "word")));
+        map.put("unicode", "中文 ünïcödé");
+        map.put("control", "bell\u0007");
+        map.put("int", 1);
+        map.put("long-number", Long.MAX_VALUE);
+        map.put("big-integer", new BigInteger("123456789012345678901234567890"));
+        map.put("double", 1.5);
+        map.put("nan", Double.NaN);
+        map.put("infinity", Double.NEGATIVE_INFINITY);
+        map.put("big-decimal", new BigDecimal("1.10"));
+        map.put("bool", false);
+        map.put("null", null);
+        map.put("char", 'c');
+        map.put("date", new Date(1600000000000L));
+        map.put("binary", new byte[]{0, 1, 2, (byte) 255});
+        map.put(String.join("", Collections.nCopies(130, "k")), "long key");
+        return map;
+    }
+
+    @Test
+    public void testScalars() {
+        Map<String, Object> map = scalars();
+        String streamed = StreamingYamlWriter.dump(map);
+        log.info("\n{}", streamed);
+        assertSameOutput(map, streamed);
+        // 控制字符与byte[]输出为binary，BigDecimal读回为Double，Character读回为String，其余的值读回后相同
+        for (String key : new String[]{"binary", "control", "big-decimal", "char"}) {
+            map.remove(key);
+        }
+        assertEquals(map, load(StreamingYamlWriter.dump(map)));
+    }
+
+    @Test
+    public void testCollections() {
+        Map<Object, Object> map = new LinkedHashMap<>();
+        map.put("empty-map", new LinkedHashMap<>());
+        map.put("empty-list", new ArrayList<>());
+        map.put("nested", Arrays.asList(Arrays.asList(1, 2), Collections.singletonList(Collections.emptyMap()),
+                Collections.singletonMap("a", Arrays.asList("x", null))));
+        map.put(1, "int key");
+        map.put(null, "null key");
+        map.put(true, "bool key");
+        map.put("sorted", new TreeMap<>(Collections.singletonMap("b", 1)));
+        assertSameAsDump(map);
+        assertSameAsDump(Arrays.asList(map, map.get("nested")));
+        assertSameAsDump("scalar root");
+        assertSameAsDump(null);
+        assertSameAsDump(new LinkedHashMap<>());
+        assertSameAsDump(YamlDocumentGenerator.generate(64 * 1024, 7L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testAnchors() {
+        List<Object> shared = new ArrayList<>(Arrays.asList(1, 2));
+        Map<String, Object> inner = new LinkedHashMap<>();
+        inner.put("list", shared);
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("a", inner);
+        map.put("b", shared);
+        map.put("c", inner);
+        List<Object> recursive = new ArrayList<>();
+        recursive.add(recursive);
+        map.put("recursive", recursive);
+        String streamed = StreamingYamlWriter.dump(map);
+        log.info("\n{}", streamed);
+        assertSameOutput(map, streamed);
+        Map<String, Object> loaded = (Map<String, Object>) load(streamed);
+        assertSame(loaded.get("a"), loaded.get("c"));
+        assertSame(((Map<String, Object>) loaded.get("a")).get("list"), loaded.get("b"));
+    }
+
+    @Test
+    public void testFallback() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("set", new LinkedHashSet<>(Arrays.asList("a", "b")));
+        map.put("array", new int[]{1, 2});
+        map.put("list", Arrays.asList(1, 2));
+        assertSameOutput(map, StreamingYamlWriter.dump(map));
+    }
+
+    @Test
+    public void testDumpMapToYaml() throws IOException {
+        Map<String, Object> map = YamlEditor.getMapFromYaml(Paths.get("src/test/resources/test.yaml"));
+        Path path = folder.getRoot().toPath().resolve("a.yaml");
+        // 覆盖更长的旧内容
+        Files.write(path, String.join("\n", Collections.nCopies(10_000, "old: content"))
+                .getBytes(StandardCharsets.UTF_8));
+        YamlEditor.dumpMapToYaml(map, path);
+        assertSameOutput(map, new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+        Path atomic = folder.getRoot().toPath().resolve("b.yaml");
+        YamlEditor.dumpMapToYamlAtomically(map, atomic, FsyncPolicy.NONE);
+        assertSameOutput(map, new String(Files.readAllBytes(atomic), StandardCharsets.UTF_8));
+        assertEquals(map, YamlEditor.getMapFromYaml(atomic));
+    }
+}
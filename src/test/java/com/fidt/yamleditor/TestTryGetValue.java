@@ -0,0 +1,96 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+public class TestTryGetValue {
+    private static final Object DEFAULT = new Object();
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> document() {
+        return (Map<String, Object>) YamlEditor.yaml().load("Service:\n"
+                + "  port: 8080\n"
+                + "  empty: null\n"
+                + "  hosts: [a, b]\n"
+                + "  baidu.com: {name: x}\n"
+                + "  '7': seven\n");
+    }
+
+    @Test
+    public void testHit() {
+        YamlEditor yamlEditor = new YamlEditor();
+        Map<String, Object> map = document();
+        assertEquals(Optional.of(8080), yamlEditor.tryGetValue("Service.port", map));
+        assertEquals("b", yamlEditor.tryGetValue("Service.hosts.1", map).orElse(null));
+        assertEquals("seven", yamlEditor.getValueOrDefault("Service.7", map, DEFAULT));
+        assertEquals(map.get("Service"), yamlEditor.getValueOrDefault(YamlPath.of("Service"), map, DEFAULT));
+        assertEquals("x", new YamlEditor(true).getValueOrDefault("Service.baidu\\.com.name", map, DEFAULT));
+        // 与getValue的结果相同
+        assertEquals(yamlEditor.getValue("Service.hosts.0", map), yamlEditor.tryGetValue("Service.hosts.0", map).get());
+    }
+
+    @Test
+    public void testNullValue() {
+        YamlEditor yamlEditor = new YamlEditor();
+        Map<String, Object> map = document();
+        assertFalse(yamlEditor.tryGetValue("Service.empty", map).isPresent());
+        assertNull(yamlEditor.getValueOrDefault("Service.empty", map, DEFAULT));
+        assertSame(DEFAULT, yamlEditor.getValueOrDefault("Service.empty.child", map, DEFAULT));
+    }
+
+    @Test
+    public void testMiss() {
+        YamlEditor yamlEditor = YamlEditor.shared(false);
+        Map<String, Object> map = document();
+        for (String key : new String[]{"Missing", "Service.missing", "Service.port.child", "Service.hosts.2",
+                "Service.hosts.-1", "Service.hosts.x", "Service.hosts.99999999999", "Service.baidu.com.name"}) {
+            assertFalse(key, yamlEditor.tryGetValue(key, map).isPresent());
+            assertSame(key, DEFAULT, yamlEditor.getValueOrDefault(key, map, DEFAULT));
+        }
+        List<Object> list = Arrays.asList(Collections.singletonMap("a", 1), "b");
+        assertEquals(Optional.of(1), yamlEditor.tryGetValue("0.a", list));
+        assertFalse(yamlEditor.tryGetValue("a", list).isPresent());
+        try {
+            yamlEditor.tryGetValue("a", null);
+            fail();
+        } catch (NullPointerException e) {
+            log.info("expected: {}", e.toString());
+        }
+        // 原有的getValue仍然抛出异常
+        try {
+            yamlEditor.getValue("Service.missing", map);
+            fail();
+        } catch (IllegalArgumentException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testIndexParsing() {
+        for (String segment : new String[]{"0", "12", "+3", "-5", "007", "2147483647", "-2147483648", "2147483648",
+                "-2147483649", "", "-", "+", "1a", "a", "１２", "--1"}) {
+            YamlPath path = YamlPath.of(segment);
+            Integer expected;
+            try {
+                expected = Integer.parseInt(segment);
+            } catch (NumberFormatException e) {
+                expected = null;
+            }
+            if (expected == null) {
+                try {
+                    path.getIndex(0);
+                    fail(segment);
+                } catch (NumberFormatException e) {
+                    log.debug("expected: {}", e.getMessage());
+                }
+            } else {
+                assertEquals(segment, expected.intValue(), path.getIndex(0));
+            }
+        }
+    }
+}
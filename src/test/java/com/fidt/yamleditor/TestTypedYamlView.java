@@ -0,0 +1,270 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.*;
+
+import static com.fidt.yamleditor.YamlTestSupport.load;
+import static org.junit.Assert.*;
+
+@Slf4j
+public class TestTypedYamlView {
+    private static final String YAML = "Service:\n"
+            + "  port: '8080'\n"
+            + "  weight: 2\n"
+            + "  big: 12345678901\n"
+            + "  ratio: 0.5\n"
+            + "  enabled: 'on'\n"
+            + "  timeout: 1500ms\n"
+            + "  retry-delay: PT2S\n"
+            + "  idle: 60000\n"
+            + "  mode: read-write\n"
+            + "  empty: null\n"
+            + "  hosts: [a, 1, true]\n"
+            + "  ports: [80, '443']\n"
+            + "  backends:\n"
+            + "    - {host: h0, port: 1, tags: [x]}\n"
+            + "    - {host: h1, port: '2', max-connections: 10}\n"
+            + "  limits: {cpu: '2', memory: 4}\n";
+
+    public enum Mode {
+        READ_ONLY, READ_WRITE
+    }
+
+    public static class Backend {
+        private String host;
+        private int port;
+        private List<String> tags;
+        private int maxConnections = 100;
+        private boolean portSet;
+
+        public void setPort(int port) {
+            this.port = port;
+            this.portSet = true;
+        }
+    }
+
+    public static class ServiceConfig {
+        private int port;
+        private Long weight;
+        private double ratio;
+        private boolean enabled;
+        private Duration timeout;
+        private Duration retryDelay;
+        private Mode mode;
+        private String empty = "default";
+        private List<Backend> backends;
+        private Map<String, Integer> limits;
+        private transient String ignored = "kept";
+    }
+
+    public static class Abstract {
+        private Abstract(int i) {
+        }
+    }
+
+    @Test
+    public void testAccessors() {
+        TypedYamlView view = new TypedYamlView(load(YAML));
+        assertEquals(8080, view.getInt("Service.port"));
+        assertEquals(8080L, view.getLong("Service.port"));
+        assertEquals("8080", view.getString("Service.port"));
+        assertEquals("2", view.getString("Service.weight"));
+        assertEquals(12345678901L, view.getLong("Service.big"));
+        assertEquals(0.5, view.getDouble("Service.ratio"), 0);
+        assertEquals(2.0, view.getDouble("Service.weight"), 0);
+        assertTrue(view.getBoolean("Service.enabled"));
+        assertEquals(Duration.ofMillis(1500), view.getDuration("Service.timeout"));
+        assertEquals(Duration.ofSeconds(2), view.getDuration("Service.retry-delay"));
+        assertEquals(Duration.ofMinutes(1), view.getDuration("Service.idle"));
+        assertEquals(Mode.READ_WRITE, view.get("Service.mode", Mode.class));
+        assertEquals(new BigDecimal("0.5"), view.get("Service.ratio", BigDecimal.class));
+        assertEquals(Arrays.asList("a", "1", "true"), view.getList("Service.hosts", String.class));
+        assertEquals(Arrays.asList(80, 443), view.getList("Service.ports", Integer.class));
+        // 缓存的结果
+        assertSame(view.getList("Service.ports", Integer.class), view.getList("Service.ports", Integer.class));
+        assertSame(view.getDuration("Service.timeout"), view.getDuration("Service.timeout"));
+    }
+
+    @Test
+    public void testMissingAndNull() {
+        TypedYamlView view = new TypedYamlView(load(YAML));
+        assertEquals(7, view.getInt("Service.missing", 7));
+        assertEquals(7, view.getInt("Service.empty", 7));
+        assertNull(view.getString("Service.empty"));
+        assertEquals("x", view.getString("Service.empty", "x"));
+        assertEquals(Duration.ZERO, view.getDuration("Missing.timeout", Duration.ZERO));
+        assertFalse(view.getBoolean("Service.port.child", false));
+        try {
+            view.getInt("Service.missing");
+            fail();
+        } catch (YamlConversionException e) {
+            fail();
+        } catch (IllegalArgumentException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+        try {
+            view.getInt("Service.empty");
+            fail();
+        } catch (YamlConversionException e) {
+            assertEquals("Service.empty", e.getCompositeKey());
+        }
+    }
+
+    @Test
+    public void testConversionErrors() {
+        TypedYamlView view = new TypedYamlView(load(YAML));
+        String[][] cases = {
+                {"Service.mode", "int"}, {"Service.big", "int"}, {"Service.ratio", "long"},
+                {"Service.hosts", "string"}, {"Service.mode", "boolean"}, {"Service.mode", "duration"},
+                {"Service.ratio", "mode"}};
+        for (String[] c : cases) {
+            try {
+                switch (c[1]) {
+                    case "int":
+                        view.getInt(c[0]);
+                        break;
+                    case "long":
+                        view.getLong(c[0]);
+                        break;
+                    case "string":
+                        view.getString(c[0]);
+                        break;
+                    case "boolean":
+                        view.getBoolean(c[0]);
+                        break;
+                    case "duration":
+                        view.getDuration(c[0]);
+                        break;
+                    default:
+                        view.get(c[0], Mode.class);
+                }
+                fail(Arrays.toString(c));
+            } catch (YamlConversionException e) {
+                log.info("expected: {}", e.getMessage());
+                assertEquals(c[0], e.getCompositeKey());
+            }
+        }
+        try {
+            view.getList("Service.hosts", Integer.class);
+            fail();
+        } catch (YamlConversionException e) {
+            assertEquals("Service.hosts.0", e.getCompositeKey());
+            assertEquals("a", e.getValue());
+        }
+    }
+
+    @Test
+    public void testBind() {
+        Map<String, Object> map = load(YAML);
+        TypedYamlView view = new TypedYamlView(map);
+        ServiceConfig config = view.get("Service", ServiceConfig.class);
+        assertSame(config, view.get("Service", ServiceConfig.class));
+        assertEquals(8080, config.port);
+        assertEquals(Long.valueOf(2), config.weight);
+        assertEquals(0.5, config.ratio, 0);
+        assertTrue(config.enabled);
+        assertEquals(Duration.ofMillis(1500), config.timeout);
+        assertEquals(Duration.ofSeconds(2), config.retryDelay);
+        assertEquals(Mode.READ_WRITE, config.mode);
+        assertNull(config.empty);
+        assertEquals("kept", config.ignored);
+        assertEquals(2, config.backends.size());
+        Backend first = config.backends.get(0);
+        assertEquals("h0", first.host);
+        assertTrue(first.portSet);
+        assertEquals(Collections.singletonList("x"), first.tags);
+        assertEquals(100, first.maxConnections);
+        assertEquals(2, config.backends.get(1).port);
+        assertEquals(10, config.backends.get(1).maxConnections);
+        assertEquals(Integer.valueOf(2), config.limits.get("cpu"));
+        try {
+            config.backends.add(new Backend());
+            fail();
+        } catch (UnsupportedOperationException e) {
+            log.info("expected: {}", e.toString());
+        }
+
+        Map<String, Object> broken = load(YAML.replace("port: '2'", "port: two"));
+        try {
+            YamlBinder.bind(new YamlEditor().getValue("Service", broken), ServiceConfig.class, "Service");
+            fail();
+        } catch (YamlConversionException e) {
+            log.info("expected: {}", e.getMessage());
+            assertEquals("Service.backends.1.port", e.getCompositeKey());
+            assertEquals(int.class, e.getTargetType());
+        }
+        try {
+            YamlBinder.bind(Collections.singletonMap("a", 1), Abstract.class, "x");
+            fail();
+        } catch (YamlConversionException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testBoundedCache() {
+        Map<String, Object> map = load("a: 1\nb: 2\nc: 3\n");
+        TypedYamlView view = new TypedYamlView(map, new YamlEditor(), 2);
+        assertEquals(1, view.getInt("a"));
+        assertEquals(2, view.getInt("b"));
+        assertEquals(1, view.getInt("a"));
+        assertEquals(3, view.getInt("c"));
+        // 最久没有使用的b被淘汰
+        assertEquals(2, view.cachedCount());
+        map.put("a", 10);
+        map.put("b", 20);
+        assertEquals(1, view.getInt("a"));
+        assertEquals(20, view.getInt("b"));
+
+        // 不存在的复合键不占用缓存
+        for (int i = 0; i < 100; i++) {
+            assertEquals(-1, view.getInt("missing" + i, -1));
+        }
+        assertEquals(2, view.cachedCount());
+    }
+
+    @Test
+    public void testErrorKeysFollowEscapeMode() {
+        Map<String, Object> map = load("service:\n  hosts:\n    baidu.com: {port: x}\n");
+        for (boolean supportEscape : new boolean[]{false, true}) {
+            YamlEditor yamlEditor = new YamlEditor(supportEscape);
+            try {
+                new TypedYamlView(map, yamlEditor).get("service", HostsConfig.class);
+                fail();
+            } catch (YamlConversionException e) {
+                String expected = supportEscape ? "service.hosts.baidu\\.com.port" : "service.hosts.baidu.com.port";
+                assertEquals(expected, e.getCompositeKey());
+                if (supportEscape) {
+                    // 错误信息中的复合键可以直接交给同一个编辑器定位出错的值
+                    assertEquals("x", yamlEditor.getValue(e.getCompositeKey(), map));
+                }
+            }
+        }
+    }
+
+    public static class PortConfig {
+        private int port;
+    }
+
+    public static class HostsConfig {
+        private Map<String, PortConfig> hosts;
+    }
+
+    @Test
+    public void testPerVersion() {
+        VersionedYamlDocument document = new VersionedYamlDocument(load(YAML));
+        VersionedYamlDocument.Snapshot before = document.snapshot();
+        TypedYamlView view = before.typed();
+        assertSame(view, document.typed());
+        assertEquals(8080, view.getInt("Service.port"));
+        document.setValue("Service.port", "9090");
+        assertEquals(9090, document.typed().getInt("Service.port"));
+        assertNotSame(view, document.typed());
+        // 旧版本的视图不受影响
+        assertEquals(8080, before.typed().getInt("Service.port"));
+    }
+}
@@ -0,0 +1,185 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.fidt.yamleditor.YamlTestSupport.load;
+import static org.junit.Assert.*;
+
+@Slf4j
+public class TestVersionedYamlDocument {
+    private static final String YAML = "Service:\n"
+            + "  port: 8080\n"
+            + "  Profile:\n"
+            + "    Organization:\n"
+            + "      - {company: c0, size: 1}\n"
+            + "      - {company: c1, size: 2}\n"
+            + "Other:\n"
+            + "  hosts: [a, b]\n";
+
+    @Test
+    public void testCopyOnWrite() {
+        Map<String, Object> map = load(YAML);
+        VersionedYamlDocument document = new VersionedYamlDocument(map);
+        VersionedYamlDocument.Snapshot before = document.snapshot();
+        VersionedYamlDocument.Snapshot after = document.setValue("Service.Profile.Organization.1.company", "x");
+        assertEquals(1, after.getVersion());
+        assertSame(after, document.snapshot());
+        assertEquals("x", after.getValue("Service.Profile.Organization.1.company"));
+        // 旧版本不受影响，原Map也没有被修改
+        assertEquals("c1", before.getValue("Service.Profile.Organization.1.company"));
+        assertEquals(load(YAML), map);
+        assertEquals(load(YAML), before.getRoot());
+        // 只复制了被修改节点的路径
+        assertSame(before.getValue("Other"), after.getValue("Other"));
+        assertSame(before.getValue("Service.Profile.Organization.0"), after.getValue("Service.Profile.Organization.0"));
+        assertNotSame(before.getValue("Service.Profile"), after.getValue("Service.Profile"));
+
+        document.insertValueToObject("Service.New.list.0.key", "v");
+        document.removeListOrMapContent("Other.hosts.0");
+        VersionedYamlDocument.Snapshot last = document.snapshot();
+        assertEquals(3, last.getVersion());
+        assertEquals("v", last.getValue("Service.New.list.0.key"));
+        assertEquals(Collections.singletonList("b"), last.getValue("Other.hosts"));
+        assertEquals(Arrays.asList("a", "b"), after.getValue("Other.hosts"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReadOnly() {
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("a", new ArrayList<>(Arrays.asList(1, 2)));
+        VersionedYamlDocument document = new VersionedYamlDocument(load(YAML));
+        document.insertValueToObject("Service.New.list.5", value);
+        // 写入的值被拷贝
+        ((List<Object>) value.get("a")).add(3);
+        VersionedYamlDocument.Snapshot snapshot = document.snapshot();
+        assertEquals(Arrays.asList(1, 2), snapshot.getValue("Service.New.list.0.a"));
+        for (String key : new String[]{"Service", "Service.New", "Service.New.list", "Service.New.list.0.a",
+                "Other.hosts"}) {
+            Object node = snapshot.getValue(key);
+            try {
+                if (node instanceof Map) {
+                    ((Map<String, Object>) node).put("x", 1);
+                } else {
+                    ((List<Object>) node).add(1);
+                }
+                fail(key);
+            } catch (UnsupportedOperationException e) {
+                log.info("expected: {} is read only", key);
+            }
+        }
+    }
+
+    @Test
+    public void testCallerViewIsCopied() {
+        // 调用方自己包装的不可修改集合仍然可能通过原有引用被修改，必须拷贝
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("a", 1);
+        VersionedYamlDocument document = new VersionedYamlDocument(load(YAML));
+        document.update(snapshot -> Collections.singletonList(
+                EditOperation.set("Other.hosts", Collections.unmodifiableMap(value))));
+        value.put("a", 2);
+        assertEquals(1, document.snapshot().getValue("Other.hosts.a"));
+    }
+
+    @Test
+    public void testAtomicBatch() {
+        VersionedYamlDocument document = new VersionedYamlDocument(load(YAML));
+        document.apply(Arrays.asList(EditOperation.set("Service.port", 1), EditOperation.set("Other.hosts.1", "c")));
+        assertEquals(1, document.snapshot().getVersion());
+        assertEquals(1, document.getValue("Service.port"));
+        assertEquals("c", document.getValue("Other.hosts.1"));
+        try {
+            document.apply(Arrays.asList(EditOperation.set("Service.port", 2), EditOperation.set("Missing.key", 1)));
+            fail();
+        } catch (IllegalArgumentException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+        assertEquals(1, document.snapshot().getVersion());
+        assertEquals(1, document.getValue("Service.port"));
+    }
+
+    @Test
+    public void testHistory() {
+        VersionedYamlDocument document = new VersionedYamlDocument(load(YAML), 2);
+        for (int i = 1; i <= 4; i++) {
+            document.setValue("Service.port", i);
+        }
+        assertEquals(2, document.history().size());
+        assertEquals(3, document.history().get(0).getVersion());
+        assertEquals(2, document.history().get(1).getVersion());
+        VersionedYamlDocument.Snapshot restored = document.rollback();
+        assertEquals(3, restored.getVersion());
+        assertEquals(3, document.getValue("Service.port"));
+        try {
+            document.rollbackTo(0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+        assertEquals(2, document.rollbackTo(2).getVersion());
+        assertTrue(document.history().isEmpty());
+        // 回滚之后的版本号继续增长
+        assertEquals(5, document.setValue("Service.port", 5).getVersion());
+        assertEquals(1, document.history().size());
+        try {
+            new VersionedYamlDocument(load(YAML)).rollback();
+            fail();
+        } catch (IllegalStateException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        VersionedYamlDocument document = new VersionedYamlDocument(load("counter: 0\nkeys: {}\n"));
+        int threads = 4;
+        int edits = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        AtomicBoolean done = new AtomicBoolean();
+        // 读线程遍历快照，不应出现ConcurrentModificationException或者不一致的状态
+        Future<Integer> reader = executor.submit(() -> {
+            int reads = 0;
+            while (!done.get()) {
+                VersionedYamlDocument.Snapshot snapshot = document.snapshot();
+                Map<?, ?> keys = (Map<?, ?>) snapshot.getValue("keys");
+                int size = 0;
+                for (Object ignored : keys.entrySet()) {
+                    size++;
+                }
+                // 每个版本只增加一个键或者计数加1
+                assertEquals(snapshot.getVersion(), size + (Integer) snapshot.getValue("counter"));
+                reads++;
+            }
+            return reads;
+        });
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            writers.add(executor.submit(() -> {
+                for (int i = 0; i < edits; i++) {
+                    document.insertValueToObject("keys.t" + id + "-" + i, i);
+                    document.update(snapshot -> Collections.singletonList(
+                            EditOperation.set("counter", (Integer) snapshot.getValue("counter") + 1)));
+                }
+            }));
+        }
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+        done.set(true);
+        log.info("reads: {}", reader.get());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(threads * edits, document.getValue("counter"));
+        assertEquals(threads * edits, ((Map<?, ?>) document.getValue("keys")).size());
+    }
+}
@@ -0,0 +1,172 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
+
+import static com.fidt.yamleditor.YamlTestSupport.write;
+import static org.junit.Assert.*;
+
+@Slf4j
+public class TestWriteBehindYamlStore {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final YamlEditor yamlEditor = new YamlEditor();
+
+    private Object read(String compositeKey, Path path) throws IOException {
+        return yamlEditor.getValue(compositeKey, YamlEditor.getMapFromYaml(path));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("timed out", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testCoalescing() throws IOException {
+        Path path = write(folder, "a.yaml", "Service:\n  port: 0\n");
+        try (WriteBehindYamlStore store = new WriteBehindYamlStore(yamlEditor, 1, TimeUnit.HOURS)) {
+            for (int i = 1; i <= 200; i++) {
+                store.updateYaml("Service.port", i, path);
+            }
+            store.insertYaml("Service.hosts.0", "a", path);
+            // 新旧值相同，不产生编辑
+            store.updateYaml("Service.port", 200, path);
+            assertEquals(200, store.getValue("Service.port", path));
+            assertEquals(0, read("Service.port", path));
+            assertEquals(1, store.getMetrics().getDirtyDocuments());
+            store.flush();
+            assertEquals(200, read("Service.port", path));
+            assertEquals("a", read("Service.hosts.0", path));
+            WriteBehindYamlStore.Metrics metrics = store.getMetrics();
+            log.info("{}", metrics);
+            assertEquals(201, metrics.getEdits());
+            assertEquals(1, metrics.getFlushes());
+            assertEquals(201.0, metrics.getCoalescingRatio(), 0.0);
+            assertEquals(0, metrics.getDirtyDocuments());
+            // 没有脏文档时不写出
+            store.flush();
+            assertEquals(1, store.getMetrics().getFlushes());
+        }
+    }
+
+    @Test
+    public void testFailedApply() throws IOException {
+        Path path = write(folder, "a.yaml", "n: 0\n");
+        try (WriteBehindYamlStore store = new WriteBehindYamlStore(yamlEditor, 1, TimeUnit.HOURS)) {
+            try {
+                store.apply(Arrays.asList(
+                        EditOperation.set("n", 5),
+                        EditOperation.insert("m.0.x", "v"),
+                        EditOperation.set("missing.key", 1)), path);
+                fail();
+            } catch (IllegalArgumentException e) {
+                log.info("expected: {}", e.getMessage());
+            }
+            // 中途失败时已经执行的编辑被撤销
+            assertEquals(0, store.getValue("n", path));
+            try {
+                store.getValue("m", path);
+                fail();
+            } catch (IllegalArgumentException e) {
+                log.info("expected: m was rolled back");
+            }
+            assertEquals(0, store.getMetrics().getDirtyDocuments());
+
+            Map<String, Object> value = new LinkedHashMap<>();
+            value.put("x", 1);
+            store.apply(Collections.singletonList(EditOperation.set("n", value)), path);
+            value.put("x", 2);
+            assertEquals(1, store.getValue("n.x", path));
+        }
+    }
+
+    @Test
+    public void testIntervalAndMaxEdits() throws Exception {
+        Path interval = write(folder, "interval.yaml", "n: 0\n");
+        Path counted = write(folder, "counted.yaml", "n: 0\n");
+        try (WriteBehindYamlStore store = new WriteBehindYamlStore(yamlEditor, 50, TimeUnit.MILLISECONDS)) {
+            store.updateYaml("n", 1, interval);
+            await(() -> store.getMetrics().getFlushes() == 1);
+            assertEquals(1, read("n", interval));
+        }
+        try (WriteBehindYamlStore store = new WriteBehindYamlStore(yamlEditor, 1, TimeUnit.HOURS)
+                .maxEditsPerFlush(10)) {
+            for (int i = 1; i <= 25; i++) {
+                store.updateYaml("n", i, counted);
+            }
+            await(() -> store.getMetrics().getFlushedEdits() >= 20);
+            assertTrue((Integer) read("n", counted) >= 10);
+            // 写出可能合并了此后的编辑，但不会多于每10次编辑一次
+            assertTrue(store.getMetrics().getFlushes() <= 2);
+        }
+        // close时写出剩余的编辑
+        assertEquals(25, read("n", counted));
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        Path a = write(folder, "a.yaml", "n: 0\n");
+        Path b = write(folder, "b.yaml", "n: 0\n");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (WriteBehindYamlStore store = new WriteBehindYamlStore(yamlEditor, 300, TimeUnit.MILLISECONDS)
+                .maxDirtyDocuments(1)) {
+            store.updateYaml("n", 1, a);
+            // 已经是脏文档时不需要等待
+            store.updateYaml("n", 2, a);
+            Future<?> blocked = executor.submit(() -> {
+                store.updateYaml("n", 1, b);
+                return null;
+            });
+            try {
+                blocked.get(100, TimeUnit.MILLISECONDS);
+                fail();
+            } catch (TimeoutException e) {
+                log.info("expected: editing b waits for a to be flushed");
+            }
+            blocked.get(10, TimeUnit.SECONDS);
+            assertEquals(2, read("n", a));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, read("n", b));
+    }
+
+    @Test
+    public void testClose() throws IOException {
+        Path path = write(folder, "a.yaml", "n: 0\n");
+        WriteBehindYamlStore store = new WriteBehindYamlStore(yamlEditor, 1, TimeUnit.HOURS);
+        store.updateYaml("n", 1, path);
+        try {
+            store.maxDirtyDocuments(1);
+            fail();
+        } catch (IllegalStateException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+        try {
+            store.updateYaml("missing.key", 1, path);
+            fail();
+        } catch (IllegalArgumentException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+        store.close();
+        assertEquals(1, read("n", path));
+        try {
+            store.updateYaml("n", 2, path);
+            fail();
+        } catch (IllegalStateException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+    }
+}
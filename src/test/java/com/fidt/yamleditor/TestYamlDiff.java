@@ -0,0 +1,134 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static com.fidt.yamleditor.YamlTestSupport.load;
+import static org.junit.Assert.*;
+
+@Slf4j
+public class TestYamlDiff {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * 差异重放到旧树的拷贝上之后，必须与新树相同
+     */
+    private static List<EditOperation> assertRoundTrip(String oldYaml, String newYaml, boolean supportEscape) {
+        Map<String, Object> oldTree = load(oldYaml);
+        Map<String, Object> newTree = load(newYaml);
+        List<EditOperation> operations = YamlDiff.diff(oldTree, newTree, supportEscape);
+        log.info("{}", operations);
+        // 空文档视为空Map
+        Map<String, Object> patched = oldTree == null ? new LinkedHashMap<>() : YamlTrees.deepCopyMap(oldTree);
+        YamlPatch.apply(YamlEditor.shared(supportEscape), operations, patched);
+        assertEquals(newTree == null ? Collections.emptyMap() : newTree, patched);
+        return operations;
+    }
+
+    @Test
+    public void testMaps() {
+        List<EditOperation> operations = assertRoundTrip(
+                "Service:\n  port: 8080\n  debug: true\n  profile: {name: a, level: 1}\n",
+                "Service:\n  port: 9090\n  profile: {name: a, level: 2}\n  hosts: [a, b]\n", false);
+        assertEquals(Arrays.asList(
+                EditOperation.set("Service.port", 9090),
+                EditOperation.remove("Service.debug"),
+                EditOperation.set("Service.profile.level", 2),
+                EditOperation.insert("Service.hosts", Arrays.asList("a", "b"))), operations);
+    }
+
+    @Test
+    public void testLists() {
+        // 中间删除：只产生删除操作，按下标从大到小
+        List<EditOperation> operations = assertRoundTrip("list: [a, b, c, d, e]\n", "list: [a, e]\n", false);
+        assertEquals(Arrays.asList(EditOperation.remove("list.3"), EditOperation.remove("list.2"),
+                EditOperation.remove("list.1")), operations);
+        // 变长：按下标修改，多出的追加在末尾
+        assertRoundTrip("list: [a, b, c]\n", "list: [a, x, b, c]\n", false);
+        assertRoundTrip("list: []\n", "list: [a, b]\n", false);
+        assertRoundTrip("list: [a, b]\n", "list: []\n", false);
+        assertRoundTrip("list: [{name: a, port: 1}, {name: b, port: 2}]\n",
+                "list: [{name: a, port: 1}, {name: b, port: 3}, {name: c}]\n", false);
+        assertRoundTrip("list: [[1, 2], [3, 4], [5]]\n", "list: [[1, 2], [5, 6]]\n", false);
+    }
+
+    @Test
+    public void testTypeChanges() {
+        assertRoundTrip("a: {b: 1}\nc: [1, 2]\nd: 1\n", "a: [1]\nc: {x: y}\nd: null\n", false);
+        assertRoundTrip("a: 1\n", "", false);
+        assertRoundTrip("", "a: {b: [1, {c: 2}]}\n", false);
+    }
+
+    @Test
+    public void testEscape() {
+        List<EditOperation> operations = assertRoundTrip("hosts:\n  baidu.com: 1\n",
+                "hosts:\n  baidu.com: 2\n  qq.com: 3\n", true);
+        assertEquals("hosts.baidu\\.com", operations.get(0).getCompositeKey());
+        try {
+            YamlDiff.diff(load("hosts:\n  baidu.com: 1\n"), load("hosts:\n  baidu.com: 2\n"), false);
+            fail();
+        } catch (IllegalArgumentException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testUnsupportedKeys() {
+        try {
+            YamlDiff.diff(load("a: {1: x}\n"), load("a: {1: y}\n"), false);
+            fail();
+        } catch (IllegalArgumentException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 未变化的子树中的键即使不能用复合键表示也不影响diff
+     */
+    @Test
+    public void testUnsupportedKeysInUnchangedSubtree() {
+        assertEquals(Collections.singletonList(EditOperation.set("b", 2)),
+                YamlDiff.diff(load("codes: {200: ok}\nb: 1\n"), load("codes: {200: ok}\nb: 2\n"), false));
+        assertEquals(Collections.singletonList(EditOperation.set("b", 2)),
+                YamlDiff.diff(load("hosts: {a.b.com: 1}\nb: 1\n"), load("hosts: {a.b.com: 1}\nb: 2\n"), false));
+    }
+
+    @Test
+    public void testIdentity() {
+        Map<String, Object> tree = load("a: {b: [1, 2]}\n");
+        assertTrue(YamlDiff.diff(tree, tree, false).isEmpty());
+        // 共享的子树不再向下比较
+        Map<String, Object> other = new LinkedHashMap<>(tree);
+        other.put("c", 1);
+        assertEquals(Collections.singletonList(EditOperation.insert("c", 1)), YamlDiff.diff(tree, other, false));
+    }
+
+    @Test
+    public void testOperationsAreIndependent() {
+        Map<String, Object> oldTree = load("a: 1\n");
+        Map<String, Object> newTree = load("a: 1\nb: {c: 1}\n");
+        List<EditOperation> operations = YamlDiff.diff(oldTree, newTree, false);
+        YamlPatch.apply(new YamlEditor(), operations, oldTree);
+        new YamlEditor().setValue("b.c", 2, oldTree);
+        assertEquals(1, new YamlEditor().getValue("b.c", newTree));
+    }
+
+    @Test
+    public void testApplyToFile() throws Exception {
+        Path path = folder.newFile("config.yaml").toPath();
+        Files.write(path, "Service:\n  port: 8080\n  hosts: [a, b, c]\n".getBytes(StandardCharsets.UTF_8));
+        Map<String, Object> newTree = load("Service:\n  port: 9090\n  hosts: [a, c]\n");
+        List<EditOperation> operations = YamlDiff.diff(YamlEditor.getMapFromYaml(path), newTree, false);
+        EditBatch.Result result = YamlPatch.applyToFile(new YamlEditor(), operations, path);
+        assertTrue(result.isWritten());
+        assertEquals(newTree, YamlEditor.getMapFromYaml(path));
+    }
+}
@@ -0,0 +1,156 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+
+import static com.fidt.yamleditor.YamlTestSupport.write;
+import static org.junit.Assert.*;
+
+@Slf4j
+public class TestYamlDocumentCache {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testHitAndMiss() throws Exception {
+        Path path = write(folder, "a.yaml", "Service:\n  port: 8080\n  hosts: [a, b]\n");
+        YamlDocumentCache cache = new YamlDocumentCache();
+        Map<String, Object> first = cache.get(path);
+        Map<String, Object> second = cache.get(folder.getRoot().toPath().resolve("./x/../a.yaml"));
+        assertSame(first, second);
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(YamlEditor.getMapFromYaml(path), first);
+        log.info("{}", cache);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReadOnlyAndCopy() throws Exception {
+        Path path = write(folder, "a.yaml", "Service:\n  port: 8080\n  hosts: [a, b]\n");
+        YamlDocumentCache cache = new YamlDocumentCache();
+        Map<String, Object> document = cache.get(path);
+        YamlEditor yamlEditor = new YamlEditor();
+        try {
+            yamlEditor.setValue("Service.port", 9090, document);
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            List<Object> hosts = (List<Object>) yamlEditor.getValue("Service.hosts", document);
+            hosts.add("c");
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+        Map<String, Object> copy = cache.getCopy(path);
+        yamlEditor.setValue("Service.port", 9090, copy);
+        yamlEditor.insertValueToObject("Service.hosts.2", "c", copy);
+        assertEquals(8080, yamlEditor.getValue("Service.port", cache.get(path)));
+        assertEquals(2, ((List<?>) yamlEditor.getValue("Service.hosts", cache.get(path))).size());
+    }
+
+    @Test
+    public void testRevalidation() throws Exception {
+        Path path = write(folder, "a.yaml", "port: 8080\n");
+        YamlDocumentCache cache = new YamlDocumentCache();
+        assertEquals(8080, cache.get(path).get("port"));
+        write(folder, "a.yaml", "port: 10086\n");
+        assertEquals(10086, cache.get(path).get("port"));
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testContentHash() throws Exception {
+        Path path = write(folder, "a.yaml", "port: 8080\n");
+        YamlDocumentCache metadataOnly = new YamlDocumentCache();
+        YamlDocumentCache hashed = new YamlDocumentCache(Long.MAX_VALUE, Long.MAX_VALUE, true);
+        metadataOnly.get(path);
+        hashed.get(path);
+        // 同样大小、同样修改时间的外部修改只能通过内容校验发现
+        FileTime time = Files.getLastModifiedTime(path);
+        write(folder, "a.yaml", "port: 9090\n");
+        Files.setLastModifiedTime(path, time);
+        assertEquals(8080, metadataOnly.get(path).get("port"));
+        assertEquals(9090, hashed.get(path).get("port"));
+        assertEquals(2, hashed.getMissCount());
+    }
+
+    @Test
+    public void testInvalidationOnWrite() throws Exception {
+        Path path = write(folder, "a.yaml", "Service:\n  port: 8080\n");
+        YamlDocumentCache cache = new YamlDocumentCache();
+        FileTime time = Files.getLastModifiedTime(path);
+        YamlEditor yamlEditor = new YamlEditor();
+
+        cache.get(path);
+        Map<String, Object> copy = cache.getCopy(path);
+        yamlEditor.setValue("Service.port", 9090, copy);
+        YamlEditor.dumpMapToYaml(copy, path);
+        Files.setLastModifiedTime(path, time);
+        assertEquals(9090, yamlEditor.getValue("Service.port", cache.get(path)));
+
+        yamlEditor.setValue("Service.port", 9091, copy);
+        YamlEditor.dumpMapToYamlAtomically(copy, path, FsyncPolicy.NONE);
+        Files.setLastModifiedTime(path, time);
+        assertEquals(9091, yamlEditor.getValue("Service.port", cache.get(path)));
+
+        yamlEditor.updateYamlInPlace("Service.port", 9092, path);
+        Files.setLastModifiedTime(path, time);
+        assertEquals(9092, yamlEditor.getValue("Service.port", cache.get(path)));
+
+        yamlEditor.updateYaml("Service.port", 9093, path.toString());
+        Files.setLastModifiedTime(path, time);
+        assertEquals(9093, yamlEditor.getValue("Service.port", cache.get(path)));
+    }
+
+    @Test
+    public void testEvictionByBytes() throws Exception {
+        Path a = write(folder, "a.yaml", "key: aaaaaaaaaa\n");
+        Path b = write(folder, "b.yaml", "key: bbbbbbbbbb\n");
+        Path c = write(folder, "c.yaml", "key: cccccccccc\n");
+        long size = Files.size(a);
+        YamlDocumentCache cache = new YamlDocumentCache(size * 2, Long.MAX_VALUE, false);
+        cache.get(a);
+        cache.get(b);
+        // a最近被访问过，淘汰b
+        cache.get(a);
+        cache.get(c);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(size * 2, cache.getTotalBytes());
+        long misses = cache.getMissCount();
+        cache.get(a);
+        cache.get(c);
+        assertEquals(misses, cache.getMissCount());
+        cache.get(b);
+        assertEquals(misses + 1, cache.getMissCount());
+    }
+
+    @Test
+    public void testEvictionByNodes() throws Exception {
+        Path a = write(folder, "a.yaml", "list: [1, 2, 3]\n");
+        Path b = write(folder, "b.yaml", "list: [4, 5, 6]\n");
+        Path big = write(folder, "big.yaml", "list: [1, 2, 3, 4, 5, 6, 7, 8, 9, 10]\n");
+        // 每个小文档5个节点：根Map、List以及3个标量
+        YamlDocumentCache cache = new YamlDocumentCache(Long.MAX_VALUE, 10, false);
+        cache.get(a);
+        cache.get(b);
+        assertEquals(10, cache.getTotalNodes());
+        assertEquals(2, cache.size());
+        // 超出预算的文档不会被缓存，也不会挤掉其他条目
+        cache.get(big);
+        assertEquals(2, cache.size());
+        cache.invalidate(a);
+        assertEquals(5, cache.getTotalNodes());
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,189 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static com.fidt.yamleditor.YamlTestSupport.write;
+import static org.junit.Assert.*;
+
+@Slf4j
+public class TestYamlDocumentStream {
+    private static final String MANIFESTS = "# manifests 😀\n"
+            + "apiVersion: v1\n"
+            + "kind: Service\n"
+            + "metadata: {name: web}\n"
+            + "---\n"
+            + "# the deployment\n"
+            + "apiVersion: apps/v1\n"
+            + "kind: Deployment\n"
+            + "metadata:\n"
+            + "  name: web   # 注释\n"
+            + "spec:\n"
+            + "  replicas: 1\n"
+            + "  template: &t {image: a}\n"
+            + "  copy: *t\n"
+            + "...\n"
+            + "--- {kind: Deployment, metadata: {name: api}, spec: {replicas: 2}}\n"
+            + "---\n"
+            + "--- plain scalar\n"
+            + "---\n"
+            + "- kind: Deployment\n"
+            + "---\n"
+            + "kind: ConfigMap\n"
+            + "data: {template: &t x}\n"
+            + "# trailing comment\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String read(Path path) throws IOException {
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testIterate() {
+        List<Object> expected = new ArrayList<>();
+        for (Object document : YamlEditor.yaml().loadAll(MANIFESTS)) {
+            expected.add(document);
+        }
+        List<Object> contents = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        try (YamlDocumentStream stream = YamlDocumentStream.open(new StringReader(MANIFESTS))) {
+            Iterator<YamlDocumentStream.Document> iterator = stream.iterator();
+            assertEquals(0, stream.getDocumentCount());
+            assertTrue(iterator.hasNext());
+            // 按需读取
+            assertEquals(1, stream.getDocumentCount());
+            while (iterator.hasNext()) {
+                YamlDocumentStream.Document document = iterator.next();
+                assertEquals(contents.size(), document.getIndex());
+                contents.add(document.getContent());
+                text.append(document.getText());
+            }
+            try {
+                stream.iterator();
+                fail();
+            } catch (IllegalStateException e) {
+                log.info("expected: {}", e.getMessage());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        assertEquals(expected, contents);
+        assertEquals(7, contents.size());
+        assertNull(contents.get(3));
+        assertEquals("plain scalar", contents.get(4));
+        assertEquals(MANIFESTS, text.toString());
+    }
+
+    @Test
+    public void testUntouched() throws IOException {
+        Path path = write(folder, "a.yaml", MANIFESTS);
+        YamlDocumentStream.EditSummary summary = YamlDocumentStream.edit(path, path, document -> false,
+                new EditBatch(new YamlEditor()).set("spec.replicas", 3));
+        assertEquals(7, summary.getDocumentCount());
+        assertEquals(0, summary.getSelectedCount());
+        assertEquals(MANIFESTS, read(path));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEdit() throws IOException {
+        Path input = write(folder, "a.yaml", MANIFESTS);
+        Path output = folder.getRoot().toPath().resolve("b.yaml");
+        YamlDocumentStream.EditSummary summary = YamlDocumentStream.edit(input, output,
+                document -> "Deployment".equals(document.get("kind")),
+                new EditBatch(new YamlEditor()).set("spec.replicas", 3).insert("metadata.labels.app", "web"));
+        log.info("{}\n{}", summary, read(output));
+        assertEquals(2, summary.getSelectedCount());
+        assertEquals(2, summary.getEditedCount());
+        String text = read(output);
+        // 没有被修改的文档按原文写出
+        assertTrue(text.startsWith("# manifests 😀\napiVersion: v1\nkind: Service\nmetadata: {name: web}\n---\n"
+                + "# the deployment\napiVersion: apps/v1\n"));
+        assertTrue(text.endsWith("---\n- kind: Deployment\n---\nkind: ConfigMap\ndata: {template: &t x}\n"
+                + "# trailing comment\n"));
+        assertTrue(text.contains("\n...\n---\nkind: Deployment\n"));
+        List<Object> documents = new ArrayList<>();
+        for (Object document : YamlEditor.yaml().loadAll(text)) {
+            documents.add(document);
+        }
+        assertEquals(7, documents.size());
+        for (int i : new int[]{1, 2}) {
+            Map<String, Object> deployment = (Map<String, Object>) documents.get(i);
+            assertEquals(3, ((Map<String, Object>) deployment.get("spec")).get("replicas"));
+            assertEquals("web", ((Map<String, Object>) ((Map<String, Object>) deployment.get("metadata"))
+                    .get("labels")).get("app"));
+        }
+        Map<String, Object> spec = (Map<String, Object>) ((Map<String, Object>) documents.get(1)).get("spec");
+        assertEquals(spec.get("template"), spec.get("copy"));
+        assertEquals("plain scalar", documents.get(4));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEditCopiesValues() throws IOException {
+        Path path = write(folder, "a.yaml", MANIFESTS);
+        Map<String, Object> resources = new LinkedHashMap<>();
+        resources.put("cpu", 2);
+        YamlDocumentStream.EditSummary summary = YamlDocumentStream.edit(path, path,
+                document -> "Deployment".equals(document.get("kind")),
+                new EditBatch(new YamlEditor()).set("spec.resources", resources)
+                        .insert("spec.resources.memory", "1G"));
+        assertEquals(2, summary.getEditedCount());
+        // 每个文档修改的是各自的拷贝
+        assertEquals(Collections.singletonMap("cpu", 2), resources);
+        List<Object> documents = new ArrayList<>();
+        for (Object document : YamlEditor.yaml().loadAll(read(path))) {
+            documents.add(document);
+        }
+        for (int i : new int[]{1, 2}) {
+            Map<String, Object> spec = (Map<String, Object>) ((Map<String, Object>) documents.get(i)).get("spec");
+            assertEquals("1G", ((Map<String, Object>) spec.get("resources")).get("memory"));
+        }
+    }
+
+    @Test
+    public void testRollback() throws IOException {
+        Path path = write(folder, "a.yaml", "kind: A\nspec: {replicas: 1}\n---\n# b\nkind: B\n");
+        YamlDocumentStream.EditSummary summary = YamlDocumentStream.edit(path, path, document -> true,
+                new EditBatch(new YamlEditor()).set("spec.replicas", 2));
+        assertEquals(2, summary.getSelectedCount());
+        assertEquals(1, summary.getEditedCount());
+        assertEquals(1, summary.getResults().get(1).getFailedCount());
+        assertEquals("kind: A\nspec:\n  replicas: 2\n---\n# b\nkind: B\n", read(path));
+    }
+
+    @Test
+    public void testLargeStream() throws IOException {
+        StringBuilder yaml = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            yaml.append("---\nkind: ").append(i % 10 == 0 ? "Deployment" : "Service")
+                    .append("\nmetadata:\n  name: app-").append(i).append("\nspec:\n  replicas: 1\n");
+        }
+        Path path = write(folder, "a.yaml", yaml.toString());
+        YamlDocumentStream.EditSummary summary = YamlDocumentStream.edit(path, path,
+                document -> "Deployment".equals(document.get("kind")),
+                new EditBatch(new YamlEditor()).set("spec.replicas", 5));
+        assertEquals(2000, summary.getDocumentCount());
+        assertEquals(200, summary.getEditedCount());
+        int count = 0;
+        try (YamlDocumentStream stream = YamlDocumentStream.open(path)) {
+            for (YamlDocumentStream.Document document : stream) {
+                Object replicas = new YamlEditor().getValue("spec.replicas", document.getContent());
+                assertEquals(count % 10 == 0 ? 5 : 1, replicas);
+                count++;
+            }
+        }
+        assertEquals(2000, count);
+    }
+}
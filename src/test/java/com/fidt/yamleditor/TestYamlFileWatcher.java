@@ -0,0 +1,155 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.fidt.yamleditor.YamlTestSupport.write;
+import static org.junit.Assert.*;
+
+@Slf4j
+public class TestYamlFileWatcher {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<String> keys(List<YamlChange> changes) {
+        List<String> keys = new ArrayList<>();
+        for (YamlChange change : changes) {
+            keys.add(change.getType() + " " + change.getCompositeKey());
+        }
+        return keys;
+    }
+
+    @Test
+    public void testCompare() throws Exception {
+        Map<String, Object> oldTree = YamlEditor.getMapFromYaml(write(folder, "old.yaml",
+                "Service:\n  port: 8080\n  hosts: [a, b, c]\n  debug: true\nbaidu.com: 1\nsame: {a: 1}\n"));
+        Map<String, Object> newTree = YamlEditor.getMapFromYaml(write(folder, "new.yaml",
+                "Service:\n  port: 9090\n  hosts: [a, x]\n  level: 3\nbaidu.com: 2\nsame: {a: 1}\n"));
+        List<YamlChange> changes = YamlDiff.compare(oldTree, newTree, true);
+        log.info("{}", changes);
+        assertEquals(Arrays.asList("MODIFIED Service.port", "MODIFIED Service.hosts.1", "REMOVED Service.hosts.2",
+                "REMOVED Service.debug", "ADDED Service.level", "MODIFIED baidu\\.com"), keys(changes));
+        assertEquals(8080, changes.get(0).getOldValue());
+        assertEquals(9090, changes.get(0).getNewValue());
+        assertEquals("baidu.com", YamlDiff.compare(oldTree, newTree, false).get(5).getCompositeKey());
+        assertTrue(YamlDiff.compare(oldTree, oldTree, false).isEmpty());
+        // 类型不同时只记录最高的一处
+        Map<String, Object> replaced = new LinkedHashMap<>(newTree);
+        replaced.put("Service", "none");
+        assertEquals(Collections.singletonList("MODIFIED Service"), keys(YamlDiff.compare(newTree, replaced, false)));
+    }
+
+    @Test
+    public void testSubscriptions() throws Exception {
+        Path path = write(folder, "config.yaml", "Service:\n  port: 8080\n  hosts: [a, b]\nOther: 1\n");
+        Map<String, List<String>> received = new LinkedHashMap<>();
+        try (YamlFileWatcher watcher = new YamlFileWatcher(10, Runnable::run, false)) {
+            watcher.subscribe(path, "Service.port", (file, changes) -> received.put("port", keys(changes)));
+            watcher.subscribe(path, "Service", (file, changes) -> received.put("service", keys(changes)));
+            watcher.subscribe(path, "Service.hosts.1", (file, changes) -> received.put("host", keys(changes)));
+            watcher.subscribe(path, "Other", (file, changes) -> received.put("other", keys(changes)));
+            YamlFileWatcher.Subscription all = watcher.subscribeAll(path,
+                    (file, changes) -> received.put("all", keys(changes)));
+
+            write(path, "Service:\n  port: 9090\n  hosts: [a, b]\nOther: 1\n");
+            watcher.refresh(path);
+            assertEquals(Collections.singletonList("MODIFIED Service.port"), received.get("port"));
+            assertEquals(Collections.singletonList("MODIFIED Service.port"), received.get("service"));
+            assertEquals(Collections.singletonList("MODIFIED Service.port"), received.get("all"));
+            assertFalse(received.containsKey("host"));
+            assertFalse(received.containsKey("other"));
+
+            // 上层键被整体替换时，订阅子键的监听器同样收到通知
+            received.clear();
+            all.cancel();
+            write(path, "Service: none\nOther: 1\n");
+            watcher.refresh(path);
+            assertEquals(Collections.singletonList("MODIFIED Service"), received.get("host"));
+            assertEquals(Collections.singletonList("MODIFIED Service"), received.get("port"));
+            assertFalse(received.containsKey("all"));
+            assertEquals("none", watcher.getTree(path).get("Service"));
+
+            // 没有变化时不通知
+            received.clear();
+            watcher.refresh(path);
+            assertTrue(received.isEmpty());
+        }
+    }
+
+    @Test
+    public void testBrokenFileKeepsPreviousTree() throws Exception {
+        Path path = write(folder, "config.yaml", "port: 8080\n");
+        try (YamlFileWatcher watcher = new YamlFileWatcher(10, Runnable::run, false)) {
+            watcher.watch(path);
+            write(path, "port: [8080\n");
+            watcher.refresh(path);
+            assertEquals(8080, watcher.getTree(path).get("port"));
+        }
+    }
+
+    @Test
+    public void testRejectedDispatch() throws Exception {
+        Path path = write(folder, "config.yaml", "port: 8080\n");
+        List<Object> received = new CopyOnWriteArrayList<>();
+        AtomicBoolean reject = new AtomicBoolean(true);
+        Executor executor = command -> {
+            if (reject.get()) {
+                throw new RejectedExecutionException("busy");
+            }
+            command.run();
+        };
+        try (YamlFileWatcher watcher = new YamlFileWatcher(10, executor, false)) {
+            watcher.subscribe(path, "port", (file, changes) -> received.add(changes.get(0).getNewValue()));
+            // 回调线程池拒绝任务时只丢失这一次通知，新的树照常生效；原子写入避免监听线程读到写了一半的文件
+            YamlEditor.dumpMapToYamlAtomically(Collections.singletonMap("port", 8081), path, FsyncPolicy.NONE);
+            watcher.refresh(path);
+            assertTrue(received.isEmpty());
+            assertEquals(8081, watcher.getTree(path).get("port"));
+
+            reject.set(false);
+            YamlEditor.dumpMapToYamlAtomically(Collections.singletonMap("port", 8082), path, FsyncPolicy.NONE);
+            watcher.refresh(path);
+            assertEquals(Collections.singletonList(8082), received);
+        }
+    }
+
+    @Test
+    public void testWatchService() throws Exception {
+        Path path = write(folder, "config.yaml", "port: 8080\n");
+        BlockingQueue<List<YamlChange>> received = new LinkedBlockingQueue<>();
+        try (YamlFileWatcher watcher = new YamlFileWatcher(50, null, false)) {
+            watcher.subscribe(path, "port", (file, changes) -> received.add(changes));
+            for (int port = 8081; port <= 8085; port++) {
+                write(path, "port: " + port + "\n");
+            }
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("port", 9090);
+            YamlEditor.dumpMapToYamlAtomically(map, path, FsyncPolicy.NONE);
+            // 连续的写入被合并，最终一定能收到最后的值
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            Object last = null;
+            int notifications = 0;
+            while (!Integer.valueOf(9090).equals(last) && System.nanoTime() < deadline) {
+                List<YamlChange> changes = received.poll(1, TimeUnit.SECONDS);
+                if (changes != null) {
+                    notifications++;
+                    last = changes.get(changes.size() - 1).getNewValue();
+                }
+            }
+            log.info("{} notifications", notifications);
+            assertEquals(9090, last);
+        }
+    }
+}
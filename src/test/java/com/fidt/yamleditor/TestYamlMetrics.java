@@ -0,0 +1,167 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static com.fidt.yamleditor.YamlTestSupport.write;
+import static org.junit.Assert.*;
+
+@Slf4j
+public class TestYamlMetrics {
+    private static final String YAML = "Service:\n  name: 中文\n  hosts: [a, b]\n  profile: {port: 8080}\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private InMemoryYamlMetrics metrics;
+
+    @Before
+    public void setUp() {
+        assertSame(YamlMetrics.NOOP, YamlEditor.getMetrics());
+        metrics = new InMemoryYamlMetrics(true);
+        YamlEditor.setMetrics(metrics);
+    }
+
+    @After
+    public void tearDown() {
+        YamlEditor.setMetrics(null);
+        metrics.unregisterMBean();
+    }
+
+    @Test
+    public void testLoadAndDump() throws Exception {
+        Path path = write(folder, "a.yaml", YAML);
+        Map<String, Object> map = YamlEditor.getMapFromYaml(path);
+        InMemoryYamlMetrics.Histogram loads = metrics.getLatency(YamlMetrics.Operation.LOAD);
+        assertEquals(1, loads.getCount());
+        assertTrue(loads.getMax() > 0);
+        assertEquals(Files.size(path), metrics.getBytesRead());
+        // 根、Service、name、hosts及其2个元素、profile、port
+        assertEquals(8, metrics.getNodeCounts().getMax());
+
+        Path output = folder.getRoot().toPath().resolve("b.yaml");
+        YamlEditor.dumpMapToYaml(map, output);
+        YamlEditor.dumpMapToYamlAtomically(map, path, FsyncPolicy.NONE);
+        assertEquals(2, metrics.getLatency(YamlMetrics.Operation.DUMP).getCount());
+        assertEquals(Files.size(output) + Files.size(path), metrics.getBytesWritten());
+
+        try {
+            YamlEditor.getMapFromYaml(folder.getRoot().toPath().resolve("missing.yaml"));
+            fail();
+        } catch (NoSuchFileException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+        assertEquals(2, loads.getCount());
+        assertEquals(1, metrics.getFailureCount(YamlMetrics.Operation.LOAD));
+        assertEquals(1, metrics.getNodeCounts().getCount());
+
+        // 默认只记录耗时与字节数，读入之后不再遍历整棵树
+        InMemoryYamlMetrics timed = new InMemoryYamlMetrics();
+        YamlEditor.setMetrics(timed);
+        YamlEditor.getMapFromYaml(path);
+        assertEquals(1, timed.getLatency(YamlMetrics.Operation.LOAD).getCount());
+        assertEquals(Files.size(path), timed.getBytesRead());
+        assertEquals(0, timed.getNodeCounts().getCount());
+    }
+
+    @Test
+    public void testEdits() throws Exception {
+        YamlEditor yamlEditor = new YamlEditor();
+        Map<String, Object> map = YamlEditor.getMapFromYaml(write(folder, "a.yaml", YAML));
+        assertEquals(8080, yamlEditor.getValue("Service.profile.port", map));
+        yamlEditor.setValue("Service.hosts.0", "c", map);
+        yamlEditor.insertValueToObject("Service.labels.app", "web", map);
+        yamlEditor.removeListOrMapContent("Service.name", map);
+        try {
+            yamlEditor.getValue("Service.missing", map);
+            fail();
+        } catch (IllegalArgumentException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+        assertEquals(2, metrics.getLatency(YamlMetrics.Operation.GET).getCount());
+        assertEquals(1, metrics.getFailureCount(YamlMetrics.Operation.GET));
+        for (YamlMetrics.Operation operation : new YamlMetrics.Operation[]{YamlMetrics.Operation.SET,
+                YamlMetrics.Operation.INSERT, YamlMetrics.Operation.REMOVE}) {
+            assertEquals(1, metrics.getLatency(operation).getCount());
+            assertEquals(0, metrics.getFailureCount(operation));
+        }
+        assertEquals(5, metrics.getPathDepths().getCount());
+        assertEquals(3, metrics.getPathDepths().getMax());
+        assertEquals(13, metrics.getPathDepths().getSum());
+        log.info("{}", metrics.getMeanLatencyMicros());
+    }
+
+    @Test
+    public void testCacheHitRate() throws Exception {
+        YamlEditor yamlEditor = new YamlEditor();
+        YamlPath path = yamlEditor.compilePath("TestYamlMetrics.testCacheHitRate");
+        assertSame(path, yamlEditor.compilePath("TestYamlMetrics.testCacheHitRate"));
+        assertEquals(1, metrics.getCacheHitCount(YamlMetrics.Cache.PATH));
+        assertEquals(1, metrics.getCacheMissCount(YamlMetrics.Cache.PATH));
+        assertEquals(0.5, metrics.getPathCacheHitRate(), 0);
+
+        assertTrue(Double.isNaN(metrics.getDocumentCacheHitRate()));
+        YamlDocumentCache cache = new YamlDocumentCache();
+        Path file = write(folder, "a.yaml", YAML);
+        for (int i = 0; i < 4; i++) {
+            cache.get(file);
+        }
+        assertEquals(0.75, metrics.getDocumentCacheHitRate(), 0);
+    }
+
+    @Test
+    public void testHistogram() {
+        InMemoryYamlMetrics.Histogram histogram = new InMemoryYamlMetrics.Histogram();
+        assertEquals(0, histogram.getPercentile(0.99));
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(50_500, histogram.getMean(), 0);
+        assertEquals(100_000, histogram.getMax());
+        // 50000落在 [32768, 65536) 中，分位数为桶的上界
+        assertEquals(65_535, histogram.getPercentile(0.5));
+        assertEquals(100_000, histogram.getPercentile(0.99));
+        assertEquals(1023, histogram.getPercentile(0));
+        histogram.record(0);
+        assertEquals(0, histogram.getPercentile(0));
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    public void testMBean() throws Exception {
+        ObjectName name = metrics.registerMBean("TestYamlMetrics");
+        try {
+            metrics.registerMBean("TestYamlMetrics");
+            fail();
+        } catch (IllegalStateException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+        YamlEditor.getMapFromYaml(write(folder, "a.yaml", YAML));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        assertEquals(metrics.getBytesRead(), server.getAttribute(name, "BytesRead"));
+        TabularData counts = (TabularData) server.getAttribute(name, "OperationCounts");
+        CompositeData load = counts.get(new Object[]{"LOAD"});
+        assertEquals(1L, load.get("value"));
+        server.invoke(name, "reset", null, null);
+        assertEquals(0L, server.getAttribute(name, "BytesRead"));
+        metrics.unregisterMBean();
+        assertFalse(server.isRegistered(name));
+    }
+}
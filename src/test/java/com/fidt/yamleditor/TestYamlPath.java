@@ -0,0 +1,97 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+public class TestYamlPath {
+
+    @Test
+    public void testCompile() {
+        YamlPath path = YamlPath.compile("Service.Profile.Organization.0.company");
+        assertEquals(5, path.size());
+        assertEquals("Organization", path.getName(2));
+        assertEquals(YamlPath.SegmentKind.LIST, path.getKind(3));
+        assertEquals(0, path.getIndex(3));
+        assertEquals(YamlPath.SegmentKind.MAP, path.getKind(4));
+        assertEquals("Service.Profile.Organization.0.company", path.toString());
+        assertEquals("Service.Profile", path.subPath(0, 2).toString());
+    }
+
+    @Test
+    public void testCompileWithEscape() {
+        YamlPath path = YamlPath.compile("Organizations.4.baidu\\.com", true);
+        assertEquals(3, path.size());
+        assertEquals("baidu.com", path.getLastName());
+        assertEquals(YamlPath.of("Organizations", "4", "baidu.com"), path);
+        assertEquals("Organizations.4.baidu\\.com", YamlPath.of("Organizations", "4", "baidu.com").toString());
+        // 未开启反转义时仍按'.'拆分
+        assertEquals(4, YamlPath.compile("Organizations.4.baidu\\.com").size());
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testIndexOfMapSegment() {
+        YamlPath.compile("a.b").getIndex(1);
+    }
+
+    /**
+     * 与 Integer.parseInt 一致：能解析为-1的段都返回-1，不能解析的段都抛出异常
+     */
+    @Test
+    public void testNegativeIndex() {
+        YamlPath path = YamlPath.compile("-1.-01.+0.-2147483648");
+        assertEquals(-1, path.getIndex(0));
+        assertEquals(-1, path.getIndex(1));
+        assertEquals(0, path.getIndex(2));
+        assertEquals(Integer.MIN_VALUE, path.getIndex(3));
+        assertEquals(-1, path.child("-001").getIndex(4));
+        for (String name : new String[]{"-", "--1", "2147483648", "1a"}) {
+            try {
+                YamlPath.of(name).getIndex(0);
+                fail(name);
+            } catch (NumberFormatException e) {
+                log.info("expected: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testEditorWithCompiledPath() {
+        YamlEditor yamlEditor = new YamlEditor();
+        Map<String, Object> map = new LinkedHashMap<>();
+        YamlPath path = yamlEditor.compilePath("Organizations.0.ports.1");
+        assertSame(path, yamlEditor.compilePath("Organizations.0.ports.1"));
+        // 下标超出范围时追加到列表末尾
+        yamlEditor.insertValueToObject(path, "172.21.18.43", map);
+        assertEquals("172.21.18.43", yamlEditor.getValue("Organizations.0.ports.0", map));
+        yamlEditor.setValue(YamlPath.compile("Organizations.0.ports.0"), "172.21.18.42", map);
+        assertEquals("172.21.18.42", yamlEditor.getValue("Organizations.0.ports.0", map));
+        yamlEditor.removeListOrMapContent(YamlPath.compile("Organizations.0.ports.0"), map);
+        List<?> ports = (List<?>) yamlEditor.getValue("Organizations.0.ports", map);
+        assertTrue(ports.isEmpty());
+        log.info("{}", map);
+    }
+
+    @Test
+    public void testCacheBound() {
+        YamlPathCache cache = new YamlPathCache(false, 8);
+        List<YamlPath> paths = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            paths.add(cache.get("a.b." + i));
+        }
+        assertTrue(cache.size() <= 8);
+        assertEquals(100, paths.size());
+        // 按放入的先后淘汰：最近放入的8个键仍在缓存中
+        for (int i = 92; i < 100; i++) {
+            assertSame(paths.get(i), cache.get("a.b." + i));
+        }
+        assertNotSame(paths.get(91), cache.get("a.b.91"));
+    }
+}
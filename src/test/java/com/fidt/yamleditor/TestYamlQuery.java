@@ -0,0 +1,134 @@
+package com.fidt.yamleditor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static com.fidt.yamleditor.YamlTestSupport.load;
+import static org.junit.Assert.*;
+
+@Slf4j
+public class TestYamlQuery {
+    private static final String YAML = "Service:\n"
+            + "  port: 8080\n"
+            + "  Profile:\n"
+            + "    company: root\n"
+            + "    Organization:\n"
+            + "      - {company: c0, size: 1}\n"
+            + "      - {company: c1, size: 2, Dept: {company: d1}}\n"
+            + "      - {company: c2, size: 3}\n"
+            + "      - c3\n";
+
+    private static List<String> keys(String pattern, Object root) {
+        return new YamlEditor().query(pattern, root).map(YamlQuery.Match::getCompositeKey)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testAny() {
+        Map<String, Object> map = load(YAML);
+        List<Object> companies = new YamlEditor().query("Service.Profile.Organization.*.company", map)
+                .map(YamlQuery.Match::getValue).collect(Collectors.toList());
+        assertEquals(Arrays.asList("c0", "c1", "c2"), companies);
+        assertEquals(Arrays.asList("Service.port", "Service.Profile"), keys("Service.*", map));
+        assertTrue(keys("Service.port.*", map).isEmpty());
+    }
+
+    @Test
+    public void testAnyDepth() {
+        Map<String, Object> map = load(YAML);
+        assertEquals(Arrays.asList("Service.Profile.company", "Service.Profile.Organization.0.company",
+                "Service.Profile.Organization.1.company", "Service.Profile.Organization.1.Dept.company",
+                "Service.Profile.Organization.2.company"), keys("**.company", map));
+        // 零层
+        assertEquals(Collections.singletonList("Service.port"), keys("Service.**.port", map));
+        // 多个**可以匹配同一节点，结果中只出现一次
+        assertEquals(keys("**.company", map), keys("**.**.company", map));
+        assertEquals(17, keys("**", map).size());
+    }
+
+    @Test
+    public void testRange() {
+        Map<String, Object> map = load(YAML);
+        assertEquals(Arrays.asList("Service.Profile.Organization.1.company",
+                "Service.Profile.Organization.2.company"), keys("Service.Profile.Organization.1:3.company", map));
+        assertEquals(Arrays.asList("Service.Profile.Organization.2", "Service.Profile.Organization.3"),
+                keys("Service.Profile.Organization.2:", map));
+        assertEquals(Collections.singletonList("Service.Profile.Organization.0"),
+                keys("Service.Profile.Organization.:1", map));
+        assertTrue(keys("Service.Profile.Organization.7:9", map).isEmpty());
+        // 下标范围不匹配Map的键
+        assertTrue(keys("Service.0:9", map).isEmpty());
+        assertEquals(Collections.singletonList("Service.Profile.Organization.3"),
+                keys("Service.Profile.Organization.3", map));
+    }
+
+    @Test
+    public void testLazy() {
+        List<Object> list = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            list.add(Collections.singletonMap("id", i));
+        }
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("items", list);
+        // 只消费前两个结果，遍历不会走完整棵树
+        Iterator<YamlQuery.Match> iterator = new YamlEditor().query("items.*.id", map).iterator();
+        assertEquals(0, iterator.next().getValue());
+        assertEquals(1, iterator.next().getValue());
+    }
+
+    @Test
+    public void testSetAll() {
+        Map<String, Object> map = load(YAML);
+        YamlEditor yamlEditor = new YamlEditor();
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("name", "fidt");
+        assertEquals(3, yamlEditor.compileQuery("Service.Profile.Organization.*.company").setAll(map, value));
+        Object first = yamlEditor.getValue("Service.Profile.Organization.0.company", map);
+        Object second = yamlEditor.getValue("Service.Profile.Organization.1.company", map);
+        assertEquals(value, first);
+        // 每个节点得到独立的拷贝
+        assertNotSame(first, second);
+        assertEquals("d1", yamlEditor.getValue("Service.Profile.Organization.1.Dept.company", map));
+    }
+
+    @Test
+    public void testRemoveAll() {
+        Map<String, Object> map = load(YAML);
+        YamlEditor yamlEditor = new YamlEditor();
+        assertEquals(2, yamlEditor.compileQuery("Service.Profile.Organization.1:3").removeAll(map));
+        assertEquals(load("Service:\n  port: 8080\n  Profile:\n    company: root\n"
+                + "    Organization: [{company: c0, size: 1}, c3]\n"), map);
+        map = load(YAML);
+        assertEquals(5, yamlEditor.compileQuery("**.company").removeAll(map));
+        // 祖先与子孙同时匹配：**匹配零层时包括元素1本身
+        assertEquals(3, yamlEditor.compileQuery("Service.Profile.Organization.1.**").removeAll(map));
+        assertEquals(load("Service:\n  port: 8080\n  Profile:\n"
+                + "    Organization: [{size: 1}, {size: 3}, c3]\n"), map);
+    }
+
+    @Test
+    public void testEscape() {
+        Map<String, Object> map = load("hosts:\n  baidu.com: {port: 1}\n  '*': {port: 2}\n");
+        YamlEditor yamlEditor = new YamlEditor(true);
+        assertEquals(Arrays.asList("hosts.baidu\\.com.port", "hosts.*.port"), yamlEditor.query("hosts.*.port", map)
+                .map(YamlQuery.Match::getCompositeKey).collect(Collectors.toList()));
+        assertEquals(Collections.singletonList(1), yamlEditor.query("hosts.baidu\\.com.port", map)
+                .map(YamlQuery.Match::getValue).collect(Collectors.toList()));
+        assertEquals(Collections.singletonList(2), yamlEditor.query("hosts.\\*.port", map)
+                .map(YamlQuery.Match::getValue).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testInvalid() {
+        try {
+            YamlQuery.compile("");
+            fail();
+        } catch (IllegalArgumentException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+        assertEquals(0, YamlQuery.compile("a.*").stream("scalar").count());
+    }
+}
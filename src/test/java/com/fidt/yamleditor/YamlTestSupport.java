@@ -0,0 +1,56 @@
+package com.fidt.yamleditor;
+
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 测试共用的辅助方法
+ *
+ * @Author Sennri
+ */
+final class YamlTestSupport {
+    private YamlTestSupport() {
+    }
+
+    /**
+     * 按 {@link YamlEditor} 的普通方式读取一段yaml文本
+     *
+     * @param yaml yaml文本
+     * @return 得到的树
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> load(String yaml) {
+        return (Map<String, Object>) YamlEditor.yaml().loadAs(new StringReader(yaml), LinkedHashMap.class);
+    }
+
+    /**
+     * 以UTF-8把content写入file，覆盖原有内容
+     *
+     * @return file
+     */
+    static Path write(Path file, String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * 在临时目录中写入名为name的文件
+     */
+    static Path write(TemporaryFolder folder, String name, String content) throws IOException {
+        return write(folder.getRoot().toPath().resolve(name), content);
+    }
+
+    /**
+     * 在临时目录中新建一个文件并写入content
+     */
+    static Path write(TemporaryFolder folder, String content) throws IOException {
+        return write(folder.newFile().toPath(), content);
+    }
+}
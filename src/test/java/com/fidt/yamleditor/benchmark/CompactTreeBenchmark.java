@@ -0,0 +1,102 @@
+package com.fidt.yamleditor.benchmark;
+
+import com.fidt.yamleditor.CompactYamlLoader;
+import com.fidt.yamleditor.YamlEditor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * getMapFromYaml 与 CompactYamlLoader 读入同一文档后的堆占用。
+ * 读入之后在文档可达与释放文档时各做一次完整GC，retainedBytes为两次堆使用量的差，即文档本身常驻的字节数；
+ * 由于包含GC，得分中的耗时没有参考意义，读入耗时见 {@link LoadDumpBenchmark}。
+ * 辅助指标在各次迭代间累加，因此只做一次正式迭代。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 1)
+@Measurement(iterations = 1, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class CompactTreeBenchmark {
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    @Param({"1MB", "16MB", "50MB"})
+    public String size;
+
+    private Path input;
+    /**
+     * 第一次GC时保证文档仍然可达
+     */
+    private Object retained;
+
+    /**
+     * 每次迭代的堆占用，作为辅助指标输出
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long retainedBytes;
+        public long fileBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            retainedBytes = 0;
+            fileBytes = 0;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Loader {
+        Map<String, Object> load(Path path) throws IOException;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        input = Files.createTempFile("yaml-bench-compact-", ".yaml");
+        YamlDocumentGenerator.write(YamlDocumentGenerator.generate(YamlDocumentGenerator.parseSize(size), 42L), input);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(input);
+    }
+
+    private static long usedAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * 以文档可达时与释放文档之后的堆使用量之差作为文档的大小。
+     * 偶尔会有上一次读入的文档在释放之后仍被短暂引用，导致测得的值偏小，因此取一次迭代中的最大值
+     */
+    private long measure(Loader loader, Footprint footprint) throws IOException {
+        // 不在局部变量中保留文档，释放时只有retained一处引用
+        retained = loader.load(input);
+        long loaded = usedAfterGc();
+        retained = null;
+        long released = usedAfterGc();
+        footprint.retainedBytes = Math.max(footprint.retainedBytes, loaded - released);
+        footprint.fileBytes = Files.size(input);
+        return loaded - released;
+    }
+
+    @Benchmark
+    public long regular(Footprint footprint) throws IOException {
+        return measure(YamlEditor::getMapFromYaml, footprint);
+    }
+
+    @Benchmark
+    public long compact(Footprint footprint) throws IOException {
+        return measure(CompactYamlLoader::load, footprint);
+    }
+}
@@ -0,0 +1,80 @@
+package com.fidt.yamleditor.benchmark;
+
+import com.fidt.yamleditor.ConcurrentYamlDocument;
+import com.fidt.yamleditor.YamlEditor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多个线程修改同一文档中不同子树：ConcurrentYamlDocument 的分段锁与一把全局锁的比较。
+ * 文档有 sessions 个第一层子树，每次随机选择一个子树执行setValue，或者以readPercent的比例执行getValue。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class ConcurrentEditBenchmark {
+    @Param({"256"})
+    public int sessions;
+
+    @Param({"0", "80"})
+    public int readPercent;
+
+    private final YamlEditor yamlEditor = new YamlEditor();
+    private Map<String, Object> document;
+    private ConcurrentYamlDocument striped;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        document = new LinkedHashMap<>();
+        keys = new String[sessions];
+        for (int i = 0; i < sessions; i++) {
+            Map<String, Object> user = new LinkedHashMap<>();
+            user.put("name", "user-" + i);
+            user.put("visits", 0);
+            Map<String, Object> session = new LinkedHashMap<>();
+            session.put("user", user);
+            document.put("session-" + i, session);
+            keys[i] = "session-" + i + ".user.visits";
+        }
+        striped = new ConcurrentYamlDocument(document);
+    }
+
+    private String nextKey() {
+        return keys[ThreadLocalRandom.current().nextInt(keys.length)];
+    }
+
+    private boolean nextIsRead() {
+        return ThreadLocalRandom.current().nextInt(100) < readPercent;
+    }
+
+    @Benchmark
+    public Object globalLock() {
+        String key = nextKey();
+        synchronized (document) {
+            if (nextIsRead()) {
+                return yamlEditor.getValue(key, document);
+            }
+            yamlEditor.setValue(key, 1, document);
+            return null;
+        }
+    }
+
+    @Benchmark
+    public Object stripedLock() {
+        String key = nextKey();
+        if (nextIsRead()) {
+            return striped.getValue(key);
+        }
+        striped.setValue(key, 1);
+        return null;
+    }
+}
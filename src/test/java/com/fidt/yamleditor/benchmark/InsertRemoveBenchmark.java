@@ -0,0 +1,74 @@
+package com.fidt.yamleditor.benchmark;
+
+import com.fidt.yamleditor.YamlEditor;
+import org.apache.log4j.Logger;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * insertValueToObject 创建深层路径，以及 removeListOrMapContent 在长列表上的耗时。
+ * 创建列表时下标超出范围会记录warn日志，因此关闭了YamlEditor的日志，结果中不包括日志的开销。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InsertRemoveBenchmark {
+    @Param({"4", "16"})
+    public int depth;
+
+    @Param({"1000", "100000"})
+    public int listSize;
+
+    private final YamlEditor yamlEditor = new YamlEditor();
+    private String deepKey;
+    private String tailKey;
+    private Map<String, Object> listDocument;
+    private List<Object> items;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        Logger.getLogger(YamlEditor.class).setLevel(org.apache.log4j.Level.OFF);
+        // 交替使用Map键与列表下标，保证插入时两种容器都会被创建
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            if (i > 0) {
+                sb.append('.');
+            }
+            sb.append(i % 2 == 0 ? "node" + i : "0");
+        }
+        deepKey = sb.toString();
+        listDocument = YamlDocumentGenerator.longList(listSize);
+        items = (List<Object>) listDocument.get("items");
+        tailKey = "items." + (listSize - 1);
+    }
+
+    @Benchmark
+    public Map<String, Object> insertDeepPath() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        yamlEditor.insertValueToObject(deepKey, "value", map);
+        return map;
+    }
+
+    /**
+     * 移除列表头部元素后在尾部补回，保持列表长度不变
+     */
+    @Benchmark
+    public void removeHeadOfLongList() {
+        yamlEditor.removeListOrMapContent("items.0", listDocument);
+        items.add("item");
+    }
+
+    @Benchmark
+    public void removeTailOfLongList() {
+        yamlEditor.removeListOrMapContent(tailKey, listDocument);
+        items.add("item");
+    }
+}
@@ -0,0 +1,72 @@
+package com.fidt.yamleditor.benchmark;
+
+import com.fidt.yamleditor.FsyncPolicy;
+import com.fidt.yamleditor.JournaledYamlDocument;
+import com.fidt.yamleditor.YamlEditor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 每次修改后持久化：setValue 之后整体 dumpMapToYamlAtomically 与 JournaledYamlDocument 追加一条日志记录的比较。
+ * 两者使用相同的落盘策略，返回时修改都已经落盘。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JournalBenchmark {
+    @Param({"10KB", "1MB"})
+    public String size;
+
+    @Param({"NONE", "FILE"})
+    public FsyncPolicy fsyncPolicy;
+
+    private final YamlEditor yamlEditor = new YamlEditor();
+    private Path directory;
+    private Path rewritten;
+    private Map<String, Object> document;
+    private JournaledYamlDocument journaled;
+    private int counter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("yaml-bench-journal-");
+        document = YamlDocumentGenerator.generate(YamlDocumentGenerator.parseSize(size), 42L);
+        rewritten = directory.resolve("rewritten.yaml");
+        Path journaledPath = directory.resolve("journaled.yaml");
+        YamlDocumentGenerator.write(document, rewritten);
+        YamlDocumentGenerator.write(document, journaledPath);
+        journaled = JournaledYamlDocument.open(journaledPath, yamlEditor, fsyncPolicy,
+                JournaledYamlDocument.DEFAULT_COMPACT_THRESHOLD_BYTES);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        journaled.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public void rewrite() throws IOException {
+        yamlEditor.setValue("meta.version", ++counter, document);
+        YamlEditor.dumpMapToYamlAtomically(document, rewritten, fsyncPolicy);
+    }
+
+    @Benchmark
+    public void journal() {
+        journaled.setValue("meta.version", ++counter).join();
+    }
+}
@@ -0,0 +1,71 @@
+package com.fidt.yamleditor.benchmark;
+
+import com.fidt.yamleditor.CompactYamlLoader;
+import com.fidt.yamleditor.LazyYamlDocument;
+import com.fidt.yamleditor.YamlEditor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 打开文档并读取少量复合键：完整读取、紧凑读取与 LazyYamlDocument 按需解析的比较。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class LazyDocumentBenchmark {
+    private static final String[] KEYS = {"meta.version", "tenants.7.Profile.Organization.0.company",
+            "tenants.100.name"};
+
+    @Param({"1MB", "16MB", "50MB"})
+    public String size;
+
+    private final YamlEditor yamlEditor = new YamlEditor();
+    private Path input;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        input = Files.createTempFile("yaml-bench-lazy-", ".yaml");
+        YamlDocumentGenerator.write(YamlDocumentGenerator.generate(YamlDocumentGenerator.parseSize(size), 42L), input);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(input);
+    }
+
+    private Object readAll(Object root) {
+        Object last = null;
+        for (String key : KEYS) {
+            last = yamlEditor.getValue(key, root);
+        }
+        return last;
+    }
+
+    @Benchmark
+    public Object regular() throws IOException {
+        return readAll(YamlEditor.getMapFromYaml(input));
+    }
+
+    @Benchmark
+    public Object compact() throws IOException {
+        return readAll(CompactYamlLoader.load(input));
+    }
+
+    @Benchmark
+    public Object lazy() throws IOException {
+        try (LazyYamlDocument document = LazyYamlDocument.open(input)) {
+            Object last = null;
+            for (String key : KEYS) {
+                last = document.getValue(key);
+            }
+            return last;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.fidt.yamleditor.benchmark;
+
+import com.fidt.yamleditor.CompactYamlLoader;
+import com.fidt.yamleditor.YamlEditor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * getMapFromYaml、CompactYamlLoader 与 dumpMapToYaml 在不同文档大小下的耗时
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class LoadDumpBenchmark {
+    @Param({"1KB", "64KB", "1MB", "50MB"})
+    public String size;
+
+    private Path input;
+    private Path output;
+    private Map<String, Object> document;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        input = Files.createTempFile("yaml-bench-load-", ".yaml");
+        output = Files.createTempFile("yaml-bench-dump-", ".yaml");
+        document = YamlDocumentGenerator.generate(YamlDocumentGenerator.parseSize(size), 42L);
+        YamlDocumentGenerator.write(document, input);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(input);
+        Files.deleteIfExists(output);
+    }
+
+    @Benchmark
+    public Map<String, Object> load() throws IOException {
+        return YamlEditor.getMapFromYaml(input);
+    }
+
+    @Benchmark
+    public Map<String, Object> loadCompact() throws IOException {
+        return CompactYamlLoader.load(input);
+    }
+
+    @Benchmark
+    public void dump() throws IOException {
+        YamlEditor.dumpMapToYaml(document, output);
+    }
+}
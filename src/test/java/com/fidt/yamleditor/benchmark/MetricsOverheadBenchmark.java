@@ -0,0 +1,63 @@
+package com.fidt.yamleditor.benchmark;
+
+import com.fidt.yamleditor.InMemoryYamlMetrics;
+import com.fidt.yamleditor.YamlEditor;
+import com.fidt.yamleditor.YamlMetrics;
+import com.fidt.yamleditor.YamlPath;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 指标的开销：未安装（NOOP）与安装 {@link InMemoryYamlMetrics} 时 getValue / setValue 的耗时。
+ * 配合 {@code -prof gc} 确认两种情况下都没有额外的分配。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+    @Param({"none", "inMemory"})
+    public String metrics;
+
+    @Param({"4"})
+    public int depth;
+
+    private YamlEditor yamlEditor;
+    private Map<String, Object> document;
+    private String compositeKey;
+    private YamlPath path;
+    private int counter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        YamlEditor.setMetrics("none".equals(metrics) ? YamlMetrics.NOOP : new InMemoryYamlMetrics());
+        yamlEditor = new YamlEditor();
+        document = YamlDocumentGenerator.deep(depth);
+        compositeKey = YamlDocumentGenerator.deepKey(depth);
+        path = yamlEditor.compilePath(compositeKey);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        YamlEditor.setMetrics(null);
+    }
+
+    @Benchmark
+    public Object getValue() {
+        return yamlEditor.getValue(compositeKey, document);
+    }
+
+    @Benchmark
+    public Object getValueCompiled() {
+        return yamlEditor.getValue(path, document);
+    }
+
+    @Benchmark
+    public void setValueCompiled() {
+        yamlEditor.setValue(path, counter++, document);
+    }
+}
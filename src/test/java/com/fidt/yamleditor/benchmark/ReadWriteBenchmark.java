@@ -0,0 +1,62 @@
+package com.fidt.yamleditor.benchmark;
+
+import com.fidt.yamleditor.YamlEditor;
+import com.fidt.yamleditor.YamlPath;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * getValue / setValue 在不同深度以及两种拆分模式（DOT_PATTERN 与反转义）下的耗时
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadWriteBenchmark {
+    @Param({"2", "8", "32"})
+    public int depth;
+
+    @Param({"false", "true"})
+    public boolean supportEscape;
+
+    private YamlEditor yamlEditor;
+    private Map<String, Object> document;
+    private String compositeKey;
+    private YamlPath path;
+    private int counter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        yamlEditor = new YamlEditor(supportEscape);
+        document = YamlDocumentGenerator.deep(depth);
+        compositeKey = YamlDocumentGenerator.deepKey(depth);
+        path = yamlEditor.compilePath(compositeKey);
+    }
+
+    @Benchmark
+    public Object getValue() {
+        return yamlEditor.getValue(compositeKey, document);
+    }
+
+    @Benchmark
+    public Object getValueCompiled() {
+        return yamlEditor.getValue(path, document);
+    }
+
+    @Benchmark
+    public void setValue() {
+        yamlEditor.setValue(compositeKey, counter++, document);
+    }
+
+    /**
+     * 不经过缓存的复合键拆分开销，用于比较两种拆分模式
+     */
+    @Benchmark
+    public YamlPath compile() {
+        return YamlPath.compile(compositeKey, supportEscape);
+    }
+}
@@ -0,0 +1,76 @@
+package com.fidt.yamleditor.benchmark;
+
+import com.fidt.yamleditor.SchemaYamlLoader;
+import com.fidt.yamleditor.YamlEditor;
+import com.fidt.yamleditor.YamlSchema;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按schema读取与普通读取的比较。validateAfterLoad 先普通读取再按schema转换与校验整棵树，
+ * 是不使用 {@link SchemaYamlLoader} 时得到同样结果的做法。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SchemaLoadBenchmark {
+    /**
+     * {@link YamlDocumentGenerator} 生成的文档的结构
+     */
+    private static final String SCHEMA = "meta:\n"
+            + "  version: int\n"
+            + "  generator: string\n"
+            + "  seed: long\n"
+            + "tenants:\n"
+            + "  - id: int\n"
+            + "    name: string\n"
+            + "    enabled: boolean\n"
+            + "    ratio: double\n"
+            + "    quota: int\n"
+            + "    Profile:\n"
+            + "      Organization:\n"
+            + "        - company: string\n"
+            + "          ports: [string]\n"
+            + "    tags: [string]\n";
+
+    @Param({"64KB", "1MB"})
+    public String size;
+
+    private Path input;
+    private YamlSchema schema;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        input = Files.createTempFile("yaml-bench-schema-", ".yaml");
+        YamlDocumentGenerator.write(YamlDocumentGenerator.generate(YamlDocumentGenerator.parseSize(size), 42L), input);
+        schema = YamlSchema.parse(SCHEMA);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(input);
+    }
+
+    @Benchmark
+    public Map<String, Object> genericLoad() throws IOException {
+        return YamlEditor.getMapFromYaml(input);
+    }
+
+    @Benchmark
+    public Object validateAfterLoad() throws IOException {
+        return SchemaYamlLoader.validate(YamlEditor.getMapFromYaml(input), schema);
+    }
+
+    @Benchmark
+    public Map<String, Object> schemaLoad() throws IOException {
+        return SchemaYamlLoader.load(input, schema);
+    }
+}
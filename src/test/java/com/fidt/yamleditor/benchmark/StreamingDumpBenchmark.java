@@ -0,0 +1,67 @@
+package com.fidt.yamleditor.benchmark;
+
+import com.fidt.yamleditor.StreamingYamlWriter;
+import org.openjdk.jmh.annotations.*;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 输出同一文档：Yaml.dump 先构造完整的Node图，StreamingYamlWriter 直接向Emitter发送事件。
+ * 输出写入一个丢弃内容的Writer，只比较序列化本身；配合 {@code -prof gc} 查看每次输出的分配量。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class StreamingDumpBenchmark {
+    @Param({"64KB", "1MB", "16MB"})
+    public String size;
+
+    private Map<String, Object> document;
+    private Yaml yaml;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        document = YamlDocumentGenerator.generate(YamlDocumentGenerator.parseSize(size), 42L);
+        // 与YamlEditor相同的输出格式
+        DumperOptions options = new DumperOptions();
+        options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+        options.setDefaultScalarStyle(DumperOptions.ScalarStyle.PLAIN);
+        options.setPrettyFlow(false);
+        yaml = new Yaml(options);
+    }
+
+    private static Writer discard() {
+        return new BufferedWriter(new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) {
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        }, 64 * 1024);
+    }
+
+    @Benchmark
+    public void snakeYaml() {
+        yaml.dump(document, discard());
+    }
+
+    @Benchmark
+    public void streaming() throws IOException {
+        StreamingYamlWriter.write(document, discard());
+    }
+}
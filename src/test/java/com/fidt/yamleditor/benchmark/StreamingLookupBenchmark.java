@@ -0,0 +1,54 @@
+package com.fidt.yamleditor.benchmark;
+
+import com.fidt.yamleditor.YamlEditor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读取单个复合键：完整读取后getValue 与 事件流读取 getValueFromYaml 的比较。
+ * head 位于文档开头，tail 位于文档末尾（事件流读取的最坏情况）。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class StreamingLookupBenchmark {
+    @Param({"64KB", "1MB", "50MB"})
+    public String size;
+
+    private final YamlEditor yamlEditor = new YamlEditor();
+    private Path input;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        input = Files.createTempFile("yaml-bench-stream-", ".yaml");
+        YamlDocumentGenerator.write(YamlDocumentGenerator.generate(YamlDocumentGenerator.parseSize(size), 42L), input);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(input);
+    }
+
+    @Benchmark
+    public Object fullLoadHead() throws IOException {
+        return yamlEditor.getValue("meta.version", YamlEditor.getMapFromYaml(input));
+    }
+
+    @Benchmark
+    public Object streamingHead() throws IOException {
+        return yamlEditor.getValueFromYaml("meta.version", input);
+    }
+
+    @Benchmark
+    public Object streamingTail() throws IOException {
+        return yamlEditor.getValuesFromYaml(Collections.singleton("missing.key"), input);
+    }
+}
@@ -0,0 +1,84 @@
+package com.fidt.yamleditor.benchmark;
+
+import com.fidt.yamleditor.YamlEditor;
+import com.fidt.yamleditor.YamlPath;
+import org.apache.log4j.Logger;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 探测可能不存在的键：getValue 以异常表示不存在，tryGetValue / getValueOrDefault 不抛出异常。
+ * 配合 {@code -prof gc} 确认不存在时没有分配。
+ * getValue 不存在时还会记录error日志，这里关闭了YamlEditor的日志，只比较异常本身的开销。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TryGetBenchmark {
+    private static final Object DEFAULT = new Object();
+
+    @Param({"8"})
+    public int depth;
+
+    private YamlEditor yamlEditor;
+    private Map<String, Object> document;
+    private String hitKey;
+    private String missKey;
+    private YamlPath hitPath;
+    private YamlPath missPath;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Logger.getLogger(YamlEditor.class).setLevel(org.apache.log4j.Level.OFF);
+        yamlEditor = new YamlEditor();
+        document = YamlDocumentGenerator.deep(depth);
+        hitKey = YamlDocumentGenerator.deepKey(depth);
+        // 最后一层不存在
+        missKey = hitKey.substring(0, hitKey.lastIndexOf('.') + 1) + "missing";
+        hitPath = yamlEditor.compilePath(hitKey);
+        missPath = yamlEditor.compilePath(missKey);
+    }
+
+    @Benchmark
+    public Object getValueHit() {
+        return yamlEditor.getValue(hitPath, document);
+    }
+
+    @Benchmark
+    public Object getValueOrDefaultHit() {
+        return yamlEditor.getValueOrDefault(hitPath, document, DEFAULT);
+    }
+
+    @Benchmark
+    public Object getValueMiss() {
+        try {
+            return yamlEditor.getValue(missPath, document);
+        } catch (IllegalArgumentException e) {
+            return DEFAULT;
+        }
+    }
+
+    @Benchmark
+    public Optional<Object> tryGetValueMiss() {
+        return yamlEditor.tryGetValue(missPath, document);
+    }
+
+    @Benchmark
+    public Object getValueOrDefaultMiss() {
+        return yamlEditor.getValueOrDefault(missPath, document, DEFAULT);
+    }
+
+    /**
+     * String形式的复合键经过缓存，命中缓存后同样没有分配
+     */
+    @Benchmark
+    public Object getValueOrDefaultMissString() {
+        return yamlEditor.getValueOrDefault(missKey, document, DEFAULT);
+    }
+}
@@ -0,0 +1,93 @@
+package com.fidt.yamleditor.benchmark;
+
+import com.fidt.yamleditor.TypedYamlView;
+import com.fidt.yamleditor.YamlBinder;
+import com.fidt.yamleditor.YamlEditor;
+import org.openjdk.jmh.annotations.*;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.StringReader;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读取并转换类型：每次 getValue 之后手动转换，与 {@link TypedYamlView} 缓存转换结果的比较。
+ * 配合 {@code -prof gc} 查看每次读取的分配量。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypedAccessBenchmark {
+    private static final String YAML = "Service:\n"
+            + "  port: '8080'\n"
+            + "  timeout: 1500\n"
+            + "  backends:\n"
+            + "    - {host: h0, port: 1}\n"
+            + "    - {host: h1, port: 2}\n";
+
+    public static class Backend {
+        public String host;
+        public int port;
+    }
+
+    public static class ServiceConfig {
+        public int port;
+        public Duration timeout;
+        public List<Backend> backends;
+    }
+
+    private YamlEditor yamlEditor;
+    private Map<String, Object> document;
+    private TypedYamlView view;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        yamlEditor = YamlEditor.shared(false);
+        document = loadDocument();
+        view = new TypedYamlView(document, yamlEditor);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> loadDocument() {
+        return (Map<String, Object>) new Yaml().loadAs(new StringReader(YAML), LinkedHashMap.class);
+    }
+
+    @Benchmark
+    public int rawInt() {
+        return Integer.parseInt((String) yamlEditor.getValue("Service.port", document));
+    }
+
+    @Benchmark
+    public int typedInt() {
+        return view.getInt("Service.port");
+    }
+
+    @Benchmark
+    public Duration rawDuration() {
+        return Duration.ofMillis(((Number) yamlEditor.getValue("Service.timeout", document)).longValue());
+    }
+
+    @Benchmark
+    public Duration typedDuration() {
+        return view.getDuration("Service.timeout");
+    }
+
+    /**
+     * 每次重新绑定，只复用绑定计划
+     */
+    @Benchmark
+    public ServiceConfig bind() {
+        return YamlBinder.bind(yamlEditor.getValue("Service", document), ServiceConfig.class, "Service");
+    }
+
+    @Benchmark
+    public ServiceConfig typedBind() {
+        return view.get("Service", ServiceConfig.class);
+    }
+}
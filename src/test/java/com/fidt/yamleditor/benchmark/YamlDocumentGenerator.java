@@ -0,0 +1,166 @@
+package com.fidt.yamleditor.benchmark;
+
+import com.fidt.yamleditor.YamlEditor;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 为基准测试生成合成的yaml文档。
+ * 同一个seed生成的文档完全一致，保证不同版本之间的结果可以比较。
+ */
+public final class YamlDocumentGenerator {
+    private static final String[] WORDS = {"alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf",
+            "hotel", "india", "juliet", "kilo", "lima", "mike", "november", "oscar", "papa"};
+
+    private YamlDocumentGenerator() {
+    }
+
+    /**
+     * 将 "1KB"、"64KB"、"1MB"、"50MB" 形式的大小转换为字节数
+     */
+    public static long parseSize(String size) {
+        String s = size.trim().toUpperCase();
+        if (s.endsWith("KB")) {
+            return Long.parseLong(s.substring(0, s.length() - 2)) << 10;
+        } else if (s.endsWith("MB")) {
+            return Long.parseLong(s.substring(0, s.length() - 2)) << 20;
+        } else if (s.endsWith("B")) {
+            return Long.parseLong(s.substring(0, s.length() - 1));
+        }
+        return Long.parseLong(s);
+    }
+
+    /**
+     * 生成一个dump之后大小约为targetBytes的文档，结构与常见的服务配置类似：
+     * tenants列表下每个tenant带有若干标量、嵌套的Profile.Organization列表以及ports列表。
+     *
+     * @param targetBytes 目标大小（字节）
+     * @param seed        随机数种子
+     * @return 文档
+     */
+    public static Map<String, Object> generate(long targetBytes, long seed) {
+        Random random = new Random(seed);
+        Map<String, Object> root = new LinkedHashMap<>();
+        Map<String, Object> meta = new LinkedHashMap<>();
+        meta.put("version", 1);
+        meta.put("generator", "YamlDocumentGenerator");
+        meta.put("seed", seed);
+        root.put("meta", meta);
+        List<Object> tenants = new ArrayList<>();
+        root.put("tenants", tenants);
+        // 先生成一个tenant估算单个tenant的大小，避免每次追加都重新dump
+        Map<String, Object> sample = tenant(0, random);
+        long tenantBytes = Math.max(1, dump(sample).length());
+        tenants.add(sample);
+        long count = Math.max(1, targetBytes / tenantBytes);
+        for (int i = 1; i < count; i++) {
+            tenants.add(tenant(i, random));
+        }
+        return root;
+    }
+
+    private static Map<String, Object> tenant(int id, Random random) {
+        Map<String, Object> tenant = new LinkedHashMap<>();
+        tenant.put("id", id);
+        tenant.put("name", word(random) + "-" + id);
+        tenant.put("enabled", random.nextBoolean());
+        tenant.put("ratio", Math.round(random.nextDouble() * 1000) / 1000.0);
+        tenant.put("quota", random.nextInt(1 << 20));
+        Map<String, Object> profile = new LinkedHashMap<>();
+        List<Object> organizations = new ArrayList<>();
+        for (int i = 0, n = 1 + random.nextInt(3); i < n; i++) {
+            Map<String, Object> organization = new LinkedHashMap<>();
+            organization.put("company", word(random) + " " + word(random));
+            List<Object> ports = new ArrayList<>();
+            for (int j = 0, m = 1 + random.nextInt(3); j < m; j++) {
+                ports.add("172.21." + random.nextInt(256) + "." + random.nextInt(256));
+            }
+            organization.put("ports", ports);
+            organizations.add(organization);
+        }
+        profile.put("Organization", organizations);
+        tenant.put("Profile", profile);
+        List<Object> tags = new ArrayList<>();
+        for (int i = 0, n = random.nextInt(4); i < n; i++) {
+            tags.add(word(random));
+        }
+        tenant.put("tags", tags);
+        return tenant;
+    }
+
+    private static String dump(Object document) {
+        DumperOptions options = new DumperOptions();
+        options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+        return new Yaml(options).dump(document);
+    }
+
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    /**
+     * 生成一条深度为depth的链式Map，叶子值为 "leaf"
+     *
+     * @param depth 深度
+     * @return 文档
+     */
+    public static Map<String, Object> deep(int depth) {
+        Map<String, Object> root = new LinkedHashMap<>();
+        Map<String, Object> current = root;
+        for (int i = 0; i < depth - 1; i++) {
+            Map<String, Object> next = new LinkedHashMap<>();
+            current.put(segment(i), next);
+            current = next;
+        }
+        current.put(segment(depth - 1), "leaf");
+        return root;
+    }
+
+    /**
+     * 与 {@link #deep(int)} 对应的复合键
+     */
+    public static String deepKey(int depth) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            if (i > 0) {
+                sb.append('.');
+            }
+            sb.append(segment(i));
+        }
+        return sb.toString();
+    }
+
+    private static String segment(int i) {
+        return "level" + i;
+    }
+
+    /**
+     * 生成 items 下含有size个标量的文档
+     */
+    public static Map<String, Object> longList(int size) {
+        List<Object> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            items.add("item-" + i);
+        }
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("items", items);
+        return root;
+    }
+
+    /**
+     * 将文档写入path
+     */
+    public static void write(Map<String, Object> document, Path path) throws IOException {
+        Files.deleteIfExists(path);
+        YamlEditor.dumpMapToYaml(document, path);
+    }
+}